@@ -85,6 +85,11 @@ public int schedule(long delay, long period, Runnable task) {
         return Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, task, delay, period);
     }
 
+    @Override
+    public void cancelTask(int taskId) {
+        Bukkit.getScheduler().cancelTask(taskId);
+    }
+
     @Override
     public List<LocalWorld> getWorlds() {
         List<World> worlds = server.getWorlds();
@@ -170,6 +175,7 @@ public Map<Capability, Preference> getCapabilities() {
         capabilities.put(Capability.PERMISSIONS, Preference.PREFERRED);
         capabilities.put(Capability.USER_COMMANDS, Preference.PREFERRED);
         capabilities.put(Capability.WORLD_EDITING, Preference.PREFER_OTHERS);
+        capabilities.put(Capability.SCHEDULING, Preference.PREFERRED);
         return capabilities;
     }
 
@@ -33,8 +33,10 @@
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.TreeGenerator;
+import com.sk89q.worldedit.world.ColumnSnapshot;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.registry.WorldData;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Effect;
 import org.bukkit.Material;
 import org.bukkit.TreeType;
@@ -428,6 +430,22 @@ public BaseBlock getLazyBlock(Vector position) {
         return new LazyBlock(bukkitBlock.getTypeId(), bukkitBlock.getData(), this, position);
     }
 
+    @Override
+    public ColumnSnapshot getColumnSnapshot(int chunkX, int chunkZ, int minY, int maxY) {
+        ChunkSnapshot chunk = getWorld().getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+        ColumnSnapshot snapshot = new ColumnSnapshot(chunkX, chunkZ, minY, maxY);
+        int chunkMinY = Math.max(0, minY);
+        int chunkMaxY = Math.min(getMaxY(), maxY);
+        for (int y = chunkMinY; y <= chunkMaxY; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    snapshot.setBlock(x, y, z, chunk.getBlockTypeId(x, y, z), chunk.getBlockData(x, y, z));
+                }
+            }
+        }
+        return snapshot;
+    }
+
     @Override
     public BaseBiome getBiome(Vector2D position) {
         BukkitImplAdapter adapter = WorldEditPlugin.getInstance().getBukkitImplAdapter();
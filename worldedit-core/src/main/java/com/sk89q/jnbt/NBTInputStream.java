@@ -39,7 +39,7 @@
  */
 public final class NBTInputStream implements Closeable {
 
-    private final DataInputStream is;
+    final DataInputStream is;
 
     /**
      * Creates a new {@code NBTInputStream}, which will source its data
@@ -93,7 +93,7 @@ private NamedTag readNamedTag(int depth) throws IOException {
      * @return the tag
      * @throws IOException if an I/O error occurs.
      */
-    private Tag readTagPayload(int type, int depth) throws IOException {
+    Tag readTagPayload(int type, int depth) throws IOException {
         switch (type) {
         case NBTConstants.TYPE_END:
             if (depth == 0) {
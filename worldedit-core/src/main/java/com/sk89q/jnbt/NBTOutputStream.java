@@ -41,7 +41,7 @@ public final class NBTOutputStream implements Closeable {
     /**
      * The output stream.
      */
-    private final DataOutputStream os;
+    final DataOutputStream os;
 
     /**
      * Creates a new {@code NBTOutputStream}, which will write data to the
@@ -90,7 +90,7 @@ public void writeNamedTag(String name, Tag tag) throws IOException {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    private void writeTagPayload(Tag tag) throws IOException {
+    void writeTagPayload(Tag tag) throws IOException {
         int type = NBTUtils.getTypeCode(tag.getClass());
         switch (type) {
         case NBTConstants.TYPE_END:
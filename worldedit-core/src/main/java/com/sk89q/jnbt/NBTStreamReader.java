@@ -0,0 +1,424 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.jnbt;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads <strong>NBT</strong> streams one tag at a time, without building an
+ * object graph of the whole stream.
+ *
+ * <p>The reader is a cursor. {@link #next()} moves to the next tag of the
+ * compound or list that was last entered with {@link #enter()}. The payload
+ * of the current tag can then be read with one of the {@code read} methods,
+ * read in parts with {@link #readBytes(byte[], int, int)} if it is a byte
+ * array, or entered if it is a compound or list. Payloads that are not
+ * read are skipped.</p>
+ *
+ * <p>Small tags can still be read as a whole with {@link #readTag()}.</p>
+ */
+public final class NBTStreamReader implements Closeable {
+
+    private final DataInputStream is;
+    private final NBTInputStream tagStream;
+    private final Deque<Container> containers = new ArrayDeque<Container>();
+    private boolean started;
+    private int type = -1;
+    private String name = "";
+    private boolean consumed = true;
+    private int arrayRemaining = -1;
+
+    /**
+     * Create a new reader, which will source its data from the given
+     * input stream.
+     *
+     * @param is the input stream
+     * @throws IOException if an I/O error occurs
+     */
+    public NBTStreamReader(InputStream is) throws IOException {
+        this(new NBTInputStream(is));
+    }
+
+    /**
+     * Create a new reader, which will source its data from the same stream
+     * as the given {@code NBTInputStream}.
+     *
+     * @param is the NBT input stream
+     */
+    public NBTStreamReader(NBTInputStream is) {
+        checkNotNull(is);
+        this.is = is.is;
+        this.tagStream = is;
+    }
+
+    /**
+     * Move to the next tag.
+     *
+     * <p>At the top level, the first call moves to the root tag and any
+     * later call returns false. Inside a compound or list, false is returned
+     * once there are no more tags, and the container is left, so that the
+     * next call moves to the tag that follows the container.</p>
+     *
+     * @return true if there was a next tag
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean next() throws IOException {
+        skip();
+
+        Container container = containers.peek();
+        if (container == null) {
+            if (started) {
+                type = -1;
+                return false;
+            }
+            started = true;
+            readHeader();
+            if (type == NBTConstants.TYPE_END) {
+                throw new IOException("TAG_End found without a TAG_Compound/TAG_List tag preceding it.");
+            }
+            return true;
+        } else if (container.list) {
+            if (container.remaining == 0) {
+                containers.pop();
+                type = -1;
+                return false;
+            }
+            container.remaining--;
+            setCurrent(container.elementType, "");
+            if (type == NBTConstants.TYPE_END) {
+                throw new IOException("TAG_End not permitted in a list.");
+            }
+            return true;
+        } else {
+            readHeader();
+            if (type == NBTConstants.TYPE_END) {
+                containers.pop();
+                type = -1;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Get the type of the current tag.
+     *
+     * @return the type, as one of the types in {@link NBTConstants},
+     *         or -1 if there is no current tag
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Get the name of the current tag, which is empty for the elements of
+     * a list.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of compounds and lists that have been entered but not
+     * yet left.
+     *
+     * @return the depth
+     */
+    public int getDepth() {
+        return containers.size();
+    }
+
+    /**
+     * Enter the current tag, which must be a compound or a list, so that
+     * {@link #next()} moves through its children.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void enter() throws IOException {
+        checkUnread();
+        if (type == NBTConstants.TYPE_COMPOUND) {
+            containers.push(new Container(false, NBTConstants.TYPE_END, 0));
+        } else if (type == NBTConstants.TYPE_LIST) {
+            int elementType = is.readByte();
+            int length = is.readInt();
+            containers.push(new Container(true, elementType, Math.max(length, 0)));
+        } else {
+            throw new IllegalStateException("The current tag is not a compound or a list");
+        }
+        consumed = true;
+    }
+
+    /**
+     * Get the type of the elements of the list that was last entered.
+     *
+     * @return the element type
+     */
+    public int getElementType() {
+        Container container = containers.peek();
+        if (container == null || !container.list) {
+            throw new IllegalStateException("Not inside a list");
+        }
+        return container.elementType;
+    }
+
+    /**
+     * Skip the payload of the current tag, if it has not been read.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void skip() throws IOException {
+        if (consumed) {
+            return;
+        }
+        consumed = true;
+
+        if (type == NBTConstants.TYPE_BYTE_ARRAY) {
+            skipFully(arrayRemaining >= 0 ? arrayRemaining : is.readInt());
+            arrayRemaining = -1;
+        } else {
+            skipPayload(type);
+        }
+    }
+
+    /**
+     * Read the payload of the current tag as a {@link Tag}.
+     *
+     * @return the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public Tag readTag() throws IOException {
+        checkUnread();
+        consumed = true;
+        return tagStream.readTagPayload(type, containers.size() + 1);
+    }
+
+    /**
+     * Read the payload of the current tag, which must be a {@code TAG_Byte}.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public byte readByte() throws IOException {
+        checkUnread(NBTConstants.TYPE_BYTE);
+        return is.readByte();
+    }
+
+    /**
+     * Read the payload of the current tag, which must be a {@code TAG_Short}.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public short readShort() throws IOException {
+        checkUnread(NBTConstants.TYPE_SHORT);
+        return is.readShort();
+    }
+
+    /**
+     * Read the payload of the current tag, which must be a {@code TAG_Int}.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public int readInt() throws IOException {
+        checkUnread(NBTConstants.TYPE_INT);
+        return is.readInt();
+    }
+
+    /**
+     * Read the payload of the current tag, which must be a {@code TAG_String}.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public String readString() throws IOException {
+        checkUnread(NBTConstants.TYPE_STRING);
+        byte[] bytes = new byte[is.readShort()];
+        is.readFully(bytes);
+        return new String(bytes, NBTConstants.CHARSET);
+    }
+
+    /**
+     * Get the length of the current tag, which must be a
+     * {@code TAG_Byte_Array}.
+     *
+     * @return the length of the array
+     * @throws IOException if an I/O error occurs
+     */
+    public int getArrayLength() throws IOException {
+        checkArray();
+        return arrayRemaining;
+    }
+
+    /**
+     * Read part of the payload of the current tag, which must be a
+     * {@code TAG_Byte_Array}.
+     *
+     * @param buffer the buffer to read into
+     * @param offset the offset in the buffer
+     * @param length the maximum number of bytes to read
+     * @return the number of bytes read, or -1 if the whole array has been read
+     * @throws IOException if an I/O error occurs
+     */
+    public int readBytes(byte[] buffer, int offset, int length) throws IOException {
+        checkArray();
+        if (arrayRemaining == 0) {
+            arrayRemaining = -1;
+            consumed = true;
+            return -1;
+        }
+
+        int read = is.read(buffer, offset, Math.min(length, arrayRemaining));
+        if (read < 0) {
+            throw new EOFException();
+        }
+        arrayRemaining -= read;
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        is.close();
+    }
+
+    private void readHeader() throws IOException {
+        int type = is.readByte() & 0xFF;
+        String name = "";
+        if (type != NBTConstants.TYPE_END) {
+            byte[] nameBytes = new byte[is.readShort() & 0xFFFF];
+            is.readFully(nameBytes);
+            name = new String(nameBytes, NBTConstants.CHARSET);
+        }
+        setCurrent(type, name);
+    }
+
+    private void setCurrent(int type, String name) {
+        this.type = type;
+        this.name = name;
+        this.consumed = type == NBTConstants.TYPE_END;
+        this.arrayRemaining = -1;
+    }
+
+    private void checkUnread() {
+        if (type == -1 || consumed) {
+            throw new IllegalStateException("The payload of the current tag has already been read");
+        }
+    }
+
+    private void checkUnread(int expected) {
+        checkUnread();
+        if (type != expected) {
+            throw new IllegalStateException("The current tag is a " + NBTUtils.getTypeName(NBTUtils.getTypeClass(type)));
+        }
+        consumed = true;
+    }
+
+    private void checkArray() throws IOException {
+        if (type != NBTConstants.TYPE_BYTE_ARRAY) {
+            throw new IllegalStateException("The current tag is not a byte array");
+        }
+        if (arrayRemaining < 0) {
+            checkUnread();
+            arrayRemaining = is.readInt();
+        }
+    }
+
+    private void skipPayload(int type) throws IOException {
+        switch (type) {
+        case NBTConstants.TYPE_END:
+            break;
+        case NBTConstants.TYPE_BYTE:
+            skipFully(1);
+            break;
+        case NBTConstants.TYPE_SHORT:
+            skipFully(2);
+            break;
+        case NBTConstants.TYPE_INT:
+        case NBTConstants.TYPE_FLOAT:
+            skipFully(4);
+            break;
+        case NBTConstants.TYPE_LONG:
+        case NBTConstants.TYPE_DOUBLE:
+            skipFully(8);
+            break;
+        case NBTConstants.TYPE_BYTE_ARRAY:
+            skipFully(is.readInt());
+            break;
+        case NBTConstants.TYPE_STRING:
+            skipFully(is.readShort() & 0xFFFF);
+            break;
+        case NBTConstants.TYPE_LIST:
+            int elementType = is.readByte();
+            int length = is.readInt();
+            for (int i = 0; i < length; i++) {
+                skipPayload(elementType);
+            }
+            break;
+        case NBTConstants.TYPE_COMPOUND:
+            while (true) {
+                int childType = is.readByte() & 0xFF;
+                if (childType == NBTConstants.TYPE_END) {
+                    break;
+                }
+                skipFully(is.readShort() & 0xFFFF);
+                skipPayload(childType);
+            }
+            break;
+        case NBTConstants.TYPE_INT_ARRAY:
+            skipFully(is.readInt() * 4L);
+            break;
+        default:
+            throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    private void skipFully(long length) throws IOException {
+        while (length > 0) {
+            int skipped = is.skipBytes((int) Math.min(length, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                is.readByte(); // Throws at the end of the stream
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    private static final class Container {
+        private final boolean list;
+        private final int elementType;
+        private int remaining;
+
+        private Container(boolean list, int elementType, int remaining) {
+            this.list = list;
+            this.elementType = elementType;
+            this.remaining = remaining;
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.jnbt;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes <strong>NBT</strong> streams one tag at a time, without building an
+ * object graph of the whole stream first.
+ *
+ * <p>Compounds and lists are opened with {@link #beginCompound(String)} and
+ * {@link #beginList(String, int, int)} and closed with {@link #endCompound()}
+ * and {@link #endList()}. Byte arrays can be written in parts between
+ * {@link #beginByteArray(String, int)} and {@link #endByteArray()}. Other
+ * tags are written as a whole with {@link #writeTag(String, Tag)}.</p>
+ *
+ * <p>Names are ignored for the elements of a list, and may be null.</p>
+ */
+public final class NBTStreamWriter implements Closeable {
+
+    private final DataOutputStream os;
+    private final NBTOutputStream tagStream;
+    private final Deque<Container> containers = new ArrayDeque<Container>();
+    private int arrayRemaining = -1;
+
+    /**
+     * Create a new writer, which will write data to the given output stream.
+     *
+     * @param os the output stream
+     * @throws IOException if an I/O error occurs
+     */
+    public NBTStreamWriter(OutputStream os) throws IOException {
+        this(new NBTOutputStream(os));
+    }
+
+    /**
+     * Create a new writer, which will write data to the same stream as the
+     * given {@code NBTOutputStream}.
+     *
+     * @param os the NBT output stream
+     */
+    public NBTStreamWriter(NBTOutputStream os) {
+        checkNotNull(os);
+        this.os = os.os;
+        this.tagStream = os;
+    }
+
+    /**
+     * Start a compound. Tags that are written until {@link #endCompound()}
+     * is called become children of the compound.
+     *
+     * @param name the name of the compound
+     * @throws IOException if an I/O error occurs
+     */
+    public void beginCompound(String name) throws IOException {
+        writeHeader(NBTConstants.TYPE_COMPOUND, name);
+        containers.push(new Container(false, NBTConstants.TYPE_END, 0));
+    }
+
+    /**
+     * End the compound that was last started.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void endCompound() throws IOException {
+        checkArrayEnded();
+        Container container = containers.peek();
+        if (container == null || container.list) {
+            throw new IllegalStateException("Not inside a compound");
+        }
+        containers.pop();
+        os.writeByte(NBTConstants.TYPE_END);
+    }
+
+    /**
+     * Start a list. Exactly {@code length} tags of the given type must be
+     * written before {@link #endList()} is called.
+     *
+     * @param name the name of the list
+     * @param elementType the type of the elements, as one of the types in {@link NBTConstants}
+     * @param length the number of elements
+     * @throws IOException if an I/O error occurs
+     */
+    public void beginList(String name, int elementType, int length) throws IOException {
+        checkArgument(length >= 0, "length >= 0 required");
+        writeHeader(NBTConstants.TYPE_LIST, name);
+        os.writeByte(elementType);
+        os.writeInt(length);
+        containers.push(new Container(true, elementType, length));
+    }
+
+    /**
+     * End the list that was last started.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void endList() throws IOException {
+        checkArrayEnded();
+        Container container = containers.peek();
+        if (container == null || !container.list) {
+            throw new IllegalStateException("Not inside a list");
+        }
+        if (container.remaining != 0) {
+            throw new IllegalStateException(container.remaining + " more elements were expected in the list");
+        }
+        containers.pop();
+    }
+
+    /**
+     * Start a byte array. Exactly {@code length} bytes must be written with
+     * {@link #writeBytes(byte[], int, int)} before {@link #endByteArray()}
+     * is called.
+     *
+     * @param name the name of the array
+     * @param length the length of the array
+     * @throws IOException if an I/O error occurs
+     */
+    public void beginByteArray(String name, int length) throws IOException {
+        checkArgument(length >= 0, "length >= 0 required");
+        writeHeader(NBTConstants.TYPE_BYTE_ARRAY, name);
+        os.writeInt(length);
+        arrayRemaining = length;
+    }
+
+    /**
+     * Write part of the byte array that was last started.
+     *
+     * @param buffer the buffer to write from
+     * @param offset the offset in the buffer
+     * @param length the number of bytes to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeBytes(byte[] buffer, int offset, int length) throws IOException {
+        if (arrayRemaining < length) {
+            throw new IllegalStateException(arrayRemaining < 0 ? "Not inside a byte array" : "Too many bytes for the byte array");
+        }
+        os.write(buffer, offset, length);
+        arrayRemaining -= length;
+    }
+
+    /**
+     * End the byte array that was last started.
+     */
+    public void endByteArray() {
+        if (arrayRemaining != 0) {
+            throw new IllegalStateException(arrayRemaining < 0 ? "Not inside a byte array" : arrayRemaining + " more bytes were expected in the byte array");
+        }
+        arrayRemaining = -1;
+    }
+
+    /**
+     * Write a whole tag.
+     *
+     * @param name the name of the tag
+     * @param tag the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTag(String name, Tag tag) throws IOException {
+        checkNotNull(tag);
+        int type = NBTUtils.getTypeCode(tag.getClass());
+        if (type == NBTConstants.TYPE_END) {
+            throw new IOException("Named TAG_End not permitted.");
+        }
+        writeHeader(type, name);
+        tagStream.writeTagPayload(tag);
+    }
+
+    @Override
+    public void close() throws IOException {
+        os.close();
+    }
+
+    private void writeHeader(int type, String name) throws IOException {
+        checkArrayEnded();
+        Container container = containers.peek();
+        if (container != null && container.list) {
+            if (type != container.elementType) {
+                throw new IllegalArgumentException("The list holds " + NBTUtils.getTypeName(NBTUtils.getTypeClass(container.elementType)));
+            }
+            if (container.remaining == 0) {
+                throw new IllegalStateException("Too many elements for the list");
+            }
+            container.remaining--;
+        } else {
+            checkNotNull(name);
+            byte[] nameBytes = name.getBytes(NBTConstants.CHARSET);
+            os.writeByte(type);
+            os.writeShort(nameBytes.length);
+            os.write(nameBytes);
+        }
+    }
+
+    private void checkArrayEnded() {
+        if (arrayRemaining >= 0) {
+            throw new IllegalStateException("The byte array has not been ended");
+        }
+    }
+
+    private static final class Container {
+        private final boolean list;
+        private final int elementType;
+        private int remaining;
+
+        private Container(boolean list, int elementType, int remaining) {
+            this.list = list;
+            this.elementType = elementType;
+            this.remaining = remaining;
+        }
+    }
+
+}
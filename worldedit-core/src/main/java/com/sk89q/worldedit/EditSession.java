@@ -37,13 +37,14 @@
 import com.sk89q.worldedit.extent.validation.BlockChangeLimiter;
 import com.sk89q.worldedit.extent.validation.DataValidatorExtent;
 import com.sk89q.worldedit.extent.world.BlockQuirkExtent;
+import com.sk89q.worldedit.extent.world.ChunkBatchingExtent;
 import com.sk89q.worldedit.extent.world.ChunkLoadingExtent;
 import com.sk89q.worldedit.extent.world.FastModeExtent;
+import com.sk89q.worldedit.extent.world.HeightIndexExtent;
 import com.sk89q.worldedit.extent.world.SurvivalModeExtent;
 import com.sk89q.worldedit.function.GroundFunction;
 import com.sk89q.worldedit.function.RegionMaskingFilter;
 import com.sk89q.worldedit.function.block.BlockReplace;
-import com.sk89q.worldedit.function.block.Counter;
 import com.sk89q.worldedit.function.block.Naturalizer;
 import com.sk89q.worldedit.function.generator.GardenPatchGenerator;
 import com.sk89q.worldedit.function.mask.*;
@@ -54,8 +55,9 @@
 import com.sk89q.worldedit.function.visitor.*;
 import com.sk89q.worldedit.history.UndoContext;
 import com.sk89q.worldedit.history.change.BlockChange;
-import com.sk89q.worldedit.history.changeset.BlockOptimizedHistory;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.DiskSpillingHistory;
+import com.sk89q.worldedit.history.changeset.PackedBlockHistory;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
@@ -73,18 +75,29 @@
 import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
 import com.sk89q.worldedit.util.*;
 import com.sk89q.worldedit.util.collection.DoubleArrayList;
+import com.sk89q.worldedit.util.collection.VoxelBitSet;
 import com.sk89q.worldedit.util.eventbus.EventBus;
+import com.sk89q.worldedit.util.io.compression.CompressionCodec;
+import com.sk89q.worldedit.util.io.compression.CompressionCodecs;
+import com.sk89q.worldedit.util.io.compression.DeflateCodec;
+import com.sk89q.worldedit.util.random.SplitMixRandom;
+import com.sk89q.worldedit.world.ColumnSnapshot;
 import com.sk89q.worldedit.world.NullWorld;
 import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.analysis.BlockHistogram;
+import com.sk89q.worldedit.world.analysis.RegionAnalyzer;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 
 import javax.annotation.Nullable;
+import java.io.File;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.sk89q.worldedit.regions.Regions.*;
 
 /**
@@ -112,9 +125,11 @@ public enum Stage {
 
     @SuppressWarnings("ProtectedField")
     protected final World world;
-    private final ChangeSet changeSet = new BlockOptimizedHistory();
+    private final ChangeSet changeSet;
 
     private @Nullable FastModeExtent fastModeExtent;
+    private @Nullable ChunkBatchingExtent batchingExtent;
+    private @Nullable HeightIndexExtent heightIndexExtent;
     private final SurvivalModeExtent survivalExtent;
     private @Nullable ChunkLoadingExtent chunkLoadingExtent;
     private @Nullable LastAccessExtentCache cacheExtent;
@@ -176,10 +191,14 @@ public EditSession(LocalWorld world, int maxBlocks, @Nullable BlockBag blockBag)
         this.world = world;
 
         if (world != null) {
+            changeSet = createChangeSet(WorldEdit.getInstance().getConfiguration());
+
             Extent extent;
 
             // These extents are ALWAYS used
             extent = fastModeExtent = new FastModeExtent(world, false);
+            extent = batchingExtent = new ChunkBatchingExtent(fastModeExtent, WorldEdit.getInstance().getConfiguration().batchChangesByChunk);
+            extent = heightIndexExtent = new HeightIndexExtent(batchingExtent, world, 1024);
             extent = survivalExtent = new SurvivalModeExtent(extent, world);
             extent = quirkExtent = new BlockQuirkExtent(extent, world);
             extent = chunkLoadingExtent = new ChunkLoadingExtent(extent, world);
@@ -202,6 +221,8 @@ public EditSession(LocalWorld world, int maxBlocks, @Nullable BlockBag blockBag)
             this.bypassHistory = reorderExtent;
             this.bypassNone = extent;
         } else {
+            changeSet = new PackedBlockHistory();
+
             Extent extent = new NullExtent();
             extent = survivalExtent = new SurvivalModeExtent(extent, NullWorld.getInstance());
             extent = blockBagExtent = new BlockBagExtent(extent, blockBag);
@@ -214,6 +235,25 @@ public EditSession(LocalWorld world, int maxBlocks, @Nullable BlockBag blockBag)
         }
     }
 
+    /**
+     * Create the change set to record history to.
+     *
+     * @param config the configuration
+     * @return a change set
+     */
+    private static ChangeSet createChangeSet(LocalConfiguration config) {
+        if (config.historySpillThreshold > 0) {
+            CompressionCodec codec = CompressionCodecs.findByName(config.historyCompression);
+            if (codec == null) {
+                log.warning("Unknown history compression '" + config.historyCompression + "'; using deflate instead");
+                codec = new DeflateCodec(Deflater.BEST_SPEED);
+            }
+            return new DiskSpillingHistory(new File(config.getWorkingDirectory(), config.historyDir), config.historySpillThreshold, codec);
+        } else {
+            return new PackedBlockHistory();
+        }
+    }
+
     private Extent wrapExtent(Extent extent, EventBus eventBus, EditSessionEvent event, Stage stage) {
         event = event.clone(stage);
         event.setExtent(extent);
@@ -230,6 +270,28 @@ public World getWorld() {
         return world;
     }
 
+    /**
+     * Get a snapshot of the types and data values of a range of a chunk
+     * column, including changes made in this session that have not yet
+     * been applied to the world.
+     *
+     * <p>Blocks held back by the reorder queue are not included, in the
+     * same way that they are not returned by {@link #getBlock(Vector)}.
+     * NBT data is not included either.</p>
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     * @param minY the lowest Y coordinate, inclusive
+     * @param maxY the highest Y coordinate, inclusive
+     * @return a snapshot
+     */
+    public ColumnSnapshot getColumnSnapshot(int chunkX, int chunkZ, int minY, int maxY) {
+        checkState(world != null, "This edit session has no world");
+        ColumnSnapshot snapshot = world.getColumnSnapshot(chunkX, chunkZ, minY, maxY);
+        batchingExtent.applyBufferedChanges(snapshot);
+        return snapshot;
+    }
+
     /**
      * Get the underlying {@link ChangeSet}.
      *
@@ -357,6 +419,28 @@ public boolean hasFastMode() {
         return fastModeExtent != null && fastModeExtent.isEnabled();
     }
 
+    /**
+     * Set whether changes are buffered and applied to the world one
+     * chunk section at a time.
+     *
+     * @param enabled true to enable
+     */
+    public void setChunkBatching(boolean enabled) {
+        if (batchingExtent != null) {
+            batchingExtent.setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Return whether changes are buffered and applied to the world one
+     * chunk section at a time.
+     *
+     * @return true if enabled
+     */
+    public boolean hasChunkBatching() {
+        return batchingExtent != null && batchingExtent.isEnabled();
+    }
+
     /**
      * Get the {@link BlockBag} is used.
      *
@@ -406,14 +490,26 @@ public boolean setBiome(Vector2D position, BaseBiome biome) {
         return bypassNone.setBiome(position, biome);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Changes that are buffered by chunk batching are returned, but
+     * blocks held back by the reorder queue are not.</p>
+     */
     @Override
     public BaseBlock getLazyBlock(Vector position) {
-        return world.getLazyBlock(position);
+        return batchingExtent != null ? batchingExtent.getLazyBlock(position) : world.getLazyBlock(position);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Changes that are buffered by chunk batching are returned, but
+     * blocks held back by the reorder queue are not.</p>
+     */
     @Override
     public BaseBlock getBlock(Vector position) {
-        return world.getBlock(position);
+        return batchingExtent != null ? batchingExtent.getBlock(position) : world.getBlock(position);
     }
 
     /**
@@ -425,6 +521,9 @@ public BaseBlock getBlock(Vector position) {
      */
     @Deprecated
     public int getBlockType(Vector position) {
+        if (batchingExtent != null && batchingExtent.hasBufferedChanges()) {
+            return batchingExtent.getLazyBlock(position).getType();
+        }
         return world.getBlockType(position);
     }
 
@@ -437,6 +536,9 @@ public int getBlockType(Vector position) {
      */
     @Deprecated
     public int getBlockData(Vector position) {
+        if (batchingExtent != null && batchingExtent.hasBufferedChanges()) {
+            return batchingExtent.getLazyBlock(position).getData();
+        }
         return world.getBlockData(position);
     }
 
@@ -476,6 +578,10 @@ public int getHighestTerrainBlock(int x, int z, int minY, int maxY) {
      * @return height of highest block found or 'minY'
      */
     public int getHighestTerrainBlock(int x, int z, int minY, int maxY, boolean naturalOnly) {
+        if (heightIndexExtent != null) {
+            return heightIndexExtent.getHighestTerrainBlock(x, z, minY, maxY, naturalOnly);
+        }
+
         for (int y = maxY; y >= minY; --y) {
             Vector pt = new Vector(x, y, z);
             int id = getBlockType(pt);
@@ -574,7 +680,7 @@ public boolean setBlock(Vector position, Pattern pattern) throws MaxChangedBlock
      * @throws MaxChangedBlocksException thrown if too many blocks are changed
      */
     @SuppressWarnings("deprecation")
-    private int setBlocks(Set<Vector> vset, Pattern pattern) throws MaxChangedBlocksException {
+    private int setBlocks(Iterable<? extends Vector> vset, Pattern pattern) throws MaxChangedBlocksException {
         int affected = 0;
         for (Vector v : vset) {
             affected += setBlock(v, pattern) ? 1 : 0;
@@ -583,8 +689,8 @@ private int setBlocks(Set<Vector> vset, Pattern pattern) throws MaxChangedBlocks
     }
 
     /**
-     * Set a block (only if a previous block was not there) if {@link Math#random()}
-     * returns a number less than the given probability.
+     * Set a block (only if a previous block was not there) if a random number
+     * is less than the given probability.
      *
      * @param position the position
      * @param block the block
@@ -595,7 +701,7 @@ private int setBlocks(Set<Vector> vset, Pattern pattern) throws MaxChangedBlocks
     @SuppressWarnings("deprecation")
     public boolean setChanceBlockIfAir(Vector position, BaseBlock block, double probability)
             throws MaxChangedBlocksException {
-        return Math.random() <= probability && setBlockIfAir(position, block);
+        return SplitMixRandom.current().nextDouble() <= probability && setBlockIfAir(position, block);
     }
 
     /**
@@ -719,12 +825,7 @@ public int countBlock(Region region, Set<Integer> searchIDs) {
      * @return the number of blocks that matched the pattern
      */
     public int countBlocks(Region region, Set<BaseBlock> searchBlocks) {
-        FuzzyBlockMask mask = new FuzzyBlockMask(this, searchBlocks);
-        Counter count = new Counter();
-        RegionMaskingFilter filter = new RegionMaskingFilter(mask, count);
-        RegionVisitor visitor = new RegionVisitor(region, filter);
-        Operations.completeBlindly(visitor); // We can't throw exceptions, nor do we expect any
-        return count.getCount();
+        return analyze(region).count(searchBlocks);
     }
 
     /**
@@ -939,7 +1040,7 @@ public int replaceBlocks(Region region, Mask mask, Pattern pattern) throws MaxCh
         checkNotNull(pattern);
 
         BlockReplace replace = new BlockReplace(this, Patterns.wrap(pattern));
-        RegionMaskingFilter filter = new RegionMaskingFilter(mask, replace);
+        RegionMaskingFilter filter = new RegionMaskingFilter(Masks.compile(mask), replace);
         RegionVisitor visitor = new RegionVisitor(region, filter);
         Operations.completeLegacy(visitor);
         return visitor.getAffected();
@@ -1357,6 +1458,9 @@ public int makeCylinder(Vector pos, Pattern block, double radiusX, double radius
         } else if (pos.getBlockY() + height - 1 > world.getMaxY()) {
             height = world.getMaxY() - pos.getBlockY() + 1;
         }
+        if (height <= 0) {
+            return 0;
+        }
 
         final double invRadiusX = 1 / radiusX;
         final double invRadiusZ = 1 / radiusZ;
@@ -1364,6 +1468,12 @@ public int makeCylinder(Vector pos, Pattern block, double radiusX, double radius
         final int ceilRadiusX = (int) Math.ceil(radiusX);
         final int ceilRadiusZ = (int) Math.ceil(radiusZ);
 
+        final int centerX = pos.getBlockX();
+        final int baseY = pos.getBlockY();
+        final int centerZ = pos.getBlockZ();
+        final VoxelBitSet shape = new VoxelBitSet(centerX - ceilRadiusX, baseY, centerZ - ceilRadiusZ,
+                centerX + ceilRadiusX, baseY + height - 1, centerZ + ceilRadiusZ);
+
         double nextXn = 0;
         forX: for (int x = 0; x <= ceilRadiusX; ++x) {
             final double xn = nextXn;
@@ -1388,22 +1498,20 @@ public int makeCylinder(Vector pos, Pattern block, double radiusX, double radius
                 }
 
                 for (int y = 0; y < height; ++y) {
-                    if (setBlock(pos.add(x, y, z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(-x, y, z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(x, y, -z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(-x, y, -z), block)) {
-                        ++affected;
-                    }
+                    shape.add(centerX + x, baseY + y, centerZ + z);
+                    shape.add(centerX - x, baseY + y, centerZ + z);
+                    shape.add(centerX + x, baseY + y, centerZ - z);
+                    shape.add(centerX - x, baseY + y, centerZ - z);
                 }
             }
         }
 
+        for (BlockVector position : shape) {
+            if (setBlock(position, block)) {
+                ++affected;
+            }
+        }
+
         return affected;
     }
 
@@ -1448,6 +1556,12 @@ public int makeSphere(Vector pos, Pattern block, double radiusX, double radiusY,
         final int ceilRadiusY = (int) Math.ceil(radiusY);
         final int ceilRadiusZ = (int) Math.ceil(radiusZ);
 
+        final int centerX = pos.getBlockX();
+        final int centerY = pos.getBlockY();
+        final int centerZ = pos.getBlockZ();
+        final VoxelBitSet shape = new VoxelBitSet(centerX - ceilRadiusX, centerY - ceilRadiusY, centerZ - ceilRadiusZ,
+                centerX + ceilRadiusX, centerY + ceilRadiusY, centerZ + ceilRadiusZ);
+
         double nextXn = 0;
         forX: for (int x = 0; x <= ceilRadiusX; ++x) {
             final double xn = nextXn;
@@ -1478,34 +1592,25 @@ public int makeSphere(Vector pos, Pattern block, double radiusX, double radiusY,
                         }
                     }
 
-                    if (setBlock(pos.add(x, y, z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(-x, y, z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(x, -y, z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(x, y, -z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(-x, -y, z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(x, -y, -z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(-x, y, -z), block)) {
-                        ++affected;
-                    }
-                    if (setBlock(pos.add(-x, -y, -z), block)) {
-                        ++affected;
-                    }
+                    shape.add(centerX + x, centerY + y, centerZ + z);
+                    shape.add(centerX - x, centerY + y, centerZ + z);
+                    shape.add(centerX + x, centerY - y, centerZ + z);
+                    shape.add(centerX + x, centerY + y, centerZ - z);
+                    shape.add(centerX - x, centerY - y, centerZ + z);
+                    shape.add(centerX + x, centerY - y, centerZ - z);
+                    shape.add(centerX - x, centerY + y, centerZ - z);
+                    shape.add(centerX - x, centerY - y, centerZ - z);
                 }
             }
         }
 
+        // Each block is set once, a chunk at a time
+        for (BlockVector position : shape) {
+            if (setBlock(position, block)) {
+                ++affected;
+            }
+        }
+
         return affected;
     }
 
@@ -1800,7 +1905,7 @@ public int makeForest(Vector basePosition, int size, double density, TreeGenerat
                     continue;
                 }
                 // The gods don't want a tree here
-                if (Math.random() >= density) {
+                if (SplitMixRandom.current().nextDouble() >= density) {
                     continue;
                 } // def 0.05
 
@@ -1830,55 +1935,7 @@ public int makeForest(Vector basePosition, int size, double density, TreeGenerat
      * @return the results
      */
     public List<Countable<Integer>> getBlockDistribution(Region region) {
-        List<Countable<Integer>> distribution = new ArrayList<Countable<Integer>>();
-        Map<Integer, Countable<Integer>> map = new HashMap<Integer, Countable<Integer>>();
-
-        if (region instanceof CuboidRegion) {
-            // Doing this for speed
-            Vector min = region.getMinimumPoint();
-            Vector max = region.getMaximumPoint();
-
-            int minX = min.getBlockX();
-            int minY = min.getBlockY();
-            int minZ = min.getBlockZ();
-            int maxX = max.getBlockX();
-            int maxY = max.getBlockY();
-            int maxZ = max.getBlockZ();
-
-            for (int x = minX; x <= maxX; ++x) {
-                for (int y = minY; y <= maxY; ++y) {
-                    for (int z = minZ; z <= maxZ; ++z) {
-                        Vector pt = new Vector(x, y, z);
-
-                        int id = getBlockType(pt);
-
-                        if (map.containsKey(id)) {
-                            map.get(id).increment();
-                        } else {
-                            Countable<Integer> c = new Countable<Integer>(id, 1);
-                            map.put(id, c);
-                            distribution.add(c);
-                        }
-                    }
-                }
-            }
-        } else {
-            for (Vector pt : region) {
-                int id = getBlockType(pt);
-
-                if (map.containsKey(id)) {
-                    map.get(id).increment();
-                } else {
-                    Countable<Integer> c = new Countable<Integer>(id, 1);
-                    map.put(id, c);
-                }
-            }
-        }
-
-        Collections.sort(distribution);
-        // Collections.reverse(distribution);
-
-        return distribution;
+        return analyze(region).getTypeDistribution();
     }
 
     /**
@@ -1887,57 +1944,21 @@ public List<Countable<Integer>> getBlockDistribution(Region region) {
      * @param region a region
      * @return the results
      */
-    // TODO reduce code duplication - probably during ops-redux
     public List<Countable<BaseBlock>> getBlockDistributionWithData(Region region) {
-        List<Countable<BaseBlock>> distribution = new ArrayList<Countable<BaseBlock>>();
-        Map<BaseBlock, Countable<BaseBlock>> map = new HashMap<BaseBlock, Countable<BaseBlock>>();
-
-        if (region instanceof CuboidRegion) {
-            // Doing this for speed
-            Vector min = region.getMinimumPoint();
-            Vector max = region.getMaximumPoint();
-
-            int minX = min.getBlockX();
-            int minY = min.getBlockY();
-            int minZ = min.getBlockZ();
-            int maxX = max.getBlockX();
-            int maxY = max.getBlockY();
-            int maxZ = max.getBlockZ();
-
-            for (int x = minX; x <= maxX; ++x) {
-                for (int y = minY; y <= maxY; ++y) {
-                    for (int z = minZ; z <= maxZ; ++z) {
-                        Vector pt = new Vector(x, y, z);
-
-                        BaseBlock blk = new BaseBlock(getBlockType(pt), getBlockData(pt));
-
-                        if (map.containsKey(blk)) {
-                            map.get(blk).increment();
-                        } else {
-                            Countable<BaseBlock> c = new Countable<BaseBlock>(blk, 1);
-                            map.put(blk, c);
-                            distribution.add(c);
-                        }
-                    }
-                }
-            }
-        } else {
-            for (Vector pt : region) {
-                BaseBlock blk = new BaseBlock(getBlockType(pt), getBlockData(pt));
-
-                if (map.containsKey(blk)) {
-                    map.get(blk).increment();
-                } else {
-                    Countable<BaseBlock> c = new Countable<BaseBlock>(blk, 1);
-                    map.put(blk, c);
-                }
-            }
-        }
-
-        Collections.sort(distribution);
-        // Collections.reverse(distribution);
+        return analyze(region).getDistribution();
+    }
 
-        return distribution;
+    /**
+     * Count the blocks in a region of the world, after applying any
+     * queued changes.
+     *
+     * @param region the region
+     * @return a histogram of the blocks
+     */
+    private BlockHistogram analyze(Region region) {
+        checkNotNull(region);
+        flushQueue();
+        return new RegionAnalyzer(world != null ? world : NullWorld.getInstance()).analyze(region);
     }
 
     public int makeShape(final Region region, final Vector zero, final Vector unit, final Pattern pattern, final String expressionString, final boolean hollow) throws ExpressionException, MaxChangedBlocksException {
@@ -1950,7 +1971,46 @@ public int makeShape(final Region region, final Vector zero, final Vector unit,
         final WorldEditExpressionEnvironment environment = new WorldEditExpressionEnvironment(this, unit, zero);
         expression.setEnvironment(environment);
 
+        // Shapes that do not depend on the material can be tested by copies of the expression
+        final boolean parallel = expression.isStateless() && !expression.isReferenced("type") && !expression.isReferenced("data");
+
         final ArbitraryShape shape = new ArbitraryShape(region) {
+            @Override
+            protected Mask createWorkerMask() {
+                if (!parallel) {
+                    return null;
+                }
+
+                final Expression copy;
+                try {
+                    copy = Expression.compile(expressionString, "x", "y", "z", "type", "data");
+                    copy.optimize();
+                } catch (ExpressionException e) {
+                    return null;
+                }
+                copy.setEnvironment(new WorldEditExpressionEnvironment(EditSession.this, unit, zero));
+
+                return new AbstractMask() {
+                    @Override
+                    public boolean test(Vector vector) {
+                        final Vector scaled = vector.subtract(zero).divide(unit);
+
+                        try {
+                            return copy.evaluate(scaled.getX(), scaled.getY(), scaled.getZ(), 0, 0) > 0;
+                        } catch (Exception e) {
+                            log.log(Level.WARNING, "Failed to create shape", e);
+                            return false;
+                        }
+                    }
+
+                    @Nullable
+                    @Override
+                    public Mask2D toMask2D() {
+                        return null;
+                    }
+                };
+            }
+
             @Override
             protected BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial) {
                 final Vector current = new Vector(x, y, z);
@@ -1997,7 +2057,8 @@ public int deformRegion(final Region region, final Vector zero, final Vector uni
 
             // read block from world
             // TODO: use getBlock here once the reflection is out of the way
-            final BaseBlock material = new BaseBlock(world.getBlockType(sourcePosition), world.getBlockData(sourcePosition));
+            final BaseBlock source = getLazyBlock(sourcePosition);
+            final BaseBlock material = new BaseBlock(source.getType(), source.getData());
 
             // queue operation
             queue.put(position, material);
@@ -2030,8 +2091,6 @@ public int deformRegion(final Region region, final Vector zero, final Vector uni
     public int hollowOutRegion(Region region, int thickness, Pattern pattern) throws MaxChangedBlocksException {
         int affected = 0;
 
-        final Set<BlockVector> outside = new HashSet<BlockVector>();
-
         final Vector min = region.getMinimumPoint();
         final Vector max = region.getMaximumPoint();
 
@@ -2042,58 +2101,104 @@ public int hollowOutRegion(Region region, int thickness, Pattern pattern) throws
         final int maxY = max.getBlockY();
         final int maxZ = max.getBlockZ();
 
-        for (int x = minX; x <= maxX; ++x) {
-            for (int y = minY; y <= maxY; ++y) {
-                recurseHollow(region, new BlockVector(x, y, minZ), outside);
-                recurseHollow(region, new BlockVector(x, y, maxZ), outside);
-            }
-        }
-
-        for (int y = minY; y <= maxY; ++y) {
-            for (int z = minZ; z <= maxZ; ++z) {
-                recurseHollow(region, new BlockVector(minX, y, z), outside);
-                recurseHollow(region, new BlockVector(maxX, y, z), outside);
-            }
+        // The workspace has a margin of one block, which the flood fill can
+        // reach but not spread from
+        final VoxelBitSet passable = getPassableBlocks(minX - 1, minY - 1, minZ - 1, maxX + 1, maxY + 1, maxZ + 1);
+        final VoxelBitSet inside = new VoxelBitSet(minX - 1, minY - 1, minZ - 1, maxX + 1, maxY + 1, maxZ + 1);
+        for (RegionSpan span : Regions.spans(region)) {
+            inside.add(span.getMinimumX(), span.getMaximumX(), span.getY(), span.getZ());
         }
 
+        // Start from the passable blocks on the faces of the bounding box
+        final VoxelBitSet outside = new VoxelBitSet(minX - 1, minY - 1, minZ - 1, maxX + 1, maxY + 1, maxZ + 1);
         for (int z = minZ; z <= maxZ; ++z) {
-            for (int x = minX; x <= maxX; ++x) {
-                recurseHollow(region, new BlockVector(x, minY, z), outside);
-                recurseHollow(region, new BlockVector(x, maxY, z), outside);
+            for (int y = minY; y <= maxY; ++y) {
+                if (z == minZ || z == maxZ || y == minY || y == maxY) {
+                    outside.add(minX, maxX, y, z);
+                } else {
+                    outside.add(minX, y, z);
+                    outside.add(maxX, y, z);
+                }
             }
         }
+        outside.retainAll(passable);
 
-        for (int i = 1; i < thickness; ++i) {
-            final Set<BlockVector> newOutside = new HashSet<BlockVector>();
-            outer: for (BlockVector position : region) {
-                for (Vector recurseDirection: recurseDirections) {
-                    BlockVector neighbor = position.add(recurseDirection).toBlockVector();
-
-                    if (outside.contains(neighbor)) {
-                        newOutside.add(position);
-                        continue outer;
-                    }
-                }
-            }
+        final VoxelBitSet reachable = new VoxelBitSet(minX - 1, minY - 1, minZ - 1, maxX + 1, maxY + 1, maxZ + 1);
+        reachable.addAll(passable);
+        reachable.retainAll(inside);
+        final VoxelBitSet flooded = new VoxelBitSet(minX - 1, minY - 1, minZ - 1, maxX + 1, maxY + 1, maxZ + 1);
+        flooded.addAll(outside);
+        flooded.fill(reachable);
+        flooded.retainAll(reachable);
+
+        final VoxelBitSet touched = flooded.getNeighbors();
+        touched.retainAll(passable);
+        outside.addAll(flooded);
+        outside.addAll(touched);
 
+        for (int i = 1; i < thickness; ++i) {
+            final VoxelBitSet newOutside = outside.getNeighbors();
+            newOutside.retainAll(inside);
             outside.addAll(newOutside);
         }
 
-        outer: for (BlockVector position : region) {
-            for (Vector recurseDirection: recurseDirections) {
-                BlockVector neighbor = position.add(recurseDirection).toBlockVector();
+        final VoxelBitSet shell = inside;
+        shell.removeAll(outside.getNeighbors());
+        for (BlockVector position : shell) {
+            if (setBlock(position, pattern.next(position))) {
+                ++affected;
+            }
+        }
+
+        return affected;
+    }
+
+    /**
+     * Get the blocks in a box that {@link BlockType#canPassThrough(int, int)}
+     * allows to be passed through, reading the world a chunk at a time.
+     * Changes buffered by this session are included.
+     *
+     * @return the set of passable blocks
+     */
+    private VoxelBitSet getPassableBlocks(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        final VoxelBitSet passable = new VoxelBitSet(minX, minY, minZ, maxX, maxY, maxZ);
+        final int worldMaxY = world.getMaxY();
+        final int snapshotMinY = Math.max(minY, 0);
+        final int snapshotMaxY = Math.min(maxY, worldMaxY);
 
-                if (outside.contains(neighbor)) {
-                    continue outer;
+        // Blocks outside of the world are air
+        for (int z = minZ; z <= maxZ; ++z) {
+            for (int y = minY; y <= maxY; ++y) {
+                if (y < snapshotMinY || y > snapshotMaxY) {
+                    passable.add(minX, maxX, y, z);
                 }
             }
+        }
+        if (snapshotMinY > snapshotMaxY) {
+            return passable;
+        }
 
-            if (setBlock(position, pattern.next(position))) {
-                ++affected;
+        for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; ++chunkZ) {
+            for (int chunkX = minX >> 4; chunkX <= maxX >> 4; ++chunkX) {
+                final ColumnSnapshot snapshot = getColumnSnapshot(chunkX, chunkZ, snapshotMinY, snapshotMaxY);
+                final int fromX = Math.max(minX, chunkX << 4);
+                final int toX = Math.min(maxX, (chunkX << 4) + 15);
+                final int fromZ = Math.max(minZ, chunkZ << 4);
+                final int toZ = Math.min(maxZ, (chunkZ << 4) + 15);
+                for (int z = fromZ; z <= toZ; ++z) {
+                    for (int y = snapshotMinY; y <= snapshotMaxY; ++y) {
+                        for (int x = fromX; x <= toX; ++x) {
+                            final int block = snapshot.getPackedBlock(x & 15, y, z & 15);
+                            if (BlockType.canPassThrough(block >> 4, block & 15)) {
+                                passable.add(x, y, z);
+                            }
+                        }
+                    }
+                }
             }
         }
 
-        return affected;
+        return passable;
     }
 
     /**
@@ -2157,11 +2262,14 @@ public int drawLine(Pattern pattern, Vector pos1, Vector pos2, double radius, bo
             notdrawn = false;
         }
 
-        vset = getBallooned(vset, radius);
+        if (vset.isEmpty()) {
+            return 0;
+        }
+        VoxelBitSet shape = getBallooned(vset, radius);
         if (!filled) {
-            vset = getHollowed(vset);
+            shape.removeAll(shape.getInterior());
         }
-        return setBlocks(vset, pattern);
+        return setBlocks(shape, pattern);
     }
 
     /**
@@ -2206,11 +2314,14 @@ public int drawSpline(Pattern pattern, List<Vector> nodevectors, double tension,
             vset.add(new Vector(tipx, tipy, tipz));
         }
 
-        vset = getBallooned(vset, radius);
+        if (vset.isEmpty()) {
+            return 0;
+        }
+        VoxelBitSet shape = getBallooned(vset, radius);
         if (!filled) {
-            vset = getHollowed(vset);
+            shape.removeAll(shape.getInterior());
         }
-        return setBlocks(vset, pattern);
+        return setBlocks(shape, pattern);
     }
 
     private static double hypot(double... pars) {
@@ -2221,66 +2332,49 @@ private static double hypot(double... pars) {
         return Math.sqrt(sum);
     }
 
-    private static Set<Vector> getBallooned(Set<Vector> vset, double radius) {
-        Set<Vector> returnset = new HashSet<Vector>();
+    private static VoxelBitSet getBallooned(Set<Vector> vset, double radius) {
         int ceilrad = (int) Math.ceil(radius);
-
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
         for (Vector v : vset) {
-            int tipx = v.getBlockX(), tipy = v.getBlockY(), tipz = v.getBlockZ();
-
-            for (int loopx = tipx - ceilrad; loopx <= tipx + ceilrad; loopx++) {
-                for (int loopy = tipy - ceilrad; loopy <= tipy + ceilrad; loopy++) {
-                    for (int loopz = tipz - ceilrad; loopz <= tipz + ceilrad; loopz++) {
-                        if (hypot(loopx - tipx, loopy - tipy, loopz - tipz) <= radius) {
-                            returnset.add(new Vector(loopx, loopy, loopz));
-                        }
-                    }
+            minX = Math.min(minX, v.getBlockX());
+            minY = Math.min(minY, v.getBlockY());
+            minZ = Math.min(minZ, v.getBlockZ());
+            maxX = Math.max(maxX, v.getBlockX());
+            maxY = Math.max(maxY, v.getBlockY());
+            maxZ = Math.max(maxZ, v.getBlockZ());
+        }
+        int pad = Math.max(ceilrad, 0);
+        VoxelBitSet returnset = new VoxelBitSet(minX - pad, minY - pad, minZ - pad, maxX + pad, maxY + pad, maxZ + pad);
+
+        // The half width of the sphere along X for every Y and Z offset
+        int size = 2 * ceilrad + 1;
+        int[] halfWidths = new int[Math.max(size * size, 0)];
+        for (int loopy = -ceilrad; loopy <= ceilrad; loopy++) {
+            for (int loopz = -ceilrad; loopz <= ceilrad; loopz++) {
+                int halfWidth = -1;
+                while (halfWidth < ceilrad && hypot(halfWidth + 1, loopy, loopz) <= radius) {
+                    halfWidth++;
                 }
+                halfWidths[(loopy + ceilrad) * size + loopz + ceilrad] = halfWidth;
             }
         }
-        return returnset;
-    }
 
-    private static Set<Vector> getHollowed(Set<Vector> vset) {
-        Set<Vector> returnset = new HashSet<Vector>();
         for (Vector v : vset) {
-            double x = v.getX(), y = v.getY(), z = v.getZ();
-            if (!(vset.contains(new Vector(x + 1, y, z)) &&
-            vset.contains(new Vector(x - 1, y, z)) &&
-            vset.contains(new Vector(x, y + 1, z)) &&
-            vset.contains(new Vector(x, y - 1, z)) &&
-            vset.contains(new Vector(x, y, z + 1)) &&
-            vset.contains(new Vector(x, y, z - 1)))) {
-                returnset.add(v);
+            int tipx = v.getBlockX(), tipy = v.getBlockY(), tipz = v.getBlockZ();
+
+            for (int loopy = -ceilrad; loopy <= ceilrad; loopy++) {
+                for (int loopz = -ceilrad; loopz <= ceilrad; loopz++) {
+                    int halfWidth = halfWidths[(loopy + ceilrad) * size + loopz + ceilrad];
+                    if (halfWidth >= 0) {
+                        returnset.add(tipx - halfWidth, tipx + halfWidth, tipy + loopy, tipz + loopz);
+                    }
+                }
             }
         }
         return returnset;
     }
 
-    private void recurseHollow(Region region, BlockVector origin, Set<BlockVector> outside) {
-        final LinkedList<BlockVector> queue = new LinkedList<BlockVector>();
-        queue.addLast(origin);
-
-        while (!queue.isEmpty()) {
-            final BlockVector current = queue.removeFirst();
-            if (!BlockType.canPassThrough(getBlockType(current), getBlockData(current))) {
-                continue;
-            }
-
-            if (!outside.add(current)) {
-                continue;
-            }
-
-            if (!region.contains(current)) {
-                continue;
-            }
-
-            for (Vector recurseDirection: recurseDirections) {
-                queue.addLast(current.add(recurseDirection).toBlockVector());
-            }
-        } // while
-    }
-
     public int makeBiomeShape(final Region region, final Vector zero, final Vector unit, final BaseBiome biomeType, final String expressionString, final boolean hollow) throws ExpressionException, MaxChangedBlocksException {
         final Vector2D zero2D = zero.toVector2D();
         final Vector2D unit2D = unit.toVector2D();
@@ -2316,15 +2410,6 @@ protected BaseBiome getBiome(int x, int z, BaseBiome defaultBiomeType) {
         return shape.generate(this, biomeType, hollow);
     }
 
-    private static final Vector[] recurseDirections = {
-            PlayerDirection.NORTH.vector(),
-            PlayerDirection.EAST.vector(),
-            PlayerDirection.SOUTH.vector(),
-            PlayerDirection.WEST.vector(),
-            PlayerDirection.UP.vector(),
-            PlayerDirection.DOWN.vector(),
-    };
-
     private static double lengthSq(double x, double y, double z) {
         return (x * x) + (y * y) + (z * z);
     }
@@ -106,11 +106,20 @@ public abstract class LocalConfiguration {
     public int scriptTimeout = 3000;
     public Set<Integer> allowedDataCycleBlocks = new HashSet<Integer>();
     public String saveDir = "schematics";
+    public String schematicCompression = "gzip";
     public String scriptsDir = "craftscripts";
     public boolean showHelpInfo = true;
     public int butcherDefaultRadius = -1;
     public int butcherMaxRadius = -1;
     public boolean allowSymlinks = false;
+    public String historyDir = "history";
+    public int historySpillThreshold = 1000000;
+    public String historyCompression = "deflate:1";
+    public int historyMaxMemoryChanges = -1;
+    public int historyMaxDiskSize = -1;
+    public boolean batchChangesByChunk = false;
+    public int operationTimeBudget = -1;
+    public int randomSeed = 0;
 
     /**
      * Load the configuration.
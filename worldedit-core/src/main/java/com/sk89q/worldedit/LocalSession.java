@@ -33,6 +33,9 @@
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.DiskSpillingHistory;
+import com.sk89q.worldedit.history.changeset.PackedBlockHistory;
 import com.sk89q.worldedit.internal.cui.CUIEvent;
 import com.sk89q.worldedit.internal.cui.CUIRegion;
 import com.sk89q.worldedit.internal.cui.SelectionShapeEvent;
@@ -65,6 +68,8 @@ public class LocalSession {
     // Non-session related fields
     private transient LocalConfiguration config;
     private transient final AtomicBoolean dirty = new AtomicBoolean();
+    private transient boolean lastScriptChanged;
+    private transient boolean defaultSelectorChanged;
 
     // Session related
     private transient RegionSelector selector = new CuboidRegionSelector();
@@ -126,6 +131,29 @@ public void postLoad() {
         }
     }
 
+    /**
+     * Copy the saved properties of a session that was loaded from
+     * persistent storage into this session.
+     *
+     * <p>Properties that have already been set on this session are kept.
+     * The current selector is only replaced if nothing has been selected
+     * with it yet.</p>
+     *
+     * @param session the loaded session
+     */
+    public void loadFrom(LocalSession session) {
+        checkNotNull(session);
+        if (!lastScriptChanged) {
+            this.lastScript = session.lastScript;
+        }
+        if (!defaultSelectorChanged) {
+            this.defaultSelector = session.defaultSelector;
+            if (defaultSelector != null && !selector.isDefined()) {
+                this.selector = defaultSelector.createSelector();
+            }
+        }
+    }
+
     /**
      * Get whether this session is "dirty" and has changes that needs to
      * be committed.
@@ -176,13 +204,17 @@ public void setTimezone(TimeZone timezone) {
      * Clear history.
      */
     public void clearHistory() {
+        for (EditSession editSession : history) {
+            discard(editSession);
+        }
         history.clear();
         historyPointer = 0;
     }
 
     /**
      * Remember an edit session for the undo history. If the history maximum
-     * size is reached, old edit sessions will be discarded.
+     * size or the configured memory or disk quota is exceeded, old edit
+     * sessions will be discarded.
      *
      * @param editSession the edit session
      */
@@ -194,15 +226,57 @@ public void remember(EditSession editSession) {
 
         // Destroy any sessions after this undo point
         while (historyPointer < history.size()) {
-            history.remove(historyPointer);
+            discard(history.remove(historyPointer));
         }
         history.add(editSession);
-        while (history.size() > MAX_HISTORY_SIZE) {
-            history.remove(0);
+        while (history.size() > MAX_HISTORY_SIZE || (history.size() > 1 && isHistoryQuotaExceeded())) {
+            discard(history.remove(0));
         }
         historyPointer = history.size();
     }
 
+    /**
+     * Check whether the history uses more memory or disk space than
+     * permitted by the configuration.
+     *
+     * @return true if a quota is exceeded
+     */
+    private boolean isHistoryQuotaExceeded() {
+        if (config == null) {
+            return false;
+        }
+
+        long memory = 0;
+        long disk = 0;
+        for (EditSession editSession : history) {
+            ChangeSet changeSet = editSession.getChangeSet();
+            if (changeSet instanceof PackedBlockHistory) {
+                memory += ((PackedBlockHistory) changeSet).getMemoryChangeCount();
+            } else {
+                memory += changeSet.size();
+            }
+            if (changeSet instanceof DiskSpillingHistory) {
+                disk += ((DiskSpillingHistory) changeSet).getDiskSize();
+            }
+        }
+
+        return (config.historyMaxMemoryChanges >= 0 && memory > config.historyMaxMemoryChanges)
+                || (config.historyMaxDiskSize >= 0 && disk > config.historyMaxDiskSize * 1024L * 1024L);
+    }
+
+    /**
+     * Release any resources held by the history of an edit session that
+     * is no longer remembered.
+     *
+     * @param editSession the edit session
+     */
+    private static void discard(EditSession editSession) {
+        ChangeSet changeSet = editSession.getChangeSet();
+        if (changeSet instanceof DiskSpillingHistory) {
+            ((DiskSpillingHistory) changeSet).close();
+        }
+    }
+
     /**
      * Performs an undo.
      *
@@ -289,6 +363,7 @@ public RegionSelectorType getDefaultRegionSelector() {
     public void setDefaultRegionSelector(RegionSelectorType defaultSelector) {
         checkNotNull(defaultSelector);
         this.defaultSelector = defaultSelector;
+        this.defaultSelectorChanged = true;
         setDirty();
     }
 
@@ -679,6 +754,7 @@ public String getLastScript() {
      */
     public void setLastScript(@Nullable String lastScript) {
         this.lastScript = lastScript;
+        this.lastScriptChanged = true;
         setDirty();
     }
 
@@ -903,6 +903,61 @@ public boolean isContainerBlock() {
         return isContainerBlock.contains(id);
     }
 
+    /**
+     * HashSet for hasTileEntity.
+     */
+    private static final Set<Integer> hasTileEntity = new HashSet<Integer>();
+    static {
+        hasTileEntity.add(BlockID.DISPENSER);
+        hasTileEntity.add(BlockID.NOTE_BLOCK);
+        hasTileEntity.add(BlockID.PISTON_MOVING_PIECE);
+        hasTileEntity.add(BlockID.MOB_SPAWNER);
+        hasTileEntity.add(BlockID.CHEST);
+        hasTileEntity.add(BlockID.FURNACE);
+        hasTileEntity.add(BlockID.BURNING_FURNACE);
+        hasTileEntity.add(BlockID.SIGN_POST);
+        hasTileEntity.add(BlockID.WALL_SIGN);
+        hasTileEntity.add(BlockID.JUKEBOX);
+        hasTileEntity.add(BlockID.ENCHANTMENT_TABLE);
+        hasTileEntity.add(BlockID.BREWING_STAND);
+        hasTileEntity.add(BlockID.END_PORTAL);
+        hasTileEntity.add(BlockID.ENDER_CHEST);
+        hasTileEntity.add(BlockID.COMMAND_BLOCK);
+        hasTileEntity.add(BlockID.BEACON);
+        hasTileEntity.add(BlockID.FLOWER_POT);
+        hasTileEntity.add(BlockID.HEAD);
+        hasTileEntity.add(BlockID.TRAPPED_CHEST);
+        hasTileEntity.add(BlockID.COMPARATOR_OFF);
+        hasTileEntity.add(BlockID.COMPARATOR_ON);
+        hasTileEntity.add(BlockID.DAYLIGHT_SENSOR);
+        hasTileEntity.add(BlockID.HOPPER);
+        hasTileEntity.add(BlockID.DROPPER);
+        hasTileEntity.add(BlockID.STANDING_BANNER);
+        hasTileEntity.add(BlockID.WALL_BANNER);
+        hasTileEntity.add(BlockID.DAYLIGHT_SENSOR_INVERTED);
+    }
+
+    /**
+     * Returns true if the block has a tile entity, and so may carry
+     * NBT data.
+     *
+     * @param id the block ID
+     * @return true if the block has a tile entity
+     */
+    public static boolean hasTileEntity(int id) {
+        return hasTileEntity.contains(id);
+    }
+
+    /**
+     * Returns true if the block has a tile entity, and so may carry
+     * NBT data.
+     *
+     * @return true if the block has a tile entity
+     */
+    public boolean hasTileEntity() {
+        return hasTileEntity.contains(id);
+    }
+
     /**
      * HashSet for isRedstoneBlock.
      */
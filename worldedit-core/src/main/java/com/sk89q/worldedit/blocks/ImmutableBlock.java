@@ -0,0 +1,86 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.blocks;
+
+import com.sk89q.jnbt.CompoundTag;
+
+import javax.annotation.Nullable;
+
+/**
+ * A block whose ID, data value and NBT data cannot be changed after
+ * construction.
+ *
+ * <p>Because instances cannot be modified, a single instance can be safely
+ * shared between many positions, which is useful for storage that wants to
+ * return blocks from {@link com.sk89q.worldedit.extent.Extent#getLazyBlock(com.sk89q.worldedit.Vector)}
+ * without allocating a new object on every call.</p>
+ *
+ * <p>All mutators on this object will throw an
+ * {@link UnsupportedOperationException}.</p>
+ */
+public class ImmutableBlock extends BaseBlock {
+
+    @Nullable
+    private final CompoundTag nbtData;
+
+    /**
+     * Create a new immutable block.
+     *
+     * @param id the block ID
+     * @param data the data value
+     */
+    public ImmutableBlock(int id, int data) {
+        this(id, data, null);
+    }
+
+    /**
+     * Create a new immutable block.
+     *
+     * @param id the block ID
+     * @param data the data value
+     * @param nbtData NBT data, which may be null
+     */
+    public ImmutableBlock(int id, int data, @Nullable CompoundTag nbtData) {
+        super(id, data);
+        this.nbtData = nbtData;
+    }
+
+    @Override
+    public void setId(int id) {
+        throw new UnsupportedOperationException("This object is immutable");
+    }
+
+    @Override
+    public void setData(int data) {
+        throw new UnsupportedOperationException("This object is immutable");
+    }
+
+    @Nullable
+    @Override
+    public CompoundTag getNbtData() {
+        return nbtData;
+    }
+
+    @Override
+    public void setNbtData(@Nullable CompoundTag nbtData) {
+        throw new UnsupportedOperationException("This object is immutable");
+    }
+
+}
@@ -19,22 +19,29 @@
 
 package com.sk89q.worldedit.command;
 
+import com.google.common.util.concurrent.FutureCallback;
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandPermissions;
 import com.sk89q.minecraft.util.commands.Logging;
 import com.sk89q.worldedit.*;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.entity.Player;
+import com.sk89q.worldedit.extension.platform.OperationScheduler;
 import com.sk89q.worldedit.function.GroundFunction;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.RegionMaskingFilter;
+import com.sk89q.worldedit.function.block.BlockReplace;
 import com.sk89q.worldedit.function.generator.FloraGenerator;
 import com.sk89q.worldedit.function.generator.ForestGenerator;
 import com.sk89q.worldedit.function.mask.ExistingBlockMask;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
 import com.sk89q.worldedit.function.mask.NoiseFilter2D;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.function.pattern.Patterns;
 import com.sk89q.worldedit.function.visitor.LayerVisitor;
+import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.internal.annotation.Direction;
 import com.sk89q.worldedit.internal.annotation.Selection;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
@@ -46,6 +53,7 @@
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.regions.RegionOperationException;
+import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.util.TreeGenerator;
 import com.sk89q.worldedit.util.TreeGenerator.TreeType;
 import com.sk89q.worldedit.util.command.binding.Range;
@@ -55,6 +63,7 @@
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.sk89q.minecraft.util.commands.Logging.LogMode.*;
@@ -87,8 +96,16 @@ public RegionCommands(WorldEdit worldEdit) {
     @CommandPermissions("worldedit.region.set")
     @Logging(REGION)
     public void set(Player player, LocalSession session, EditSession editSession, Pattern pattern) throws WorldEditException {
-        int affected = editSession.setBlocks(session.getSelection(player.getWorld()), Patterns.wrap(pattern));
-        player.print(affected + " block(s) have been changed.");
+        Region region = session.getSelection(player.getWorld());
+        OperationScheduler scheduler = worldEdit.getPlatformManager().getOperationScheduler();
+
+        if (scheduler.isEnabled()) {
+            RegionVisitor visitor = new RegionVisitor(region, new BlockReplace(editSession, pattern));
+            schedule(scheduler, player, session, editSession, visitor, region, "changed");
+        } else {
+            int affected = editSession.setBlocks(region, Patterns.wrap(pattern));
+            player.print(affected + " block(s) have been changed.");
+        }
     }
 
     @Command(
@@ -168,12 +185,21 @@ public void curve(Player player, EditSession editSession,
     )
     @CommandPermissions("worldedit.region.replace")
     @Logging(REGION)
-    public void replace(Player player, EditSession editSession, @Selection Region region, @Optional Mask from, Pattern to) throws WorldEditException {
+    public void replace(Player player, LocalSession session, EditSession editSession, @Selection Region region, @Optional Mask from, Pattern to) throws WorldEditException {
         if (from == null) {
             from = new ExistingBlockMask(editSession);
         }
-        int affected = editSession.replaceBlocks(region, from, Patterns.wrap(to));
-        player.print(affected + " block(s) have been replaced.");
+
+        OperationScheduler scheduler = worldEdit.getPlatformManager().getOperationScheduler();
+
+        if (scheduler.isEnabled()) {
+            RegionFunction function = new RegionMaskingFilter(Masks.compile(from), new BlockReplace(editSession, to));
+            RegionVisitor visitor = new RegionVisitor(region, function);
+            schedule(scheduler, player, session, editSession, visitor, region, "replaced");
+        } else {
+            int affected = editSession.replaceBlocks(region, from, Patterns.wrap(to));
+            player.print(affected + " block(s) have been replaced.");
+        }
     }
 
     @Command(
@@ -481,4 +507,48 @@ public void flora(Player player, EditSession editSession, @Selection Region regi
         player.print(ground.getAffected() + " flora created.");
     }
 
+    /**
+     * Run a region visitor over several ticks, remembering the edit session
+     * and reporting the number of affected blocks once it completes, fails
+     * or is cancelled.
+     *
+     * @param scheduler the scheduler
+     * @param player the player
+     * @param session the session to remember the edit session in
+     * @param editSession the edit session
+     * @param visitor the visitor
+     * @param region the region that is visited
+     * @param verb the verb to describe the affected blocks with
+     */
+    private void schedule(OperationScheduler scheduler, final Player player, final LocalSession session, final EditSession editSession,
+                          final RegionVisitor visitor, Region region, final String verb) {
+        // The edit session is remembered by the callback instead of the command manager
+        Request.request().setEditSessionDeferred(true);
+
+        scheduler.submit(visitor, player, region.getArea(), new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                finish();
+                player.print(visitor.getAffected() + " block(s) have been " + verb + ".");
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                // Blocks that were already changed can still be undone
+                finish();
+                if (t instanceof CancellationException) {
+                    player.printError("The operation was cancelled after " + visitor.getAffected() + " block(s) had been " + verb + ".");
+                } else {
+                    player.printError("The operation stopped after " + visitor.getAffected() + " block(s) had been " + verb + ".");
+                }
+            }
+
+            private void finish() {
+                session.remember(editSession);
+                editSession.flushQueue();
+                worldEdit.flushBlockBag(player, editSession);
+            }
+        });
+    }
+
 }
@@ -32,29 +32,16 @@
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.platform.Actor;
-import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
-import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
-import com.sk89q.worldedit.function.operation.Operations;
-import com.sk89q.worldedit.math.transform.Transform;
 import com.sk89q.worldedit.session.ClipboardHolder;
-import com.sk89q.worldedit.util.io.Closer;
 import com.sk89q.worldedit.util.command.parametric.Optional;
-import com.sk89q.worldedit.world.registry.WorldData;
+import com.sk89q.worldedit.util.io.compression.CompressionCodec;
+import com.sk89q.worldedit.util.io.compression.CompressionCodecs;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -63,8 +50,8 @@
  */
 public class SchematicCommands {
 
-    private static final Logger log = Logger.getLogger(SchematicCommands.class.getCanonicalName());
     private final WorldEdit worldEdit;
+    private final SchematicIOService ioService;
 
     /**
      * Create a new instance.
@@ -74,6 +61,7 @@ public class SchematicCommands {
     public SchematicCommands(WorldEdit worldEdit) {
         checkNotNull(worldEdit);
         this.worldEdit = worldEdit;
+        this.ioService = new SchematicIOService(worldEdit.getPlatformManager());
     }
 
     @Command(
@@ -101,27 +89,12 @@ public void load(Player player, LocalSession session, @Optional("schematic") Str
             return;
         }
 
-        Closer closer = Closer.create();
-        try {
-            FileInputStream fis = closer.register(new FileInputStream(f));
-            BufferedInputStream bis = closer.register(new BufferedInputStream(fis));
-            ClipboardReader reader = format.getReader(bis);
-
-            WorldData worldData = player.getWorld().getWorldData();
-            Clipboard clipboard = reader.read(player.getWorld().getWorldData());
-            session.setClipboard(new ClipboardHolder(clipboard, worldData));
-
-            log.info(player.getName() + " loaded " + f.getCanonicalPath());
-            player.print(filename + " loaded. Paste it with //paste");
-        } catch (IOException e) {
-            player.printError("Schematic could not read or it does not exist: " + e.getMessage());
-            log.log(Level.WARNING, "Failed to load a saved clipboard", e);
-        } finally {
-            try {
-                closer.close();
-            } catch (IOException ignored) {
-            }
+        if (checkBusy(player)) {
+            return;
         }
+
+        player.print("Loading " + filename + "...");
+        ioService.load(player, session, f, format, player.getWorld().getWorldData(), filename);
     }
 
     @Command(
@@ -144,46 +117,42 @@ public void save(Player player, LocalSession session, @Optional("schematic") Str
             return;
         }
 
-        ClipboardHolder holder = session.getClipboard();
-        Clipboard clipboard = holder.getClipboard();
-        Transform transform = holder.getTransform();
-        Clipboard target;
-
-        // If we have a transform, bake it into the copy
-        if (!transform.isIdentity()) {
-            FlattenedClipboardTransform result = FlattenedClipboardTransform.transform(clipboard, transform, holder.getWorldData());
-            target = new BlockArrayClipboard(result.getTransformedRegion());
-            target.setOrigin(clipboard.getOrigin());
-            Operations.completeLegacy(result.copyTo(target));
-        } else {
-            target = clipboard;
+        CompressionCodec codec = CompressionCodecs.findByName(config.schematicCompression);
+        if (codec == null) {
+            player.printError("Unknown schematic compression: " + config.schematicCompression);
+            return;
         }
 
-        Closer closer = Closer.create();
-        try {
-            // Create parent directories
-            File parent = f.getParentFile();
-            if (parent != null && !parent.exists()) {
-                if (!parent.mkdirs()) {
-                    throw new CommandException("Could not create folder for schematics!");
-                }
-            }
+        if (checkBusy(player)) {
+            return;
+        }
+
+        ClipboardHolder holder = session.getClipboard();
 
-            FileOutputStream fos = closer.register(new FileOutputStream(f));
-            BufferedOutputStream bos = closer.register(new BufferedOutputStream(fos));
-            ClipboardWriter writer = closer.register(format.getWriter(bos));
-            writer.write(target, holder.getWorldData());
-            log.info(player.getName() + " saved " + f.getCanonicalPath());
-            player.print(filename + " saved.");
-        } catch (IOException e) {
-            player.printError("Schematic could not written: " + e.getMessage());
-            log.log(Level.WARNING, "Failed to write a saved clipboard", e);
-        } finally {
-            try {
-                closer.close();
-            } catch (IOException ignored) {
+        // Create parent directories
+        File parent = f.getParentFile();
+        if (parent != null && !parent.exists()) {
+            if (!parent.mkdirs()) {
+                throw new CommandException("Could not create folder for schematics!");
             }
         }
+
+        player.print("Saving " + filename + "...");
+        ioService.save(player, holder, f, format, codec, filename);
+    }
+
+    @Command(
+            aliases = { "cancel" },
+            desc = "Cancel the loading or saving of a schematic",
+            max = 0
+    )
+    @CommandPermissions({ "worldedit.clipboard.load", "worldedit.schematic.load", "worldedit.clipboard.save", "worldedit.schematic.save" })
+    public void cancel(Actor actor) throws WorldEditException {
+        if (!ioService.isBusy(actor)) {
+            actor.printError("You are not loading or saving a schematic.");
+        } else if (!ioService.cancel(actor)) {
+            actor.printError("The schematic is already being finished and can no longer be cancelled.");
+        }
     }
 
     @Command(
@@ -287,6 +256,14 @@ public int compare(File f1, File f2) {
         actor.print(listFiles("", files));
     }
 
+    private boolean checkBusy(Actor actor) {
+        if (ioService.isBusy(actor)) {
+            actor.printError("You are already loading or saving a schematic. Use //schem cancel to stop it.");
+            return true;
+        }
+        return false;
+    }
+
     private String listFiles(String prefix, File[] files) {
         StringBuilder build = new StringBuilder();
         for (File file : files) {
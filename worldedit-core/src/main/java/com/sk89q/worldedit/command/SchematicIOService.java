@@ -0,0 +1,520 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.command;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sk89q.worldedit.EmptyClipboardException;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.extension.platform.OperationScheduler;
+import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.PalettedClipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.session.ClipboardHolder;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
+import com.sk89q.worldedit.util.io.Closer;
+import com.sk89q.worldedit.util.io.compression.CompressionCodec;
+import com.sk89q.worldedit.world.registry.WorldData;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Loads and saves schematics on worker threads, so that disk I/O and
+ * compression do not hold up the thread that runs commands.
+ *
+ * <p>Each actor may have one load or save running at a time. Progress is
+ * reported to the actor every few seconds, a loaded clipboard is put into
+ * the actor's session once it has been read, and a running task can be
+ * cancelled with {@link #cancel(Actor)} until its result is about to be
+ * used. Schematics are saved to a temporary file first, so a cancelled or
+ * failed save leaves any existing file as it was.</p>
+ *
+ * <p>Only the reading and writing happens on worker threads, which are
+ * separate from the platform's shared executor so that a large schematic
+ * does not hold up other tasks that the main thread waits on. Messages and
+ * changes to the session are handed back to the main thread through the
+ * {@link OperationScheduler}. If no platform can run tasks on the main
+ * thread, schematics are loaded and saved on the calling thread
+ * instead.</p>
+ */
+class SchematicIOService {
+
+    private static final Logger log = Logger.getLogger(SchematicIOService.class.getCanonicalName());
+    private static final long PROGRESS_INTERVAL = 2000;
+    private static final int THREADS = 2;
+
+    private final PlatformManager platformManager;
+    private final ListeningExecutorService executor = MoreExecutors.listeningDecorator(
+            EvenMoreExecutors.newDaemonThreadPool(THREADS, "WorldEdit Schematic I/O %d"));
+    private final Map<UUID, Task> tasks = new HashMap<UUID, Task>();
+
+    /**
+     * Create a new instance.
+     *
+     * @param platformManager the platform manager
+     */
+    SchematicIOService(PlatformManager platformManager) {
+        checkNotNull(platformManager);
+        this.platformManager = platformManager;
+    }
+
+    /**
+     * Return whether the given actor has a load or save running.
+     *
+     * @param actor the actor
+     * @return true if a task is running
+     */
+    public synchronized boolean isBusy(Actor actor) {
+        return tasks.containsKey(actor.getUniqueId());
+    }
+
+    /**
+     * Cancel the load or save that the given actor has running.
+     *
+     * <p>A task can no longer be cancelled once it has started to hand
+     * over its result, such as when a saved schematic is being moved
+     * over the existing file.</p>
+     *
+     * @param actor the actor
+     * @return true if a task was cancelled
+     */
+    public synchronized boolean cancel(Actor actor) {
+        Task task = tasks.get(actor.getUniqueId());
+        if (task == null || !task.commit()) {
+            return false;
+        }
+        task.future.cancel(true);
+        return true;
+    }
+
+    /**
+     * Load a schematic and put it into the given session as its clipboard.
+     *
+     * <p>If the session's clipboard is replaced while the schematic is
+     * being read, the newer clipboard is kept.</p>
+     *
+     * @param actor the actor to report progress to
+     * @param session the session to put the clipboard into
+     * @param file the file to read from
+     * @param format the format of the file
+     * @param worldData the world data of the actor's world
+     * @param name the name of the schematic to show to the actor
+     * @return a future that completes with the loaded clipboard
+     */
+    public ListenableFuture<ClipboardHolder> load(final Actor actor, final LocalSession session, final File file,
+                                                  final ClipboardFormat format, final WorldData worldData, final String name) {
+        checkNotNull(actor);
+        checkNotNull(session);
+        checkNotNull(file);
+        checkNotNull(format);
+        checkNotNull(worldData);
+        checkNotNull(name);
+
+        final Executor mainThread = getMainThread();
+        final ClipboardHolder previous = getClipboard(session);
+        final long size = file.length();
+        final Task task = new Task();
+        ListenableFuture<ClipboardHolder> future = getWorkers(mainThread).submit(new Callable<ClipboardHolder>() {
+            @Override
+            public ClipboardHolder call() throws Exception {
+                Closer closer = Closer.create();
+                try {
+                    FileInputStream fis = closer.register(new FileInputStream(file));
+                    ProgressInputStream pis = closer.register(new ProgressInputStream(fis, mainThread, actor, name, size));
+                    BufferedInputStream bis = closer.register(new BufferedInputStream(pis));
+                    ClipboardReader reader = format.getReader(bis);
+
+                    Clipboard clipboard = reader.read(worldData);
+                    checkCommit(task);
+                    return new ClipboardHolder(clipboard, worldData);
+                } finally {
+                    closer.close();
+                }
+            }
+        });
+
+        track(actor, task, future, mainThread, new FutureCallback<ClipboardHolder>() {
+            @Override
+            public void onSuccess(ClipboardHolder result) {
+                log.info(actor.getName() + " loaded " + file.getAbsolutePath());
+                if (getClipboard(session) == previous) {
+                    session.setClipboard(result);
+                    actor.print(name + " loaded. Paste it with //paste");
+                } else {
+                    actor.printError(name + " was loaded, but your clipboard changed in the meantime, so it was kept.");
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                actor.printError("Schematic could not read or it does not exist: " + t.getMessage());
+                log.log(Level.WARNING, "Failed to load a saved clipboard", t);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Save a clipboard as a schematic. Any transform of the clipboard is
+     * applied to the saved copy.
+     *
+     * @param actor the actor to report progress to
+     * @param holder the clipboard to save
+     * @param file the file to write to
+     * @param format the format to write
+     * @param codec the codec to compress with
+     * @param name the name of the schematic to show to the actor
+     * @return a future that completes with the written file
+     */
+    public ListenableFuture<File> save(final Actor actor, final ClipboardHolder holder, final File file,
+                                       final ClipboardFormat format, final CompressionCodec codec, final String name) {
+        checkNotNull(actor);
+        checkNotNull(holder);
+        checkNotNull(file);
+        checkNotNull(format);
+        checkNotNull(codec);
+        checkNotNull(name);
+
+        final Executor mainThread = getMainThread();
+        final Task task = new Task();
+        ListenableFuture<File> future = getWorkers(mainThread).submit(new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                Clipboard clipboard = holder.getClipboard();
+                Transform transform = holder.getTransform();
+                Clipboard target;
+
+                // If we have a transform, bake it into the copy
+                if (!transform.isIdentity()) {
+                    FlattenedClipboardTransform result = FlattenedClipboardTransform.transform(clipboard, transform, holder.getWorldData());
+                    target = new PalettedClipboard(result.getTransformedRegion());
+                    target.setOrigin(clipboard.getOrigin());
+                    Operations.completeLegacy(result.copyTo(target));
+                } else {
+                    target = clipboard;
+                }
+
+                checkInterrupted();
+
+                // Every save gets its own file, so two saves to the same name never share one
+                File temporary = File.createTempFile("." + file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+                boolean written = false;
+                Closer closer = Closer.create();
+                try {
+                    FileOutputStream fos = closer.register(new FileOutputStream(temporary));
+                    ProgressOutputStream pos = closer.register(new ProgressOutputStream(fos, mainThread, actor, name));
+                    BufferedOutputStream bos = closer.register(new BufferedOutputStream(pos));
+                    ClipboardWriter writer = closer.register(format.getWriter(bos, codec));
+                    writer.write(target, holder.getWorldData());
+                    written = true;
+                } finally {
+                    closer.close();
+                    if (!written) {
+                        temporary.delete();
+                    }
+                }
+
+                try {
+                    checkCommit(task);
+                    replace(temporary, file);
+                } finally {
+                    temporary.delete();
+                }
+
+                return file;
+            }
+        });
+
+        track(actor, task, future, mainThread, new FutureCallback<File>() {
+            @Override
+            public void onSuccess(File result) {
+                log.info(actor.getName() + " saved " + file.getAbsolutePath());
+                actor.print(name + " saved.");
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                actor.printError("Schematic could not written: " + t.getMessage());
+                log.log(Level.WARNING, "Failed to write a saved clipboard", t);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Get the executor that runs tasks on the main thread.
+     *
+     * <p>Without a platform that can schedule tasks there is no way back
+     * to the main thread, so the calling thread is used for everything.</p>
+     *
+     * @return the executor
+     */
+    private Executor getMainThread() {
+        OperationScheduler scheduler = platformManager.getOperationScheduler();
+        return scheduler.canExecute() ? scheduler : MoreExecutors.sameThreadExecutor();
+    }
+
+    private ListeningExecutorService getWorkers(Executor mainThread) {
+        return mainThread == platformManager.getOperationScheduler() ? executor : MoreExecutors.sameThreadExecutor();
+    }
+
+    private synchronized <T> void track(final Actor actor, final Task task, final ListenableFuture<T> future,
+                                        Executor mainThread, final FutureCallback<T> callback) {
+        final UUID uuid = actor.getUniqueId();
+        task.future = future;
+        tasks.put(uuid, task);
+
+        // The callback runs on the main thread
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                untrack(uuid, task);
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                untrack(uuid, task);
+                if (t instanceof CancellationException || t instanceof InterruptedIOException) {
+                    actor.print("The schematic task was cancelled.");
+                } else {
+                    callback.onFailure(t);
+                }
+            }
+        }, mainThread);
+    }
+
+    private synchronized void untrack(UUID uuid, Task task) {
+        if (tasks.get(uuid) == task) {
+            tasks.remove(uuid);
+        }
+    }
+
+    @Nullable
+    private static ClipboardHolder getClipboard(LocalSession session) {
+        try {
+            return session.getClipboard();
+        } catch (EmptyClipboardException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Move a file over another without first deleting the one that is
+     * replaced.
+     *
+     * <p>Renaming over an existing file replaces it in one step on most
+     * platforms. Where that is not allowed, the existing file is moved
+     * aside first and put back if the new file cannot take its place.</p>
+     *
+     * @param source the file to move
+     * @param target the file to replace
+     * @throws IOException thrown if the file could not be replaced
+     */
+    private static void replace(File source, File target) throws IOException {
+        if (source.renameTo(target)) {
+            return;
+        }
+
+        File backup = new File(target.getPath() + ".bak");
+        if ((backup.exists() && !backup.delete()) || !target.renameTo(backup)) {
+            throw new IOException("Could not replace " + target.getName());
+        }
+
+        if (!source.renameTo(target)) {
+            backup.renameTo(target);
+            throw new IOException("Could not replace " + target.getName());
+        }
+
+        backup.delete();
+    }
+
+    private static void report(Executor mainThread, final Actor actor, final String message) {
+        try {
+            mainThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    actor.print(message);
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // The platform is going away, so there is no one left to tell
+        }
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Claim the result of a task for the worker, after which the task can
+     * no longer be cancelled.
+     *
+     * @param task the task
+     * @throws InterruptedIOException thrown if the task was cancelled first
+     */
+    private static void checkCommit(Task task) throws InterruptedIOException {
+        if (Thread.interrupted() || !task.commit()) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * A running load or save.
+     *
+     * <p>Whichever of the worker and {@link #cancel(Actor)} commits the task
+     * first decides its outcome, so that the actor is never told that a
+     * task was cancelled when its result was used anyway.</p>
+     */
+    private static class Task {
+        private final AtomicBoolean committed = new AtomicBoolean();
+        private ListenableFuture<?> future;
+
+        private boolean commit() {
+            return committed.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * Counts the bytes that are read, stops reading once the thread is
+     * interrupted and tells the actor how much of the file has been read.
+     */
+    private static class ProgressInputStream extends FilterInputStream {
+        private final Executor mainThread;
+        private final Actor actor;
+        private final String name;
+        private final long size;
+        private long read;
+        private long lastReport = System.currentTimeMillis();
+
+        private ProgressInputStream(InputStream in, Executor mainThread, Actor actor, String name, long size) {
+            super(in);
+            this.mainThread = mainThread;
+            this.actor = actor;
+            this.name = name;
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                progress(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                progress(count);
+            }
+            return count;
+        }
+
+        private void progress(int count) throws InterruptedIOException {
+            checkInterrupted();
+            read += count;
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL && size > 0) {
+                lastReport = now;
+                report(mainThread, actor, "Loading " + name + ": " + Math.min(100, read * 100 / size) + "%");
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes that are written, stops writing once the thread is
+     * interrupted and tells the actor how much has been written.
+     */
+    private static class ProgressOutputStream extends FilterOutputStream {
+        private final Executor mainThread;
+        private final Actor actor;
+        private final String name;
+        private long written;
+        private long lastReport = System.currentTimeMillis();
+
+        private ProgressOutputStream(OutputStream out, Executor mainThread, Actor actor, String name) {
+            super(out);
+            this.mainThread = mainThread;
+            this.actor = actor;
+            this.name = name;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            progress(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            progress(len);
+        }
+
+        private void progress(int count) throws InterruptedIOException {
+            checkInterrupted();
+            written += count;
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL) {
+                lastReport = now;
+                report(mainThread, actor, "Saving " + name + ": " + (written >> 10) + " KiB written");
+            }
+        }
+    }
+
+}
@@ -25,11 +25,20 @@
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
 import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.world.ColumnSnapshot;
+import com.sk89q.worldedit.world.World;
 
-import java.util.*;
+import java.util.HashMap;
+import java.util.Map;
 
 public class GravityBrush implements Brush {
 
+    /**
+     * The number of columns of a chunk that the brush must cover for the
+     * chunk to be read as a snapshot rather than block by block.
+     */
+    private static final int MIN_SNAPSHOT_COLUMNS = 64;
+
     private final boolean fullHeight;
     
     public GravityBrush(boolean fullHeight) {
@@ -38,30 +47,135 @@ public GravityBrush(boolean fullHeight) {
 
     @Override
     public void build(EditSession editSession, Vector position, Pattern pattern, double size) throws MaxChangedBlocksException {
-        final BaseBlock air = new BaseBlock(BlockID.AIR, 0);
-        final double startY = fullHeight ? editSession.getWorld().getMaxY() : position.getBlockY() + size;
-        for (double x = position.getBlockX() + size; x > position.getBlockX() - size; --x) {
-            for (double z = position.getBlockZ() + size; z > position.getBlockZ() - size; --z) {
-                double y = startY;
-                final List<BaseBlock> blockTypes = new ArrayList<BaseBlock>();
-                for (; y > position.getBlockY() - size; --y) {
-                    final Vector pt = new Vector(x, y, z);
-                    final BaseBlock block = editSession.getBlock(pt);
-                    if (!block.isAir()) {
-                        blockTypes.add(block);
-                        editSession.setBlock(pt, air);
+        final World world = editSession.getWorld();
+        final double startY = fullHeight ? world.getMaxY() : position.getBlockY() + size;
+
+        // Every column covers the same Y range
+        int height = 0;
+        for (double y = startY; y > position.getBlockY() - size; --y) {
+            ++height;
+        }
+        if (height == 0) {
+            return;
+        }
+
+        // The block below the range is not moved but acts as the floor
+        int topY = (int) Math.round(startY);
+        int minY = Math.max(topY - height, 0);
+        int maxY = Math.min(topY, world.getMaxY());
+        if (maxY <= minY) {
+            return;
+        }
+
+        Map<Long, ColumnSnapshot> snapshots = new HashMap<Long, ColumnSnapshot>();
+        int[] column = new int[maxY - minY + 1];
+        int[] sources = new int[column.length];
+        BaseBlock[] blocks = new BaseBlock[column.length];
+
+        int[] columnsX = getColumns(position.getBlockX(), size);
+        int[] columnsZ = getColumns(position.getBlockZ(), size);
+
+        for (int blockX : columnsX) {
+            for (int blockZ : columnsZ) {
+                int chunkX = blockX >> 4;
+                int chunkZ = blockZ >> 4;
+
+                // Small brushes only read their own columns, not whole chunks
+                if (countInChunk(columnsX, chunkX) * countInChunk(columnsZ, chunkZ) >= MIN_SNAPSHOT_COLUMNS) {
+                    ColumnSnapshot snapshot = getSnapshot(editSession, snapshots, chunkX, chunkZ, minY, maxY);
+                    for (int i = 0; i < column.length; i++) {
+                        column[i] = snapshot.getPackedBlock(blockX & 15, minY + i, blockZ & 15);
+                    }
+                } else {
+                    for (int i = 0; i < column.length; i++) {
+                        BaseBlock block = editSession.getLazyBlock(new Vector(blockX, minY + i, blockZ));
+                        column[i] = block.getType() << 4 | block.getData();
+                    }
+                }
+
+                // Compact the column so that every block rests on the one below
+                int free = column[0] >> 4 == BlockID.AIR ? 0 : 1;
+                sources[0] = 0;
+                for (int i = 1; i < column.length; i++) {
+                    if (column[i] >> 4 != BlockID.AIR) {
+                        sources[free++] = i;
+                    }
+                }
+                if (free == 0 || free == column.length || sources[free - 1] == free - 1) {
+                    // Nothing above a gap, so nothing falls
+                    continue;
+                }
+                for (int i = free; i < column.length; i++) {
+                    sources[i] = -1;
+                }
+
+                // Read every block that moves before the column is changed
+                for (int i = 0; i < column.length; i++) {
+                    int source = sources[i];
+                    blocks[i] = null;
+                    if (source == i) {
+                        continue;
+                    }
+                    if (source == -1) {
+                        if (column[i] >> 4 != BlockID.AIR) {
+                            blocks[i] = new BaseBlock(BlockID.AIR);
+                        }
+                    } else {
+                        BaseBlock block = editSession.getBlock(new Vector(blockX, minY + source, blockZ));
+                        if (column[source] != column[i] || block.hasNbtData()) {
+                            blocks[i] = block;
+                        }
                     }
                 }
-                Vector pt = new Vector(x, y, z);
-                Collections.reverse(blockTypes);
-                for (int i = 0; i < blockTypes.size();) {
-                    if (editSession.getBlock(pt).getType() == BlockID.AIR) {
-                        editSession.setBlock(pt, blockTypes.get(i++));
+
+                for (int i = 0; i < column.length; i++) {
+                    if (blocks[i] != null) {
+                        editSession.setBlock(new Vector(blockX, minY + i, blockZ), blocks[i]);
                     }
-                    pt = pt.add(0, 1, 0);
                 }
             }
         }
     }
 
+    /**
+     * Get the coordinates of the columns of the brush along one axis, in
+     * the order that they are visited.
+     *
+     * @param center the coordinate of the center of the brush
+     * @param size the size of the brush
+     * @return the coordinates
+     */
+    private static int[] getColumns(int center, double size) {
+        int count = 0;
+        for (double c = center + size; c > center - size; --c) {
+            ++count;
+        }
+        int[] columns = new int[count];
+        int i = 0;
+        for (double c = center + size; c > center - size; --c) {
+            columns[i++] = (int) Math.round(c);
+        }
+        return columns;
+    }
+
+    private static int countInChunk(int[] columns, int chunk) {
+        int count = 0;
+        for (int column : columns) {
+            if (column >> 4 == chunk) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static ColumnSnapshot getSnapshot(EditSession editSession, Map<Long, ColumnSnapshot> snapshots, int chunkX, int chunkZ, int minY, int maxY) {
+        long key = (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+        ColumnSnapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            snapshot = editSession.getColumnSnapshot(chunkX, chunkZ, minY, maxY);
+            snapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
 }
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.extension.factory;
 
 import com.sk89q.worldedit.IncompleteRegionException;
+import com.sk89q.worldedit.LocalConfiguration;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.extension.input.InputParseException;
@@ -79,10 +80,10 @@ public Mask parseFromInput(String input, ParserContext context) throws InputPars
                 return null;
 
             case 1:
-                return masks.get(0);
+                return Masks.compile(masks.get(0));
 
             default:
-                return new MaskIntersection(masks);
+                return Masks.compile(new MaskIntersection(masks));
         }
     }
 
@@ -140,7 +141,10 @@ private Mask getBlockMaskComponent(List<Mask> masks, String component, ParserCon
 
             case '%':
                 int i = Integer.parseInt(component.substring(1));
-                return new NoiseFilter(new RandomNoise(), ((double) i) / 100);
+                LocalConfiguration config = worldEdit.getConfiguration();
+                // Flip the seed so that the mask does not follow a random pattern with the same seed
+                RandomNoise noise = config.randomSeed != 0 ? new RandomNoise(~config.randomSeed) : new RandomNoise();
+                return new NoiseFilter(noise, ((double) i) / 100);
 
             case '=':
                 try {
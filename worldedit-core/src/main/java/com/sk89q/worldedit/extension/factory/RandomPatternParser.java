@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.extension.factory;
 
+import com.sk89q.worldedit.LocalConfiguration;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.extension.input.ParserContext;
@@ -37,7 +38,8 @@ class RandomPatternParser extends InputParser<Pattern> {
     @Override
     public Pattern parseFromInput(String input, ParserContext context) throws InputParseException {
         BlockFactory blockRegistry = worldEdit.getBlockFactory();
-        RandomPattern randomPattern = new RandomPattern();
+        LocalConfiguration config = worldEdit.getConfiguration();
+        RandomPattern randomPattern = config.randomSeed != 0 ? new RandomPattern(config.randomSeed) : new RandomPattern();
 
         for (String token : input.split(",")) {
             BaseBlock block;
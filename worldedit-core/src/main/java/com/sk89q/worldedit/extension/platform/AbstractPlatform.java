@@ -34,6 +34,10 @@ public int schedule(long delay, long period, Runnable task) {
         return -1;
     }
 
+    @Override
+    public void cancelTask(int taskId) {
+    }
+
     @Override
     public List<? extends World> getWorlds() {
         return Collections.emptyList();
@@ -73,7 +73,18 @@ void unload(PlatformManager platformManager, Platform platform) {
     /**
      * The capability of a platform to perform modifications to a world.
      */
-    WORLD_EDITING;
+    WORLD_EDITING,
+
+    /**
+     * The capability of a platform to run repeating tasks on the main
+     * thread every tick.
+     */
+    SCHEDULING {
+        @Override
+        void unload(PlatformManager platformManager, Platform platform) {
+            platformManager.getOperationScheduler().stop();
+        }
+    };
 
     void initialize(PlatformManager platformManager, Platform platform) {
 
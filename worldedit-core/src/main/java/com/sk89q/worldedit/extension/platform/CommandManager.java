@@ -284,7 +284,8 @@ public void handleCommand(CommandEvent event) {
         } finally {
             EditSession editSession = locals.get(EditSession.class);
 
-            if (editSession != null) {
+            // Scheduled operations remember their edit session once they complete
+            if (editSession != null && !Request.request().isEditSessionDeferred()) {
                 session.remember(editSession);
                 editSession.flushQueue();
 
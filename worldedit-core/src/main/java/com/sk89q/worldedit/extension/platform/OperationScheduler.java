@@ -0,0 +1,393 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extension.platform;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runs {@link Operation}s a little at a time every server tick so that
+ * large edits do not stall the server.
+ *
+ * <p>Every tick, pending operations are resumed in turn with a
+ * {@link RunContext} whose time budget is taken from
+ * {@link LocalConfiguration#operationTimeBudget}. Operations that yield
+ * before completing are resumed again on the next tick. If no platform
+ * supports {@link Capability#SCHEDULING}, or no budget is configured,
+ * operations are completed immediately instead.</p>
+ *
+ * <p>This class is also an {@link Executor} that runs tasks on the main
+ * thread at the start of the next tick, which lets work that finished on
+ * another thread hand its result back to the thread that owns the world
+ * and the sessions.</p>
+ *
+ * <p>The repeating task that drives both is only scheduled while there
+ * is work to do, and is cancelled again once the scheduler is idle.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class OperationScheduler implements Executor {
+
+    private static final Logger logger = Logger.getLogger(OperationScheduler.class.getCanonicalName());
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    private final PlatformManager platformManager;
+    private final Queue<ScheduledOperation> pending = new ArrayDeque<ScheduledOperation>();
+    private final List<Runnable> tasks = new ArrayList<Runnable>();
+    private @Nullable Platform scheduler;
+    private int taskId = -1;
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param platformManager the platform manager
+     */
+    public OperationScheduler(PlatformManager platformManager) {
+        checkNotNull(platformManager);
+        this.platformManager = platformManager;
+    }
+
+    /**
+     * Return whether operations that are submitted will be run over
+     * several ticks rather than completed immediately.
+     *
+     * @return true if operations are scheduled
+     */
+    public boolean isEnabled() {
+        if (platformManager.getConfiguration().operationTimeBudget <= 0) {
+            return false;
+        }
+
+        try {
+            platformManager.queryCapability(Capability.SCHEDULING);
+            return true;
+        } catch (NoCapablePlatformException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the number of operations that have not yet completed.
+     *
+     * @return the number of operations
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Submit an operation to be run.
+     *
+     * <p>The given callback is told once the operation has completed,
+     * which may happen before this method returns if operations are not
+     * being scheduled. If the operation failed, the callback is given the
+     * exception that stopped it, and if it was cancelled, a
+     * {@link CancellationException}. Errors have already been reported to
+     * the actor by then.</p>
+     *
+     * @param operation the operation
+     * @param actor the actor to report progress and errors to, or null
+     * @param volume the expected number of blocks that will be visited, or -1 if not known
+     * @param callback a callback to tell about the outcome of the operation, or null
+     */
+    public synchronized void submit(Operation operation, @Nullable Actor actor, long volume, @Nullable FutureCallback<Void> callback) {
+        checkNotNull(operation);
+
+        ScheduledOperation scheduled = new ScheduledOperation(operation, actor, volume, callback);
+
+        if (isEnabled() && startTask()) {
+            pending.offer(scheduled);
+        } else {
+            while (scheduled.resume(new RunContext())) {
+                // Continue until complete
+            }
+        }
+    }
+
+    /**
+     * Return whether tasks given to {@link #execute(Runnable)} can be run
+     * on the main thread, which requires a platform that can schedule
+     * a repeating task.
+     *
+     * @return true if tasks can be executed
+     */
+    public synchronized boolean canExecute() {
+        try {
+            if (startTask()) {
+                return true;
+            }
+        } catch (NoCapablePlatformException ignored) {
+        }
+        return false;
+    }
+
+    /**
+     * Run a task on the main thread at the start of the next tick.
+     *
+     * @param task the task
+     * @throws RejectedExecutionException thrown if no platform can schedule the task, see {@link #canExecute()}
+     */
+    @Override
+    public synchronized void execute(Runnable task) {
+        checkNotNull(task);
+
+        // Running the task here instead would run it on whatever thread
+        // called this method, which is rarely the main thread
+        if (!canExecute()) {
+            throw new RejectedExecutionException("No platform can run tasks on the main thread");
+        }
+
+        tasks.add(task);
+    }
+
+    /**
+     * Cancel all pending operations.
+     */
+    public synchronized void cancelAll() {
+        ScheduledOperation scheduled;
+        while ((scheduled = pending.poll()) != null) {
+            scheduled.cancel();
+        }
+    }
+
+    /**
+     * Cancel all pending operations and forget the repeating task, which
+     * is called when the platform that ran the task is unloaded.
+     */
+    void stop() {
+        List<Runnable> queued;
+        synchronized (this) {
+            cancelAll();
+            stopTask();
+            queued = takeTasks();
+        }
+
+        // The tick that would have run these is not coming, so run them now
+        runTasks(queued);
+    }
+
+    /**
+     * Start the repeating task if it has not yet been started.
+     *
+     * @return true if the task is running
+     */
+    private boolean startTask() {
+        Platform platform = platformManager.queryCapability(Capability.SCHEDULING);
+        if (platform != scheduler || taskId == -1) {
+            taskId = platform.schedule(1, 1, new Runnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            });
+            scheduler = platform;
+        }
+        return taskId != -1;
+    }
+
+    /**
+     * Cancel the repeating task if it is running.
+     */
+    private void stopTask() {
+        if (scheduler != null && taskId != -1) {
+            scheduler.cancelTask(taskId);
+        }
+        scheduler = null;
+        taskId = -1;
+    }
+
+    /**
+     * Run queued tasks and then resume pending operations, and cancel the
+     * repeating task if nothing is left to do.
+     */
+    private void tick() {
+        List<Runnable> queued;
+        synchronized (this) {
+            queued = takeTasks();
+        }
+        runTasks(queued);
+        resumePending();
+
+        synchronized (this) {
+            if (pending.isEmpty() && tasks.isEmpty()) {
+                stopTask();
+            }
+        }
+    }
+
+    private List<Runnable> takeTasks() {
+        if (tasks.isEmpty()) {
+            return new ArrayList<Runnable>();
+        }
+        List<Runnable> queued = new ArrayList<Runnable>(tasks);
+        tasks.clear();
+        return queued;
+    }
+
+    private static void runTasks(List<Runnable> queued) {
+        for (Runnable task : queued) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Failed to run a scheduled task", e);
+            }
+        }
+    }
+
+    /**
+     * Resume pending operations until the time budget for this tick has
+     * been used up.
+     */
+    private synchronized void resumePending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long budget = TimeUnit.MILLISECONDS.toNanos(Math.max(1, platformManager.getConfiguration().operationTimeBudget));
+        long deadline = System.nanoTime() + budget;
+        int remaining = pending.size();
+
+        // Split the budget between the operations so that one large
+        // operation cannot starve the others
+        while (remaining > 0 && !pending.isEmpty()) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                break;
+            }
+
+            ScheduledOperation scheduled = pending.poll();
+            if (scheduled.resume(new RunContext(left / remaining, TimeUnit.NANOSECONDS, -1))) {
+                pending.offer(scheduled);
+            }
+            remaining--;
+        }
+    }
+
+    private static class ScheduledOperation {
+        private final long startTime = System.nanoTime();
+        private @Nullable Operation operation;
+        private final @Nullable Actor actor;
+        private final long volume;
+        private final @Nullable FutureCallback<Void> callback;
+        private long blocks;
+        private long lastReport = startTime;
+
+        private ScheduledOperation(Operation operation, @Nullable Actor actor, long volume, @Nullable FutureCallback<Void> callback) {
+            this.operation = operation;
+            this.actor = actor;
+            this.volume = volume;
+            this.callback = callback;
+        }
+
+        /**
+         * Resume the operation.
+         *
+         * @param run the run context
+         * @return true if the operation has to be resumed again
+         */
+        private boolean resume(RunContext run) {
+            Throwable failure = null;
+            try {
+                operation = operation.resume(run);
+            } catch (MaxChangedBlocksException e) {
+                printError("Max blocks change limit reached.");
+                failure = e;
+            } catch (WorldEditException e) {
+                printError(e.getMessage());
+                failure = e;
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Failed to complete a scheduled operation", e);
+                printError("The operation failed. Please see the server console.");
+                failure = e;
+            }
+
+            blocks += run.getBlocks();
+
+            if (failure != null) {
+                fail(failure);
+                return false;
+            } else if (operation == null) {
+                if (callback != null) {
+                    callback.onSuccess(null);
+                }
+                return false;
+            } else {
+                reportProgress();
+                return true;
+            }
+        }
+
+        private void cancel() {
+            fail(new CancellationException("The operation was cancelled"));
+        }
+
+        private void fail(Throwable t) {
+            if (operation != null) {
+                operation.cancel();
+                operation = null;
+            }
+            if (callback != null) {
+                callback.onFailure(t);
+            }
+        }
+
+        private void reportProgress() {
+            long now = System.nanoTime();
+            if (actor == null || now - lastReport < REPORT_INTERVAL) {
+                return;
+            }
+            lastReport = now;
+
+            if (volume > 0 && blocks > 0) {
+                long elapsed = now - startTime;
+                long percent = Math.min(99, blocks * 100 / volume);
+                long eta = TimeUnit.NANOSECONDS.toSeconds((long) (elapsed * ((double) Math.max(0, volume - blocks) / blocks)));
+                actor.print("Operation is " + percent + "% complete (about " + eta + " second(s) left).");
+            } else {
+                actor.print("Operation is still running (" + blocks + " block(s) so far).");
+            }
+        }
+
+        private void printError(String message) {
+            if (actor != null) {
+                actor.printError(message);
+            }
+        }
+    }
+
+}
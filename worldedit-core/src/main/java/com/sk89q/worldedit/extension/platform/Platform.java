@@ -68,6 +68,14 @@ public interface Platform {
      */
     int schedule(long delay, long period, Runnable task);
 
+    /**
+     * Cancel a task that was scheduled with
+     * {@link #schedule(long, long, Runnable)}.
+     *
+     * @param taskId the task id number that was returned when the task was scheduled
+     */
+    void cancelTask(int taskId);
+
     /**
      * Get a list of available or loaded worlds.
      *
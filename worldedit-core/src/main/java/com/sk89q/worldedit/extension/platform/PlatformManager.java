@@ -19,6 +19,8 @@
 
 package com.sk89q.worldedit.extension.platform;
 
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.sk89q.worldedit.LocalConfiguration;
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.ServerInterface;
@@ -41,6 +43,7 @@
 import com.sk89q.worldedit.internal.ServerInterfaceAdapter;
 import com.sk89q.worldedit.regions.RegionSelector;
 import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
 import com.sk89q.worldedit.util.eventbus.Subscribe;
 import com.sk89q.worldedit.world.World;
 
@@ -72,11 +75,13 @@ public class PlatformManager {
      * final, but it is constructed with 'this', and then puts itself on
      * an event queue. Leaking the uninitialized 'this' created other problems.**/    
     private CommandManager commandManager;
+    private final OperationScheduler operationScheduler = new OperationScheduler(this);
     private final List<Platform> platforms = new ArrayList<Platform>();
     private final Map<Capability, Platform> preferences = new EnumMap<Capability, Platform>(Capability.class);
     private @Nullable String firstSeenVersion;
     private final AtomicBoolean initialized = new AtomicBoolean();
     private final AtomicBoolean configured = new AtomicBoolean();
+    private @Nullable ListeningExecutorService executorService;
 
     /**
      * Create a new platform manager.
@@ -160,6 +165,12 @@ public synchronized boolean unregister(Platform platform) {
             if (choosePreferred) {
                 choosePreferred();
             }
+
+            // Stop the worker threads once WorldEdit has been disabled
+            if (platforms.isEmpty() && executorService != null) {
+                executorService.shutdown();
+                executorService = null;
+            }
         }
 
         return removed;
@@ -286,6 +297,33 @@ public CommandManager getCommandManager() {
         return commandManager;
     }
 
+    /**
+     * Get the scheduler that runs operations over several ticks.
+     *
+     * @return the operation scheduler
+     */
+    public OperationScheduler getOperationScheduler() {
+        return operationScheduler;
+    }
+
+    /**
+     * Get the executor service that runs background work, such as counting
+     * blocks or loading sessions, on worker threads.
+     *
+     * <p>The executor service is shut down once the last platform is
+     * unregistered, and a new one is created when it is next requested.
+     * Tasks must not wait on other tasks of the executor service.</p>
+     *
+     * @return the executor service
+     */
+    public synchronized ListeningExecutorService getExecutorService() {
+        if (executorService == null) {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            executorService = MoreExecutors.listeningDecorator(EvenMoreExecutors.newDaemonThreadPool(threads, "WorldEdit Worker %d"));
+        }
+        return executorService;
+    }
+
     /**
      * Get the current configuration.
      *
@@ -0,0 +1,84 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps (ID, data) pairs to compact, dense indices and back.
+ *
+ * <p>Index 0 is always air so that zero-filled storage reads as air.</p>
+ */
+final class BlockPalette {
+
+    // -1 is allowed as a (wildcard) data value, so reserve one extra slot
+    private static final int DATA_VALUES = BaseBlock.MAX_DATA + 2;
+
+    private final int[] lookup = new int[(BaseBlock.MAX_ID + 1) * DATA_VALUES]; // index + 1, or 0 if absent
+    private final List<ImmutableBlock> blocks = new ArrayList<ImmutableBlock>();
+
+    BlockPalette() {
+        getIndex(BlockID.AIR, 0);
+    }
+
+    /**
+     * Get the index for the given block, adding it to the palette if
+     * it has not been seen before.
+     *
+     * @param id the block ID
+     * @param data the data value
+     * @return the index
+     */
+    int getIndex(int id, int data) {
+        int key = id * DATA_VALUES + data + 1;
+        int index = lookup[key] - 1;
+        if (index < 0) {
+            index = blocks.size();
+            blocks.add(new ImmutableBlock(id, data));
+            lookup[key] = index + 1;
+        }
+        return index;
+    }
+
+    /**
+     * Get the shared, immutable block for the given index.
+     *
+     * @param index the index
+     * @return the block
+     */
+    ImmutableBlock getBlock(int index) {
+        return blocks.get(index);
+    }
+
+    /**
+     * Get the number of distinct blocks in the palette.
+     *
+     * @return the number of blocks
+     */
+    int size() {
+        return blocks.size();
+    }
+
+}
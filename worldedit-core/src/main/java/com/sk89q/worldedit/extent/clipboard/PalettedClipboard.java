@@ -0,0 +1,301 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.util.collection.PackedIntArray;
+import com.sk89q.worldedit.world.biome.BaseBiome;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Stores block data in 16x16x16 sections of bit-packed indices into a
+ * palette of distinct blocks.
+ *
+ * <p>Sections that only contain air are never allocated, and NBT data is
+ * kept in a sparse map per section, so the memory used is roughly
+ * proportional to the number of bits needed to tell the distinct blocks
+ * of the clipboard apart. Compared to {@link BlockArrayClipboard}, which
+ * keeps one {@link BaseBlock} object per position, this makes copies of
+ * very large areas feasible.</p>
+ *
+ * <p>{@link #getLazyBlock(Vector)} returns a shared {@link ImmutableBlock}
+ * from the palette and does not allocate for blocks without NBT data.</p>
+ */
+public class PalettedClipboard implements Clipboard {
+
+    private static final int SECTION_SHIFT = 4;
+    private static final int SECTION_MASK = (1 << SECTION_SHIFT) - 1;
+    private static final int SECTION_VOLUME = 1 << (SECTION_SHIFT * 3);
+
+    private final Region region;
+    private final boolean cuboid;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int width;
+    private final int height;
+    private final int length;
+    private final int sectionsX;
+    private final int sectionsZ;
+    private final Section[] sections;
+    private final BlockPalette palette = new BlockPalette();
+    private Vector origin;
+    private final List<ClipboardEntity> entities = new ArrayList<ClipboardEntity>();
+
+    /**
+     * Create a new instance.
+     *
+     * <p>The origin will be placed at the region's lowest minimum point.</p>
+     *
+     * @param region the bounding region
+     */
+    public PalettedClipboard(Region region) {
+        checkNotNull(region);
+        this.region = region.clone();
+        this.cuboid = region instanceof CuboidRegion;
+        this.origin = region.getMinimumPoint();
+
+        Vector min = region.getMinimumPoint();
+        Vector dimensions = getDimensions();
+        minX = min.getBlockX();
+        minY = min.getBlockY();
+        minZ = min.getBlockZ();
+        width = dimensions.getBlockX();
+        height = dimensions.getBlockY();
+        length = dimensions.getBlockZ();
+        sectionsX = (width + SECTION_MASK) >> SECTION_SHIFT;
+        sectionsZ = (length + SECTION_MASK) >> SECTION_SHIFT;
+        int sectionsY = (height + SECTION_MASK) >> SECTION_SHIFT;
+        sections = new Section[sectionsX * sectionsY * sectionsZ];
+    }
+
+    @Override
+    public Region getRegion() {
+        return region.clone();
+    }
+
+    @Override
+    public Vector getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public void setOrigin(Vector origin) {
+        this.origin = origin;
+    }
+
+    @Override
+    public Vector getDimensions() {
+        return region.getMaximumPoint().subtract(region.getMinimumPoint()).add(1, 1, 1);
+    }
+
+    @Override
+    public Vector getMinimumPoint() {
+        return region.getMinimumPoint();
+    }
+
+    @Override
+    public Vector getMaximumPoint() {
+        return region.getMaximumPoint();
+    }
+
+    /**
+     * Get the number of distinct blocks that are stored in this clipboard.
+     *
+     * @return the number of distinct blocks
+     */
+    public int getPaletteSize() {
+        return palette.size();
+    }
+
+    @Override
+    public List<? extends Entity> getEntities(Region region) {
+        List<Entity> filtered = new ArrayList<Entity>();
+        for (Entity entity : entities) {
+            if (region.contains(entity.getLocation().toVector())) {
+                filtered.add(entity);
+            }
+        }
+        return Collections.unmodifiableList(filtered);
+    }
+
+    @Override
+    public List<? extends Entity> getEntities() {
+        return Collections.unmodifiableList(entities);
+    }
+
+    @Nullable
+    @Override
+    public Entity createEntity(Location location, BaseEntity entity) {
+        ClipboardEntity ret = new ClipboardEntity(location, entity);
+        entities.add(ret);
+        return ret;
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        return new BaseBlock(getLazyBlock(position));
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        int x = position.getBlockX() - minX;
+        int y = position.getBlockY() - minY;
+        int z = position.getBlockZ() - minZ;
+
+        if (contains(position, x, y, z)) {
+            Section section = sections[getSectionIndex(x, y, z)];
+            if (section != null) {
+                int index = getIndexInSection(x, y, z);
+                ImmutableBlock block = palette.getBlock(section.indices.get(index));
+                if (section.nbtData != null) {
+                    CompoundTag nbtData = section.nbtData.get(index);
+                    if (nbtData != null) {
+                        return new ImmutableBlock(block.getId(), block.getData(), nbtData);
+                    }
+                }
+                return block;
+            }
+        }
+
+        return palette.getBlock(0);
+    }
+
+    @Override
+    public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
+        int x = position.getBlockX() - minX;
+        int y = position.getBlockY() - minY;
+        int z = position.getBlockZ() - minZ;
+
+        if (!contains(position, x, y, z)) {
+            return false;
+        }
+
+        int paletteIndex = palette.getIndex(block.getId(), block.getData());
+        CompoundTag nbtData = block.getNbtData();
+        int sectionIndex = getSectionIndex(x, y, z);
+        Section section = sections[sectionIndex];
+
+        if (section == null) {
+            if (paletteIndex == 0 && nbtData == null) {
+                return true; // Unallocated sections are already air
+            }
+            section = new Section(palette.size() - 1);
+            sections[sectionIndex] = section;
+        }
+
+        int index = getIndexInSection(x, y, z);
+        section.indices.set(index, paletteIndex);
+
+        if (nbtData != null) {
+            if (section.nbtData == null) {
+                section.nbtData = new HashMap<Integer, CompoundTag>();
+            }
+            section.nbtData.put(index, nbtData);
+        } else if (section.nbtData != null) {
+            section.nbtData.remove(index);
+        }
+
+        return true;
+    }
+
+    @Override
+    public BaseBiome getBiome(Vector2D position) {
+        return new BaseBiome(0);
+    }
+
+    @Override
+    public boolean setBiome(Vector2D position, BaseBiome biome) {
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public Operation commit() {
+        return null;
+    }
+
+    private boolean contains(Vector position, int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < width && y < height && z < length
+                && (cuboid || region.contains(position));
+    }
+
+    private int getSectionIndex(int x, int y, int z) {
+        return ((y >> SECTION_SHIFT) * sectionsZ + (z >> SECTION_SHIFT)) * sectionsX + (x >> SECTION_SHIFT);
+    }
+
+    private static int getIndexInSection(int x, int y, int z) {
+        return ((y & SECTION_MASK) << (SECTION_SHIFT * 2)) | ((z & SECTION_MASK) << SECTION_SHIFT) | (x & SECTION_MASK);
+    }
+
+    /**
+     * Stores the palette indices and NBT data of one section.
+     */
+    private static final class Section {
+        private final PackedIntArray indices;
+        @Nullable
+        private Map<Integer, CompoundTag> nbtData;
+
+        private Section(int maxPaletteIndex) {
+            indices = new PackedIntArray(SECTION_VOLUME, maxPaletteIndex);
+        }
+    }
+
+    /**
+     * Stores entity data.
+     */
+    private class ClipboardEntity extends StoredEntity {
+        ClipboardEntity(Location location, BaseEntity entity) {
+            super(location, entity);
+        }
+
+        @Override
+        public boolean remove() {
+            return entities.remove(this);
+        }
+
+        @Nullable
+        @Override
+        public <T> T getFacet(Class<? extends T> cls) {
+            return null;
+        }
+    }
+
+}
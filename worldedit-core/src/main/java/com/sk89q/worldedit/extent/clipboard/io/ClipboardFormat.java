@@ -22,6 +22,9 @@
 import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
 import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.worldedit.util.io.compression.CompressionCodec;
+import com.sk89q.worldedit.util.io.compression.CompressionCodecs;
+import com.sk89q.worldedit.util.io.compression.GzipCodec;
 
 import javax.annotation.Nullable;
 import java.io.DataInputStream;
@@ -37,8 +40,6 @@
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -53,13 +54,13 @@ public enum ClipboardFormat {
     SCHEMATIC("mcedit", "mce", "schematic") {
         @Override
         public ClipboardReader getReader(InputStream inputStream) throws IOException {
-            NBTInputStream nbtStream = new NBTInputStream(new GZIPInputStream(inputStream));
+            NBTInputStream nbtStream = new NBTInputStream(CompressionCodecs.decompress(inputStream));
             return new SchematicReader(nbtStream);
         }
 
         @Override
-        public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
-            NBTOutputStream nbtStream = new NBTOutputStream(new GZIPOutputStream(outputStream));
+        public ClipboardWriter getWriter(OutputStream outputStream, CompressionCodec codec) throws IOException {
+            NBTOutputStream nbtStream = new NBTOutputStream(CompressionCodecs.compress(outputStream, codec));
             return new SchematicWriter(nbtStream);
         }
 
@@ -67,7 +68,7 @@ public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
         public boolean isFormat(File file) {
             DataInputStream str = null;
             try {
-                str = new DataInputStream(new GZIPInputStream(new FileInputStream(file)));
+                str = new DataInputStream(CompressionCodecs.decompress(new FileInputStream(file)));
                 if ((str.readByte() & 0xFF) != NBTConstants.TYPE_COMPOUND) {
                     return false;
                 }
@@ -119,14 +120,26 @@ public Set<String> getAliases() {
      */
     public abstract ClipboardReader getReader(InputStream inputStream) throws IOException;
 
+    /**
+     * Create a writer that compresses with gzip.
+     *
+     * @param outputStream the output stream
+     * @return a writer
+     * @throws IOException thrown on I/O error
+     */
+    public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
+        return getWriter(outputStream, new GzipCodec());
+    }
+
     /**
      * Create a writer.
      *
      * @param outputStream the output stream
+     * @param codec the codec to compress with
      * @return a writer
      * @throws IOException thrown on I/O error
      */
-    public abstract ClipboardWriter getWriter(OutputStream outputStream) throws IOException;
+    public abstract ClipboardWriter getWriter(OutputStream outputStream, CompressionCodec codec) throws IOException;
 
     /**
      * Return whether the given file is of this format.
@@ -23,8 +23,10 @@
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
-import com.sk89q.jnbt.NamedTag;
+import com.sk89q.jnbt.NBTStreamReader;
+import com.sk89q.jnbt.NBTUtils;
 import com.sk89q.jnbt.ShortTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
@@ -32,9 +34,10 @@
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
-import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.PalettedClipboard;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
@@ -43,6 +46,7 @@
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,11 +57,21 @@
 
 /**
  * Reads schematic files based that are compatible with MCEdit and other editors.
+ *
+ * <p>The file is read as a stream. When the size and origin of the schematic
+ * come before the blocks, as they do in files written by
+ * {@link SchematicWriter}, the {@code Blocks}, {@code AddBlocks} and
+ * {@code Data} arrays are applied to the clipboard as they are read, so no
+ * copy of them is kept in memory. Otherwise they are held until the end
+ * of the file.</p>
  */
 public class SchematicReader implements ClipboardReader {
 
     private static final Logger log = Logger.getLogger(SchematicReader.class.getCanonicalName());
-    private final NBTInputStream inputStream;
+    private static final int BUFFER_SIZE = 8192;
+    private static final String[] ORIGIN_KEYS = { "WEOriginX", "WEOriginY", "WEOriginZ", "WEOffsetX", "WEOffsetY", "WEOffsetZ" };
+
+    private final NBTStreamReader reader;
 
     /**
      * Create a new instance.
@@ -65,96 +79,310 @@ public class SchematicReader implements ClipboardReader {
      * @param inputStream the input stream to read from
      */
     public SchematicReader(NBTInputStream inputStream) {
-        checkNotNull(inputStream);
-        this.inputStream = inputStream;
+        this(new NBTStreamReader(checkNotNull(inputStream)));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param reader the reader to read from
+     */
+    public SchematicReader(NBTStreamReader reader) {
+        checkNotNull(reader);
+        this.reader = reader;
     }
 
     @Override
     public Clipboard read(WorldData data) throws IOException {
         // Schematic tag
-        NamedTag rootTag = inputStream.readNamedTag();
-        if (!rootTag.getName().equals("Schematic")) {
+        if (!reader.next() || !reader.getName().equals("Schematic")) {
             throw new IOException("Tag 'Schematic' does not exist or is not first");
         }
-        CompoundTag schematicTag = (CompoundTag) rootTag.getTag();
-
-        // Check
-        Map<String, Tag> schematic = schematicTag.getValue();
-        if (!schematic.containsKey("Blocks")) {
-            throw new IOException("Schematic file is missing a 'Blocks' tag");
+        if (reader.getType() != NBTConstants.TYPE_COMPOUND) {
+            throw new IOException("Tag 'Schematic' is not a compound tag");
         }
+        reader.enter();
+
+        Target target = new Target();
+        Map<String, byte[]> heldArrays = new HashMap<String, byte[]>();
+        List<Tag> heldTileEntities = null;
+        List<Tag> heldEntities = null;
+
+        while (reader.next()) {
+            String key = reader.getName();
+
+            if (key.equals("Width") || key.equals("Height") || key.equals("Length")) {
+                short value = ((ShortTag) readTag(key, ShortTag.class)).getValue();
+                target.setSize(key, value);
+
+            } else if (key.equals("Materials")) {
+                String materials = ((StringTag) readTag(key, StringTag.class)).getValue();
+                if (!materials.equals("Alpha")) {
+                    throw new IOException("Schematic file is not an Alpha schematic");
+                }
+                target.materials = true;
+
+            } else if (target.isOriginKey(key)) {
+                if (reader.getType() == NBTConstants.TYPE_INT) {
+                    target.setOrigin(key, reader.readInt());
+                }
+
+            } else if (key.equals("Blocks") || key.equals("AddBlocks") || key.equals("Data")) {
+                checkType(key, ByteArrayTag.class);
+                target.arrays.add(key);
+                if (target.getClipboard(false) != null) {
+                    target.applyArray(key, reader);
+                } else {
+                    heldArrays.put(key, ((ByteArrayTag) reader.readTag()).getValue());
+                }
 
-        // Check type of Schematic
-        String materials = requireTag(schematic, "Materials", StringTag.class).getValue();
-        if (!materials.equals("Alpha")) {
-            throw new IOException("Schematic file is not an Alpha schematic");
+            } else if (key.equals("TileEntities")) {
+                checkType(key, ListTag.class);
+                target.tileEntities = true;
+                if (target.getClipboard(false) != null) {
+                    reader.enter();
+                    while (reader.next()) {
+                        target.applyTileEntity(reader.readTag());
+                    }
+                } else {
+                    heldTileEntities = ((ListTag) reader.readTag()).getValue();
+                }
+
+            } else if (key.equals("Entities")) {
+                if (reader.getType() != NBTConstants.TYPE_LIST) {
+                    continue; // No entities? No problem
+                }
+                if (target.getClipboard(false) != null) {
+                    reader.enter();
+                    while (reader.next()) {
+                        target.applyEntity(reader.readTag());
+                    }
+                } else {
+                    heldEntities = ((ListTag) reader.readTag()).getValue();
+                }
+            }
         }
 
         // ====================================================================
-        // Metadata
+        // Check
         // ====================================================================
 
-        Vector origin;
-        Region region;
-
-        // Get information
-        short width = requireTag(schematic, "Width", ShortTag.class).getValue();
-        short height = requireTag(schematic, "Height", ShortTag.class).getValue();
-        short length = requireTag(schematic, "Length", ShortTag.class).getValue();
-
-        try {
-            int originX = requireTag(schematic, "WEOriginX", IntTag.class).getValue();
-            int originY = requireTag(schematic, "WEOriginY", IntTag.class).getValue();
-            int originZ = requireTag(schematic, "WEOriginZ", IntTag.class).getValue();
-            Vector min = new Vector(originX, originY, originZ);
-
-            int offsetX = requireTag(schematic, "WEOffsetX", IntTag.class).getValue();
-            int offsetY = requireTag(schematic, "WEOffsetY", IntTag.class).getValue();
-            int offsetZ = requireTag(schematic, "WEOffsetZ", IntTag.class).getValue();
-            Vector offset = new Vector(offsetX, offsetY, offsetZ);
-
-            origin = min.subtract(offset);
-            region = new CuboidRegion(min, min.add(width, height, length).subtract(Vector.ONE));
-        } catch (IOException ignored) {
-            origin = new Vector(0, 0, 0);
-            region = new CuboidRegion(origin, origin.add(width, height, length).subtract(Vector.ONE));
+        if (!target.arrays.contains("Blocks")) {
+            throw new IOException("Schematic file is missing a 'Blocks' tag");
         }
+        requireTag(target.materials, "Materials");
+        requireTag(target.width != null, "Width");
+        requireTag(target.height != null, "Height");
+        requireTag(target.length != null, "Length");
+        requireTag(target.arrays.contains("Data"), "Data");
+        requireTag(target.tileEntities, "TileEntities");
 
         // ====================================================================
-        // Blocks
+        // Anything that came before the size and origin
         // ====================================================================
 
-        // Get blocks
-        byte[] blockId = requireTag(schematic, "Blocks", ByteArrayTag.class).getValue();
-        byte[] blockData = requireTag(schematic, "Data", ByteArrayTag.class).getValue();
-        byte[] addId = new byte[0];
-        short[] blocks = new short[blockId.length]; // Have to later combine IDs
+        PalettedClipboard clipboard = target.getClipboard(true);
+
+        for (Map.Entry<String, byte[]> entry : heldArrays.entrySet()) {
+            target.applyArray(entry.getKey(), entry.getValue());
+        }
+
+        if (heldTileEntities != null) {
+            for (Tag tag : heldTileEntities) {
+                target.applyTileEntity(tag);
+            }
+        }
+
+        if (heldEntities != null) {
+            for (Tag tag : heldEntities) {
+                target.applyEntity(tag);
+            }
+        }
+
+        return clipboard;
+    }
+
+    private Tag readTag(String key, Class<? extends Tag> expected) throws IOException {
+        checkType(key, expected);
+        return reader.readTag();
+    }
+
+    private void checkType(String key, Class<? extends Tag> expected) throws IOException {
+        if (reader.getType() != NBTUtils.getTypeCode(expected)) {
+            throw new IOException(key + " tag is not of tag type " + expected.getName());
+        }
+    }
 
-        // We support 4096 block IDs using the same method as vanilla Minecraft, where
-        // the highest 4 bits are stored in a separate byte array.
-        if (schematic.containsKey("AddBlocks")) {
-            addId = requireTag(schematic, "AddBlocks", ByteArrayTag.class).getValue();
+    private static void requireTag(boolean present, String key) throws IOException {
+        if (!present) {
+            throw new IOException("Schematic file is missing a \"" + key + "\" tag");
         }
+    }
 
-        // Combine the AddBlocks data with the first 8-bit block ID
-        for (int index = 0; index < blockId.length; index++) {
-            if ((index >> 1) >= addId.length) { // No corresponding AddBlocks index
-                blocks[index] = (short) (blockId[index] & 0xFF);
+    /**
+     * The clipboard that is being read into, and what is known about it.
+     */
+    private static class Target {
+        private final List<String> arrays = new ArrayList<String>();
+        private final Integer[] origin = new Integer[ORIGIN_KEYS.length];
+        private final ImmutableBlock[] blocks = new ImmutableBlock[(BaseBlock.MAX_ID + 1) << 4];
+        @Nullable private Short width;
+        @Nullable private Short height;
+        @Nullable private Short length;
+        private boolean materials;
+        private boolean tileEntities;
+        @Nullable private PalettedClipboard clipboard;
+        private Vector min;
+        private int failedBlockSets = 0;
+
+        private void setSize(String key, short value) {
+            if (key.equals("Width")) {
+                width = value;
+            } else if (key.equals("Height")) {
+                height = value;
             } else {
-                if ((index & 1) == 0) {
-                    blocks[index] = (short) (((addId[index >> 1] & 0x0F) << 8) + (blockId[index] & 0xFF));
-                } else {
-                    blocks[index] = (short) (((addId[index >> 1] & 0xF0) << 4) + (blockId[index] & 0xFF));
+                length = value;
+            }
+        }
+
+        private boolean isOriginKey(String key) {
+            for (String originKey : ORIGIN_KEYS) {
+                if (originKey.equals(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void setOrigin(String key, int value) {
+            for (int i = 0; i < ORIGIN_KEYS.length; i++) {
+                if (ORIGIN_KEYS[i].equals(key)) {
+                    origin[i] = value;
+                }
+            }
+        }
+
+        /**
+         * Get the clipboard, creating it if the size of the schematic is
+         * known, and either the origin is known or {@code force} is true.
+         *
+         * @param force true to create the clipboard even if the origin is unknown
+         * @return the clipboard, or null if it cannot be created yet
+         */
+        @Nullable
+        private PalettedClipboard getClipboard(boolean force) {
+            if (clipboard != null) {
+                return clipboard;
+            }
+
+            if (width == null || height == null || length == null) {
+                return null;
+            }
+
+            boolean hasOrigin = true;
+            for (Integer value : origin) {
+                if (value == null) {
+                    hasOrigin = false;
+                }
+            }
+
+            Vector origin;
+            Region region;
+            if (hasOrigin) {
+                min = new Vector(this.origin[0], this.origin[1], this.origin[2]);
+                Vector offset = new Vector(this.origin[3], this.origin[4], this.origin[5]);
+                origin = min.subtract(offset);
+                region = new CuboidRegion(min, min.add(width, height, length).subtract(Vector.ONE));
+            } else if (force) {
+                origin = new Vector(0, 0, 0);
+                min = origin;
+                region = new CuboidRegion(origin, origin.add(width, height, length).subtract(Vector.ONE));
+            } else {
+                return null;
+            }
+
+            clipboard = new PalettedClipboard(region);
+            clipboard.setOrigin(origin);
+            return clipboard;
+        }
+
+        /**
+         * Apply a block array as it is read from the stream.
+         */
+        private void applyArray(String key, NBTStreamReader reader) throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int index = 0;
+            int read;
+            while ((read = reader.readBytes(buffer, 0, buffer.length)) != -1) {
+                applyArray(key, buffer, index, read);
+                index += read;
+            }
+        }
+
+        /**
+         * Apply a block array that was read before the clipboard was created.
+         */
+        private void applyArray(String key, byte[] array) {
+            applyArray(key, array, 0, array.length);
+        }
+
+        /**
+         * Apply part of one of the {@code Blocks}, {@code AddBlocks} or
+         * {@code Data} arrays. Each array only replaces its own part of the
+         * block ID or data, so they can be applied in any order.
+         *
+         * @param key the name of the array
+         * @param buffer the part of the array
+         * @param start the index in the whole array of the first byte of the part
+         * @param count the number of bytes in the part
+         */
+        private void applyArray(String key, byte[] buffer, int start, int count) {
+            boolean addBlocks = key.equals("AddBlocks");
+            boolean blockIds = key.equals("Blocks");
+            int volume = width * height * length;
+
+            for (int i = 0; i < count; i++) {
+                int value = buffer[i];
+                if (addBlocks) {
+                    // We support 4096 block IDs using the same method as vanilla Minecraft, where
+                    // the highest 4 bits are stored in a separate byte array.
+                    int index = (start + i) << 1;
+                    if (index < volume) {
+                        applyValue(index, value & 0x0F, true, false);
+                    }
+                    if (index + 1 < volume) {
+                        applyValue(index + 1, (value & 0xF0) >> 4, true, false);
+                    }
+                } else if (start + i < volume) {
+                    applyValue(start + i, value, false, blockIds);
                 }
             }
         }
 
-        // Need to pull out tile entities
-        List<Tag> tileEntities = requireTag(schematic, "TileEntities", ListTag.class).getValue();
-        Map<BlockVector, Map<String, Tag>> tileEntitiesMap = new HashMap<BlockVector, Map<String, Tag>>();
+        private void applyValue(int index, int value, boolean addBlocks, boolean blockIds) {
+            int x = index % width;
+            int z = (index / width) % length;
+            int y = index / (width * length);
+            Vector position = min.add(x, y, z);
+            BaseBlock current = clipboard.getLazyBlock(position);
+
+            int id = current.getId();
+            int data = current.getData();
+            if (addBlocks) {
+                id = (value << 8) | (id & 0xFF);
+            } else if (blockIds) {
+                id = (id & 0xF00) | (value & 0xFF);
+            } else {
+                data = value;
+            }
 
-        for (Tag tag : tileEntities) {
-            if (!(tag instanceof CompoundTag)) continue;
+            if (id != current.getId() || data != current.getData()) {
+                setBlock(position, id, data, current.getNbtData());
+            }
+        }
+
+        private void applyTileEntity(Tag tag) {
+            if (!(tag instanceof CompoundTag)) return;
             CompoundTag t = (CompoundTag) tag;
 
             int x = 0;
@@ -181,98 +409,59 @@ public Clipboard read(WorldData data) throws IOException {
                 values.put(entry.getKey(), entry.getValue());
             }
 
-            BlockVector vec = new BlockVector(x, y, z);
-            tileEntitiesMap.put(vec, values);
-        }
-
-        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
-        clipboard.setOrigin(origin);
-
-        // Don't log a torrent of errors
-        int failedBlockSets = 0;
+            if (x < 0 || x >= width || y < 0 || y >= height || z < 0 || z >= length) {
+                return;
+            }
 
-        for (int x = 0; x < width; ++x) {
-            for (int y = 0; y < height; ++y) {
-                for (int z = 0; z < length; ++z) {
-                    int index = y * width * length + z * width + x;
-                    BlockVector pt = new BlockVector(x, y, z);
-                    BaseBlock block = new BaseBlock(blocks[index], blockData[index]);
+            Vector position = min.add(new BlockVector(x, y, z));
+            BaseBlock current = clipboard.getLazyBlock(position);
+            setBlock(position, current.getId(), current.getData(), new CompoundTag(values));
+        }
 
-                    if (tileEntitiesMap.containsKey(pt)) {
-                        block.setNbtData(new CompoundTag(tileEntitiesMap.get(pt)));
-                    }
+        private void applyEntity(Tag tag) {
+            if (tag instanceof CompoundTag) {
+                CompoundTag compound = (CompoundTag) tag;
+                String id = compound.getString("id");
+                Location location = NBTConversions.toLocation(clipboard, compound.getListTag("Pos"), compound.getListTag("Rotation"));
 
-                    try {
-                        clipboard.setBlock(region.getMinimumPoint().add(pt), block);
-                    } catch (WorldEditException e) {
-                        switch (failedBlockSets) {
-                            case 0:
-                                log.log(Level.WARNING, "Failed to set block on a Clipboard", e);
-                                break;
-                            case 1:
-                                log.log(Level.WARNING, "Failed to set block on a Clipboard (again) -- no more messages will be logged", e);
-                                break;
-                            default:
-                        }
-
-                        failedBlockSets++;
-                    }
+                if (!id.isEmpty()) {
+                    BaseEntity state = new BaseEntity(id, compound);
+                    clipboard.createEntity(location, state);
                 }
             }
         }
 
-        // ====================================================================
-        // Entities
-        // ====================================================================
-
-        try {
-            List<Tag> entityTags = requireTag(schematic, "Entities", ListTag.class).getValue();
-
-            for (Tag tag : entityTags) {
-                if (tag instanceof CompoundTag) {
-                    CompoundTag compound = (CompoundTag) tag;
-                    String id = compound.getString("id");
-                    Location location = NBTConversions.toLocation(clipboard, compound.getListTag("Pos"), compound.getListTag("Rotation"));
-
-                    if (!id.isEmpty()) {
-                        BaseEntity state = new BaseEntity(id, compound);
-                        clipboard.createEntity(location, state);
-                    }
+        private void setBlock(Vector position, int id, int data, @Nullable CompoundTag nbtData) {
+            BaseBlock block;
+            if (nbtData != null) {
+                block = new BaseBlock(id, data, nbtData);
+            } else if (data >= 0 && data <= BaseBlock.MAX_DATA) {
+                int packed = (id << 4) | data;
+                block = blocks[packed];
+                if (block == null) {
+                    block = blocks[packed] = new ImmutableBlock(id, data);
                 }
+            } else {
+                block = new BaseBlock(id, data);
             }
-        } catch (IOException ignored) { // No entities? No problem
-        }
-
-        return clipboard;
-    }
-
-    private static <T extends Tag> T requireTag(Map<String, Tag> items, String key, Class<T> expected) throws IOException {
-        if (!items.containsKey(key)) {
-            throw new IOException("Schematic file is missing a \"" + key + "\" tag");
-        }
-
-        Tag tag = items.get(key);
-        if (!expected.isInstance(tag)) {
-            throw new IOException(key + " tag is not of tag type " + expected.getName());
-        }
 
-        return expected.cast(tag);
-    }
-
-    @Nullable
-    private static <T extends Tag> T getTag(CompoundTag tag, Class<T> expected, String key) {
-        Map<String, Tag> items = tag.getValue();
-
-        if (!items.containsKey(key)) {
-            return null;
-        }
+            try {
+                clipboard.setBlock(position, block);
+            } catch (WorldEditException e) {
+                // Don't log a torrent of errors
+                switch (failedBlockSets) {
+                    case 0:
+                        log.log(Level.WARNING, "Failed to set block on a Clipboard", e);
+                        break;
+                    case 1:
+                        log.log(Level.WARNING, "Failed to set block on a Clipboard (again) -- no more messages will be logged", e);
+                        break;
+                    default:
+                }
 
-        Tag test = items.get(key);
-        if (!expected.isInstance(test)) {
-            return null;
+                failedBlockSets++;
+            }
         }
-
-        return expected.cast(test);
     }
 
 }
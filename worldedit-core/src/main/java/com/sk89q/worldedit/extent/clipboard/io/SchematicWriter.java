@@ -19,21 +19,24 @@
 
 package com.sk89q.worldedit.extent.clipboard.io;
 
-import com.sk89q.jnbt.ByteArrayTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.DoubleTag;
 import com.sk89q.jnbt.FloatTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.NBTStreamWriter;
 import com.sk89q.jnbt.ShortTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.world.registry.WorldData;
@@ -49,11 +52,18 @@
 
 /**
  * Writes schematic files based that are compatible with MCEdit and other editors.
+ *
+ * <p>The file is written as a stream. The {@code Blocks}, {@code AddBlocks}
+ * and {@code Data} arrays are filled from the clipboard a buffer at a time,
+ * so no copy of them is kept in memory. The size and origin of the schematic
+ * are written first, so that {@link SchematicReader} can read the file the
+ * same way.</p>
  */
 public class SchematicWriter implements ClipboardWriter {
 
     private static final int MAX_SIZE = Short.MAX_VALUE - Short.MIN_VALUE;
-    private final NBTOutputStream outputStream;
+    private static final int BUFFER_SIZE = 8192;
+    private final NBTStreamWriter writer;
 
     /**
      * Create a new schematic writer.
@@ -61,8 +71,17 @@ public class SchematicWriter implements ClipboardWriter {
      * @param outputStream the output stream to write to
      */
     public SchematicWriter(NBTOutputStream outputStream) {
-        checkNotNull(outputStream);
-        this.outputStream = outputStream;
+        this(new NBTStreamWriter(checkNotNull(outputStream)));
+    }
+
+    /**
+     * Create a new schematic writer.
+     *
+     * @param writer the writer to write to
+     */
+    public SchematicWriter(NBTStreamWriter writer) {
+        checkNotNull(writer);
+        this.writer = writer;
     }
 
     @Override
@@ -89,51 +108,95 @@ public void write(Clipboard clipboard, WorldData data) throws IOException {
         // Metadata
         // ====================================================================
 
-        HashMap<String, Tag> schematic = new HashMap<String, Tag>();
-        schematic.put("Width", new ShortTag((short) width));
-        schematic.put("Length", new ShortTag((short) length));
-        schematic.put("Height", new ShortTag((short) height));
-        schematic.put("Materials", new StringTag("Alpha"));
-        schematic.put("WEOriginX", new IntTag(min.getBlockX()));
-        schematic.put("WEOriginY", new IntTag(min.getBlockY()));
-        schematic.put("WEOriginZ", new IntTag(min.getBlockZ()));
-        schematic.put("WEOffsetX", new IntTag(offset.getBlockX()));
-        schematic.put("WEOffsetY", new IntTag(offset.getBlockY()));
-        schematic.put("WEOffsetZ", new IntTag(offset.getBlockZ()));
+        writer.beginCompound("Schematic");
+        writer.writeTag("Width", new ShortTag((short) width));
+        writer.writeTag("Length", new ShortTag((short) length));
+        writer.writeTag("Height", new ShortTag((short) height));
+        writer.writeTag("Materials", new StringTag("Alpha"));
+        writer.writeTag("WEOriginX", new IntTag(min.getBlockX()));
+        writer.writeTag("WEOriginY", new IntTag(min.getBlockY()));
+        writer.writeTag("WEOriginZ", new IntTag(min.getBlockZ()));
+        writer.writeTag("WEOffsetX", new IntTag(offset.getBlockX()));
+        writer.writeTag("WEOffsetY", new IntTag(offset.getBlockY()));
+        writer.writeTag("WEOffsetZ", new IntTag(offset.getBlockZ()));
 
         // ====================================================================
         // Block handling
         // ====================================================================
 
-        byte[] blocks = new byte[width * height * length];
-        byte[] addBlocks = null;
-        byte[] blockData = new byte[width * height * length];
-        List<Tag> tileEntities = new ArrayList<Tag>();
+        BlockCursor cursor = new BlockCursor(clipboard);
 
-        for (Vector point : region) {
-            Vector relative = point.subtract(min);
-            int x = relative.getBlockX();
-            int y = relative.getBlockY();
-            int z = relative.getBlockZ();
+        // Find out whether the AddBlocks section and tile entities are needed
+        boolean hasAddBlocks = false;
+        int tileEntityCount = 0;
+        for (cursor.reset(); cursor.next(); ) {
+            BaseBlock block = cursor.getBlock();
+            if (block.getType() > 255) {
+                hasAddBlocks = true;
+            }
+            if (block.getNbtData() != null) {
+                tileEntityCount++;
+            }
+        }
 
-            int index = y * width * length + z * width + x;
-            BaseBlock block = clipboard.getBlock(point);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int volume = width * height * length;
 
-            // Save 4096 IDs in an AddBlocks section
-            if (block.getType() > 255) {
-                if (addBlocks == null) { // Lazily create section
-                    addBlocks = new byte[(blocks.length >> 1) + 1];
+        writer.beginByteArray("Blocks", volume);
+        int used = 0;
+        for (cursor.reset(); cursor.next(); ) {
+            if (used == buffer.length) {
+                writer.writeBytes(buffer, 0, used);
+                used = 0;
+            }
+            buffer[used++] = (byte) cursor.getBlock().getType();
+        }
+        writer.writeBytes(buffer, 0, used);
+        writer.endByteArray();
+
+        // Save 4096 IDs in an AddBlocks section
+        if (hasAddBlocks) {
+            writer.beginByteArray("AddBlocks", (volume >> 1) + 1);
+            used = 0;
+            for (cursor.reset(); cursor.next(); ) {
+                if (used == buffer.length) {
+                    writer.writeBytes(buffer, 0, used);
+                    used = 0;
                 }
-
-                addBlocks[index >> 1] = (byte) (((index & 1) == 0) ?
-                        addBlocks[index >> 1] & 0xF0 | (block.getType() >> 8) & 0xF
-                        : addBlocks[index >> 1] & 0xF | ((block.getType() >> 8) & 0xF) << 4);
+                int add = (cursor.getBlock().getType() >> 8) & 0xF;
+                if ((cursor.getIndex() & 1) == 0) {
+                    buffer[used] = (byte) add;
+                } else {
+                    buffer[used++] |= (byte) (add << 4);
+                }
+            }
+            if ((volume & 1) == 0) { // The last byte is only padding
+                if (used == buffer.length) {
+                    writer.writeBytes(buffer, 0, used);
+                    used = 0;
+                }
+                buffer[used] = 0;
             }
+            writer.writeBytes(buffer, 0, used + 1);
+            writer.endByteArray();
+        }
 
-            blocks[index] = (byte) block.getType();
-            blockData[index] = (byte) block.getData();
+        writer.beginByteArray("Data", volume);
+        used = 0;
+        for (cursor.reset(); cursor.next(); ) {
+            if (used == buffer.length) {
+                writer.writeBytes(buffer, 0, used);
+                used = 0;
+            }
+            buffer[used++] = (byte) cursor.getBlock().getData();
+        }
+        writer.writeBytes(buffer, 0, used);
+        writer.endByteArray();
 
-            // Store TileEntity data
+        // Store TileEntity data
+        writer.beginList("TileEntities", NBTConstants.TYPE_COMPOUND, tileEntityCount);
+        for (cursor.reset(); cursor.next(); ) {
+            BaseBlock block = cursor.getBlock();
             CompoundTag rawTag = block.getNbtData();
             if (rawTag != null) {
                 Map<String, Tag> values = new HashMap<String, Tag>();
@@ -142,22 +205,15 @@ public void write(Clipboard clipboard, WorldData data) throws IOException {
                 }
 
                 values.put("id", new StringTag(block.getNbtId()));
-                values.put("x", new IntTag(x));
-                values.put("y", new IntTag(y));
-                values.put("z", new IntTag(z));
+                values.put("x", new IntTag(cursor.getX()));
+                values.put("y", new IntTag(cursor.getY()));
+                values.put("z", new IntTag(cursor.getZ()));
 
                 CompoundTag tileEntityTag = new CompoundTag(values);
-                tileEntities.add(tileEntityTag);
+                writer.writeTag(null, tileEntityTag);
             }
         }
-
-        schematic.put("Blocks", new ByteArrayTag(blocks));
-        schematic.put("Data", new ByteArrayTag(blockData));
-        schematic.put("TileEntities", new ListTag(CompoundTag.class, tileEntities));
-
-        if (addBlocks != null) {
-            schematic.put("AddBlocks", new ByteArrayTag(addBlocks));
-        }
+        writer.endList();
 
         // ====================================================================
         // Entities
@@ -186,14 +242,13 @@ public void write(Clipboard clipboard, WorldData data) throws IOException {
             }
         }
 
-        schematic.put("Entities", new ListTag(CompoundTag.class, entities));
+        writer.writeTag("Entities", new ListTag(CompoundTag.class, entities));
 
         // ====================================================================
         // Output
         // ====================================================================
 
-        CompoundTag schematicTag = new CompoundTag(schematic);
-        outputStream.writeNamedTag("Schematic", schematicTag);
+        writer.endCompound();
     }
 
     private Tag writeVector(Vector vector, String name) {
@@ -213,6 +268,84 @@ private Tag writeRotation(Location location, String name) {
 
     @Override
     public void close() throws IOException {
-        outputStream.close();
+        writer.close();
     }
+
+    /**
+     * Visits the blocks of a clipboard in the order of the schematic arrays,
+     * which is by Y, then by Z, then by X. Blocks outside of the region of
+     * the clipboard are air.
+     */
+    private static class BlockCursor {
+        private static final BaseBlock AIR = new BaseBlock(0);
+
+        private final Clipboard clipboard;
+        private final Region region;
+        private final boolean cuboid;
+        private final Vector min;
+        private final int width;
+        private final int height;
+        private final int length;
+        private int index;
+        private int x;
+        private int y;
+        private int z;
+        private BaseBlock block;
+
+        private BlockCursor(Clipboard clipboard) {
+            this.clipboard = clipboard;
+            this.region = clipboard.getRegion();
+            this.cuboid = region instanceof CuboidRegion;
+            this.min = region.getMinimumPoint();
+            this.width = region.getWidth();
+            this.height = region.getHeight();
+            this.length = region.getLength();
+        }
+
+        private void reset() {
+            index = -1;
+            x = -1;
+            y = 0;
+            z = 0;
+        }
+
+        private boolean next() {
+            if (++x == width) {
+                x = 0;
+                if (++z == length) {
+                    z = 0;
+                    y++;
+                }
+            }
+            if (y >= height) {
+                return false;
+            }
+            index++;
+
+            Vector point = min.add(new BlockVector(x, y, z));
+            block = cuboid || region.contains(point) ? clipboard.getLazyBlock(point) : AIR;
+            return true;
+        }
+
+        private int getIndex() {
+            return index;
+        }
+
+        private int getX() {
+            return x;
+        }
+
+        private int getY() {
+            return y;
+        }
+
+        private int getZ() {
+            return z;
+        }
+
+        private BaseBlock getBlock() {
+            return block;
+        }
+    }
+
 }
@@ -0,0 +1,114 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.transform;
+
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Caches the data values that blocks take on when they are transformed
+ * by {@link BlockTransformExtent#transform(BaseBlock, Transform, BlockRegistry)}.
+ *
+ * <p>The table holds an entry for every block ID and data value and is
+ * filled as blocks are looked up, so once a block has been seen, it is
+ * transformed with a single array load. Blocks are assumed to have states
+ * that depend only on their ID and data value.</p>
+ *
+ * <p>This class is safe to use from multiple threads, as concurrent
+ * lookups of the same entry will compute the same value.</p>
+ */
+public class BlockTransformCache {
+
+    private static final byte UNKNOWN = -1;
+
+    private final Transform transform;
+    private final BlockRegistry registry;
+    private final byte[] table = new byte[(BaseBlock.MAX_ID + 1) << 4];
+
+    /**
+     * Create a new instance.
+     *
+     * @param transform the transform
+     * @param registry the block registry used for block direction data
+     */
+    public BlockTransformCache(Transform transform, BlockRegistry registry) {
+        checkNotNull(transform);
+        checkNotNull(registry);
+        this.transform = transform;
+        this.registry = registry;
+        Arrays.fill(table, UNKNOWN);
+    }
+
+    /**
+     * Get the transform.
+     *
+     * @return the transform
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Get the data value that a block takes on when it is transformed.
+     *
+     * @param id the ID of the block
+     * @param data the data value of the block
+     * @return the transformed data value
+     */
+    public int getData(int id, int data) {
+        if (id < 0 || id > BaseBlock.MAX_ID || data < 0 || data > BaseBlock.MAX_DATA) {
+            return compute(id, data);
+        }
+
+        int index = (id << 4) | data;
+        byte result = table[index];
+        if (result == UNKNOWN) {
+            result = (byte) compute(id, data);
+            table[index] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Transform a block, returning the same block if it does not change
+     * and a changed copy otherwise.
+     *
+     * @param block the block
+     * @return the transformed block
+     */
+    public BaseBlock apply(BaseBlock block) {
+        int data = getData(block.getId(), block.getData());
+        if (data != block.getData()) {
+            block = new BaseBlock(block);
+            block.setData(data);
+        }
+        return block;
+    }
+
+    private int compute(int id, int data) {
+        return BlockTransformExtent.transform(new BaseBlock(id, data), transform, registry).getData();
+    }
+
+}
@@ -37,6 +37,10 @@
 /**
  * Transforms blocks themselves (but not their position) according to a
  * given transform.
+ *
+ * <p>Transformed data values are looked up in a {@link BlockTransformCache}
+ * for each direction, so each block type and data value is only
+ * transformed once.</p>
  */
 public class BlockTransformExtent extends AbstractDelegateExtent {
 
@@ -44,6 +48,9 @@ public class BlockTransformExtent extends AbstractDelegateExtent {
 
     private final Transform transform;
     private final BlockRegistry blockRegistry;
+    private final BlockTransformCache cache;
+    @Nullable
+    private BlockTransformCache reverseCache;
 
     /**
      * Create a new instance.
@@ -57,6 +64,7 @@ public BlockTransformExtent(Extent extent, Transform transform, BlockRegistry bl
         checkNotNull(blockRegistry);
         this.transform = transform;
         this.blockRegistry = blockRegistry;
+        this.cache = new BlockTransformCache(transform, blockRegistry);
     }
 
     /**
@@ -69,30 +77,35 @@ public Transform getTransform() {
     }
 
     /**
-     * Transform a block without making a copy.
+     * Get the cache for the inverse of the transform.
      *
-     * @param block the block
-     * @param reverse true to transform in the opposite direction
-     * @return the same block
+     * @return the cache
      */
-    private BaseBlock transformBlock(BaseBlock block, boolean reverse) {
-        transform(block, reverse ? transform.inverse() : transform, blockRegistry);
-        return block;
+    private BlockTransformCache getReverseCache() {
+        if (reverseCache == null) {
+            reverseCache = new BlockTransformCache(transform.inverse(), blockRegistry);
+        }
+        return reverseCache;
     }
 
     @Override
     public BaseBlock getBlock(Vector position) {
-        return transformBlock(super.getBlock(position), false);
+        BaseBlock block = super.getBlock(position);
+        int data = cache.getData(block.getId(), block.getData());
+        if (data != block.getData()) {
+            block.setData(data);
+        }
+        return block;
     }
 
     @Override
     public BaseBlock getLazyBlock(Vector position) {
-        return transformBlock(super.getLazyBlock(position), false);
+        return cache.apply(super.getLazyBlock(position));
     }
 
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
-        return super.setBlock(location, transformBlock(new BaseBlock(block), true));
+        return super.setBlock(location, getReverseCache().apply(block));
     }
 
 
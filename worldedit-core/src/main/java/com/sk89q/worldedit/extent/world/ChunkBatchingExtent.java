@@ -0,0 +1,307 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.world;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.world.ColumnSnapshot;
+import com.sk89q.worldedit.world.SectionBatch;
+import com.sk89q.worldedit.world.World;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Buffers block changes, groups them by chunk section and then applies
+ * each section at once in chunk order using
+ * {@link World#setBlocks(SectionBatch, boolean)}.
+ *
+ * <p>Reads return buffered blocks, so changes are visible to operations
+ * before they are applied. The buffer is flushed when it holds too many
+ * sections and when the extent is committed.</p>
+ *
+ * <p>Blocks that depend on their neighbours (torches, signs, etc.) are
+ * written through immediately, after flushing the buffer, unless fast
+ * mode is enabled, so that they are still placed after the blocks they
+ * are attached to.</p>
+ */
+public class ChunkBatchingExtent extends AbstractDelegateExtent {
+
+    private static final Comparator<SectionBatch> CHUNK_ORDER = new Comparator<SectionBatch>() {
+        @Override
+        public int compare(SectionBatch o1, SectionBatch o2) {
+            int result = compareInts(o1.getSectionX(), o2.getSectionX());
+            if (result == 0) {
+                result = compareInts(o1.getSectionZ(), o2.getSectionZ());
+                if (result == 0) {
+                    result = compareInts(o1.getSectionY(), o2.getSectionY());
+                }
+            }
+            return result;
+        }
+    };
+
+    private final FastModeExtent extent;
+    private final Map<Long, SectionBatch> batches = new HashMap<Long, SectionBatch>();
+    private boolean enabled;
+    private int maxSections = 512;
+    private long lastKey;
+    @Nullable
+    private SectionBatch lastBatch;
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent the fast mode extent to apply batches with
+     * @param enabled true to enable batching
+     */
+    public ChunkBatchingExtent(FastModeExtent extent, boolean enabled) {
+        super(extent);
+        checkNotNull(extent);
+        this.extent = extent;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Return whether batching is enabled.
+     *
+     * @return true if batching is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether batching is enabled. Disabling batching will not flush
+     * changes that are already buffered.
+     *
+     * @param enabled true to enable batching
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get the maximum number of sections to buffer before the buffer
+     * is flushed.
+     *
+     * @return the maximum number of sections
+     */
+    public int getMaxSections() {
+        return maxSections;
+    }
+
+    /**
+     * Set the maximum number of sections to buffer before the buffer
+     * is flushed.
+     *
+     * @param maxSections the maximum number of sections
+     */
+    public void setMaxSections(int maxSections) {
+        checkArgument(maxSections > 0, "maxSections > 0 required");
+        this.maxSections = maxSections;
+    }
+
+    /**
+     * Return whether any changes are buffered and have yet to be applied
+     * to the world.
+     *
+     * @return true if there are buffered changes
+     */
+    public boolean hasBufferedChanges() {
+        return !batches.isEmpty();
+    }
+
+    /**
+     * Copy the types and data values of the buffered blocks that lie
+     * within the given snapshot into the snapshot, so that it matches what
+     * {@link #getBlock(Vector)} would return.
+     *
+     * @param snapshot the snapshot to update
+     */
+    public void applyBufferedChanges(ColumnSnapshot snapshot) {
+        checkNotNull(snapshot);
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        int minY = snapshot.getMinY();
+        int maxY = snapshot.getMaxY();
+        for (int sectionY = minY >> 4; sectionY <= maxY >> 4; sectionY++) {
+            SectionBatch batch = batches.get(getKey(snapshot.getChunkX(), sectionY, snapshot.getChunkZ()));
+            if (batch == null) {
+                continue;
+            }
+
+            for (int i = 0; i < SectionBatch.VOLUME; i++) {
+                BaseBlock block = batch.getBlock(i);
+                int y = batch.getY(i);
+                if (block != null && y >= minY && y <= maxY) {
+                    snapshot.setBlock(i & 15, y, (i >> 4) & 15, block.getType(), block.getData());
+                }
+            }
+        }
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        BaseBlock block = getBufferedBlock(position);
+        if (block != null) {
+            return new BaseBlock(block);
+        }
+        return super.getBlock(position);
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        BaseBlock block = getBufferedBlock(position);
+        if (block != null) {
+            return block;
+        }
+        return super.getLazyBlock(position);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>When the block is buffered, true is returned if it differs from
+     * the block that is currently at the location (including any buffered
+     * block), or if it has NBT data.</p>
+     */
+    @Override
+    public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+        if (!enabled) {
+            flush();
+            return super.setBlock(location, block);
+        }
+
+        BaseBlock previous = getLazyBlock(location);
+        if (!extent.isEnabled() && (isOrderSensitive(block) || isOrderSensitive(previous))) {
+            flush();
+            return super.setBlock(location, block);
+        }
+
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        SectionBatch batch = getBatch(x >> 4, y >> 4, z >> 4);
+        if (batch == null) {
+            if (batches.size() >= maxSections) {
+                flush();
+            }
+            batch = new SectionBatch(x >> 4, y >> 4, z >> 4);
+            lastKey = getKey(x >> 4, y >> 4, z >> 4);
+            lastBatch = batch;
+            batches.put(lastKey, batch);
+        }
+        batch.setBlock(SectionBatch.getIndex(x, y, z), new BaseBlock(block));
+        return previous.getType() != block.getType() || previous.getData() != block.getData() || block.hasNbtData();
+    }
+
+    /**
+     * Apply all buffered changes to the world in chunk order.
+     *
+     * @throws WorldEditException thrown on an error
+     */
+    public void flush() throws WorldEditException {
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        List<SectionBatch> sorted = new ArrayList<SectionBatch>(batches.values());
+        batches.clear();
+        lastBatch = null;
+        Collections.sort(sorted, CHUNK_ORDER);
+
+        for (SectionBatch batch : sorted) {
+            extent.setBlocks(batch);
+        }
+    }
+
+    @Override
+    protected Operation commitBefore() {
+        return new Operation() {
+            @Override
+            public Operation resume(RunContext run) throws WorldEditException {
+                flush();
+                return null;
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+    }
+
+    @Nullable
+    private BaseBlock getBufferedBlock(Vector position) {
+        if (batches.isEmpty()) {
+            return null;
+        }
+
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        SectionBatch batch = getBatch(x >> 4, y >> 4, z >> 4);
+        return batch != null ? batch.getBlock(SectionBatch.getIndex(x, y, z)) : null;
+    }
+
+    @Nullable
+    private SectionBatch getBatch(int sectionX, int sectionY, int sectionZ) {
+        long key = getKey(sectionX, sectionY, sectionZ);
+        if (lastBatch != null && lastKey == key) {
+            return lastBatch;
+        }
+
+        SectionBatch batch = batches.get(key);
+        if (batch != null) {
+            lastKey = key;
+            lastBatch = batch;
+        }
+        return batch;
+    }
+
+    private static boolean isOrderSensitive(BaseBlock block) {
+        int type = block.getType();
+        return BlockType.shouldPlaceLast(type) || BlockType.shouldPlaceFinal(type);
+    }
+
+    private static long getKey(int sectionX, int sectionY, int sectionZ) {
+        return ((sectionX & 0x3FFFFFL) << 42) | ((sectionZ & 0x3FFFFFL) << 20) | (sectionY & 0xFFFFFL);
+    }
+
+    private static int compareInts(int a, int b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+}
@@ -26,6 +26,7 @@
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.world.SectionBatch;
 import com.sk89q.worldedit.world.World;
 
 import java.util.HashSet;
@@ -92,6 +93,24 @@ public boolean setBlock(Vector location, BaseBlock block) throws WorldEditExcept
         }
     }
 
+    /**
+     * Set a batch of blocks that all lie within the same chunk section,
+     * skipping lighting and notification if fast mode is enabled.
+     *
+     * @param batch the batch of blocks
+     * @return the number of blocks that were set
+     * @throws WorldEditException thrown on an error
+     * @see World#setBlocks(SectionBatch, boolean)
+     */
+    public int setBlocks(SectionBatch batch) throws WorldEditException {
+        if (enabled) {
+            dirtyChunks.add(new BlockVector2D(batch.getSectionX(), batch.getSectionZ()));
+            return world.setBlocks(batch, false);
+        } else {
+            return world.setBlocks(batch, true);
+        }
+    }
+
     @Override
     protected Operation commitBefore() {
         return new Operation() {
@@ -0,0 +1,251 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.world;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.world.ColumnSnapshot;
+import com.sk89q.worldedit.world.World;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Keeps an index of the highest terrain block in every column that has
+ * been queried, so that height maps can be built without scanning each
+ * column down through the world.
+ *
+ * <p>The heights of a whole chunk are computed at once from a
+ * {@link ColumnSnapshot} the first time a column in that chunk is queried.
+ * The snapshot only covers the range of Y coordinates that has been
+ * queried, and it is taken again with a larger range when a query goes
+ * above it. Blocks that are set through this extent update the index as they pass
+ * through, so it must be placed directly above the
+ * {@link ChunkBatchingExtent} of an edit session.</p>
+ */
+public class HeightIndexExtent extends AbstractDelegateExtent {
+
+    /**
+     * No terrain block exists in the column.
+     */
+    private static final int NONE = -1;
+
+    private final ChunkBatchingExtent extent;
+    private final World world;
+    private final Map<Long, Heights> chunks;
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent the batching extent
+     * @param world the world
+     * @param maxChunks the maximum number of chunks to keep heights for
+     */
+    public HeightIndexExtent(ChunkBatchingExtent extent, World world, final int maxChunks) {
+        super(extent);
+        checkNotNull(extent);
+        checkNotNull(world);
+        checkArgument(maxChunks > 0, "maxChunks > 0 required");
+        this.extent = extent;
+        this.world = world;
+        this.chunks = new LinkedHashMap<Long, Heights>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Heights> eldest) {
+                return size() > maxChunks;
+            }
+        };
+    }
+
+    /**
+     * Returns the highest solid 'terrain' block in the given column.
+     *
+     * @param x the X coordinate
+     * @param z the Z coordinate
+     * @param minY minimal height
+     * @param maxY maximal height
+     * @param naturalOnly look at natural blocks or all blocks
+     * @return height of highest block found or 'minY'
+     */
+    public int getHighestTerrainBlock(int x, int z, int minY, int maxY, boolean naturalOnly) {
+        Heights chunk = getChunk(x >> 4, z >> 4, minY, maxY);
+        if (chunk == null) {
+            return Math.max(scan(x, z, minY, maxY, naturalOnly), minY);
+        }
+
+        int[] heights = naturalOnly ? chunk.natural : chunk.solid;
+        int index = (z & 15) << 4 | (x & 15);
+        int top = heights[index];
+        if (top < NONE) {
+            // Only the blocks above the old top are known to be clear
+            top = scan(x, z, chunk.minY, -2 - top, naturalOnly);
+            top = heights[index] = top < chunk.minY ? NONE : top;
+        }
+
+        if (top > maxY) {
+            top = scan(x, z, minY, maxY, naturalOnly);
+        } else if (top == NONE && minY < chunk.minY) {
+            // The snapshot did not reach down to minY
+            top = scan(x, z, minY, Math.min(maxY, chunk.minY - 1), naturalOnly);
+        }
+        return Math.max(top, minY);
+    }
+
+    @Override
+    public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+        if (!super.setBlock(location, block)) {
+            return false;
+        }
+
+        int x = location.getBlockX();
+        int z = location.getBlockZ();
+        Heights chunk = chunks.get(getKey(x >> 4, z >> 4));
+        int y = location.getBlockY();
+        if (chunk != null && y >= chunk.minY && y <= chunk.maxY) {
+            int index = (z & 15) << 4 | (x & 15);
+            update(chunk.solid, index, y, !BlockType.canPassThrough(block.getType(), block.getData()));
+            update(chunk.natural, index, y, BlockType.isNaturalTerrainBlock(block.getType(), block.getData()));
+        }
+        return true;
+    }
+
+    /**
+     * Update the height of a column after a block in it has changed.
+     *
+     * <p>A value below {@link #NONE} means that the height is unknown but
+     * that there is no terrain above {@code -2 - value}.</p>
+     *
+     * @param heights the heights of the chunk
+     * @param index the index of the column
+     * @param y the Y coordinate of the block
+     * @param terrain whether the new block is terrain
+     */
+    private static void update(int[] heights, int index, int y, boolean terrain) {
+        int top = heights[index];
+        int clear = top < NONE ? -2 - top : top;
+        if (terrain) {
+            if (y > clear) {
+                heights[index] = y;
+            }
+        } else if (y == top) {
+            heights[index] = -2 - (y - 1);
+        }
+    }
+
+    @Nullable
+    private Heights getChunk(int chunkX, int chunkZ, int minY, int maxY) {
+        minY = Math.max(0, minY);
+        maxY = Math.min(world.getMaxY(), maxY);
+        if (minY > maxY) {
+            return null;
+        }
+
+        long key = getKey(chunkX, chunkZ);
+        Heights chunk = chunks.get(key);
+        if (chunk == null || maxY > chunk.maxY) {
+            // The world does not have the buffered changes yet
+            if (extent.hasBufferedChanges()) {
+                return null;
+            }
+            if (chunk != null) {
+                minY = Math.min(minY, chunk.minY);
+            }
+            chunk = loadChunk(chunkX, chunkZ, minY, maxY);
+            chunks.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    private Heights loadChunk(int chunkX, int chunkZ, int minY, int maxY) {
+        ColumnSnapshot snapshot = world.getColumnSnapshot(chunkX, chunkZ, minY, maxY);
+        int[] solid = new int[256];
+        int[] natural = new int[256];
+
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                int index = z << 4 | x;
+                solid[index] = NONE;
+                natural[index] = NONE;
+
+                for (int y = maxY; y >= minY; --y) {
+                    int id = snapshot.getBlockType(x, y, z);
+                    if (id == 0) {
+                        continue;
+                    }
+                    int data = snapshot.getBlockData(x, y, z);
+                    if (solid[index] == NONE && !BlockType.canPassThrough(id, data)) {
+                        solid[index] = y;
+                    }
+                    if (BlockType.isNaturalTerrainBlock(id, data)) {
+                        natural[index] = y;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return new Heights(minY, maxY, solid, natural);
+    }
+
+    /**
+     * Scan a column for the highest terrain block.
+     *
+     * @return the height of the block, or {@code minY - 1} if there is none
+     */
+    private int scan(int x, int z, int minY, int maxY, boolean naturalOnly) {
+        for (int y = maxY; y >= minY; --y) {
+            BaseBlock block = getExtent().getLazyBlock(new Vector(x, y, z));
+            int id = block.getType();
+            int data = block.getData();
+            if (naturalOnly ? BlockType.isNaturalTerrainBlock(id, data) : !BlockType.canPassThrough(id, data)) {
+                return y;
+            }
+        }
+        return minY - 1;
+    }
+
+    private static long getKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
+
+    /**
+     * The heights of the columns of a chunk, between two Y coordinates.
+     */
+    private static final class Heights {
+        private final int minY;
+        private final int maxY;
+        private final int[] solid;
+        private final int[] natural;
+
+        private Heights(int minY, int maxY, int[] solid, int[] natural) {
+            this.minY = minY;
+            this.maxY = maxY;
+            this.solid = solid;
+            this.natural = natural;
+        }
+    }
+
+}
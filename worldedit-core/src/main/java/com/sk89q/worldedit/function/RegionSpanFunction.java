@@ -0,0 +1,43 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.regions.RegionSpan;
+
+/**
+ * A region function that can be applied to a whole span at once.
+ *
+ * <p>{@link com.sk89q.worldedit.function.visitor.RegionVisitor} passes
+ * whole spans to these functions, so no position is created for each
+ * block.</p>
+ */
+public interface RegionSpanFunction extends RegionFunction {
+
+    /**
+     * Apply the function to every block of the given span.
+     *
+     * @param span the span
+     * @return the number of blocks that were changed
+     * @throws WorldEditException thrown on an error
+     */
+    public int apply(RegionSpan span) throws WorldEditException;
+
+}
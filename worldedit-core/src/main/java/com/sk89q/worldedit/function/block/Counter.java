@@ -21,12 +21,13 @@
 
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
-import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.RegionSpanFunction;
+import com.sk89q.worldedit.regions.RegionSpan;
 
 /**
  * Keeps a count of the number of times that {@link #apply(Vector)} is called.
  */
- public class Counter implements RegionFunction {
+ public class Counter implements RegionSpanFunction {
 
     private int count;
     
@@ -45,4 +46,10 @@ public boolean apply(Vector position) throws WorldEditException {
         return false;
     }
 
+    @Override
+    public int apply(RegionSpan span) throws WorldEditException {
+        count += span.getLength();
+        return 0;
+    }
+
 }
\ No newline at end of file
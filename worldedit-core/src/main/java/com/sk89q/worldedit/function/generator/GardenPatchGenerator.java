@@ -29,15 +29,14 @@
 import com.sk89q.worldedit.function.pattern.BlockPattern;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.function.pattern.RandomPattern;
-
-import java.util.Random;
+import com.sk89q.worldedit.util.random.SplitMixRandom;
 
 /**
  * Generates patches of fruit (i.e. pumpkin patches).
  */
 public class GardenPatchGenerator implements RegionFunction {
 
-    private final Random random = new Random();
+    private final SplitMixRandom random = new SplitMixRandom();
     private final EditSession editSession;
     private Pattern plant = getPumpkinPattern();
     private int affected;
@@ -25,7 +25,9 @@
 
 import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -37,10 +39,19 @@
  *
  * <p>This mask checks for both an exact block ID and data value match, as well
  * for a block with the same ID but a data value of -1.</p>
+ *
+ * <p>The blocks are also held in a bit set with a bit for every block ID and
+ * data value, so that testing a block does not allocate.</p>
  */
 public class BlockMask extends AbstractExtentMask {
 
+    /**
+     * The number of bits in a set with a bit for every block ID and data value.
+     */
+    static final int BITS = (BaseBlock.MAX_ID + 1) << 4;
+
     private final Set<BaseBlock> blocks = new HashSet<BaseBlock>();
+    private final BitSet bits = new BitSet(BITS);
 
     /**
      * Create a new block mask.
@@ -50,8 +61,7 @@ public class BlockMask extends AbstractExtentMask {
      */
     public BlockMask(Extent extent, Collection<BaseBlock> blocks) {
         super(extent);
-        checkNotNull(blocks);
-        this.blocks.addAll(blocks);
+        add(blocks);
     }
 
     /**
@@ -72,6 +82,13 @@ public BlockMask(Extent extent, BaseBlock... block) {
     public void add(Collection<BaseBlock> blocks) {
         checkNotNull(blocks);
         this.blocks.addAll(blocks);
+        for (BaseBlock block : blocks) {
+            if (block.getData() == -1) {
+                bits.set(block.getType() << 4, (block.getType() + 1) << 4);
+            } else {
+                bits.set((block.getType() << 4) | block.getData());
+            }
+        }
     }
 
     /**
@@ -84,18 +101,29 @@ public void add(BaseBlock... block) {
     }
 
     /**
-     * Get the list of blocks that are tested with.
+     * Get the list of blocks that are tested with. Use {@link #add(Collection)}
+     * to add more blocks.
      *
-     * @return a list of blocks
+     * @return an unmodifiable list of blocks
      */
     public Collection<BaseBlock> getBlocks() {
-        return blocks;
+        return Collections.unmodifiableSet(blocks);
+    }
+
+    /**
+     * Get the bits that are set for every block ID and data value that is
+     * matched, at index {@code id << 4 | data}.
+     *
+     * @return the bit set, which must not be modified
+     */
+    BitSet getBits() {
+        return bits;
     }
 
     @Override
     public boolean test(Vector vector) {
-        BaseBlock block = getExtent().getBlock(vector);
-        return blocks.contains(block) || blocks.contains(new BaseBlock(block.getType(), -1));
+        BaseBlock block = getExtent().getLazyBlock(vector);
+        return bits.get((block.getType() << 4) | (block.getData() & 15));
     }
 
     @Nullable
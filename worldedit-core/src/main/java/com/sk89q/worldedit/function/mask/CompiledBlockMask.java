@@ -0,0 +1,75 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.Extent;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A mask that tests the block at the given positions against a bit set
+ * with a bit for every block ID and data value.
+ *
+ * <p>Instances are created by {@link Masks#compile(Mask)} to replace
+ * combinations of block masks.</p>
+ */
+class CompiledBlockMask extends AbstractExtentMask {
+
+    private final BitSet bits;
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent the extent
+     * @param bits the bits that are set for matched blocks at index {@code id << 4 | data}, which are copied
+     */
+    CompiledBlockMask(Extent extent, BitSet bits) {
+        super(extent);
+        checkNotNull(bits);
+        this.bits = (BitSet) bits.clone();
+    }
+
+    /**
+     * Get the bits that are set for matched blocks.
+     *
+     * @return the bit set, which must not be modified
+     */
+    BitSet getBits() {
+        return bits;
+    }
+
+    @Override
+    public boolean test(Vector vector) {
+        BaseBlock block = getExtent().getLazyBlock(vector);
+        return bits.get((block.getType() << 4) | (block.getData() & 15));
+    }
+
+    @Nullable
+    @Override
+    public Mask2D toMask2D() {
+        return null;
+    }
+
+}
@@ -0,0 +1,287 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.extent.Extent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles masks for {@link Masks#compile(Mask)}.
+ */
+class MaskCompiler {
+
+    @Nullable
+    private static BitSet solidBits;
+
+    private final Mask alwaysTrue;
+    private final Mask alwaysFalse;
+
+    /**
+     * Create a new instance.
+     *
+     * @param alwaysTrue the mask that always returns true
+     * @param alwaysFalse the mask that always returns false
+     */
+    MaskCompiler(Mask alwaysTrue, Mask alwaysFalse) {
+        this.alwaysTrue = alwaysTrue;
+        this.alwaysFalse = alwaysFalse;
+    }
+
+    /**
+     * Compile a mask.
+     *
+     * @param mask the mask
+     * @return the compiled mask
+     */
+    Mask compile(Mask mask) {
+        if (mask == alwaysTrue || mask == alwaysFalse) {
+            return mask;
+        }
+
+        BitSet bits = getBits(mask);
+        if (bits != null) {
+            return createBlockMask(((AbstractExtentMask) mask).getExtent(), bits);
+        }
+
+        if (mask instanceof Masks.NegatedMask) {
+            Mask compiled = compile(((Masks.NegatedMask) mask).getMask());
+            if (compiled == alwaysTrue) {
+                return alwaysFalse;
+            } else if (compiled == alwaysFalse) {
+                return alwaysTrue;
+            } else if (compiled instanceof CompiledBlockMask) {
+                BitSet negated = (BitSet) ((CompiledBlockMask) compiled).getBits().clone();
+                negated.flip(0, BlockMask.BITS);
+                return createBlockMask(((CompiledBlockMask) compiled).getExtent(), negated);
+            } else {
+                return Masks.negate(compiled);
+            }
+        }
+
+        if (mask.getClass() == OffsetMask.class) {
+            OffsetMask offsetMask = (OffsetMask) mask;
+            Mask compiled = compile(offsetMask.getMask());
+            if (compiled == alwaysTrue || compiled == alwaysFalse) {
+                return compiled;
+            }
+            return new OffsetMask(compiled, offsetMask.getOffset());
+        }
+
+        // MaskUnion extends MaskIntersection, so the exact class is checked
+        if (mask.getClass() == MaskUnion.class) {
+            return combine(mask, ((MaskUnion) mask).getMasks(), true);
+        } else if (mask.getClass() == MaskIntersection.class) {
+            return combine(mask, ((MaskIntersection) mask).getMasks(), false);
+        }
+
+        return mask;
+    }
+
+    /**
+     * Compile the masks of an intersection or a union.
+     *
+     * @param original the intersection or union
+     * @param masks the masks of the intersection or union
+     * @param union true if the masks form a union
+     * @return the compiled mask
+     */
+    private Mask combine(Mask original, Collection<Mask> masks, boolean union) {
+        if (masks.isEmpty()) {
+            return alwaysFalse;
+        }
+
+        // A result that decides the whole group, and a result that can be left out
+        Mask decisive = union ? alwaysTrue : alwaysFalse;
+        Mask neutral = union ? alwaysFalse : alwaysTrue;
+
+        List<Mask> positional = new ArrayList<Mask>();
+        List<Mask> others = new ArrayList<Mask>();
+        Map<Extent, BitSet> blockBits = new LinkedHashMap<Extent, BitSet>();
+
+        for (Mask mask : masks) {
+            Mask compiled = compile(mask);
+            Mask[] parts;
+            if (union ? compiled instanceof Union : compiled instanceof Intersection) {
+                parts = ((Group) compiled).masks;
+            } else {
+                parts = new Mask[] { compiled };
+            }
+
+            for (Mask part : parts) {
+                if (part == decisive) {
+                    return decisive;
+                } else if (part == neutral) {
+                    continue;
+                }
+
+                if (part instanceof CompiledBlockMask) {
+                    Extent extent = ((CompiledBlockMask) part).getExtent();
+                    BitSet bits = blockBits.get(extent);
+                    if (bits == null) {
+                        blockBits.put(extent, (BitSet) ((CompiledBlockMask) part).getBits().clone());
+                    } else if (union) {
+                        bits.or(((CompiledBlockMask) part).getBits());
+                    } else {
+                        bits.and(((CompiledBlockMask) part).getBits());
+                    }
+                } else if (isPositional(part)) {
+                    positional.add(part);
+                } else {
+                    others.add(part);
+                }
+            }
+        }
+
+        // Masks that do not read blocks are tested first
+        List<Mask> result = new ArrayList<Mask>(positional);
+        for (Map.Entry<Extent, BitSet> entry : blockBits.entrySet()) {
+            Mask blockMask = createBlockMask(entry.getKey(), entry.getValue());
+            if (blockMask == decisive) {
+                return decisive;
+            } else if (blockMask != neutral) {
+                result.add(blockMask);
+            }
+        }
+        result.addAll(others);
+
+        if (result.isEmpty()) {
+            return neutral;
+        } else if (result.size() == 1) {
+            return result.get(0);
+        } else if (union) {
+            return new Union(original, result.toArray(new Mask[result.size()]));
+        } else {
+            return new Intersection(original, result.toArray(new Mask[result.size()]));
+        }
+    }
+
+    private Mask createBlockMask(Extent extent, BitSet bits) {
+        if (bits.isEmpty()) {
+            return alwaysFalse;
+        } else if (bits.cardinality() == BlockMask.BITS) {
+            return alwaysTrue;
+        } else {
+            return new CompiledBlockMask(extent, bits);
+        }
+    }
+
+    /**
+     * Get the bits of block IDs and data values that a mask matches, if it
+     * only tests the type and data value of blocks.
+     *
+     * @param mask the mask
+     * @return the bits, which must not be modified, or null if the mask tests more than blocks
+     */
+    @Nullable
+    private static BitSet getBits(Mask mask) {
+        Class<?> type = mask.getClass();
+        if (type == BlockMask.class || type == FuzzyBlockMask.class) {
+            return ((BlockMask) mask).getBits();
+        } else if (type == CompiledBlockMask.class) {
+            return ((CompiledBlockMask) mask).getBits();
+        } else if (type == ExistingBlockMask.class) {
+            BitSet bits = new BitSet(BlockMask.BITS);
+            bits.set(1 << 4, BlockMask.BITS);
+            return bits;
+        } else if (type == SolidBlockMask.class) {
+            return getSolidBits();
+        } else {
+            return null;
+        }
+    }
+
+    private static synchronized BitSet getSolidBits() {
+        if (solidBits == null) {
+            BitSet bits = new BitSet(BlockMask.BITS);
+            for (int i = 0; i < BlockMask.BITS; i++) {
+                if (!BlockType.canPassThrough(i >> 4, i & 15)) {
+                    bits.set(i);
+                }
+            }
+            solidBits = bits;
+        }
+        return solidBits;
+    }
+
+    private static boolean isPositional(Mask mask) {
+        return mask instanceof BoundedHeightMask || mask instanceof RegionMask;
+    }
+
+    /**
+     * A flattened list of compiled masks.
+     */
+    private abstract static class Group extends AbstractMask {
+        private final Mask original;
+        final Mask[] masks;
+
+        private Group(Mask original, Mask[] masks) {
+            this.original = original;
+            this.masks = masks;
+        }
+
+        @Nullable
+        @Override
+        public Mask2D toMask2D() {
+            return original.toMask2D();
+        }
+    }
+
+    private static class Intersection extends Group {
+        private Intersection(Mask original, Mask[] masks) {
+            super(original, masks);
+        }
+
+        @Override
+        public boolean test(Vector vector) {
+            for (Mask mask : masks) {
+                if (!mask.test(vector)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Union extends Group {
+        private Union(Mask original, Mask[] masks) {
+            super(original, masks);
+        }
+
+        @Override
+        public boolean test(Vector vector) {
+            for (Mask mask : masks) {
+                if (mask.test(vector)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
@@ -69,23 +69,7 @@ public static Mask negate(final Mask mask) {
         }
 
         checkNotNull(mask);
-        return new AbstractMask() {
-            @Override
-            public boolean test(Vector vector) {
-                return !mask.test(vector);
-            }
-
-            @Nullable
-            @Override
-            public Mask2D toMask2D() {
-                Mask2D mask2d = mask.toMask2D();
-                if (mask2d != null) {
-                    return negate(mask2d);
-                } else {
-                    return null;
-                }
-            }
-        };
+        return new NegatedMask(mask);
     }
 
     /**
@@ -207,6 +191,64 @@ public boolean matches(EditSession editSession, Vector position) {
         };
     }
 
+    /**
+     * Compile the given mask into a mask that returns the same results but
+     * is faster to test.
+     *
+     * <p>Masks that only test the type and data value of blocks in an extent,
+     * such as {@link BlockMask}, {@link ExistingBlockMask} and
+     * {@link SolidBlockMask}, are combined with the other block masks of
+     * the same extent in intersections, unions and negations into a single
+     * bit set, so that the block is only read once. Nested intersections and
+     * unions are flattened and masks that only test positions are tested
+     * first.</p>
+     *
+     * <p>The compiled mask does not see later changes to the given masks.</p>
+     *
+     * @param mask the mask
+     * @return a compiled mask
+     */
+    public static Mask compile(Mask mask) {
+        checkNotNull(mask);
+        return new MaskCompiler(ALWAYS_TRUE, ALWAYS_FALSE).compile(mask);
+    }
+
+    /**
+     * A mask that negates another mask.
+     */
+    static class NegatedMask extends AbstractMask {
+        private final Mask mask;
+
+        private NegatedMask(Mask mask) {
+            this.mask = mask;
+        }
+
+        /**
+         * Get the mask that is negated.
+         *
+         * @return the mask
+         */
+        Mask getMask() {
+            return mask;
+        }
+
+        @Override
+        public boolean test(Vector vector) {
+            return !mask.test(vector);
+        }
+
+        @Nullable
+        @Override
+        public Mask2D toMask2D() {
+            Mask2D mask2d = mask.toMask2D();
+            if (mask2d != null) {
+                return negate(mask2d);
+            } else {
+                return null;
+            }
+        }
+    }
+
     private static class AlwaysTrue implements Mask, Mask2D {
         @Override
         public boolean test(Vector vector) {
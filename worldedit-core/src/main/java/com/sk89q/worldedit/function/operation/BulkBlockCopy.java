@@ -0,0 +1,420 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.function.operation;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.blocks.ImmutableBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.PalettedClipboard;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.math.transform.Identity;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.RegionSpan;
+import com.sk89q.worldedit.regions.Regions;
+import com.sk89q.worldedit.world.ColumnSnapshot;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Copies the blocks of a region from one extent to another without going
+ * through a chain of region functions.
+ *
+ * <p>This is the fast path of {@link ForwardExtentCopy}. It is only
+ * available when every block lands on exactly one block, which is the
+ * case for translations, rotations by multiples of 90 degrees and flips.
+ * A source mask that accepts every block, or only blocks that are not air,
+ * is checked against the blocks as they are read. Any other source mask is
+ * tested for each block. Use {@link #create(Extent, Region, Vector,
+ * Extent, Vector, Transform, Mask)} to find out whether a copy can be
+ * made this way.</p>
+ *
+ * <p>When the source is an {@link EditSession}, blocks are read a chunk
+ * column at a time from {@link EditSession#getColumnSnapshot(int, int,
+ * int, int)}, and only blocks that may have tile entities, including every
+ * block that is not a known vanilla block, are read individually. These
+ * are read from the edit session as soon as their column is taken, so
+ * every block of a column is read from the same state of the session.</p>
+ *
+ * <p>When the source is a {@link PalettedClipboard}, its shared immutable
+ * blocks are used as they are, and the same immutable block is passed to
+ * the destination for every copy of a type and data value. This is also
+ * the case for a clipboard wrapped in a {@link BlockTransformExtent},
+ * except for blocks that are changed by the transform.</p>
+ */
+public class BulkBlockCopy implements Operation {
+
+    private static final ImmutableBlock AIR = new ImmutableBlock(BlockID.AIR, 0);
+
+    /**
+     * The block IDs that are read as full blocks rather than from a
+     * snapshot, because they may have a tile entity. Blocks that are not
+     * known, such as blocks added by mods, may have one too.
+     */
+    private static final boolean[] readFullBlock = new boolean[4096];
+    static {
+        for (int id = 0; id < readFullBlock.length; id++) {
+            readFullBlock[id] = BlockType.hasTileEntity(id) || BlockType.fromID(id) == null;
+        }
+    }
+
+    private final Extent source;
+    private final Region region;
+    private final Extent destination;
+    private final boolean copyAir;
+    @Nullable
+    private final Mask mask;
+    private final int fromX;
+    private final int fromY;
+    private final int fromZ;
+    private final int[] matrix;
+    private final double[] offset;
+    @Nullable
+    private final EditSession session;
+    private final Map<Integer, ColumnSnapshot> snapshots = new HashMap<Integer, ColumnSnapshot>();
+    private final Map<BlockVector, BaseBlock> fullBlocks = new HashMap<BlockVector, BaseBlock>();
+    private final ImmutableBlock[] blocks;
+    private final int snapshotMinY;
+    private final int snapshotMaxY;
+    private int snapshotChunkZ;
+    @Nullable
+    private ColumnSnapshot lastSnapshot;
+    @Nullable
+    private RegionFunction sourceFunction;
+    private Iterator<RegionSpan> spans;
+    private RegionSpan span;
+    private int nextX;
+    private int affected;
+
+    private BulkBlockCopy(Extent source, Region region, Vector from, Extent destination, Vector to,
+                          double[] coefficients, boolean copyAir, @Nullable Mask mask, @Nullable EditSession session) {
+        this.source = source;
+        this.region = region;
+        this.destination = destination;
+        this.copyAir = copyAir;
+        this.mask = mask;
+        this.fromX = from.getBlockX();
+        this.fromY = from.getBlockY();
+        this.fromZ = from.getBlockZ();
+        this.matrix = new int[] {
+                (int) coefficients[0], (int) coefficients[1], (int) coefficients[2],
+                (int) coefficients[4], (int) coefficients[5], (int) coefficients[6],
+                (int) coefficients[8], (int) coefficients[9], (int) coefficients[10] };
+        // Kept apart from the linear part so that the destination is rounded
+        // exactly as Transform.apply() followed by Vector.add() would round it
+        this.offset = new double[] {
+                coefficients[3], to.getX(),
+                coefficients[7], to.getY(),
+                coefficients[11], to.getZ() };
+        this.session = session;
+
+        if (session != null) {
+            blocks = new ImmutableBlock[1 << 16];
+            snapshotMinY = Math.max(region.getMinimumPoint().getBlockY(), 0);
+            snapshotMaxY = Math.min(region.getMaximumPoint().getBlockY(), session.getWorld().getMaxY());
+        } else {
+            blocks = null;
+            snapshotMinY = 0;
+            snapshotMaxY = -1;
+        }
+    }
+
+    /**
+     * Create a new bulk copy if the given copy can be made in bulk.
+     *
+     * @param source the source extent
+     * @param region the region to copy
+     * @param from the source position
+     * @param destination the destination extent
+     * @param to the destination position
+     * @param transform the transform to apply to positions
+     * @param sourceMask the mask that is applied to the source
+     * @return a new bulk copy, or null if the copy cannot be made in bulk
+     */
+    @Nullable
+    public static BulkBlockCopy create(Extent source, Region region, Vector from, Extent destination, Vector to,
+                                       Transform transform, Mask sourceMask) {
+        checkNotNull(source);
+        checkNotNull(region);
+        checkNotNull(from);
+        checkNotNull(destination);
+        checkNotNull(to);
+        checkNotNull(transform);
+        checkNotNull(sourceMask);
+
+        boolean copyAir = true;
+        Mask mask = null;
+        if (sourceMask == Masks.alwaysTrue()) {
+            copyAir = true;
+        } else if (sourceMask instanceof ExistingBlockMask
+                && (((ExistingBlockMask) sourceMask).getExtent() == source
+                    || ((ExistingBlockMask) sourceMask).getExtent() == getClipboard(source))) {
+            // Transforming blocks never turns them into air or out of it
+            copyAir = false;
+        } else {
+            mask = sourceMask;
+        }
+
+        double[] coefficients;
+        if (transform instanceof Identity) {
+            coefficients = new AffineTransform().coefficients();
+        } else if (transform instanceof AffineTransform) {
+            coefficients = ((AffineTransform) transform).coefficients();
+            for (int i = 0; i < coefficients.length; i++) {
+                if (i % 4 != 3 && (coefficients[i] != Math.rint(coefficients[i]) || Math.abs(coefficients[i]) > 1)) {
+                    return null;
+                }
+            }
+        } else {
+            return null;
+        }
+
+        if (from.getX() != from.getBlockX() || from.getY() != from.getBlockY() || from.getZ() != from.getBlockZ()) {
+            return null;
+        }
+
+        if (source instanceof EditSession && ((EditSession) source).getWorld() != null) {
+            // Snapshots would hide blocks that are copied over blocks that are yet to be read
+            if (destination == source && overlaps(region, from, to, transform)) {
+                return null;
+            }
+            return new BulkBlockCopy(source, region, from, destination, to, coefficients, copyAir, mask, (EditSession) source);
+        } else if (getClipboard(source) != null) {
+            return new BulkBlockCopy(source, region, from, destination, to, coefficients, copyAir, mask, null);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Get the function that is applied to every block of the region after
+     * it has been copied.
+     *
+     * @return the source function, or null if none is to be applied
+     */
+    @Nullable
+    public RegionFunction getSourceFunction() {
+        return sourceFunction;
+    }
+
+    /**
+     * Set the function that is applied to every block of the region after
+     * it has been copied, whether or not the block was copied.
+     *
+     * @param sourceFunction the source function, or null if none is to be applied
+     */
+    public void setSourceFunction(@Nullable RegionFunction sourceFunction) {
+        this.sourceFunction = sourceFunction;
+    }
+
+    /**
+     * Get the number of affected blocks.
+     *
+     * @return the number of affected blocks
+     */
+    public int getAffected() {
+        return affected;
+    }
+
+    @Override
+    public Operation resume(RunContext run) throws WorldEditException {
+        if (spans == null) {
+            spans = Regions.spans(region).iterator();
+        }
+
+        while (span != null || spans.hasNext()) {
+            if (span == null) {
+                span = spans.next();
+                nextX = span.getMinimumX();
+            }
+
+            int y = span.getY();
+            int z = span.getZ();
+            int maxX = span.getMaximumX();
+
+            while (nextX <= maxX) {
+                int x = nextX++;
+                boolean changed = (mask == null || mask.test(new BlockVector(x, y, z))) && copy(x, y, z);
+
+                if (sourceFunction != null && sourceFunction.apply(new BlockVector(x, y, z))) {
+                    changed = true;
+                }
+
+                if (changed) {
+                    affected++;
+                }
+
+                run.addBlocks(1);
+                if (!run.shouldContinue() && (nextX <= maxX || spans.hasNext())) {
+                    return this;
+                }
+            }
+
+            span = null;
+        }
+
+        snapshots.clear();
+        fullBlocks.clear();
+        lastSnapshot = null;
+        return null;
+    }
+
+    @Override
+    public void cancel() {
+    }
+
+    private boolean copy(int x, int y, int z) throws WorldEditException {
+        BaseBlock block = getSourceBlock(x, y, z);
+        if (!copyAir && block.getType() == BlockID.AIR) {
+            return false;
+        }
+
+        int originX = x - fromX;
+        int originY = y - fromY;
+        int originZ = z - fromZ;
+        int lx = matrix[0] * originX + matrix[1] * originY + matrix[2] * originZ;
+        int ly = matrix[3] * originX + matrix[4] * originY + matrix[5] * originZ;
+        int lz = matrix[6] * originX + matrix[7] * originY + matrix[8] * originZ;
+        BlockVector target = new BlockVector(
+                (int) Math.round(lx + offset[0] + offset[1]),
+                (int) Math.round(ly + offset[2] + offset[3]),
+                (int) Math.round(lz + offset[4] + offset[5]));
+        return destination.setBlock(target, block);
+    }
+
+    private BaseBlock getSourceBlock(int x, int y, int z) {
+        if (session == null) {
+            return source.getLazyBlock(new BlockVector(x, y, z));
+        }
+
+        if (y < snapshotMinY || y > snapshotMaxY) {
+            return AIR;
+        }
+
+        ColumnSnapshot snapshot = getSnapshot(x >> 4, z >> 4);
+        int packed = snapshot.getPackedBlock(x & 15, y, z & 15);
+        if (readFullBlock[packed >> 4]) {
+            return fullBlocks.get(new BlockVector(x, y, z));
+        }
+
+        ImmutableBlock block = blocks[packed];
+        if (block == null) {
+            block = new ImmutableBlock(packed >> 4, packed & 15);
+            blocks[packed] = block;
+        }
+        return block;
+    }
+
+    private ColumnSnapshot getSnapshot(int chunkX, int chunkZ) {
+        ColumnSnapshot snapshot = lastSnapshot;
+        if (snapshot != null && snapshot.getChunkX() == chunkX && snapshot.getChunkZ() == chunkZ) {
+            return snapshot;
+        }
+
+        // Spans are visited by Z, so only one row of chunks is kept at a time
+        if (chunkZ != snapshotChunkZ) {
+            snapshots.clear();
+            fullBlocks.clear();
+            snapshotChunkZ = chunkZ;
+        }
+
+        snapshot = snapshots.get(chunkX);
+        if (snapshot == null) {
+            snapshot = session.getColumnSnapshot(chunkX, chunkZ, snapshotMinY, snapshotMaxY);
+            readFullBlocks(snapshot);
+            snapshots.put(chunkX, snapshot);
+        }
+        lastSnapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Read the blocks of a snapshot that have to be read in full, right
+     * after the snapshot was taken and before anything else can change
+     * the edit session.
+     *
+     * @param snapshot the snapshot
+     */
+    private void readFullBlocks(ColumnSnapshot snapshot) {
+        int baseX = snapshot.getChunkX() << 4;
+        int baseZ = snapshot.getChunkZ() << 4;
+        for (int y = snapshot.getMinY(); y <= snapshot.getMaxY(); y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    if (readFullBlock[snapshot.getPackedBlock(x, y, z) >> 4]) {
+                        BlockVector position = new BlockVector(baseX + x, y, baseZ + z);
+                        fullBlocks.put(position, session.getBlock(position));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the clipboard that is read from when reading from the given
+     * extent, if it is a clipboard or a clipboard with transformed blocks.
+     *
+     * @param source the source extent
+     * @return the clipboard, or null if the source is not a clipboard
+     */
+    @Nullable
+    private static PalettedClipboard getClipboard(Extent source) {
+        if (source instanceof BlockTransformExtent) {
+            source = ((BlockTransformExtent) source).getExtent();
+        }
+        return source instanceof PalettedClipboard ? (PalettedClipboard) source : null;
+    }
+
+    private static boolean overlaps(Region region, Vector from, Vector to, Transform transform) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        Vector targetMin = null;
+        Vector targetMax = null;
+        for (int i = 0; i < 8; i++) {
+            Vector corner = new Vector(
+                    (i & 1) == 0 ? min.getX() : max.getX(),
+                    (i & 2) == 0 ? min.getY() : max.getY(),
+                    (i & 4) == 0 ? min.getZ() : max.getZ());
+            Vector target = transform.apply(corner.subtract(from)).add(to);
+            target = new Vector(target.getBlockX(), target.getBlockY(), target.getBlockZ());
+            targetMin = targetMin == null ? target : Vector.getMinimum(targetMin, target);
+            targetMax = targetMax == null ? target : Vector.getMaximum(targetMax, target);
+        }
+        return targetMin.getX() <= max.getX() && targetMax.getX() >= min.getX()
+                && targetMin.getY() <= max.getY() && targetMax.getY() >= min.getY()
+                && targetMin.getZ() <= max.getZ() && targetMax.getZ() >= min.getZ();
+    }
+
+}
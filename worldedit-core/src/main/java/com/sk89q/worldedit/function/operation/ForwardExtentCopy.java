@@ -47,6 +47,12 @@
  * <p>This is a forward extent copy, meaning that it iterates over the blocks
  * in the source extent, and will copy as many blocks as there are in the
  * source. Therefore, interpolation will not occur to fill in the gaps.</p>
+ *
+ * <p>Where possible, blocks are copied span by span with a
+ * {@link BulkBlockCopy}, whatever the source mask is. Only transforms
+ * that do not map blocks onto blocks, such as rotations by other angles
+ * than multiples of 90 degrees, visit the region with a chain of region
+ * functions.</p>
  */
 public class ForwardExtentCopy implements Operation {
 
@@ -62,6 +68,7 @@ public class ForwardExtentCopy implements Operation {
     private Transform transform = new Identity();
     private Transform currentTransform = null;
     private RegionVisitor lastVisitor;
+    private BulkBlockCopy lastBulkCopy;
     private int affected;
 
     /**
@@ -217,6 +224,11 @@ public Operation resume(RunContext run) throws WorldEditException {
             lastVisitor = null;
         }
 
+        if (lastBulkCopy != null) {
+            affected += lastBulkCopy.getAffected();
+            lastBulkCopy = null;
+        }
+
         if (repetitions > 0) {
             repetitions--;
 
@@ -224,19 +236,28 @@ public Operation resume(RunContext run) throws WorldEditException {
                 currentTransform = transform;
             }
 
-            ExtentBlockCopy blockCopy = new ExtentBlockCopy(source, from, destination, to, currentTransform);
-            RegionMaskingFilter filter = new RegionMaskingFilter(sourceMask, blockCopy);
-            RegionFunction function = sourceFunction != null ? new CombinedRegionFunction(filter, sourceFunction) : filter;
-            RegionVisitor blockVisitor = new RegionVisitor(region, function);
+            Operation blockOperation;
+            BulkBlockCopy bulkCopy = BulkBlockCopy.create(source, region, from, destination, to, currentTransform, sourceMask);
+            if (bulkCopy != null) {
+                bulkCopy.setSourceFunction(sourceFunction);
+                lastBulkCopy = bulkCopy;
+                blockOperation = bulkCopy;
+            } else {
+                ExtentBlockCopy blockCopy = new ExtentBlockCopy(source, from, destination, to, currentTransform);
+                RegionMaskingFilter filter = new RegionMaskingFilter(sourceMask, blockCopy);
+                RegionFunction function = sourceFunction != null ? new CombinedRegionFunction(filter, sourceFunction) : filter;
+                RegionVisitor blockVisitor = new RegionVisitor(region, function);
+                lastVisitor = blockVisitor;
+                blockOperation = blockVisitor;
+            }
 
             ExtentEntityCopy entityCopy = new ExtentEntityCopy(from, destination, to, currentTransform);
             entityCopy.setRemoving(removingEntities);
             List<? extends Entity> entities = source.getEntities(region);
             EntityVisitor entityVisitor = new EntityVisitor(entities.iterator(), entityCopy);
 
-            lastVisitor = blockVisitor;
             currentTransform = currentTransform.combine(transform);
-            return new DelegateOperation(this, new OperationQueue(blockVisitor, entityVisitor));
+            return new DelegateOperation(this, new OperationQueue(blockOperation, entityVisitor));
         } else {
             return null;
         }
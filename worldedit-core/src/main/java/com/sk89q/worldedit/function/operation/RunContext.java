@@ -19,11 +19,62 @@
 
 package com.sk89q.worldedit.function.operation;
 
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Describes the current run.
+ *
+ * <p>A run may have a time budget and a block budget. Operations that
+ * support being split into steps should call {@link #addBlocks(int)} as
+ * they visit blocks and return early once {@link #shouldContinue()}
+ * returns false.</p>
  */
 public class RunContext {
 
+    private final long deadline;
+    private final int maxBlocks;
+    private int blocks = 0;
+
+    /**
+     * Create a new run that has no time or block budget.
+     */
+    public RunContext() {
+        this(-1, TimeUnit.NANOSECONDS, -1);
+    }
+
+    /**
+     * Create a new run with a time and block budget.
+     *
+     * @param maxTime the maximum time the run may take, starting from now, or -1 to use no limit
+     * @param unit the unit of {@code maxTime}
+     * @param maxBlocks the maximum number of blocks to visit, or -1 to use no limit
+     */
+    public RunContext(long maxTime, TimeUnit unit, int maxBlocks) {
+        checkNotNull(unit);
+        this.deadline = maxTime < 0 ? -1 : System.nanoTime() + unit.toNanos(maxTime);
+        this.maxBlocks = maxBlocks;
+    }
+
+    /**
+     * Record that the given number of blocks have been visited.
+     *
+     * @param count the number of blocks
+     */
+    public void addBlocks(int count) {
+        blocks += count;
+    }
+
+    /**
+     * Get the number of blocks that have been visited during this run.
+     *
+     * @return the number of blocks
+     */
+    public int getBlocks() {
+        return blocks;
+    }
+
     /**
      * Return whether the current operation should still continue running.
      *
@@ -32,7 +83,10 @@ public class RunContext {
      * @return true if the operation should continue running
      */
     public boolean shouldContinue() {
-        return true;
+        if (maxBlocks >= 0 && blocks >= maxBlocks) {
+            return false;
+        }
+        return deadline < 0 || System.nanoTime() - deadline < 0;
     }
 
 }
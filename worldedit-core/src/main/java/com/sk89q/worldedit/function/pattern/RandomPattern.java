@@ -21,21 +21,55 @@
 
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.util.random.AliasTable;
+import com.sk89q.worldedit.util.random.SplitMixRandom;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Uses a random pattern of a weighted list of patterns.
+ *
+ * <p>Patterns are picked in constant time from an {@link AliasTable}. By
+ * default, random numbers are drawn from the {@link SplitMixRandom} of the
+ * current thread, so the pattern can be applied from several threads at
+ * once. If a seed is given, the pattern that is picked only depends on the
+ * seed and the position, so the result is the same however and in
+ * whichever order positions are visited.</p>
+ *
+ * <p>Patterns must not be added while the pattern is being applied.</p>
  */
 public class RandomPattern extends AbstractPattern {
 
-    private final Random random = new Random();
-    private List<Chance> patterns = new ArrayList<Chance>();
-    private double max = 0;
+    private final boolean seeded;
+    private final long seed;
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
+    private final List<Double> chances = new ArrayList<Double>();
+    @Nullable
+    private volatile AliasTable<Pattern> table;
+
+    /**
+     * Create a new instance that picks patterns at random.
+     */
+    public RandomPattern() {
+        this.seeded = false;
+        this.seed = 0;
+    }
+
+    /**
+     * Create a new instance that picks patterns from the given seed and
+     * the position.
+     *
+     * @param seed the seed
+     */
+    public RandomPattern(long seed) {
+        this.seeded = true;
+        this.seed = seed;
+    }
 
     /**
      * Add a pattern to the weight list of patterns.
@@ -48,41 +82,34 @@ public class RandomPattern extends AbstractPattern {
      */
     public void add(Pattern pattern, double chance) {
         checkNotNull(pattern);
-        patterns.add(new Chance(pattern, chance));
-        max += chance;
+        checkArgument(chance >= 0, "chance must be >= 0");
+        patterns.add(pattern);
+        chances.add(chance);
+        table = null;
     }
 
     @Override
     public BaseBlock apply(Vector position) {
-        double r = random.nextDouble();
-        double offset = 0;
-
-        for (Chance chance : patterns) {
-            if (r <= (offset + chance.getChance()) / max) {
-                return chance.getPattern().apply(position);
-            }
-            offset += chance.getChance();
+        double r;
+        if (seeded) {
+            r = SplitMixRandom.toDouble(SplitMixRandom.hash(seed, position.getBlockX(), position.getBlockY(), position.getBlockZ()));
+        } else {
+            r = SplitMixRandom.current().nextDouble();
         }
-
-        throw new RuntimeException("ProportionalFillPattern");
+        return getTable().get(r).apply(position);
     }
 
-    private static class Chance {
-        private Pattern pattern;
-        private double chance;
-
-        private Chance(Pattern pattern, double chance) {
-            this.pattern = pattern;
-            this.chance = chance;
-        }
-
-        public Pattern getPattern() {
-            return pattern;
-        }
-
-        public double getChance() {
-            return chance;
+    private AliasTable<Pattern> getTable() {
+        AliasTable<Pattern> table = this.table;
+        if (table == null) {
+            double[] weights = new double[chances.size()];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = chances.get(i);
+            }
+            table = new AliasTable<Pattern>(patterns, weights);
+            this.table = table;
         }
+        return table;
     }
 
 }
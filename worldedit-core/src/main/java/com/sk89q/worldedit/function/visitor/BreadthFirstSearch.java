@@ -25,8 +25,12 @@
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.util.collection.LongArrayDeque;
+import com.sk89q.worldedit.util.collection.LongHashSet;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -40,12 +44,16 @@
  * <p>As an abstract implementation, this class can be used to implement
  * functionality that starts at certain points and extends outward from
  * those points.</p>
+ *
+ * <p>Positions are queued and marked as visited as packed {@code long}s,
+ * so that only positions that have not yet been visited cause a
+ * {@link BlockVector} to be created.</p>
  */
 public abstract class BreadthFirstSearch implements Operation {
 
     private final RegionFunction function;
-    private final Queue<BlockVector> queue = new ArrayDeque<BlockVector>();
-    private final Set<BlockVector> visited = new HashSet<BlockVector>();
+    private final LongArrayDeque queue = new LongArrayDeque();
+    private final LongHashSet visited = new LongHashSet();
     private final List<Vector> directions = new ArrayList<Vector>();
     private int affected = 0;
 
@@ -113,26 +121,9 @@ protected void addDiagonal() {
      * @param position the position
      */
     public void visit(Vector position) {
-        BlockVector blockVector = position.toBlockVector();
-        if (!visited.contains(blockVector)) {
-            queue.add(blockVector);
-            visited.add(blockVector);
-        }
-    }
-
-    /**
-     * Try to visit the given 'to' location.
-     *
-     * @param from the origin block
-     * @param to the block under question
-     */
-    private void visit(Vector from, Vector to) {
-        BlockVector blockVector = to.toBlockVector();
-        if (!visited.contains(blockVector)) {
-            visited.add(blockVector);
-            if (isVisitable(from, to)) {
-                queue.add(blockVector);
-            }
+        long packed = pack(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+        if (visited.add(packed)) {
+            queue.offer(packed);
         }
     }
 
@@ -157,15 +148,32 @@ public int getAffected() {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        Vector position;
-        
-        while ((position = queue.poll()) != null) {
+        int[] offsets = getOffsets();
+
+        while (!queue.isEmpty()) {
+            long packed = queue.poll();
+            int x = unpackX(packed);
+            int y = unpackY(packed);
+            int z = unpackZ(packed);
+            BlockVector position = new BlockVector(x, y, z);
+
             if (function.apply(position)) {
                 affected++;
             }
 
-            for (Vector dir : directions) {
-                visit(position, position.add(dir));
+            for (int i = 0; i < offsets.length; i += 3) {
+                int toX = x + offsets[i];
+                int toY = y + offsets[i + 1];
+                int toZ = z + offsets[i + 2];
+                long to = pack(toX, toY, toZ);
+                if (visited.add(to) && isVisitable(position, new BlockVector(toX, toY, toZ))) {
+                    queue.offer(to);
+                }
+            }
+
+            run.addBlocks(1);
+            if (!run.shouldContinue() && !queue.isEmpty()) {
+                return this;
             }
         }
 
@@ -176,4 +184,36 @@ public Operation resume(RunContext run) throws WorldEditException {
     public void cancel() {
     }
 
+    /**
+     * Get the directions as a flat array of X, Y and Z offsets.
+     *
+     * @return an array of offsets
+     */
+    private int[] getOffsets() {
+        int[] offsets = new int[directions.size() * 3];
+        int i = 0;
+        for (Vector dir : directions) {
+            offsets[i++] = dir.getBlockX();
+            offsets[i++] = dir.getBlockY();
+            offsets[i++] = dir.getBlockZ();
+        }
+        return offsets;
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((x & 0x3FFFFFFL) << 38) | ((z & 0x3FFFFFFL) << 12) | (y & 0xFFFL);
+    }
+
+    private static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    private static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    private static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
 }
\ No newline at end of file
@@ -19,20 +19,35 @@
 
 package com.sk89q.worldedit.function.visitor;
 
-import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.RegionSpanFunction;
 import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.RegionSpan;
+import com.sk89q.worldedit.regions.Regions;
+
+import java.util.Iterator;
 
 /**
  * Utility class to apply region functions to {@link com.sk89q.worldedit.regions.Region}.
+ *
+ * <p>The region is visited one span at a time, using
+ * {@link Regions#spans(Region)}, so blocks are visited by Z, then by Y,
+ * then by X. For cylinders and polygons, this is not the order of
+ * {@link Region#iterator()}, which visits them column by column.
+ * Functions that implement {@link RegionSpanFunction} are given whole
+ * spans.</p>
  */
 public class RegionVisitor implements Operation {
 
     private final Region region;
     private final RegionFunction function;
+    private Iterator<RegionSpan> spans;
+    private RegionSpan span;
+    private int nextX;
     private int affected = 0;
 
     public RegionVisitor(Region region, RegionFunction function) {
@@ -51,10 +66,42 @@ public int getAffected() {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        for (Vector pt : region) {
-            if (function.apply(pt)) {
-                affected++;
+        if (spans == null) {
+            spans = Regions.spans(region).iterator();
+        }
+
+        while (span != null || spans.hasNext()) {
+            if (span == null) {
+                span = spans.next();
+                nextX = span.getMinimumX();
+
+                if (function instanceof RegionSpanFunction) {
+                    affected += ((RegionSpanFunction) function).apply(span);
+                    run.addBlocks(span.getLength());
+                    span = null;
+                    if (!run.shouldContinue() && spans.hasNext()) {
+                        return this;
+                    }
+                    continue;
+                }
             }
+
+            int y = span.getY();
+            int z = span.getZ();
+            int maxX = span.getMaximumX();
+
+            while (nextX <= maxX) {
+                if (function.apply(new BlockVector(nextX++, y, z))) {
+                    affected++;
+                }
+
+                run.addBlocks(1);
+                if (!run.shouldContinue() && (nextX <= maxX || spans.hasNext())) {
+                    return this;
+                }
+            }
+
+            span = null;
         }
 
         return null;
@@ -65,4 +112,3 @@ public void cancel() {
     }
 
 }
-
@@ -0,0 +1,280 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.util.io.Closer;
+import com.sk89q.worldedit.util.io.compression.CompressionCodec;
+import com.sk89q.worldedit.util.io.compression.DeflateCodec;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An extension of {@link PackedBlockHistory} that moves packed changes to
+ * a compressed, append-only file once a threshold of changes held in
+ * memory has been crossed.
+ *
+ * <p>Changes are written in segments that are each compressed separately,
+ * so that undo and redo can read the file back one segment at a time in
+ * either direction. Segments are compressed with a configurable
+ * {@link CompressionCodec}. If the file cannot be written, changes are
+ * kept in memory instead.</p>
+ *
+ * <p>{@link #close()} must be called once the history is discarded so
+ * that the file is deleted. Files that are left behind, such as by a
+ * crash, are deleted by {@link #purgeStaleFiles(File)}, which is called
+ * when the configuration is loaded and before a history is first written
+ * to a folder.</p>
+ */
+public class DiskSpillingHistory extends PackedBlockHistory implements Closeable {
+
+    private static final Logger log = Logger.getLogger(DiskSpillingHistory.class.getCanonicalName());
+    private static final String FILE_PREFIX = "history";
+    private static final String FILE_SUFFIX = ".dat";
+    private static final Set<File> purgedDirectories = new HashSet<File>();
+
+    private final File directory;
+    private final int threshold;
+    private final CompressionCodec codec;
+    private final List<Segment> segments = new ArrayList<Segment>();
+    @Nullable
+    private File file;
+    private long diskSize = 0;
+    private boolean failed = false;
+
+    /**
+     * Create a new instance.
+     *
+     * @param directory the directory to create the history file in
+     * @param threshold the number of packed words to hold in memory before writing them to disk
+     */
+    public DiskSpillingHistory(File directory, int threshold) {
+        this(directory, threshold, new DeflateCodec(Deflater.BEST_SPEED));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param directory the directory to create the history file in
+     * @param threshold the number of packed words to hold in memory before writing them to disk
+     * @param codec the codec to compress segments with
+     */
+    public DiskSpillingHistory(File directory, int threshold, CompressionCodec codec) {
+        checkNotNull(directory);
+        checkArgument(threshold > 0, "threshold > 0 required");
+        checkNotNull(codec);
+        this.directory = directory;
+        this.threshold = threshold;
+        this.codec = codec;
+    }
+
+    @Override
+    public void add(Change change) {
+        super.add(change);
+
+        if (!failed && getBufferedWordCount() >= threshold) {
+            try {
+                spill();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to write history to disk; it will be kept in memory instead", e);
+                failed = true;
+            }
+        }
+    }
+
+    /**
+     * Write the words held in memory to the end of the history file.
+     *
+     * @throws IOException thrown on I/O error
+     */
+    private void spill() throws IOException {
+        if (file == null) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Could not create the history folder " + directory.getAbsolutePath());
+            }
+            purgeStaleFiles(directory);
+            file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, directory);
+        }
+
+        LongBuffer words = getBufferedWords();
+        long offset = file.length();
+        Closer closer = Closer.create();
+        try {
+            FileOutputStream fos = closer.register(new FileOutputStream(file, true));
+            OutputStream cos = closer.register(codec.compress(fos));
+            DataOutputStream out = closer.register(new DataOutputStream(new BufferedOutputStream(cos)));
+            for (int i = 0; i < words.limit(); i++) {
+                out.writeLong(words.get(i));
+            }
+        } finally {
+            closer.close();
+        }
+
+        segments.add(new Segment(offset, words.limit()));
+        diskSize = file.length();
+        clearBufferedWords();
+    }
+
+    /**
+     * Read a segment back from the history file.
+     *
+     * @param segment the segment
+     * @return the words of the segment
+     * @throws IOException thrown on I/O error
+     */
+    private LongBuffer read(Segment segment) throws IOException {
+        checkNotNull(file);
+        long[] words = new long[segment.wordCount];
+        Closer closer = Closer.create();
+        try {
+            FileInputStream fis = closer.register(new FileInputStream(file));
+            fis.getChannel().position(segment.offset);
+            DataInputStream in = closer.register(new DataInputStream(new BufferedInputStream(codec.decompress(fis))));
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+        } finally {
+            closer.close();
+        }
+        return LongBuffer.wrap(words);
+    }
+
+    @Override
+    protected Iterator<LongBuffer> getSegments(boolean reverse) {
+        Iterator<LongBuffer> stored = Iterators.transform(
+                (reverse ? Lists.reverse(segments) : segments).iterator(),
+                new Function<Segment, LongBuffer>() {
+                    @Override
+                    public LongBuffer apply(Segment segment) {
+                        try {
+                            return read(segment);
+                        } catch (IOException e) {
+                            throw new RuntimeException("Failed to read history from " + file, e);
+                        }
+                    }
+                });
+
+        Iterator<LongBuffer> buffered = super.getSegments(reverse);
+        return reverse ? Iterators.concat(buffered, stored) : Iterators.concat(stored, buffered);
+    }
+
+    /**
+     * Get the size of the history file.
+     *
+     * @return the size in bytes
+     */
+    public long getDiskSize() {
+        return diskSize;
+    }
+
+    /**
+     * Delete the history file. The history must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (file != null) {
+            if (!file.delete()) {
+                log.log(Level.WARNING, "Failed to delete the history file " + file.getAbsolutePath());
+            }
+            file = null;
+            segments.clear();
+            diskSize = 0;
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            // Only for histories that were never remembered by a session,
+            // which otherwise closes them when they are discarded
+            close();
+        } finally {
+            super.finalize();
+        }
+    }
+
+    /**
+     * Delete the history files in the given folder that were left behind
+     * by a previous run, if this has not already been done.
+     *
+     * <p>Files are only deleted the first time that a folder is purged, so
+     * that the files of histories that are in use are kept.</p>
+     *
+     * @param directory the folder
+     */
+    public static void purgeStaleFiles(File directory) {
+        checkNotNull(directory);
+
+        synchronized (purgedDirectories) {
+            if (!purgedDirectories.add(directory.getAbsoluteFile())) {
+                return;
+            }
+        }
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (file.isFile() && name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX) && !file.delete()) {
+                    log.log(Level.WARNING, "Failed to delete the old history file " + file.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * A range of the history file that holds one compressed segment.
+     */
+    private static class Segment {
+        private final long offset;
+        private final int wordCount;
+
+        private Segment(long offset, int wordCount) {
+            this.offset = offset;
+            this.wordCount = wordCount;
+        }
+    }
+
+}
@@ -0,0 +1,368 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.google.common.collect.Iterators;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An extension of {@link ArrayListHistory} that packs {@link BlockChange}s
+ * into a primitive {@code long} array.
+ *
+ * <p>Each block change is usually stored in a single word that holds the
+ * offset from the position of the previous change as well as the ID and
+ * data value of both the previous and current block. When the offset is
+ * too large to fit, a pair of "jump" words that store the absolute
+ * positions before and after the jump is written first. Blocks that
+ * cannot be represented by an ID and data value alone (blocks with NBT
+ * data or wildcard data values) are additionally kept in sparse maps.</p>
+ *
+ * <p>Compared to {@link BlockOptimizedHistory}, this uses roughly
+ * an order of magnitude less memory per changed block.</p>
+ */
+public class PackedBlockHistory extends ArrayListHistory {
+
+    private static final long JUMP_FLAG = 1L << 63;
+
+    // Absolute positions (jump words)
+    private static final int ABS_XZ_BITS = 26;
+    private static final int ABS_Y_BITS = 11;
+    private static final int ABS_Z_SHIFT = ABS_XZ_BITS;
+    private static final int ABS_Y_SHIFT = ABS_XZ_BITS * 2;
+
+    // Relative positions and blocks (change words)
+    private static final int BLOCK_BITS = 16;
+    private static final int DELTA_XZ_BITS = 11;
+    private static final int DELTA_Y_BITS = 9;
+    private static final int DELTA_X_SHIFT = BLOCK_BITS * 2;
+    private static final int DELTA_Z_SHIFT = DELTA_X_SHIFT + DELTA_XZ_BITS;
+    private static final int DELTA_Y_SHIFT = DELTA_Z_SHIFT + DELTA_XZ_BITS;
+
+    private long[] words = new long[16];
+    private int wordCount = 0;
+    private int changeCount = 0;
+    private int bufferedChangeCount = 0;
+    private int lastX;
+    private int lastY;
+    private int lastZ;
+    private final Map<Integer, BaseBlock> previousBlocks = new HashMap<Integer, BaseBlock>();
+    private final Map<Integer, BaseBlock> currentBlocks = new HashMap<Integer, BaseBlock>();
+
+    @Override
+    public void add(Change change) {
+        checkNotNull(change);
+
+        if (change instanceof BlockChange) {
+            BlockChange blockChange = (BlockChange) change;
+            BlockVector position = blockChange.getPosition();
+            int x = position.getBlockX();
+            int y = position.getBlockY();
+            int z = position.getBlockZ();
+
+            if (fits(x, ABS_XZ_BITS) && fits(y, ABS_Y_BITS) && fits(z, ABS_XZ_BITS)) {
+                addBlockChange(x, y, z, blockChange.getPrevious(), blockChange.getCurrent());
+                return;
+            }
+        }
+
+        super.add(change);
+    }
+
+    private void addBlockChange(int x, int y, int z, BaseBlock previous, BaseBlock current) {
+        int dx = x - lastX;
+        int dy = y - lastY;
+        int dz = z - lastZ;
+
+        if (!fits(dx, DELTA_XZ_BITS) || !fits(dy, DELTA_Y_BITS) || !fits(dz, DELTA_XZ_BITS)) {
+            ensureCapacity(3);
+            words[wordCount++] = JUMP_FLAG | packAbsolute(x, y, z);
+            words[wordCount++] = JUMP_FLAG | packAbsolute(lastX, lastY, lastZ);
+            dx = dy = dz = 0;
+        } else {
+            ensureCapacity(1);
+        }
+
+        words[wordCount++] = pack(dx, DELTA_XZ_BITS, DELTA_X_SHIFT)
+                | pack(dz, DELTA_XZ_BITS, DELTA_Z_SHIFT)
+                | pack(dy, DELTA_Y_BITS, DELTA_Y_SHIFT)
+                | ((long) packBlock(previous, previousBlocks) << BLOCK_BITS)
+                | packBlock(current, currentBlocks);
+
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+        changeCount++;
+        bufferedChangeCount++;
+    }
+
+    /**
+     * Pack the ID and data value of a block, remembering the full block
+     * if it cannot be reconstructed from those alone.
+     *
+     * @param block the block
+     * @param fullBlocks the map of full blocks to add to
+     * @return the packed block
+     */
+    private int packBlock(BaseBlock block, Map<Integer, BaseBlock> fullBlocks) {
+        if (block.hasNbtData() || block.getData() < 0) {
+            fullBlocks.put(changeCount, block);
+            return 0;
+        }
+        return (block.getId() << 4) | block.getData();
+    }
+
+    private BaseBlock unpackBlock(int packed, int index, Map<Integer, BaseBlock> fullBlocks) {
+        if (!fullBlocks.isEmpty()) {
+            BaseBlock block = fullBlocks.get(index);
+            if (block != null) {
+                return block;
+            }
+        }
+        return new BaseBlock(packed >>> 4, packed & 0xF);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (wordCount + extra > words.length) {
+            words = Arrays.copyOf(words, Math.max(wordCount + extra, words.length + (words.length >> 1)));
+        }
+    }
+
+    @Override
+    public Iterator<Change> forwardIterator() {
+        return Iterators.concat(super.forwardIterator(), new ForwardIterator(getSegments(false)));
+    }
+
+    @Override
+    public Iterator<Change> backwardIterator() {
+        return Iterators.concat(super.backwardIterator(), new BackwardIterator(getSegments(true)));
+    }
+
+    /**
+     * Get the segments of packed words that make up this history.
+     *
+     * <p>Subclasses that move words out of memory (see
+     * {@link #clearBufferedWords()}) must return those segments followed by
+     * {@link #getBufferedWords()}, or the reverse if {@code reverse} is
+     * set. A segment must only contain whole changes.</p>
+     *
+     * @param reverse true to return the segments from the newest to the oldest
+     * @return an iterator of segments
+     */
+    protected Iterator<LongBuffer> getSegments(boolean reverse) {
+        return Iterators.singletonIterator(getBufferedWords());
+    }
+
+    /**
+     * Get the words that are currently held in memory.
+     *
+     * @return a buffer of words
+     */
+    protected LongBuffer getBufferedWords() {
+        return LongBuffer.wrap(words, 0, wordCount);
+    }
+
+    /**
+     * Get the number of words that are currently held in memory.
+     *
+     * @return the number of words
+     */
+    protected int getBufferedWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Forget the words that are currently held in memory, after a
+     * subclass has stored them elsewhere.
+     */
+    protected void clearBufferedWords() {
+        words = new long[16];
+        wordCount = 0;
+        bufferedChangeCount = 0;
+    }
+
+    /**
+     * Get the number of changes that are currently held in memory.
+     *
+     * @return the number of changes
+     */
+    public int getMemoryChangeCount() {
+        return super.size() + bufferedChangeCount;
+    }
+
+    @Override
+    public int size() {
+        return super.size() + changeCount;
+    }
+
+    private static boolean fits(int value, int bits) {
+        return value >= -(1 << (bits - 1)) && value < (1 << (bits - 1));
+    }
+
+    private static long pack(int value, int bits, int shift) {
+        return (value & ((1L << bits) - 1)) << shift;
+    }
+
+    private static int unpack(long word, int bits, int shift) {
+        return (int) ((word << (64 - shift - bits)) >> (64 - bits));
+    }
+
+    private static long packAbsolute(int x, int y, int z) {
+        return pack(x, ABS_XZ_BITS, 0) | pack(z, ABS_XZ_BITS, ABS_Z_SHIFT) | pack(y, ABS_Y_BITS, ABS_Y_SHIFT);
+    }
+
+    private static BlockVector unpackAbsolute(long word) {
+        return new BlockVector(
+                unpack(word, ABS_XZ_BITS, 0),
+                unpack(word, ABS_Y_BITS, ABS_Y_SHIFT),
+                unpack(word, ABS_XZ_BITS, ABS_Z_SHIFT));
+    }
+
+    private BlockChange createChange(int x, int y, int z, long word, int index) {
+        return new BlockChange(new BlockVector(x, y, z),
+                unpackBlock((int) (word >>> BLOCK_BITS) & 0xFFFF, index, previousBlocks),
+                unpackBlock((int) word & 0xFFFF, index, currentBlocks));
+    }
+
+    /**
+     * Walks the packed changes from the first to the last.
+     */
+    private class ForwardIterator implements Iterator<Change> {
+        private final Iterator<LongBuffer> segments;
+        private LongBuffer segment;
+        private int next = 0;
+        private int index = 0;
+        private int x;
+        private int y;
+        private int z;
+
+        private ForwardIterator(Iterator<LongBuffer> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (segment == null || next >= segment.limit()) {
+                if (!segments.hasNext()) {
+                    return false;
+                }
+                segment = segments.next();
+                next = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            long word = segment.get(next++);
+            if ((word & JUMP_FLAG) != 0) {
+                BlockVector position = unpackAbsolute(word);
+                x = position.getBlockX();
+                y = position.getBlockY();
+                z = position.getBlockZ();
+                next++; // Skip the position before the jump
+                word = segment.get(next++);
+            }
+
+            x += unpack(word, DELTA_XZ_BITS, DELTA_X_SHIFT);
+            y += unpack(word, DELTA_Y_BITS, DELTA_Y_SHIFT);
+            z += unpack(word, DELTA_XZ_BITS, DELTA_Z_SHIFT);
+            return createChange(x, y, z, word, index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Walks the packed changes from the last to the first.
+     */
+    private class BackwardIterator implements Iterator<Change> {
+        private final Iterator<LongBuffer> segments;
+        private LongBuffer segment;
+        private int next = -1;
+        private int index = changeCount - 1;
+        private int x = lastX;
+        private int y = lastY;
+        private int z = lastZ;
+
+        private BackwardIterator(Iterator<LongBuffer> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (segment == null || next < 0) {
+                if (!segments.hasNext()) {
+                    return false;
+                }
+                segment = segments.next();
+                next = segment.limit() - 1;
+            }
+            return true;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            long word = segment.get(next--);
+            Change change = createChange(x, y, z, word, index--);
+            x -= unpack(word, DELTA_XZ_BITS, DELTA_X_SHIFT);
+            y -= unpack(word, DELTA_Y_BITS, DELTA_Y_SHIFT);
+            z -= unpack(word, DELTA_XZ_BITS, DELTA_Z_SHIFT);
+
+            if (next >= 0 && (segment.get(next) & JUMP_FLAG) != 0) {
+                BlockVector position = unpackAbsolute(segment.get(next));
+                x = position.getBlockX();
+                y = position.getBlockY();
+                z = position.getBlockZ();
+                next -= 2; // Skip the position after the jump
+            }
+
+            return change;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
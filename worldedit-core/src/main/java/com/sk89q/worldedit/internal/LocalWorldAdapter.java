@@ -35,6 +35,8 @@
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.TreeGenerator.TreeType;
+import com.sk89q.worldedit.world.ColumnSnapshot;
+import com.sk89q.worldedit.world.SectionBatch;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.registry.WorldData;
@@ -99,6 +101,16 @@ public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight
         return world.setBlock(position, block, notifyAndLight);
     }
 
+    @Override
+    public int setBlocks(SectionBatch batch, boolean notifyAndLight) throws WorldEditException {
+        return world.setBlocks(batch, notifyAndLight);
+    }
+
+    @Override
+    public ColumnSnapshot getColumnSnapshot(int chunkX, int chunkZ, int minY, int maxY) {
+        return world.getColumnSnapshot(chunkX, chunkZ, minY, maxY);
+    }
+
     @Override
     public int getBlockLightLevel(Vector position) {
         return world.getBlockLightLevel(position);
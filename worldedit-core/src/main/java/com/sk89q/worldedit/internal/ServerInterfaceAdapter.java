@@ -72,6 +72,11 @@ public int schedule(long delay, long period, Runnable task) {
         return platform.schedule(delay, period, task);
     }
 
+    @Override
+    public void cancelTask(int taskId) {
+        platform.cancelTask(taskId);
+    }
+
     @Override
     public List<? extends World> getWorlds() {
         return platform.getWorlds();
@@ -22,14 +22,19 @@
 import com.sk89q.worldedit.internal.expression.lexer.Lexer;
 import com.sk89q.worldedit.internal.expression.lexer.tokens.Token;
 import com.sk89q.worldedit.internal.expression.parser.Parser;
+import com.sk89q.worldedit.internal.expression.runtime.CompiledExpression;
 import com.sk89q.worldedit.internal.expression.runtime.Constant;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.ExpressionAnalyzer;
+import com.sk89q.worldedit.internal.expression.runtime.ExpressionCompiler;
 import com.sk89q.worldedit.internal.expression.runtime.ExpressionEnvironment;
 import com.sk89q.worldedit.internal.expression.runtime.Functions;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
 import com.sk89q.worldedit.internal.expression.runtime.ReturnException;
 import com.sk89q.worldedit.internal.expression.runtime.Variable;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,7 +62,8 @@
  * {@code Expression.compile("expression here", "var1", "var2"...)}.
  * If you wish to run the equation multiple times, you can then optimize it,
  * by calling {@link #optimize()}. You can then run the equation as many times
- * as you want by calling {@link #evaluate(double...)}. You do not need to
+ * as you want by calling {@link #evaluate(double...)}. Optimized expressions
+ * are also compiled to bytecode where possible. You do not need to
  * pass values for all variables specified while compiling.
  * To query variables after evaluation, you can use
  * {@link #getVariable(String, boolean)}. To get a value out of these, use
@@ -73,6 +79,8 @@ public class Expression {
     private final Map<String, RValue> variables = new HashMap<String, RValue>();
     private final String[] variableNames;
     private RValue root;
+    private CompiledExpression compiled;
+    private ExpressionAnalyzer analyzer;
     private final Functions functions = new Functions();
     private ExpressionEnvironment environment;
 
@@ -113,9 +121,13 @@ public double evaluate(double... values) throws EvaluationException {
             ((Variable) invokable).value = values[i];
         }
 
+        if (compiled != null && !compiled.hasInterpretedNodes()) {
+            return compiled.evaluate();
+        }
+
         pushInstance();
         try {
-            return root.getValue();
+            return compiled != null ? compiled.evaluate() : root.getValue();
         } catch (ReturnException e) {
             return e.getValue();
         } finally {
@@ -125,6 +137,63 @@ public double evaluate(double... values) throws EvaluationException {
 
     public void optimize() throws EvaluationException {
         root = root.optimize();
+        analyzer = null;
+        compiled = ExpressionCompiler.compile(root);
+    }
+
+    /**
+     * Get the compiled form of this expression, which is only available
+     * after {@link #optimize()} has compiled it.
+     *
+     * @return the compiled expression, or null
+     */
+    @Nullable
+    CompiledExpression getCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Get the root of the expression tree, which is the optimized tree
+     * once {@link #optimize()} has been called.
+     *
+     * @return the root node
+     */
+    RValue getRoot() {
+        return root;
+    }
+
+    /**
+     * Return whether every evaluation of this expression is independent of
+     * the evaluations before it, so that separately compiled copies of it
+     * can be evaluated on different threads with the same results.
+     *
+     * @return true if the expression is stateless
+     */
+    public boolean isStateless() {
+        return getAnalyzer().isStateless();
+    }
+
+    /**
+     * Return whether a stateless expression reads or assigns the given
+     * variable.
+     *
+     * @param name the name of the variable
+     * @return true if the variable is used
+     */
+    public boolean isReferenced(String name) {
+        RValue variable = variables.get(name);
+        return variable != null && getAnalyzer().isReferenced(variable);
+    }
+
+    private ExpressionAnalyzer getAnalyzer() {
+        if (analyzer == null) {
+            List<RValue> inputs = new ArrayList<RValue>();
+            for (String variableName : variableNames) {
+                inputs.add(variables.get(variableName));
+            }
+            analyzer = new ExpressionAnalyzer(root, inputs);
+        }
+        return analyzer;
     }
 
     @Override
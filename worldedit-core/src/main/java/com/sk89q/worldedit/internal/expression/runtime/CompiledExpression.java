@@ -0,0 +1,59 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+/**
+ * Base class of the classes generated by {@link ExpressionCompiler}.
+ *
+ * <p>Subclasses keep the expression's variables in local variable slots
+ * while evaluating and write them back to {@link #variables} before
+ * returning or evaluating one of the {@link #nodes} that could not be
+ * compiled.</p>
+ */
+public abstract class CompiledExpression {
+
+    protected final Variable[] variables;
+    protected final RValue[] nodes;
+
+    protected CompiledExpression(Variable[] variables, RValue[] nodes) {
+        this.variables = variables;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Return whether parts of the expression are still interpreted, in
+     * which case the expression has to be made available through
+     * {@link com.sk89q.worldedit.internal.expression.Expression#getInstance()}.
+     *
+     * @return true if parts are interpreted
+     */
+    public boolean hasInterpretedNodes() {
+        return nodes.length > 0;
+    }
+
+    /**
+     * Evaluate the expression.
+     *
+     * @return the result
+     * @throws EvaluationException thrown on an error
+     */
+    public abstract double evaluate() throws EvaluationException;
+
+}
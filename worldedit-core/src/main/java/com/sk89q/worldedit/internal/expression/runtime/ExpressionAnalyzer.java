@@ -0,0 +1,178 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import com.sk89q.worldedit.internal.expression.runtime.Function.Dynamic;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Finds out whether an expression keeps state between evaluations.
+ *
+ * <p>An expression is stateless if it calls no dynamic function other
+ * than {@code random} and {@code randint}, and if every variable that is
+ * not an input is assigned before it is read. Loops might not run at all,
+ * so variables that are only assigned in a loop are not counted as
+ * assigned after it. Nodes that are not understood make the expression
+ * stateful.</p>
+ */
+public final class ExpressionAnalyzer {
+
+    private final Set<RValue> referenced = Collections.newSetFromMap(new IdentityHashMap<RValue, Boolean>());
+    private final boolean stateless;
+
+    /**
+     * Analyze an expression tree.
+     *
+     * @param root the root node
+     * @param inputs the variables that are set before every evaluation
+     */
+    public ExpressionAnalyzer(RValue root, Collection<? extends RValue> inputs) {
+        Set<RValue> assigned = Collections.newSetFromMap(new IdentityHashMap<RValue, Boolean>());
+        assigned.addAll(inputs);
+        stateless = visit(root, assigned);
+    }
+
+    /**
+     * Return whether every evaluation is independent of the evaluations
+     * before it.
+     *
+     * @return true if stateless
+     */
+    public boolean isStateless() {
+        return stateless;
+    }
+
+    /**
+     * Return whether the given variable is read or assigned anywhere in the
+     * part of the expression that was analyzed.
+     *
+     * @param variable the variable
+     * @return true if referenced
+     */
+    public boolean isReferenced(RValue variable) {
+        return referenced.contains(variable);
+    }
+
+    private boolean visit(RValue node, Set<RValue> assigned) {
+        if (node == null || node instanceof Constant || node instanceof Break) {
+            return true;
+        }
+
+        if (node instanceof Variable) {
+            referenced.add(node);
+            return assigned.contains(node);
+        }
+
+        if (node instanceof Function) {
+            Function function = (Function) node;
+            String name = function.method.getName();
+            RValue[] args = function.args;
+            if (function.method.isAnnotationPresent(Dynamic.class) && !name.equals("random") && !name.equals("randint")) {
+                return false;
+            }
+
+            if (name.equals("ass") && args[0] instanceof Variable) {
+                referenced.add(args[0]);
+                if (!visit(args[1], assigned)) {
+                    return false;
+                }
+                assigned.add(args[0]);
+                return true;
+            }
+
+            // The second operand of a logical operator might not be evaluated
+            boolean lazy = name.equals("and") || name.equals("or");
+            for (int i = 0; i < args.length; i++) {
+                if (!visit(args[i], lazy && i > 0 ? copy(assigned) : assigned)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (node instanceof Sequence) {
+            for (RValue statement : ((Sequence) node).sequence) {
+                if (!visit(statement, assigned)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (node instanceof Conditional) {
+            Conditional conditional = (Conditional) node;
+            if (!visit(conditional.condition, assigned)) {
+                return false;
+            }
+            Set<RValue> truePart = copy(assigned);
+            Set<RValue> falsePart = copy(assigned);
+            if (!visit(conditional.truePart, truePart) || !visit(conditional.falsePart, falsePart)) {
+                return false;
+            }
+            truePart.retainAll(falsePart);
+            assigned.addAll(truePart);
+            return true;
+        }
+
+        if (node instanceof While) {
+            While loop = (While) node;
+            Set<RValue> inner = copy(assigned);
+            return visit(loop.condition, inner) && visit(loop.body, inner);
+        }
+
+        if (node instanceof For) {
+            For loop = (For) node;
+            if (!visit(loop.init, assigned)) {
+                return false;
+            }
+            Set<RValue> inner = copy(assigned);
+            return visit(loop.condition, inner) && visit(loop.body, inner) && visit(loop.increment, inner);
+        }
+
+        if (node instanceof SimpleFor) {
+            SimpleFor loop = (SimpleFor) node;
+            if (!(loop.counter instanceof Variable) || !visit(loop.first, assigned) || !visit(loop.last, assigned)) {
+                return false;
+            }
+            Set<RValue> inner = copy(assigned);
+            referenced.add(loop.counter);
+            inner.add(loop.counter);
+            return visit(loop.body, inner);
+        }
+
+        if (node instanceof Return) {
+            return visit(((Return) node).value, assigned);
+        }
+
+        return false;
+    }
+
+    private static Set<RValue> copy(Set<RValue> assigned) {
+        Set<RValue> copy = Collections.newSetFromMap(new IdentityHashMap<RValue, Boolean>());
+        copy.addAll(assigned);
+        return copy;
+    }
+
+}
@@ -0,0 +1,751 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles an optimized expression tree into a JVM class.
+ *
+ * <p>Constants, variables, sequences, conditionals, operators and the
+ * functions that wrap a {@link Math} method are translated to bytecode.
+ * Variables are kept in local variable slots, and functions are called
+ * directly instead of by reflection. Any other node, such as a loop or
+ * a function with side effects, is kept as a node and interpreted when
+ * it is reached.</p>
+ *
+ * <p>Classes are generated for class file version 50, so that no stack
+ * map frames have to be computed.</p>
+ */
+public final class ExpressionCompiler {
+
+    private static final Logger log = Logger.getLogger(ExpressionCompiler.class.getCanonicalName());
+
+    private static final int MAX_VARIABLES = 100;
+    private static final int MAX_CODE_LENGTH = 32767;
+
+    private static final String CLASS_NAME = "com/sk89q/worldedit/internal/expression/runtime/GeneratedExpression";
+    private static final String SUPER_NAME = "com/sk89q/worldedit/internal/expression/runtime/CompiledExpression";
+    private static final String VARIABLE_NAME = "com/sk89q/worldedit/internal/expression/runtime/Variable";
+    private static final String RVALUE_NAME = "com/sk89q/worldedit/internal/expression/runtime/RValue";
+    private static final String VARIABLES_DESC = "[L" + VARIABLE_NAME + ";";
+    private static final String NODES_DESC = "[L" + RVALUE_NAME + ";";
+
+    private static final Map<String, String> unaryMath = new HashMap<String, String>();
+    private static final Map<String, String> binaryMath = new HashMap<String, String>();
+
+    static {
+        for (String name : new String[] { "sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh",
+                "sqrt", "cbrt", "abs", "ceil", "floor", "rint", "exp", "log10" }) {
+            unaryMath.put(name, name);
+        }
+        unaryMath.put("ln", "log");
+        unaryMath.put("log", "log");
+        binaryMath.put("atan2", "atan2");
+        binaryMath.put("min", "min");
+        binaryMath.put("max", "max");
+    }
+
+    private final ConstantPool pool = new ConstantPool();
+    private final Map<Variable, Integer> slots = new IdentityHashMap<Variable, Integer>();
+    private final List<Variable> variables = new ArrayList<Variable>();
+    private final List<RValue> nodes = new ArrayList<RValue>();
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Compile the given expression tree.
+     *
+     * @param root the root of the tree, which should already be optimized
+     * @return the compiled expression, or null if the tree could not be compiled
+     */
+    @Nullable
+    public static CompiledExpression compile(RValue root) {
+        try {
+            return new ExpressionCompiler().compileRoot(root);
+        } catch (UnsupportedOperationException e) {
+            log.log(Level.FINE, "Not compiling expression: " + e.getMessage());
+            return null;
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Failed to compile expression; it will be interpreted instead", e);
+            return null;
+        } catch (LinkageError e) {
+            log.log(Level.WARNING, "Failed to load compiled expression; it will be interpreted instead", e);
+            return null;
+        }
+    }
+
+    private CompiledExpression compileRoot(RValue root) throws Exception {
+        // The first pass finds all variables, so that every variable is
+        // stored and loaded again around each interpreted node
+        emit(new Code(), root);
+        nodes.clear();
+
+        Code body = new Code();
+        emit(body, root);
+
+        if (nodes.size() == 1 && nodes.get(0) == root) {
+            throw new UnsupportedOperationException("nothing can be compiled");
+        }
+        if (variables.size() > MAX_VARIABLES) {
+            throw new UnsupportedOperationException("too many variables");
+        }
+
+        // Load all variables, run the body and store all variables
+        Code code = new Code();
+        loadVariables(code);
+        code.append(body);
+        storeVariables(code);
+        code.op(0xaf, -2); // dreturn
+
+        if (code.length() > MAX_CODE_LENGTH) {
+            throw new UnsupportedOperationException("expression is too large");
+        }
+
+        Code constructor = new Code();
+        constructor.op(0x2a, 1); // aload_0
+        constructor.op(0x2b, 1); // aload_1
+        constructor.op(0x2c, 1); // aload_2
+        constructor.op(0xb7, -3); // invokespecial
+        constructor.u2(pool.methodRef(SUPER_NAME, "<init>", "(" + VARIABLES_DESC + NODES_DESC + ")V"));
+        constructor.op(0xb1, 0); // return
+
+        byte[] bytes = writeClass(constructor, code, 1 + 2 * variables.size());
+        Class<?> type = new GeneratedClassLoader().define(bytes);
+
+        return (CompiledExpression) type.getConstructor(Variable[].class, RValue[].class).newInstance(
+                variables.toArray(new Variable[variables.size()]), nodes.toArray(new RValue[nodes.size()]));
+    }
+
+    private void emit(Code code, RValue node) throws EvaluationException {
+        if (node instanceof Constant) {
+            pushDouble(code, node.getValue());
+        } else if (node instanceof Variable) {
+            loadLocal(code, getSlot((Variable) node));
+        } else if (node instanceof Sequence) {
+            RValue[] sequence = ((Sequence) node).sequence;
+            if (sequence.length == 0) {
+                code.op(0x0e, 2); // dconst_0
+            }
+            for (int i = 0; i < sequence.length; i++) {
+                emit(code, sequence[i]);
+                if (i < sequence.length - 1) {
+                    code.op(0x58, -2); // pop2
+                }
+            }
+        } else if (node instanceof Conditional) {
+            Conditional conditional = (Conditional) node;
+            Label otherwise = new Label();
+            Label end = new Label();
+            emitTest(code, conditional.condition);
+            code.jump(0x9e, -1, otherwise); // ifle
+            emit(code, conditional.truePart);
+            code.jump(0xa7, 0, end); // goto
+            code.mark(otherwise);
+            if (conditional.falsePart != null) {
+                emit(code, conditional.falsePart);
+            } else {
+                code.op(0x0e, 2); // dconst_0
+            }
+            code.mark(end);
+        } else if (node instanceof Function && !(node instanceof LValueFunction) && emitFunction(code, (Function) node)) {
+            return;
+        } else {
+            emitInterpreted(code, node);
+        }
+    }
+
+    private boolean emitFunction(Code code, Function function) throws EvaluationException {
+        Method method = function.method;
+        RValue[] args = function.args;
+        String name = method.getName();
+
+        if (method.getDeclaringClass() == Functions.class) {
+            if (args.length == 1 && unaryMath.containsKey(name)) {
+                emit(code, args[0]);
+                invokeMath(code, unaryMath.get(name), "(D)D", 0);
+                return true;
+            } else if (args.length == 1 && name.equals("round")) {
+                emit(code, args[0]);
+                invokeMath(code, "round", "(D)J", 0);
+                code.op(0x8a, 0); // l2d
+                return true;
+            } else if (args.length == 2 && binaryMath.containsKey(name)) {
+                emit(code, args[0]);
+                emit(code, args[1]);
+                invokeMath(code, binaryMath.get(name), "(DD)D", -2);
+                return true;
+            } else if (args.length == 3 && (name.equals("min") || name.equals("max"))) {
+                emit(code, args[0]);
+                emit(code, args[1]);
+                emit(code, args[2]);
+                invokeMath(code, name, "(DD)D", -2);
+                invokeMath(code, name, "(DD)D", -2);
+                return true;
+            }
+            return false;
+        }
+
+        if (method.getDeclaringClass() != Operators.class) {
+            return false;
+        }
+
+        if (args.length == 1) {
+            return emitUnaryOperator(code, name, args[0]);
+        } else if (args.length == 2) {
+            return emitBinaryOperator(code, name, args[0], args[1]);
+        } else {
+            return false;
+        }
+    }
+
+    private boolean emitUnaryOperator(Code code, String name, RValue argument) throws EvaluationException {
+        if (name.equals("neg")) {
+            emit(code, argument);
+            code.op(0x77, 0); // dneg
+        } else if (name.equals("not")) {
+            emitTest(code, argument);
+            emitBoolean(code, 0x9d, -1); // ifgt -> 0
+        } else if (name.equals("inv")) {
+            emit(code, argument);
+            code.op(0x8f, 0); // d2l
+            pushLong(code, -1);
+            code.op(0x83, -2); // lxor
+            code.op(0x8a, 0); // l2d
+        } else if (argument instanceof Variable && (name.equals("inc") || name.equals("dec"))) {
+            int slot = getSlot((Variable) argument);
+            loadLocal(code, slot);
+            code.op(0x0f, 2); // dconst_1
+            code.op(name.equals("inc") ? 0x63 : 0x67, -2); // dadd or dsub
+            code.op(0x5c, 2); // dup2
+            storeLocal(code, slot);
+        } else if (argument instanceof Variable && (name.equals("postinc") || name.equals("postdec"))) {
+            int slot = getSlot((Variable) argument);
+            loadLocal(code, slot);
+            code.op(0x5c, 2); // dup2
+            code.op(0x0f, 2); // dconst_1
+            code.op(name.equals("postinc") ? 0x63 : 0x67, -2); // dadd or dsub
+            storeLocal(code, slot);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean emitBinaryOperator(Code code, String name, RValue lhs, RValue rhs) throws EvaluationException {
+        int arithmetic = getArithmeticOpcode(name);
+        if (arithmetic != -1) {
+            emit(code, lhs);
+            emit(code, rhs);
+            emitArithmetic(code, arithmetic);
+            return true;
+        }
+
+        if (lhs instanceof Variable && (name.equals("ass") || name.equals("aadd") || name.equals("asub")
+                || name.equals("amul") || name.equals("adiv") || name.equals("amod") || name.equals("aexp"))) {
+            int slot = getSlot((Variable) lhs);
+            if (name.equals("ass")) {
+                emit(code, rhs);
+            } else {
+                int compound = getArithmeticOpcode(name.equals("aexp") ? "pow" : name.substring(1));
+                loadLocal(code, slot);
+                emit(code, rhs);
+                emitArithmetic(code, compound);
+            }
+            code.op(0x5c, 2); // dup2
+            storeLocal(code, slot);
+            return true;
+        }
+
+        if (name.equals("lth") || name.equals("leq") || name.equals("gth") || name.equals("geq")
+                || name.equals("equ") || name.equals("neq")) {
+            emit(code, lhs);
+            emit(code, rhs);
+            if (name.equals("lth")) {
+                code.op(0x98, -3); // dcmpg
+                emitBoolean(code, 0x9c, -1); // ifge -> 0
+            } else if (name.equals("leq")) {
+                code.op(0x98, -3); // dcmpg
+                emitBoolean(code, 0x9d, -1); // ifgt -> 0
+            } else if (name.equals("gth")) {
+                code.op(0x97, -3); // dcmpl
+                emitBoolean(code, 0x9e, -1); // ifle -> 0
+            } else if (name.equals("geq")) {
+                code.op(0x97, -3); // dcmpl
+                emitBoolean(code, 0x9b, -1); // iflt -> 0
+            } else if (name.equals("equ")) {
+                code.op(0x97, -3); // dcmpl
+                emitBoolean(code, 0x9a, -1); // ifne -> 0
+            } else {
+                code.op(0x97, -3); // dcmpl
+                emitBoolean(code, 0x99, -1); // ifeq -> 0
+            }
+            return true;
+        }
+
+        if (name.equals("and") || name.equals("or")) {
+            boolean and = name.equals("and");
+            Label shortCircuit = new Label();
+            Label end = new Label();
+            emitTest(code, lhs);
+            code.jump(and ? 0x9e : 0x9d, -1, shortCircuit); // ifle or ifgt
+            emitTest(code, rhs);
+            code.jump(and ? 0x9e : 0x9d, -1, shortCircuit); // ifle or ifgt
+            code.op(and ? 0x0f : 0x0e, 2); // dconst_1 or dconst_0
+            code.jump(0xa7, 0, end); // goto
+            code.mark(shortCircuit);
+            code.op(and ? 0x0e : 0x0f, 2); // dconst_0 or dconst_1
+            code.mark(end);
+            return true;
+        }
+
+        if (name.equals("shl") || name.equals("shr")) {
+            emit(code, lhs);
+            code.op(0x8f, 0); // d2l
+            emit(code, rhs);
+            code.op(0x8f, 0); // d2l
+            code.op(0x88, -1); // l2i
+            code.op(name.equals("shl") ? 0x79 : 0x7b, -1); // lshl or lshr
+            code.op(0x8a, 0); // l2d
+            return true;
+        }
+
+        return false;
+    }
+
+    private static int getArithmeticOpcode(String name) {
+        if (name.equals("add")) {
+            return 0x63; // dadd
+        } else if (name.equals("sub")) {
+            return 0x67; // dsub
+        } else if (name.equals("mul")) {
+            return 0x6b; // dmul
+        } else if (name.equals("div")) {
+            return 0x6f; // ddiv
+        } else if (name.equals("mod")) {
+            return 0x73; // drem
+        } else if (name.equals("pow")) {
+            return 0; // Math.pow
+        } else {
+            return -1;
+        }
+    }
+
+    private void emitArithmetic(Code code, int opcode) {
+        if (opcode == 0) {
+            invokeMath(code, "pow", "(DD)D", -2);
+        } else {
+            code.op(opcode, -2);
+        }
+    }
+
+    /**
+     * Evaluate the node and compare it with zero, leaving the result of
+     * {@code dcmpl} on the stack, so that {@code ifgt} branches if the
+     * node is true.
+     */
+    private void emitTest(Code code, RValue node) throws EvaluationException {
+        emit(code, node);
+        code.op(0x0e, 2); // dconst_0
+        code.op(0x97, -3); // dcmpl
+    }
+
+    /**
+     * Push 1.0, or 0.0 if the given branch is taken.
+     */
+    private void emitBoolean(Code code, int branch, int delta) {
+        Label no = new Label();
+        Label end = new Label();
+        code.jump(branch, delta, no);
+        code.op(0x0f, 2); // dconst_1
+        code.jump(0xa7, 0, end); // goto
+        code.mark(no);
+        code.op(0x0e, 2); // dconst_0
+        code.mark(end);
+    }
+
+    private void emitInterpreted(Code code, RValue node) {
+        int index = nodes.size();
+        nodes.add(node);
+
+        storeVariables(code);
+        code.op(0x2a, 1); // aload_0
+        code.op(0xb4, 0); // getfield
+        code.u2(pool.fieldRef(CLASS_NAME, "nodes", NODES_DESC));
+        pushInt(code, index);
+        code.op(0x32, -1); // aaload
+        code.op(0xb9, 1); // invokeinterface
+        code.u2(pool.interfaceMethodRef(RVALUE_NAME, "getValue", "()D"));
+        code.u1(1);
+        code.u1(0);
+        loadVariables(code);
+    }
+
+    private void loadVariables(Code code) {
+        for (int i = 0; i < variables.size(); i++) {
+            loadVariable(code, i);
+            code.op(0xb4, 1); // getfield
+            code.u2(pool.fieldRef(VARIABLE_NAME, "value", "D"));
+            storeLocal(code, 1 + 2 * i);
+        }
+    }
+
+    private void storeVariables(Code code) {
+        for (int i = 0; i < variables.size(); i++) {
+            loadVariable(code, i);
+            loadLocal(code, 1 + 2 * i);
+            code.op(0xb5, -3); // putfield
+            code.u2(pool.fieldRef(VARIABLE_NAME, "value", "D"));
+        }
+    }
+
+    private void loadVariable(Code code, int index) {
+        code.op(0x2a, 1); // aload_0
+        code.op(0xb4, 0); // getfield
+        code.u2(pool.fieldRef(CLASS_NAME, "variables", VARIABLES_DESC));
+        pushInt(code, index);
+        code.op(0x32, -1); // aaload
+    }
+
+    private int getSlot(Variable variable) {
+        Integer slot = slots.get(variable);
+        if (slot == null) {
+            slot = 1 + 2 * variables.size();
+            slots.put(variable, slot);
+            variables.add(variable);
+            if (variables.size() > MAX_VARIABLES) {
+                throw new UnsupportedOperationException("too many variables");
+            }
+        }
+        return slot;
+    }
+
+    private void invokeMath(Code code, String name, String desc, int delta) {
+        code.op(0xb8, delta); // invokestatic
+        code.u2(pool.methodRef("java/lang/Math", name, desc));
+    }
+
+    private static void loadLocal(Code code, int slot) {
+        code.op(0x18, 2); // dload
+        code.u1(slot);
+    }
+
+    private static void storeLocal(Code code, int slot) {
+        code.op(0x39, -2); // dstore
+        code.u1(slot);
+    }
+
+    private static void pushInt(Code code, int value) {
+        if (value <= 5) {
+            code.op(0x03 + value, 1); // iconst_<n>
+        } else if (value <= Byte.MAX_VALUE) {
+            code.op(0x10, 1); // bipush
+            code.u1(value);
+        } else {
+            code.op(0x11, 1); // sipush
+            code.u2(value);
+        }
+    }
+
+    private void pushDouble(Code code, double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            code.op(0x0e, 2); // dconst_0
+        } else if (value == 1.0) {
+            code.op(0x0f, 2); // dconst_1
+        } else {
+            code.op(0x14, 2); // ldc2_w
+            code.u2(pool.doubleConstant(value));
+        }
+    }
+
+    private void pushLong(Code code, long value) {
+        code.op(0x14, 2); // ldc2_w
+        code.u2(pool.longConstant(value));
+    }
+
+    private byte[] writeClass(Code constructor, Code evaluate, int evaluateLocals) throws IOException {
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef(SUPER_NAME);
+        int codeName = pool.utf8("Code");
+        int constructorName = pool.utf8("<init>");
+        int constructorDesc = pool.utf8("(" + VARIABLES_DESC + NODES_DESC + ")V");
+        int evaluateName = pool.utf8("evaluate");
+        int evaluateDesc = pool.utf8("()D");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0); // minor version
+        out.writeShort(50); // major version
+        pool.write(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+        writeMethod(out, constructorName, constructorDesc, codeName, constructor, 3);
+        writeMethod(out, evaluateName, evaluateDesc, codeName, evaluate, evaluateLocals);
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int desc, int codeName, Code code, int maxLocals) throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1); // attributes
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length());
+        out.writeShort(code.getMaxStack());
+        out.writeShort(maxLocals);
+        out.writeInt(code.length());
+        code.write(out);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    /**
+     * A position in the code that can be jumped to.
+     */
+    private static class Label {
+        private int position = -1;
+        private int stack = -1;
+        private final List<int[]> fixups = new ArrayList<int[]>();
+    }
+
+    /**
+     * The bytecode of a method, which keeps track of the stack depth.
+     */
+    private static class Code {
+        private byte[] bytes = new byte[256];
+        private int length;
+        private int stack;
+        private int maxStack;
+
+        private int length() {
+            return length;
+        }
+
+        private int getMaxStack() {
+            return maxStack;
+        }
+
+        private void op(int opcode, int delta) {
+            u1(opcode);
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u1(int value) {
+            if (length == bytes.length) {
+                byte[] grown = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        private void jump(int opcode, int delta, Label label) {
+            int position = length;
+            op(opcode, delta);
+            label.stack = stack;
+            if (label.position != -1) {
+                u2(label.position - position);
+            } else {
+                label.fixups.add(new int[] { position, length });
+                u2(0);
+            }
+        }
+
+        private void mark(Label label) {
+            label.position = length;
+            if (label.stack != -1) {
+                stack = label.stack;
+            }
+            for (int[] fixup : label.fixups) {
+                int offset = length - fixup[0];
+                bytes[fixup[1]] = (byte) (offset >> 8);
+                bytes[fixup[1] + 1] = (byte) offset;
+            }
+            label.fixups.clear();
+        }
+
+        private void append(Code other) {
+            int base = stack;
+            for (int i = 0; i < other.length; i++) {
+                u1(other.bytes[i]);
+            }
+            maxStack = Math.max(maxStack, base + other.maxStack);
+            stack = base + other.stack;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+        }
+    }
+
+    /**
+     * The constant pool of the generated class.
+     */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<String, Integer>();
+        private int count = 1;
+
+        private int utf8(String value) {
+            Integer index = entries.get("U" + value);
+            if (index == null) {
+                index = add("U" + value, 1);
+                write(new Writer() {
+                    @Override
+                    public void write(DataOutputStream out, Object value) throws IOException {
+                        out.writeByte(1);
+                        out.writeUTF((String) value);
+                    }
+                }, value);
+            }
+            return index;
+        }
+
+        private int classRef(String name) {
+            return reference("C" + name, 7, utf8(name), -1);
+        }
+
+        private int nameAndType(String name, String desc) {
+            return reference("N" + name + ":" + desc, 12, utf8(name), utf8(desc));
+        }
+
+        private int fieldRef(String owner, String name, String desc) {
+            return reference("F" + owner + "." + name + ":" + desc, 9, classRef(owner), nameAndType(name, desc));
+        }
+
+        private int methodRef(String owner, String name, String desc) {
+            return reference("M" + owner + "." + name + desc, 10, classRef(owner), nameAndType(name, desc));
+        }
+
+        private int interfaceMethodRef(String owner, String name, String desc) {
+            return reference("I" + owner + "." + name + desc, 11, classRef(owner), nameAndType(name, desc));
+        }
+
+        private int doubleConstant(double value) {
+            return wide("D" + Double.doubleToRawLongBits(value), 6, Double.doubleToRawLongBits(value));
+        }
+
+        private int longConstant(long value) {
+            return wide("J" + value, 5, value);
+        }
+
+        private int reference(String key, final int tag, final int first, final int second) {
+            Integer index = entries.get(key);
+            if (index == null) {
+                index = add(key, 1);
+                write(new Writer() {
+                    @Override
+                    public void write(DataOutputStream out, Object value) throws IOException {
+                        out.writeByte(tag);
+                        out.writeShort(first);
+                        if (second != -1) {
+                            out.writeShort(second);
+                        }
+                    }
+                }, null);
+            }
+            return index;
+        }
+
+        private int wide(String key, final int tag, final long bits) {
+            Integer index = entries.get(key);
+            if (index == null) {
+                index = add(key, 2);
+                write(new Writer() {
+                    @Override
+                    public void write(DataOutputStream out, Object value) throws IOException {
+                        out.writeByte(tag);
+                        out.writeLong(bits);
+                    }
+                }, null);
+            }
+            return index;
+        }
+
+        private int add(String key, int size) {
+            int index = count;
+            count += size;
+            if (count > 0xFFFF) {
+                throw new UnsupportedOperationException("too many constants");
+            }
+            entries.put(key, index);
+            return index;
+        }
+
+        private void write(Writer writer, @Nullable Object value) {
+            try {
+                writer.write(out, value);
+            } catch (IOException e) {
+                throw new RuntimeException(e); // Cannot happen with a ByteArrayOutputStream
+            }
+        }
+
+        private void write(DataOutputStream target) throws IOException {
+            out.flush();
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+
+        private interface Writer {
+            void write(DataOutputStream out, Object value) throws IOException;
+        }
+    }
+
+    /**
+     * Loads each generated class in its own class loader, so that the
+     * class can be unloaded along with the expression.
+     */
+    private static class GeneratedClassLoader extends ClassLoader {
+        private GeneratedClassLoader() {
+            super(ExpressionCompiler.class.getClassLoader());
+        }
+
+        private Class<?> define(byte[] bytes) {
+            return defineClass(null, bytes, 0, bytes.length);
+        }
+    }
+
+}
@@ -25,13 +25,13 @@
 import com.sk89q.worldedit.math.noise.PerlinNoise;
 import com.sk89q.worldedit.math.noise.RidgedMultiFractalNoise;
 import com.sk89q.worldedit.math.noise.VoronoiNoise;
+import com.sk89q.worldedit.util.random.SplitMixRandom;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 /**
  * Contains all functions that can be used in expressions.
@@ -371,16 +371,14 @@ private static double findClosest(Map<Integer, double[]> megabuf, double x, doub
     }
 
 
-    private static final Random random = new Random();
-
     @Dynamic
     public static double random() {
-        return random.nextDouble();
+        return SplitMixRandom.current().nextDouble();
     }
 
     @Dynamic
     public static double randint(RValue max) throws EvaluationException {
-        return random.nextInt((int) Math.floor(max.getValue()));
+        return SplitMixRandom.current().nextInt((int) Math.floor(max.getValue()));
     }
 
     private static final ThreadLocal<PerlinNoise> localPerlin = new ThreadLocal<PerlinNoise>() {
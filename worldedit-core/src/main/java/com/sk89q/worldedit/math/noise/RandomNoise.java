@@ -21,16 +21,21 @@
 
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.util.random.SplitMixRandom;
 
+import javax.annotation.Nullable;
 import java.util.Random;
 
 /**
- * Generates noise using {@link java.util.Random}. Every time a noise
+ * Generates random noise. Unless a seed is given, every time a noise
  * generating function is called, a new value will be returned.
  */
 public class RandomNoise implements NoiseGenerator {
 
+    @Nullable
     private final Random random;
+    private final boolean seeded;
+    private final long seed;
 
     /**
      * Create a new noise generator using the given {@code Random}.
@@ -39,24 +44,48 @@ public class RandomNoise implements NoiseGenerator {
      */
     public RandomNoise(Random random) {
         this.random = random;
+        this.seeded = false;
+        this.seed = 0;
     }
 
     /**
-     * Create a new noise generator with a newly constructed {@code Random}
-     * instance.
+     * Create a new noise generator that uses the {@link SplitMixRandom}
+     * of the current thread, so that it can be used from several threads
+     * at once.
      */
     public RandomNoise() {
-        this(new Random());
+        this.random = null;
+        this.seeded = false;
+        this.seed = 0;
+    }
+
+    /**
+     * Create a new noise generator whose values only depend on the given
+     * seed and the position, so that the same value is returned for a
+     * position every time.
+     *
+     * @param seed the seed
+     */
+    public RandomNoise(long seed) {
+        this.random = null;
+        this.seeded = true;
+        this.seed = seed;
     }
 
     @Override
     public float noise(Vector2D position) {
-        return random.nextFloat();
+        if (seeded) {
+            return SplitMixRandom.toFloat(SplitMixRandom.hash(seed, position.getBlockX(), 0, position.getBlockZ()));
+        }
+        return random != null ? random.nextFloat() : SplitMixRandom.current().nextFloat();
     }
 
     @Override
     public float noise(Vector position) {
-        return random.nextFloat();
+        if (seeded) {
+            return SplitMixRandom.toFloat(SplitMixRandom.hash(seed, position.getBlockX(), position.getBlockY(), position.getBlockZ()));
+        }
+        return random != null ? random.nextFloat() : SplitMixRandom.current().nextFloat();
     }
 
 }
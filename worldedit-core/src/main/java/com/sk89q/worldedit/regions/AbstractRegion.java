@@ -22,6 +22,7 @@
 import com.sk89q.worldedit.*;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.regions.iterator.RegionIterator;
+import com.sk89q.worldedit.regions.iterator.RegionSpanIterator;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.storage.ChunkStore;
 
@@ -50,6 +51,26 @@ public Iterator<BlockVector> iterator() {
         return new RegionIterator(this);
     }
 
+    /**
+     * Get the blocks in the region as runs of consecutive blocks along
+     * the X axis, ordered by Z, then by Y, then by X.
+     *
+     * <p>This is the order of {@link RegionIterator}. Regions that iterate
+     * column by column, such as cylinders and polygons, return their
+     * blocks in a different order from {@link #iterator()}.</p>
+     *
+     * @return the spans
+     * @see Regions#spans(Region)
+     */
+    public Iterable<RegionSpan> spans() {
+        return new Iterable<RegionSpan>() {
+            @Override
+            public Iterator<RegionSpan> iterator() {
+                return new RegionSpanIterator(AbstractRegion.this);
+            }
+        };
+    }
+
     @Override
     public World getWorld() {
         return world;
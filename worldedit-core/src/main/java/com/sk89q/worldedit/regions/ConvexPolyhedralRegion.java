@@ -21,6 +21,7 @@
 
 import com.sk89q.worldedit.LocalWorld;
 import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.iterator.RegionSpanIterator;
 import com.sk89q.worldedit.regions.polyhedron.Edge;
 import com.sk89q.worldedit.regions.polyhedron.Triangle;
 import com.sk89q.worldedit.world.World;
@@ -28,6 +29,7 @@
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -72,6 +74,11 @@ public class ConvexPolyhedralRegion extends AbstractRegion {
      */
     private Triangle lastTriangle;
 
+    /**
+     * The Y ranges of the columns of the region, computed as they are needed by {@link #contains(Vector)}.
+     */
+    private volatile ColumnCache columnCache;
+
     /**
      * Constructs an empty mesh, containing no vertices or triangles.
      *
@@ -118,6 +125,7 @@ public void clear() {
         maximumPoint = null;
         centerAccum = Vector.ZERO;
         lastTriangle = null;
+        columnCache = null;
     }
 
     /**
@@ -130,6 +138,7 @@ public boolean addVertex(Vector vertex) {
         checkNotNull(vertex);
 
         lastTriangle = null; // Probably not necessary
+        columnCache = null;
 
         if (vertices.contains(vertex)) {
             return false;
@@ -202,6 +211,9 @@ public boolean addVertex(Vector vertex) {
             triangles.add(edge.createTriangle(vertex));
         }
 
+        // The remembered triangle may have been removed from the mesh
+        lastTriangle = null;
+
         if (!vertexBacklog.isEmpty()) {
             // Remove the new vertex 
             vertices.remove(vertex);
@@ -266,6 +278,7 @@ public void shift(Vector change) throws RegionOperationException {
         maximumPoint = change.add(maximumPoint);
         centerAccum = change.multiply(vertices.size()).add(centerAccum);
         lastTriangle = null;
+        columnCache = null;
     }
 
     private static void shiftCollection(Collection<Vector> collection, Vector change) {
@@ -296,7 +309,26 @@ public boolean contains(Vector position) {
         if (z < min.getBlockZ()) return false;
         if (z > max.getBlockZ()) return false;
 
-        return containsRaw(position);
+        ColumnCache cache = getColumnCache();
+        if (cache == null) {
+            return containsRaw(position);
+        }
+
+        return cache.contains(x, y, z);
+    }
+
+    /**
+     * Get the column cache, creating it if needed.
+     *
+     * @return the cache, or null if the region is too large to cache
+     */
+    @Nullable
+    private ColumnCache getColumnCache() {
+        ColumnCache cache = columnCache;
+        if (cache == null && ColumnCache.canCache(minimumPoint, maximumPoint)) {
+            columnCache = cache = new ColumnCache(minimumPoint, maximumPoint, triangles);
+        }
+        return cache;
     }
 
     private boolean containsRaw(Vector pt) {
@@ -318,6 +350,50 @@ private boolean containsRaw(Vector pt) {
         return true;
     }
 
+    @Override
+    public Iterable<RegionSpan> spans() {
+        if (!isDefined()) {
+            return Collections.emptyList();
+        }
+
+        final ColumnCache cache = getColumnCache();
+        if (cache == null) {
+            return super.spans();
+        }
+
+        return new Iterable<RegionSpan>() {
+            @Override
+            public Iterator<RegionSpan> iterator() {
+                return new RegionSpanIterator(ConvexPolyhedralRegion.this) {
+                    @Override
+                    protected int[] getRuns(int y, int z) {
+                        int low = minX;
+                        while (low <= maxX && !cache.contains(low, y, z)) low++;
+                        if (low > maxX) {
+                            return NO_RUNS;
+                        }
+                        int high = low;
+                        while (high < maxX && cache.contains(high + 1, y, z)) high++;
+
+                        // Rows of a convex region have one run, unless rounding splits it
+                        for (int x = high + 2; x <= maxX; x++) {
+                            if (cache.contains(x, y, z)) {
+                                return super.getRuns(y, z);
+                            }
+                        }
+
+                        return new int[] { low, high };
+                    }
+
+                    @Override
+                    protected boolean contains(int x, int y, int z) {
+                        return cache.contains(x, y, z);
+                    }
+                };
+            }
+        };
+    }
+
     public Collection<Vector> getVertices() {
         if (vertexBacklog.isEmpty()) {
             return vertices;
@@ -337,4 +413,116 @@ public Collection<Triangle> getTriangles() {
     public AbstractRegion clone() {
         return new ConvexPolyhedralRegion(this);
     }
+
+    /**
+     * Caches the range of Y coordinates that is inside the region for each
+     * column of the bounding box. Since the region is convex, every column
+     * intersects it in at most one range.
+     *
+     * <p>Each range is estimated from the planes of the triangles, and its
+     * ends are then checked with the same arithmetic as
+     * {@link Triangle#above(Vector)}, so the result of {@link #contains(int, int, int)}
+     * is the same as testing the point against every triangle.</p>
+     */
+    private static final class ColumnCache {
+        private static final int MAX_COLUMNS = 1 << 20;
+        private static final int MAX_HEIGHT = 0x7FFE;
+        private static final int UNKNOWN = 0;
+        private static final int EMPTY = -1;
+
+        private final int minX;
+        private final int minY;
+        private final int minZ;
+        private final int maxY;
+        private final int length;
+        private final double[] planes;
+        private final int[] columns;
+
+        private static boolean canCache(Vector min, Vector max) {
+            long width = max.getBlockX() - min.getBlockX() + 1;
+            long length = max.getBlockZ() - min.getBlockZ() + 1;
+            long height = max.getBlockY() - min.getBlockY() + 1;
+            return width * length <= MAX_COLUMNS && height <= MAX_HEIGHT;
+        }
+
+        private ColumnCache(Vector min, Vector max, List<Triangle> triangles) {
+            minX = min.getBlockX();
+            minY = min.getBlockY();
+            minZ = min.getBlockZ();
+            maxY = max.getBlockY();
+            length = max.getBlockZ() - minZ + 1;
+            columns = new int[(max.getBlockX() - minX + 1) * length];
+
+            planes = new double[triangles.size() * 4];
+            int i = 0;
+            for (Triangle triangle : triangles) {
+                Vector normal = triangle.getNormal();
+                planes[i++] = normal.getX();
+                planes[i++] = normal.getY();
+                planes[i++] = normal.getZ();
+                planes[i++] = triangle.getDistance();
+            }
+        }
+
+        private boolean contains(int x, int y, int z) {
+            int index = (x - minX) * length + (z - minZ);
+            int column = columns[index];
+            if (column == UNKNOWN) {
+                columns[index] = column = computeColumn(x, z);
+            }
+            if (column == EMPTY) {
+                return false;
+            }
+            int low = (column >>> 16) - 1 + minY;
+            int high = (column & 0xFFFF) - 1 + minY;
+            return y >= low && y <= high;
+        }
+
+        private int computeColumn(int x, int z) {
+            double low = minY;
+            double high = maxY;
+
+            for (int i = 0; i < planes.length; i += 4) {
+                double ny = planes[i + 1];
+                double bound = (planes[i + 3] - x * planes[i] - z * planes[i + 2]) / ny;
+                if (ny > 0) {
+                    if (bound < high) high = bound;
+                } else if (ny < 0) {
+                    if (bound > low) low = bound;
+                } else if (isAbove(i, x, 0, z)) {
+                    return EMPTY;
+                }
+            }
+
+            if (low > high + 1) {
+                return EMPTY;
+            }
+
+            // The estimate may be off by rounding, so check the ends
+            int bottom = Math.max(minY, (int) Math.ceil(low) - 1);
+            int top = Math.min(maxY, (int) Math.floor(high) + 1);
+            while (bottom <= top && !isInside(x, bottom, z)) bottom++;
+            while (top >= bottom && !isInside(x, top, z)) top--;
+            if (bottom > top) {
+                return EMPTY;
+            }
+            while (bottom > minY && isInside(x, bottom - 1, z)) bottom--;
+            while (top < maxY && isInside(x, top + 1, z)) top++;
+
+            return (bottom - minY + 1) << 16 | (top - minY + 1);
+        }
+
+        private boolean isInside(int x, int y, int z) {
+            for (int i = 0; i < planes.length; i += 4) {
+                if (isAbove(i, x, y, z)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isAbove(int i, double x, double y, double z) {
+            return planes[i] * x + planes[i + 1] * y + planes[i + 2] * z > planes[i + 3];
+        }
+    }
 }
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.regions;
 
 import com.sk89q.worldedit.*;
+import com.sk89q.worldedit.regions.iterator.RegionSpanIterator;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.storage.ChunkStore;
 
@@ -380,6 +381,23 @@ public void remove() {
         };
     }
 
+    @Override
+    public Iterable<RegionSpan> spans() {
+        return new Iterable<RegionSpan>() {
+            @Override
+            public Iterator<RegionSpan> iterator() {
+                return new RegionSpanIterator(CuboidRegion.this) {
+                    private final int[] row = { minX, maxX };
+
+                    @Override
+                    protected int[] getRuns(int y, int z) {
+                        return row;
+                    }
+                };
+            }
+        };
+    }
+
     @Override
     public Iterable<Vector2D> asFlatRegion() {
         return new Iterable<Vector2D>() {
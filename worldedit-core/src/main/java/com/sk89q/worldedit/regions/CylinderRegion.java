@@ -28,6 +28,7 @@
 import com.sk89q.worldedit.math.geom.Polygons;
 import com.sk89q.worldedit.regions.iterator.FlatRegion3DIterator;
 import com.sk89q.worldedit.regions.iterator.FlatRegionIterator;
+import com.sk89q.worldedit.regions.iterator.RegionSpanIterator;
 import com.sk89q.worldedit.world.World;
 
 import java.util.Iterator;
@@ -342,6 +343,48 @@ public Iterator<BlockVector> iterator() {
         return new FlatRegion3DIterator(this);
     }
 
+    @Override
+    public Iterable<RegionSpan> spans() {
+        return new Iterable<RegionSpan>() {
+            @Override
+            public Iterator<RegionSpan> iterator() {
+                return new RegionSpanIterator(CylinderRegion.this) {
+                    private int lastZ = Integer.MIN_VALUE;
+                    private int[] lastRuns;
+
+                    @Override
+                    protected int[] getRuns(int y, int z) {
+                        // Every layer of the cylinder is the same
+                        if (z != lastZ || lastRuns == null) {
+                            double dz = (z - center.getZ()) / radius.getZ();
+                            double rest = 1 - dz * dz;
+                            if (rest < 0) {
+                                lastRuns = NO_RUNS;
+                            } else {
+                                double width = radius.getX() * Math.sqrt(rest);
+                                lastRuns = getSingleRun(y, z,
+                                        (int) Math.ceil(center.getX() - width), (int) Math.floor(center.getX() + width));
+                            }
+                            lastZ = z;
+                        }
+                        return lastRuns;
+                    }
+
+                    @Override
+                    protected boolean contains(int x, int y, int z) {
+                        // The same arithmetic as contains(Vector)
+                        if (y < minY || y > maxY) {
+                            return false;
+                        }
+                        double dx = (x - center.getX()) / radius.getX();
+                        double dz = (z - center.getZ()) / radius.getZ();
+                        return dx * dx + dz * dz <= 1;
+                    }
+                };
+            }
+        };
+    }
+
     @Override
     public Iterable<Vector2D> asFlatRegion() {
         return new Iterable<Vector2D>() {
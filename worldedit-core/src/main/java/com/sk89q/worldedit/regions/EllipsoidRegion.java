@@ -24,8 +24,10 @@
 import com.sk89q.worldedit.LocalWorld;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.regions.iterator.RegionSpanIterator;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.storage.ChunkStore;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -210,6 +212,38 @@ public boolean contains(Vector position) {
         return position.subtract(center).divide(radius).lengthSq() <= 1;
     }
 
+    @Override
+    public Iterable<RegionSpan> spans() {
+        return new Iterable<RegionSpan>() {
+            @Override
+            public Iterator<RegionSpan> iterator() {
+                return new RegionSpanIterator(EllipsoidRegion.this) {
+                    @Override
+                    protected int[] getRuns(int y, int z) {
+                        double dy = (y - center.getY()) / radius.getY();
+                        double dz = (z - center.getZ()) / radius.getZ();
+                        double rest = 1 - dy * dy - dz * dz;
+                        if (rest < -1e-9) {
+                            return NO_RUNS;
+                        }
+                        double width = radius.getX() * Math.sqrt(Math.max(0, rest));
+                        return getSingleRun(y, z,
+                                (int) Math.ceil(center.getX() - width), (int) Math.floor(center.getX() + width));
+                    }
+
+                    @Override
+                    protected boolean contains(int x, int y, int z) {
+                        // The same arithmetic as contains(Vector)
+                        double dx = (x - center.getX()) / radius.getX();
+                        double dy = (y - center.getY()) / radius.getY();
+                        double dz = (z - center.getZ()) / radius.getZ();
+                        return dx * dx + dy * dy + dz * dz <= 1;
+                    }
+                };
+            }
+        };
+    }
+
     /**
      * Returns string representation in the format
      * "(centerX, centerY, centerZ) - (radiusX, radiusY, radiusZ)".
@@ -26,9 +26,11 @@
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.regions.iterator.FlatRegion3DIterator;
 import com.sk89q.worldedit.regions.iterator.FlatRegionIterator;
+import com.sk89q.worldedit.regions.iterator.RegionSpanIterator;
 import com.sk89q.worldedit.world.World;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -44,6 +46,7 @@ public class Polygonal2DRegion extends AbstractRegion implements FlatRegion {
     private int minY;
     private int maxY;
     private boolean hasY = false;
+    private volatile int[][] spans;
 
     /**
      * Construct the region
@@ -113,6 +116,8 @@ public List<BlockVector2D> getPoints() {
      * called after points have been changed.
      */
     protected void recalculate() {
+        spans = null;
+
         if (points.isEmpty()) {
             min = new Vector2D(0, 0);
             minY = 0;
@@ -311,7 +316,161 @@ public void shift(Vector change) throws RegionOperationException {
 
     @Override
     public boolean contains(Vector position) {
-        return contains(points, minY, maxY, position);
+        if (points.size() < 3) {
+            return false;
+        }
+
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+
+        if (y < minY || y > maxY) {
+            return false;
+        }
+
+        int minX = min.getBlockX();
+        if (x < minX || x > max.getBlockX()) {
+            return false;
+        }
+
+        return columnContains(getSpans()[x - minX], z);
+    }
+
+    private int[][] getSpans() {
+        int[][] spans = this.spans;
+        if (spans == null) {
+            this.spans = spans = computeSpans();
+        }
+        return spans;
+    }
+
+    private static boolean columnContains(int[] column, int z) {
+        for (int i = 0; i < column.length; i += 2) {
+            if (z < column[i]) {
+                return false;
+            } else if (z <= column[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compute the ranges of Z coordinates that are inside the polygon for
+     * each X coordinate of the bounding box, as pairs of inclusive minimum
+     * and maximum Z coordinates.
+     *
+     * <p>The ranges match the result of
+     * {@link #contains(List, int, int, Vector)}: a point is inside if it is
+     * a corner or on an edge, or if an odd number of the edges that span its
+     * X coordinate have it on their lower side.</p>
+     *
+     * @return the ranges, indexed by X coordinate minus the minimum X
+     */
+    private int[][] computeSpans() {
+        int minX = min.getBlockX();
+        int minZ = min.getBlockZ();
+        int maxZ = max.getBlockZ();
+        int npoints = points.size();
+        int[][] spans = new int[max.getBlockX() - minX + 1][];
+
+        int[] thresholds = new int[npoints];
+        int[] ranges = new int[npoints * 4 + 4];
+
+        for (int targetX = minX; targetX < minX + spans.length; ++targetX) {
+            int crossings = 0;
+            int count = 0;
+
+            int xOld = points.get(npoints - 1).getBlockX();
+            int zOld = points.get(npoints - 1).getBlockZ();
+
+            for (int i = 0; i < npoints; ++i) {
+                int xNew = points.get(i).getBlockX();
+                int zNew = points.get(i).getBlockZ();
+                int x1, z1, x2, z2;
+                if (xNew > xOld) {
+                    x1 = xOld;
+                    x2 = xNew;
+                    z1 = zOld;
+                    z2 = zNew;
+                } else {
+                    x1 = xNew;
+                    x2 = xOld;
+                    z1 = zNew;
+                    z2 = zOld;
+                }
+
+                if (x1 == targetX && x2 == targetX) {
+                    // Vertical edge
+                    ranges = addRange(ranges, count++, Math.min(z1, z2), Math.max(z1, z2));
+                } else if (x1 == targetX) {
+                    // Corner
+                    ranges = addRange(ranges, count++, z1, z1);
+                } else if (x1 < targetX && targetX <= x2) {
+                    // A point is on the lower side of the edge if its Z is below this threshold
+                    long dx = x2 - x1;
+                    long numerator = (long) z1 * dx + ((long) z2 - z1) * (targetX - x1);
+                    long threshold = numerator > 0 ? (numerator + dx - 1) / dx : numerator / dx; // Rounded up
+                    thresholds[crossings++] = (int) threshold;
+                    if (numerator % dx == 0) {
+                        // On the edge
+                        ranges = addRange(ranges, count++, (int) threshold, (int) threshold);
+                    }
+                }
+
+                xOld = xNew;
+                zOld = zNew;
+            }
+
+            // Points between every other pair of thresholds are inside
+            Arrays.sort(thresholds, 0, crossings);
+            for (int i = (crossings + 1) % 2; i < crossings; i += 2) {
+                int low = i == 0 ? minZ : thresholds[i - 1];
+                int high = thresholds[i] - 1;
+                if (low <= high) {
+                    ranges = addRange(ranges, count++, low, high);
+                }
+            }
+
+            spans[targetX - minX] = mergeRanges(ranges, count, minZ, maxZ);
+        }
+
+        return spans;
+    }
+
+    private static int[] addRange(int[] ranges, int index, int low, int high) {
+        if (index * 2 + 2 > ranges.length) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        }
+        ranges[index * 2] = low;
+        ranges[index * 2 + 1] = high;
+        return ranges;
+    }
+
+    private static int[] mergeRanges(int[] ranges, int count, int minZ, int maxZ) {
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = (long) ranges[i * 2] << 32 | (ranges[i * 2 + 1] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(sorted);
+
+        int[] merged = new int[count * 2];
+        int length = 0;
+        for (long range : sorted) {
+            int low = Math.max(minZ, (int) (range >> 32));
+            int high = Math.min(maxZ, (int) range);
+            if (low > high) {
+                continue;
+            }
+            if (length > 0 && low <= merged[length - 1] + 1) {
+                merged[length - 1] = Math.max(merged[length - 1], high);
+            } else {
+                merged[length++] = low;
+                merged[length++] = high;
+            }
+        }
+
+        return Arrays.copyOf(merged, length);
     }
 
     /**
@@ -418,6 +577,51 @@ public Iterator<BlockVector> iterator() {
         return new FlatRegion3DIterator(this);
     }
 
+    @Override
+    public Iterable<RegionSpan> spans() {
+        if (points.size() < 3) {
+            return Collections.emptyList();
+        }
+
+        return new Iterable<RegionSpan>() {
+            @Override
+            public Iterator<RegionSpan> iterator() {
+                final int[][] spans = getSpans();
+
+                return new RegionSpanIterator(Polygonal2DRegion.this) {
+                    private int lastZ = Integer.MIN_VALUE;
+                    private int[] lastRuns;
+
+                    @Override
+                    protected int[] getRuns(int y, int z) {
+                        // Every layer of the polygon is the same
+                        if (z != lastZ || lastRuns == null) {
+                            int[] runs = new int[8];
+                            int count = 0;
+                            for (int x = minX; x <= maxX; x++) {
+                                if (!columnContains(spans[x - minX], z)) {
+                                    continue;
+                                }
+                                if (count > 0 && runs[count - 1] == x - 1) {
+                                    runs[count - 1] = x;
+                                } else {
+                                    if (count + 2 > runs.length) {
+                                        runs = Arrays.copyOf(runs, runs.length * 2);
+                                    }
+                                    runs[count++] = x;
+                                    runs[count++] = x;
+                                }
+                            }
+                            lastRuns = Arrays.copyOf(runs, count);
+                            lastZ = z;
+                        }
+                        return lastRuns;
+                    }
+                };
+            }
+        };
+    }
+
     @Override
     public Iterable<Vector2D> asFlatRegion() {
         return new Iterable<Vector2D>() {
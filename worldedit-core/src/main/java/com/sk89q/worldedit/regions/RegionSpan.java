@@ -0,0 +1,114 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions;
+
+/**
+ * A run of consecutive blocks along the X axis, at one Y and Z coordinate.
+ */
+public final class RegionSpan {
+
+    private final int minX;
+    private final int maxX;
+    private final int y;
+    private final int z;
+
+    /**
+     * Create a new span.
+     *
+     * @param minX the lowest X coordinate
+     * @param maxX the highest X coordinate, which must not be lower than {@code minX}
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     */
+    public RegionSpan(int minX, int maxX, int y, int z) {
+        if (maxX < minX) {
+            throw new IllegalArgumentException("maxX < minX");
+        }
+        this.minX = minX;
+        this.maxX = maxX;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Get the lowest X coordinate of the span.
+     *
+     * @return the lowest X coordinate
+     */
+    public int getMinimumX() {
+        return minX;
+    }
+
+    /**
+     * Get the highest X coordinate of the span.
+     *
+     * @return the highest X coordinate
+     */
+    public int getMaximumX() {
+        return maxX;
+    }
+
+    /**
+     * Get the Y coordinate of the span.
+     *
+     * @return the Y coordinate
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the Z coordinate of the span.
+     *
+     * @return the Z coordinate
+     */
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * Get the number of blocks in the span.
+     *
+     * @return the number of blocks
+     */
+    public int getLength() {
+        return maxX - minX + 1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof RegionSpan)) {
+            return false;
+        }
+        RegionSpan other = (RegionSpan) obj;
+        return other.minX == minX && other.maxX == maxX && other.y == y && other.z == z;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((minX * 31 + maxX) * 31 + y) * 31 + z;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + minX + ".." + maxX + ", " + y + ", " + z + ")";
+    }
+
+}
@@ -19,6 +19,11 @@
 
 package com.sk89q.worldedit.regions;
 
+import com.sk89q.worldedit.regions.iterator.RegionSpanIterator;
+
+import java.util.Collections;
+import java.util.Iterator;
+
 /**
  * Utility methods relating to {@link Region}s.
  */
@@ -71,6 +76,33 @@ public static int maximumBlockY(Region region) {
         return region.getMaximumPoint().getBlockY();
     }
 
+    /**
+     * Get the blocks in the given region as runs of consecutive blocks
+     * along the X axis, ordered by Z, then by Y, then by X.
+     *
+     * <p>Subclasses of {@link AbstractRegion} can find their spans more
+     * quickly by overriding {@link AbstractRegion#spans()}. For other
+     * regions, every block of the bounding box is tested with
+     * {@link Region#contains(com.sk89q.worldedit.Vector)}.</p>
+     *
+     * @param region the region
+     * @return the spans
+     */
+    public static Iterable<RegionSpan> spans(final Region region) {
+        if (region instanceof AbstractRegion) {
+            return ((AbstractRegion) region).spans();
+        } else if (region instanceof NullRegion) {
+            return Collections.emptyList();
+        } else {
+            return new Iterable<RegionSpan>() {
+                @Override
+                public Iterator<RegionSpan> iterator() {
+                    return new RegionSpanIterator(region);
+                }
+            };
+        }
+    }
+
     /**
      * Attempt to get a {@link FlatRegion} from the given region.
      *
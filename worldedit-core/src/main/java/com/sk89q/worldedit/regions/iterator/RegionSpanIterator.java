@@ -0,0 +1,196 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.RegionSpan;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Iterates over the spans of a region, ordered by Z, then by Y, then by X.
+ *
+ * <p>By default, every block of the bounding box is tested with
+ * {@link Region#contains(Vector)}. Regions that can find the runs of a row
+ * more quickly should override {@link #getRuns(int, int)}, and regions that
+ * can test a block without a {@link Vector} should override
+ * {@link #contains(int, int, int)}.</p>
+ */
+public class RegionSpanIterator implements Iterator<RegionSpan> {
+
+    /**
+     * A row without any runs.
+     */
+    protected static final int[] NO_RUNS = new int[0];
+
+    protected final Region region;
+    protected final int minX;
+    protected final int maxX;
+    private final int minY;
+    private final int maxY;
+    private final int maxZ;
+    private int nextY;
+    private int nextZ;
+    private int rowY;
+    private int rowZ;
+    private int[] runs = NO_RUNS;
+    private int index;
+    private RegionSpan next;
+
+    public RegionSpanIterator(Region region) {
+        checkNotNull(region);
+
+        this.region = region;
+
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        this.minX = min.getBlockX();
+        this.maxX = max.getBlockX();
+        this.minY = min.getBlockY();
+        this.maxY = max.getBlockY();
+        this.maxZ = max.getBlockZ();
+        this.nextY = minY;
+        this.nextZ = min.getBlockZ();
+    }
+
+    /**
+     * Test whether the region contains a block.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the block is in the region
+     */
+    protected boolean contains(int x, int y, int z) {
+        return region.contains(new BlockVector(x, y, z));
+    }
+
+    /**
+     * Find the runs of blocks in a row of the bounding box.
+     *
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @return pairs of lowest and highest X coordinates, in ascending order
+     */
+    protected int[] getRuns(int y, int z) {
+        int[] runs = NO_RUNS;
+        int count = 0;
+        int start = Integer.MIN_VALUE;
+
+        for (int x = minX; x <= maxX + 1; x++) {
+            boolean inside = x <= maxX && contains(x, y, z);
+            if (inside && start == Integer.MIN_VALUE) {
+                start = x;
+            } else if (!inside && start != Integer.MIN_VALUE) {
+                if (count + 2 > runs.length) {
+                    int[] grown = new int[Math.max(4, runs.length * 2)];
+                    System.arraycopy(runs, 0, grown, 0, count);
+                    runs = grown;
+                }
+                runs[count++] = start;
+                runs[count++] = x - 1;
+                start = Integer.MIN_VALUE;
+            }
+        }
+
+        if (count == runs.length) {
+            return runs;
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(runs, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    /**
+     * Find the run of a row that has at most one run, given an estimate
+     * that may be off by a block at either end.
+     *
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @param low the estimated lowest X coordinate
+     * @param high the estimated highest X coordinate
+     * @return the run, or {@link #NO_RUNS}
+     */
+    protected int[] getSingleRun(int y, int z, int low, int high) {
+        low = Math.max(minX, low - 1);
+        high = Math.min(maxX, high + 1);
+
+        while (low <= high && !contains(low, y, z)) low++;
+        while (high >= low && !contains(high, y, z)) high--;
+        if (low > high) {
+            return NO_RUNS;
+        }
+        while (low > minX && contains(low - 1, y, z)) low--;
+        while (high < maxX && contains(high + 1, y, z)) high++;
+
+        return new int[] { low, high };
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = findNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public RegionSpan next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        RegionSpan span = next;
+        next = null;
+        return span;
+    }
+
+    private RegionSpan findNext() {
+        while (index >= runs.length) {
+            if (nextZ > maxZ) {
+                return null;
+            }
+
+            rowY = nextY;
+            rowZ = nextZ;
+            runs = getRuns(rowY, rowZ);
+            index = 0;
+
+            if (++nextY > maxY) {
+                nextY = minY;
+                nextZ++;
+            }
+        }
+
+        RegionSpan span = new RegionSpan(runs[index], runs[index + 1], rowY, rowZ);
+        index += 2;
+        return span;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
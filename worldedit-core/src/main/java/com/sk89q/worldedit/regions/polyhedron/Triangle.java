@@ -58,6 +58,26 @@ public Vector getVertex(int index) {
         return vertices[index];
     }
 
+    /**
+     * Returns the normal of the plane the triangle is in.
+     *
+     * @return the normal
+     */
+    public Vector getNormal() {
+        return normal;
+    }
+
+    /**
+     * Returns the distance of the plane the triangle is in from the origin,
+     * along the normal. A point is above the triangle if its dot product with
+     * the normal is greater than this distance.
+     *
+     * @return the distance
+     */
+    public double getDistance() {
+        return b;
+    }
+
     /**
      * Returns the triangle's edge with the given index, counter-clockwise.
      *
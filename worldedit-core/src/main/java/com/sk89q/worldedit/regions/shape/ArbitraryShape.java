@@ -23,16 +23,37 @@
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.patterns.Pattern;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.RegionSpan;
+import com.sk89q.worldedit.regions.Regions;
+import com.sk89q.worldedit.util.collection.VoxelBitSet;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Generates solid and hollow shapes according to materials returned by the
  * {@link #getMaterial} method.
+ *
+ * <p>Shapes that can provide masks from {@link #createWorkerMask()} are
+ * rasterized into a {@link VoxelBitSet} first, with slabs of one chunk
+ * along the Z axis tested in parallel on the executor of the platform
+ * manager, and the blocks are then set on the calling thread in chunk
+ * order.</p>
  */
 public abstract class ArbitraryShape {
 
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
     protected final Region extent;
     private int cacheOffsetX;
     private int cacheOffsetY;
@@ -84,6 +105,24 @@ protected Region getExtent() {
      */
     protected abstract BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial);
 
+    /**
+     * Create a mask that tests whether a position is inside the shape, to
+     * be used by one worker thread while the shape is rasterized.
+     *
+     * <p>A position must be inside exactly when {@link #getMaterial}
+     * returns a material for it, and that material must always be the
+     * default material. Every call has to return a new mask that shares
+     * no mutable state with the other masks or with this shape. The
+     * default implementation returns null, which makes the shape be
+     * generated on the calling thread.</p>
+     *
+     * @return a mask, or null if the shape cannot be rasterized in parallel
+     */
+    @Nullable
+    protected Mask createWorkerMask() {
+        return null;
+    }
+
     private BaseBlock getMaterialCached(int x, int y, int z, Pattern pattern) {
         final int index = (y - cacheOffsetY) + (z - cacheOffsetZ) * cacheSizeY + (x - cacheOffsetX) * cacheSizeY * cacheSizeZ;
 
@@ -147,6 +186,11 @@ private boolean isInsideCached(int x, int y, int z, Pattern pattern) {
      * @throws MaxChangedBlocksException
      */
     public int generate(EditSession editSession, Pattern pattern, boolean hollow) throws MaxChangedBlocksException {
+        Mask mask = createWorkerMask();
+        if (mask != null) {
+            return generateRasterized(editSession, pattern, hollow, mask);
+        }
+
         int affected = 0;
 
         for (BlockVector position : getExtent()) {
@@ -208,4 +252,126 @@ public int generate(EditSession editSession, Pattern pattern, boolean hollow) th
         return affected;
     }
 
+    private int generateRasterized(EditSession editSession, Pattern pattern, boolean hollow, Mask firstMask) throws MaxChangedBlocksException {
+        ExecutorService executor = THREADS > 1 ? WorldEdit.getInstance().getPlatformManager().getExecutorService() : null;
+        VoxelBitSet draw = rasterize(hollow, firstMask, executor, THREADS);
+
+        int affected = 0;
+        for (BlockVector position : draw) {
+            if (editSession.setBlock(position, pattern.next(position))) {
+                ++affected;
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Find the positions of the region that are to be set.
+     *
+     * <p>The calling thread tests slabs too, so the shape is rasterized
+     * even if the executor is busy with other work.</p>
+     *
+     * @param hollow whether to generate a hollow shape
+     * @param firstMask the mask that the calling thread uses
+     * @param executor the executor to run the other workers on, or null if {@code threads} is 1
+     * @param threads the number of workers, including the calling thread
+     * @return the positions to set
+     */
+    VoxelBitSet rasterize(boolean hollow, Mask firstMask, @Nullable ExecutorService executor, int threads) {
+        Vector min = getExtent().getMinimumPoint();
+        Vector max = getExtent().getMaximumPoint();
+
+        // Hollow shapes also need to know about the neighbours of the region
+        final int margin = hollow ? 1 : 0;
+        final int minX = min.getBlockX() - margin;
+        final int minY = min.getBlockY() - margin;
+        final int minZ = min.getBlockZ() - margin;
+        final int maxX = max.getBlockX() + margin;
+        final int maxY = max.getBlockY() + margin;
+        final int maxZ = max.getBlockZ() + margin;
+
+        final VoxelBitSet region = new VoxelBitSet(minX, minY, minZ, maxX, maxY, maxZ);
+        for (RegionSpan span : Regions.spans(getExtent())) {
+            region.add(span.getMinimumX(), span.getMaximumX(), span.getY(), span.getZ());
+        }
+        final VoxelBitSet candidates = new VoxelBitSet(minX, minY, minZ, maxX, maxY, maxZ);
+        candidates.addAll(region);
+        if (hollow) {
+            candidates.addAll(region.getNeighbors());
+        }
+
+        final VoxelBitSet inside = new VoxelBitSet(minX, minY, minZ, maxX, maxY, maxZ);
+        final int firstSlab = minZ >> 4;
+        final int slabs = (maxZ >> 4) - firstSlab + 1;
+        final AtomicInteger nextSlab = new AtomicInteger();
+        int workers = Math.min(threads, slabs);
+
+        List<Runnable> tasks = new ArrayList<Runnable>(workers);
+        for (int i = 0; i < workers; i++) {
+            final Mask mask = i == 0 ? firstMask : createWorkerMask();
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    int slab;
+                    while ((slab = nextSlab.getAndIncrement()) < slabs) {
+                        // Fail rather than leave the rest of the shape out
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new IllegalStateException("Interrupted while rasterizing the shape");
+                        }
+                        int fromZ = Math.max(minZ, (firstSlab + slab) << 4);
+                        int toZ = Math.min(maxZ, ((firstSlab + slab) << 4) + 15);
+                        // Every slab has its own rows, so workers never write to the same word
+                        for (int z = fromZ; z <= toZ; ++z) {
+                            for (int y = minY; y <= maxY; ++y) {
+                                for (int x = minX; x <= maxX; ++x) {
+                                    if (candidates.contains(x, y, z) && mask.test(new Vector(x, y, z))) {
+                                        inside.add(x, y, z);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        if (workers == 1) {
+            tasks.get(0).run();
+        } else {
+            List<Future<?>> futures = new ArrayList<Future<?>>(workers - 1);
+            try {
+                for (Runnable task : tasks.subList(1, workers)) {
+                    futures.add(executor.submit(task));
+                }
+                tasks.get(0).run();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rasterizing the shape", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else {
+                    throw new RuntimeException(cause);
+                }
+            } finally {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        VoxelBitSet draw = region;
+        draw.retainAll(inside);
+        if (hollow) {
+            draw.removeAll(inside.getInterior());
+        }
+        return draw;
+    }
+
 }
@@ -35,6 +35,7 @@
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.data.DataException;
+import com.sk89q.worldedit.util.io.compression.CompressionCodecs;
 
 import java.io.DataInputStream;
 import java.io.File;
@@ -47,7 +48,6 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 public class MCEditSchematicFormat extends SchematicFormat {
@@ -59,8 +59,7 @@ protected MCEditSchematicFormat() {
     }
 
     public CuboidClipboard load(InputStream stream) throws IOException, DataException {
-        NBTInputStream nbtStream = new NBTInputStream(
-                new GZIPInputStream(stream));
+        NBTInputStream nbtStream = new NBTInputStream(CompressionCodecs.decompress(stream));
 
         Vector origin = new Vector();
         Vector offset = new Vector();
@@ -293,7 +292,7 @@ public void save(CuboidClipboard clipboard, File file) throws IOException, DataE
     public boolean isOfFormat(File file) {
         DataInputStream str = null;
         try {
-            str = new DataInputStream(new GZIPInputStream(new FileInputStream(file)));
+            str = new DataInputStream(CompressionCodecs.decompress(new FileInputStream(file)));
             if ((str.readByte() & 0xFF) != NBTConstants.TYPE_COMPOUND) {
                 return false;
             }
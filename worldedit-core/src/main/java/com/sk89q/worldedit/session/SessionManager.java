@@ -21,6 +21,7 @@
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.sk89q.worldedit.LocalConfiguration;
@@ -28,6 +29,7 @@
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.event.platform.ConfigurationLoadEvent;
+import com.sk89q.worldedit.history.changeset.DiskSpillingHistory;
 import com.sk89q.worldedit.session.storage.JsonFileSessionStore;
 import com.sk89q.worldedit.session.storage.SessionStore;
 import com.sk89q.worldedit.session.storage.VoidStore;
@@ -44,6 +46,9 @@
 import java.util.TimerTask;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -55,6 +60,13 @@
  * <p>Get a reference to one from {@link WorldEdit}.</p>
  *
  * <p>While this class is thread-safe, the returned session may not be.</p>
+ *
+ * <p>Sessions of active owners are loaded from storage in the background.
+ * Until a load completes, the owner is given a new session. The saved
+ * properties are copied into it by the next call to
+ * {@link #get(SessionOwner)} after the load completes, on the thread that
+ * made the call. Loads can be started early with
+ * {@link #prefetch(SessionOwner)}, such as when a player joins.</p>
  */
 public class SessionManager {
 
@@ -64,8 +76,8 @@ public class SessionManager {
     private static final Logger log = Logger.getLogger(SessionManager.class.getCanonicalName());
     private final Timer timer = new Timer();
     private final WorldEdit worldEdit;
-    private final Map<UUID, SessionHolder> sessions = new HashMap<UUID, SessionHolder>();
-    private SessionStore store = new VoidStore();
+    private final ConcurrentMap<UUID, SessionHolder> sessions = new ConcurrentHashMap<UUID, SessionHolder>();
+    private volatile SessionStore store = new VoidStore();
 
     /**
      * Create a new session manager.
@@ -87,7 +99,7 @@ public final void init() {
      * @param owner the owner
      * @return true if a session exists
      */
-    public synchronized boolean contains(SessionOwner owner) {
+    public boolean contains(SessionOwner owner) {
         checkNotNull(owner);
         return sessions.containsKey(getKey(owner));
     }
@@ -99,12 +111,12 @@ public synchronized boolean contains(SessionOwner owner) {
      * @return the session, if found, otherwise {@code null}
      */
     @Nullable
-    public synchronized LocalSession findByName(String name) {
+    public LocalSession findByName(String name) {
         checkNotNull(name);
         for (SessionHolder holder : sessions.values()) {
             String test = holder.key.getName();
             if (test != null && name.equals(test)) {
-                return holder.session;
+                return holder.getSession();
             }
         }
 
@@ -119,46 +131,58 @@ public synchronized LocalSession findByName(String name) {
      * @return the session for the owner, if it exists
      */
     @Nullable
-    public synchronized LocalSession getIfPresent(SessionOwner owner) {
+    public LocalSession getIfPresent(SessionOwner owner) {
         checkNotNull(owner);
         SessionHolder stored = sessions.get(getKey(owner));
         if (stored != null) {
-            return stored.session;
+            return stored.getSession();
         } else {
             return null;
         }
     }
 
+    /**
+     * Start loading the session for an owner in the background if it has
+     * not been loaded yet.
+     *
+     * <p>Nothing is loaded if the owner's session would not be
+     * remembered because {@link SessionKey#isActive()} returns false.</p>
+     *
+     * @param owner the owner
+     * @return a future that completes when the session has been loaded
+     */
+    public ListenableFuture<?> prefetch(SessionOwner owner) {
+        checkNotNull(owner);
+        SessionKey sessionKey = owner.getSessionKey();
+        if (!sessionKey.isActive()) {
+            return Futures.immediateFuture(null);
+        }
+        return getOrLoad(sessionKey).future;
+    }
+
     /**
      * Get the session for an owner and create one if one doesn't exist.
      *
+     * <p>If the owner's saved session is still being loaded, a new session
+     * is returned, which receives the saved properties once they have
+     * been loaded.</p>
+     *
      * @param owner the owner
      * @return a session
      */
-    public synchronized LocalSession get(SessionOwner owner) {
+    public LocalSession get(SessionOwner owner) {
         checkNotNull(owner);
 
-        LocalSession session = getIfPresent(owner);
         LocalConfiguration config = worldEdit.getConfiguration();
         SessionKey sessionKey = owner.getSessionKey();
+        LocalSession session;
 
-        // No session exists yet -- create one
-        if (session == null) {
-            try {
-                session = store.load(getKey(sessionKey));
-                session.postLoad();
-            } catch (IOException e) {
-                log.log(Level.WARNING, "Failed to load saved session", e);
-                session = new LocalSession();
-            }
-
-            session.setConfiguration(config);
-            session.setBlockChangeLimit(config.defaultChangeLimit);
-
-            // Remember the session if the session is still active
-            if (sessionKey.isActive()) {
-                sessions.put(getKey(owner), new SessionHolder(sessionKey, session));
-            }
+        if (sessionKey.isActive()) {
+            session = getOrLoad(sessionKey).getSession();
+        } else {
+            // The session will not be remembered, so it has to be loaded now
+            session = load(getKey(sessionKey));
+            session.postLoad();
         }
 
         // Set the limit on the number of blocks that an operation can
@@ -192,6 +216,88 @@ public synchronized LocalSession get(SessionOwner owner) {
         return session;
     }
 
+    /**
+     * Get the holder for a session key, creating it and starting to load
+     * its session if it does not exist.
+     *
+     * @param sessionKey the session key
+     * @return the holder
+     */
+    private SessionHolder getOrLoad(SessionKey sessionKey) {
+        final UUID key = getKey(sessionKey);
+        SessionHolder holder = sessions.get(key);
+        if (holder != null) {
+            return holder;
+        }
+
+        final SessionHolder created = new SessionHolder(sessionKey, createSession());
+        ListenableFutureTask<?> task = ListenableFutureTask.create(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    created.loaded = load(key);
+                } finally {
+                    created.loading = false;
+                }
+            }
+        }, null);
+        created.future = task;
+
+        holder = sessions.putIfAbsent(key, created);
+        if (holder != null) {
+            return holder;
+        }
+
+        try {
+            worldEdit.getPlatformManager().getExecutorService().execute(task);
+        } catch (RejectedExecutionException e) {
+            // The executor has been shut down, so load this one now
+            task.run();
+        }
+
+        return created;
+    }
+
+    /**
+     * Load a session from the store, returning a new session if it
+     * could not be loaded.
+     *
+     * @param key the key of the session
+     * @return the session
+     */
+    private LocalSession load(UUID key) {
+        try {
+            LocalSession session = store.load(key);
+            configure(session);
+            return session;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to load saved session", e);
+            return createSession();
+        }
+    }
+
+    /**
+     * Create a new session.
+     *
+     * @return a new session
+     */
+    private LocalSession createSession() {
+        LocalSession session = new LocalSession();
+        configure(session);
+        return session;
+    }
+
+    /**
+     * Apply the configuration to a newly created or loaded session.
+     *
+     * @param session the session
+     */
+    private void configure(LocalSession session) {
+        LocalConfiguration config = worldEdit.getConfiguration();
+        session.setConfiguration(config);
+        session.setBlockChangeLimit(config.defaultChangeLimit);
+    }
+
     /**
      * Save a map of sessions to disk.
      *
@@ -263,16 +369,24 @@ protected UUID getKey(SessionKey key) {
      *
      * @param owner the owner
      */
-    public synchronized void remove(SessionOwner owner) {
+    public void remove(SessionOwner owner) {
         checkNotNull(owner);
-        sessions.remove(getKey(owner));
+        SessionHolder holder = sessions.remove(getKey(owner));
+        if (holder != null) {
+            holder.session.clearHistory();
+        }
     }
 
     /**
      * Remove all sessions.
      */
-    public synchronized void clear() {
-        sessions.clear();
+    public void clear() {
+        Iterator<SessionHolder> it = sessions.values().iterator();
+        while (it.hasNext()) {
+            SessionHolder holder = it.next();
+            it.remove();
+            holder.session.clearHistory();
+        }
     }
 
     @Subscribe
@@ -280,6 +394,7 @@ public void onConfigurationLoad(ConfigurationLoadEvent event) {
         LocalConfiguration config = event.getConfiguration();
         File dir = new File(config.getWorkingDirectory(), "sessions");
         store = new JsonFileSessionStore(dir);
+        DiskSpillingHistory.purgeStaleFiles(new File(config.getWorkingDirectory(), config.historyDir));
     }
 
     /**
@@ -288,12 +403,46 @@ public void onConfigurationLoad(ConfigurationLoadEvent event) {
     private static class SessionHolder {
         private final SessionKey key;
         private final LocalSession session;
-        private long lastActive = System.currentTimeMillis();
+        private volatile long lastActive = System.currentTimeMillis();
+        private volatile boolean loading = true;
+        @Nullable
+        private volatile LocalSession loaded;
+        private ListenableFuture<?> future;
 
         private SessionHolder(SessionKey key, LocalSession session) {
             this.key = key;
             this.session = session;
         }
+
+        /**
+         * Get the session, first copying the saved properties into it if
+         * the saved session has been loaded since the last call.
+         *
+         * <p>This must only be called by the thread that the session is
+         * used from, and not by the {@link SessionTracker}.</p>
+         *
+         * @return the session
+         */
+        private synchronized LocalSession getSession() {
+            LocalSession loaded = this.loaded;
+            if (loaded != null) {
+                this.loaded = null;
+                // Properties that were changed while the session was
+                // loading are kept by loadFrom()
+                session.loadFrom(loaded);
+            }
+            return session;
+        }
+
+        /**
+         * Get whether the saved session is still being loaded or has yet
+         * to be copied into the session.
+         *
+         * @return true if loading
+         */
+        private boolean isLoading() {
+            return loading || loaded != null;
+        }
     }
 
     /**
@@ -303,33 +452,47 @@ private SessionHolder(SessionKey key, LocalSession session) {
     private class SessionTracker extends TimerTask {
         @Override
         public void run() {
-            synchronized (SessionManager.this) {
-                long now = System.currentTimeMillis();
-                Iterator<SessionHolder> it = sessions.values().iterator();
-                Map<SessionKey, LocalSession> saveQueue = new HashMap<SessionKey, LocalSession>();
-
-                while (it.hasNext()) {
-                    SessionHolder stored = it.next();
-                    if (stored.key.isActive()) {
-                        stored.lastActive = now;
-
-                        if (stored.session.compareAndResetDirty()) {
-                            saveQueue.put(stored.key, stored.session);
-                        }
-                    } else {
-                        if (now - stored.lastActive > EXPIRATION_GRACE) {
-                            if (stored.session.compareAndResetDirty()) {
-                                saveQueue.put(stored.key, stored.session);
-                            }
+            long now = System.currentTimeMillis();
+            Iterator<SessionHolder> it = sessions.values().iterator();
+            Map<SessionKey, LocalSession> saveQueue = new HashMap<SessionKey, LocalSession>();
+
+            while (it.hasNext()) {
+                SessionHolder stored = it.next();
+                LocalSession session = stored.session;
+
+                // Don't overwrite the saved session before it has been read
+                // and copied into the session, which get() does
+                if (stored.isLoading()) {
+                    // The saved copy is still current if nothing has changed, so
+                    // an inactive owner's session can be dropped without saving
+                    if (!stored.loading && !stored.key.isActive()
+                            && now - stored.lastActive > EXPIRATION_GRACE && !session.isDirty()) {
+                        session.clearHistory();
+                        it.remove();
+                    }
+                    continue;
+                }
+
+                if (stored.key.isActive()) {
+                    stored.lastActive = now;
 
-                            it.remove();
+                    if (session.compareAndResetDirty()) {
+                        saveQueue.put(stored.key, session);
+                    }
+                } else {
+                    if (now - stored.lastActive > EXPIRATION_GRACE) {
+                        if (session.compareAndResetDirty()) {
+                            saveQueue.put(stored.key, session);
                         }
+
+                        session.clearHistory();
+                        it.remove();
                     }
                 }
+            }
 
-                if (!saveQueue.isEmpty()) {
-                    commit(saveQueue);
-                }
+            if (!saveQueue.isEmpty()) {
+                commit(saveQueue);
             }
         }
     }
@@ -40,6 +40,7 @@ public final class Request {
     private @Nullable World world;
     private @Nullable LocalSession session;
     private @Nullable EditSession editSession;
+    private boolean editSessionDeferred;
 
     private Request() {
     }
@@ -98,6 +99,28 @@ public void setEditSession(@Nullable EditSession editSession) {
         this.editSession = editSession;
     }
 
+    /**
+     * Get whether the {@link EditSession} is completed later by a
+     * scheduled operation, which then remembers it, rather than when
+     * the request ends.
+     *
+     * @return true if the edit session is deferred
+     */
+    public boolean isEditSessionDeferred() {
+        return editSessionDeferred;
+    }
+
+    /**
+     * Set whether the {@link EditSession} is completed later by a
+     * scheduled operation, which then remembers it, rather than when
+     * the request ends.
+     *
+     * @param editSessionDeferred true if the edit session is deferred
+     */
+    public void setEditSessionDeferred(boolean editSessionDeferred) {
+        this.editSessionDeferred = editSessionDeferred;
+    }
+
     /**
      * Get the current request, which is specific to the current thread.
      *
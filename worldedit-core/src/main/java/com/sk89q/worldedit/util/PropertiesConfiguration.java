@@ -108,12 +108,21 @@ public void load() {
         navigationUseGlass = getBool("nav-use-glass", navigationUseGlass);
         scriptTimeout = getInt("scripting-timeout", scriptTimeout);
         saveDir = getString("schematic-save-dir", saveDir);
+        schematicCompression = getString("schematic-compression", schematicCompression);
         scriptsDir = getString("craftscript-dir", scriptsDir);
         butcherDefaultRadius = getInt("butcher-default-radius", butcherDefaultRadius);
         butcherMaxRadius = getInt("butcher-max-radius", butcherMaxRadius);
         allowSymlinks = getBool("allow-symbolic-links", allowSymlinks);
 
         LocalSession.MAX_HISTORY_SIZE = Math.max(15, getInt("history-size", 15));
+        historyDir = getString("history-dir", historyDir);
+        historySpillThreshold = getInt("history-spill-threshold", historySpillThreshold);
+        historyCompression = getString("history-compression", historyCompression);
+        historyMaxMemoryChanges = getInt("history-max-changes-in-memory", historyMaxMemoryChanges);
+        historyMaxDiskSize = getInt("history-max-disk-size", historyMaxDiskSize);
+        batchChangesByChunk = getBool("batch-changes-by-chunk", batchChangesByChunk);
+        randomSeed = getInt("random-seed", randomSeed);
+        operationTimeBudget = getInt("scheduling-time-per-tick", operationTimeBudget);
 
         String snapshotsDir = getString("snapshots-dir", "");
         if (!snapshotsDir.isEmpty()) {
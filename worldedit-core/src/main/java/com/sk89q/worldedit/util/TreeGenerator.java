@@ -24,12 +24,12 @@
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.util.random.SplitMixRandom;
 
 import javax.annotation.Nullable;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
 
 /**
  * Tree generator.
@@ -46,7 +46,7 @@ public enum TreeType {
             @Override
             public boolean generate(EditSession editSession, Vector pos) throws MaxChangedBlocksException {
                 TreeType[] choices = { REDWOOD, TALL_REDWOOD, MEGA_REDWOOD };
-                return choices[TreeGenerator.RANDOM.nextInt(choices.length)].generate(editSession, pos);
+                return choices[SplitMixRandom.current().nextInt(choices.length)].generate(editSession, pos);
             }
         },
         BIRCH("Birch tree", "birch", "white", "whitebark"),
@@ -55,7 +55,7 @@ public boolean generate(EditSession editSession, Vector pos) throws MaxChangedBl
             @Override
             public boolean generate(EditSession editSession, Vector pos) throws MaxChangedBlocksException {
                 TreeType[] choices = { BIRCH, TALL_BIRCH };
-                return choices[TreeGenerator.RANDOM.nextInt(choices.length)].generate(editSession, pos);
+                return choices[SplitMixRandom.current().nextInt(choices.length)].generate(editSession, pos);
             }
         },
         JUNGLE("Jungle tree", "jungle"),
@@ -70,7 +70,7 @@ public boolean generate(EditSession editSession, Vector pos) throws MaxChangedBl
             @Override
             public boolean generate(EditSession editSession, Vector pos) throws MaxChangedBlocksException {
                 TreeType[] choices = { JUNGLE, SMALL_JUNGLE };
-                return choices[TreeGenerator.RANDOM.nextInt(choices.length)].generate(editSession, pos);
+                return choices[SplitMixRandom.current().nextInt(choices.length)].generate(editSession, pos);
             }
         },
         JUNGLE_BUSH("Jungle bush", "junglebush", "jungleshrub"),
@@ -80,7 +80,7 @@ public boolean generate(EditSession editSession, Vector pos) throws MaxChangedBl
             @Override
             public boolean generate(EditSession editSession, Vector pos) throws MaxChangedBlocksException {
                 TreeType[] choices = { RED_MUSHROOM, BROWN_MUSHROOM };
-                return choices[TreeGenerator.RANDOM.nextInt(choices.length)].generate(editSession, pos);
+                return choices[SplitMixRandom.current().nextInt(choices.length)].generate(editSession, pos);
             }
         },
         SWAMP("Swamp tree", "swamp", "swamptree"),
@@ -97,7 +97,7 @@ public boolean generate(EditSession editSession, Vector pos) throws MaxChangedBl
             @Override
             public boolean generate(EditSession editSession, Vector pos) throws MaxChangedBlocksException {
                 TreeType[] choices = TreeType.values();
-                return choices[TreeGenerator.RANDOM.nextInt(choices.length)].generate(editSession, pos);
+                return choices[SplitMixRandom.current().nextInt(choices.length)].generate(editSession, pos);
             }
         };
 
@@ -147,8 +147,6 @@ public static TreeType lookup(String name) {
         }
     }
 
-    private static final Random RANDOM = new Random();
-
     private TreeType type;
 
     /**
@@ -180,8 +178,8 @@ public boolean generate(EditSession editSession, Vector position) throws MaxChan
      */
     private static void makePineTree(EditSession editSession, Vector basePosition)
             throws MaxChangedBlocksException {
-        int trunkHeight = (int) Math.floor(Math.random() * 2) + 3;
-        int height = (int) Math.floor(Math.random() * 5) + 8;
+        int trunkHeight = (int) Math.floor(SplitMixRandom.current().nextDouble() * 2) + 3;
+        int height = (int) Math.floor(SplitMixRandom.current().nextDouble() * 5) + 8;
 
         BaseBlock logBlock = new BaseBlock(BlockID.LOG);
         BaseBlock leavesBlock = new BaseBlock(BlockID.LEAVES);
@@ -104,10 +104,20 @@ public void load() {
         scriptsDir = config.getString("scripting.dir", scriptsDir);
 
         saveDir = config.getString("saving.dir", saveDir);
+        schematicCompression = config.getString("saving.compression", schematicCompression);
 
         allowSymlinks = config.getBoolean("files.allow-symbolic-links", false);
         LocalSession.MAX_HISTORY_SIZE = Math.max(0, config.getInt("history.size", 15));
         SessionManager.EXPIRATION_GRACE = config.getInt("history.expiration", 10) * 60 * 1000;
+        historyDir = config.getString("history.dir", historyDir);
+        historySpillThreshold = Math.max(-1, config.getInt("history.spill-to-disk-after", historySpillThreshold));
+        historyCompression = config.getString("history.compression", historyCompression);
+        historyMaxMemoryChanges = Math.max(-1, config.getInt("history.limits.max-changes-in-memory", historyMaxMemoryChanges));
+        historyMaxDiskSize = Math.max(-1, config.getInt("history.limits.max-disk-size", historyMaxDiskSize));
+
+        batchChangesByChunk = config.getBoolean("editing.batch-by-chunk", batchChangesByChunk);
+        randomSeed = config.getInt("editing.random-seed", randomSeed);
+        operationTimeBudget = Math.max(-1, config.getInt("scheduling.time-per-tick", operationTimeBudget));
 
         showHelpInfo = config.getBoolean("show-help-on-first-use", true);
 
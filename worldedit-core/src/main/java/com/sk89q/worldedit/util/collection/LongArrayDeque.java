@@ -0,0 +1,119 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A first-in first-out queue of primitive {@code long} values that is
+ * backed by a growable ring buffer.
+ */
+public class LongArrayDeque {
+
+    private long[] elements;
+    private int head;
+    private int tail;
+
+    /**
+     * Create a new empty queue.
+     */
+    public LongArrayDeque() {
+        this(16);
+    }
+
+    /**
+     * Create a new empty queue.
+     *
+     * @param expectedSize the number of values expected to be queued at once
+     */
+    public LongArrayDeque(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize) {
+            capacity <<= 1;
+        }
+        elements = new long[capacity];
+    }
+
+    /**
+     * Get the number of values in the queue.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return (tail - head) & (elements.length - 1);
+    }
+
+    /**
+     * Return whether the queue contains no values.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Add a value to the end of the queue.
+     *
+     * @param value the value
+     */
+    public void offer(long value) {
+        elements[tail] = value;
+        tail = (tail + 1) & (elements.length - 1);
+        if (tail == head) {
+            grow();
+        }
+    }
+
+    /**
+     * Remove the value at the front of the queue.
+     *
+     * @return the value
+     * @throws NoSuchElementException thrown if the queue is empty
+     */
+    public long poll() {
+        if (head == tail) {
+            throw new NoSuchElementException();
+        }
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        return value;
+    }
+
+    /**
+     * Remove all values from the queue.
+     */
+    public void clear() {
+        head = 0;
+        tail = 0;
+    }
+
+    private void grow() {
+        int length = elements.length;
+        int right = length - head;
+        long[] grown = new long[length << 1];
+        System.arraycopy(elements, head, grown, 0, right);
+        System.arraycopy(elements, 0, grown, right, head);
+        elements = grown;
+        head = 0;
+        tail = length;
+    }
+
+}
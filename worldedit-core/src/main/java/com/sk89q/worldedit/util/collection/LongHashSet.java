@@ -0,0 +1,180 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A set of primitive {@code long} values that uses open addressing with
+ * linear probing, so that no object is allocated per entry.
+ *
+ * <p>Values cannot be removed individually, which keeps probing simple.
+ * The set is intended for marking visited positions.</p>
+ */
+public class LongHashSet {
+
+    private static final long EMPTY = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int threshold;
+    private boolean containsEmpty;
+
+    /**
+     * Create a new empty set.
+     */
+    public LongHashSet() {
+        this(16);
+    }
+
+    /**
+     * Create a new empty set.
+     *
+     * @param expectedSize the number of values expected to be added
+     */
+    public LongHashSet(int expectedSize) {
+        checkArgument(expectedSize >= 0, "expectedSize >= 0 required");
+        allocate(getCapacity(expectedSize));
+    }
+
+    /**
+     * Get the number of values in this set.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return whether this set contains no values.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return whether the given value is in this set.
+     *
+     * @param value the value
+     * @return true if the value is in this set
+     */
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+
+        long[] table = this.table;
+        int i = hash(value) & mask;
+        long current;
+        while ((current = table[i]) != EMPTY) {
+            if (current == value) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Add a value to this set.
+     *
+     * @param value the value
+     * @return true if the value was not already in this set
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+
+        long[] table = this.table;
+        int i = hash(value) & mask;
+        long current;
+        while ((current = table[i]) != EMPTY) {
+            if (current == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        table[i] = value;
+        if (++size >= threshold) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Remove all values from this set.
+     */
+    public void clear() {
+        allocate(getCapacity(16));
+        size = 0;
+        containsEmpty = false;
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        allocate(capacity);
+        for (long value : old) {
+            if (value != EMPTY) {
+                int i = hash(value) & mask;
+                while (table[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = value;
+            }
+        }
+    }
+
+    private static int getCapacity(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long value) {
+        // Finalizer of MurmurHash3, so that nearby positions spread out
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return (int) value;
+    }
+
+}
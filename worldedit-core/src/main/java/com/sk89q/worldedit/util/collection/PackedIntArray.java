@@ -0,0 +1,141 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A fixed-length array of non-negative integers that are packed into
+ * {@code long} words using as few bits per entry as possible.
+ *
+ * <p>The number of bits used per entry is always a power of two so that
+ * an entry never straddles two words. When a value is set that does not
+ * fit into the current width, the array is transparently widened.</p>
+ */
+public class PackedIntArray {
+
+    private final int size;
+    private int log; // log2 of the bits per entry
+    private long[] words;
+
+    /**
+     * Create a new array where every entry is zero.
+     *
+     * @param size the number of entries
+     * @param maxValue the largest value expected to be stored initially
+     */
+    public PackedIntArray(int size, int maxValue) {
+        checkArgument(size >= 0, "size >= 0 required");
+        checkArgument(maxValue >= 0, "maxValue >= 0 required");
+        this.size = size;
+        this.log = getLogForValue(maxValue);
+        this.words = new long[getWordCount(size, log)];
+    }
+
+    /**
+     * Get the number of entries in this array.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of bits that are currently used per entry.
+     *
+     * @return the number of bits
+     */
+    public int getBitsPerEntry() {
+        return 1 << log;
+    }
+
+    /**
+     * Get the value at the given index.
+     *
+     * @param index the index
+     * @return the value
+     */
+    public int get(int index) {
+        int entryShift = 6 - log;
+        long word = words[index >>> entryShift];
+        int offset = (index & ((1 << entryShift) - 1)) << log;
+        return (int) ((word >>> offset) & getMask(log));
+    }
+
+    /**
+     * Set the value at the given index, widening the array if the value
+     * does not fit into the current number of bits per entry.
+     *
+     * @param index the index
+     * @param value the value, which must not be negative
+     */
+    public void set(int index, int value) {
+        checkArgument(value >= 0, "value >= 0 required");
+        if (value > getMask(log)) {
+            resize(getLogForValue(value));
+        }
+
+        int entryShift = 6 - log;
+        int wordIndex = index >>> entryShift;
+        int offset = (index & ((1 << entryShift) - 1)) << log;
+        long mask = getMask(log) << offset;
+        words[wordIndex] = (words[wordIndex] & ~mask) | (((long) value << offset) & mask);
+    }
+
+    /**
+     * Get the approximate number of bytes used by the backing storage.
+     *
+     * @return the number of bytes
+     */
+    public long getStorageSize() {
+        return words.length * 8L;
+    }
+
+    private void resize(int newLog) {
+        PackedIntArray copy = new PackedIntArray(size, 0);
+        copy.log = newLog;
+        copy.words = new long[getWordCount(size, newLog)];
+        for (int i = 0; i < size; i++) {
+            copy.set(i, get(i));
+        }
+        log = newLog;
+        words = copy.words;
+    }
+
+    private static long getMask(int log) {
+        return log == 6 ? -1L : (1L << (1 << log)) - 1;
+    }
+
+    private static int getWordCount(int size, int log) {
+        int entriesPerWord = 64 >> log;
+        return (size + entriesPerWord - 1) / entriesPerWord;
+    }
+
+    private static int getLogForValue(int value) {
+        int bits = 32 - Integer.numberOfLeadingZeros(value);
+        int log = 0;
+        while ((1 << log) < bits) {
+            log++;
+        }
+        return log;
+    }
+
+}
@@ -0,0 +1,512 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import com.sk89q.worldedit.BlockVector;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A set of block positions within a fixed box, stored as one bit per
+ * position.
+ *
+ * <p>Every row of positions along the X axis is stored in consecutive
+ * {@code long} words, so that operations on whole sets, such as finding
+ * the neighbours of every position, work on 64 positions at a time.</p>
+ */
+public class VoxelBitSet implements Iterable<BlockVector> {
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int width;
+    private final int height;
+    private final int length;
+    private final int rowWords;
+    private final long lastWordMask;
+    private final long[] words;
+
+    /**
+     * Create a new empty set.
+     *
+     * @param minX the lowest X coordinate
+     * @param minY the lowest Y coordinate
+     * @param minZ the lowest Z coordinate
+     * @param maxX the highest X coordinate
+     * @param maxY the highest Y coordinate
+     * @param maxZ the highest Z coordinate
+     */
+    public VoxelBitSet(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        checkArgument(maxX >= minX && maxY >= minY && maxZ >= minZ, "max >= min required");
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.width = maxX - minX + 1;
+        this.height = maxY - minY + 1;
+        this.length = maxZ - minZ + 1;
+        this.rowWords = (width + 63) >>> 6;
+        this.lastWordMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+        long size = (long) rowWords * height * length;
+        checkArgument(size <= Integer.MAX_VALUE, "The box is too large");
+        this.words = new long[(int) size];
+    }
+
+    /**
+     * Create an empty set with the same box as another set.
+     *
+     * @param other the other set
+     */
+    private VoxelBitSet(VoxelBitSet other) {
+        this.minX = other.minX;
+        this.minY = other.minY;
+        this.minZ = other.minZ;
+        this.width = other.width;
+        this.height = other.height;
+        this.length = other.length;
+        this.rowWords = other.rowWords;
+        this.lastWordMask = other.lastWordMask;
+        this.words = new long[other.words.length];
+    }
+
+    /**
+     * Return whether the given position is in this set. Positions outside
+     * the box are never in the set.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the position is in the set
+     */
+    public boolean contains(int x, int y, int z) {
+        int bx = x - minX;
+        int by = y - minY;
+        int bz = z - minZ;
+        if (bx < 0 || bx >= width || by < 0 || by >= height || bz < 0 || bz >= length) {
+            return false;
+        }
+        return (words[getRow(by, bz) + (bx >>> 6)] & (1L << bx)) != 0;
+    }
+
+    /**
+     * Add a position to this set.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     */
+    public void add(int x, int y, int z) {
+        add(x, x, y, z);
+    }
+
+    /**
+     * Add a run of positions along the X axis to this set. The part of the
+     * run that is outside the box is ignored.
+     *
+     * @param minX the lowest X coordinate
+     * @param maxX the highest X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     */
+    public void add(int minX, int maxX, int y, int z) {
+        int by = y - minY;
+        int bz = z - minZ;
+        if (by < 0 || by >= height || bz < 0 || bz >= length) {
+            return;
+        }
+        int from = Math.max(minX - this.minX, 0);
+        int to = Math.min(maxX - this.minX, width - 1);
+        if (from > to) {
+            return;
+        }
+
+        int row = getRow(by, bz);
+        int first = from >>> 6;
+        int last = to >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if (first == last) {
+            words[row + first] |= firstMask & lastMask;
+        } else {
+            words[row + first] |= firstMask;
+            for (int i = first + 1; i < last; i++) {
+                words[row + i] = -1L;
+            }
+            words[row + last] |= lastMask;
+        }
+    }
+
+    /**
+     * Add every position of another set with the same box to this set.
+     *
+     * @param other the other set
+     */
+    public void addAll(VoxelBitSet other) {
+        checkSameBox(other);
+        long[] words = this.words;
+        long[] otherWords = other.words;
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= otherWords[i];
+        }
+    }
+
+    /**
+     * Remove every position that is not in another set with the same box.
+     *
+     * @param other the other set
+     */
+    public void retainAll(VoxelBitSet other) {
+        checkSameBox(other);
+        long[] words = this.words;
+        long[] otherWords = other.words;
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= otherWords[i];
+        }
+    }
+
+    /**
+     * Remove every position of another set with the same box from this set.
+     *
+     * @param other the other set
+     */
+    public void removeAll(VoxelBitSet other) {
+        checkSameBox(other);
+        long[] words = this.words;
+        long[] otherWords = other.words;
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= ~otherWords[i];
+        }
+    }
+
+    /**
+     * Get the number of positions in this set.
+     *
+     * @return the number of positions
+     */
+    public int size() {
+        int size = 0;
+        for (long word : words) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    /**
+     * Return whether this set contains no positions.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create a new set of every position in the box that has at least one
+     * of its six direct neighbours in this set.
+     *
+     * @return a new set
+     */
+    public VoxelBitSet getNeighbors() {
+        VoxelBitSet result = new VoxelBitSet(this);
+        long[] words = this.words;
+        long[] out = result.words;
+        int yStride = rowWords;
+        int zStride = rowWords * height;
+
+        for (int z = 0; z < length; z++) {
+            for (int y = 0; y < height; y++) {
+                int row = getRow(y, z);
+                for (int i = 0; i < rowWords; i++) {
+                    int index = row + i;
+                    long word = words[index];
+                    long value = word << 1 | word >>> 1;
+                    if (i > 0) {
+                        value |= words[index - 1] >>> 63;
+                    }
+                    if (i < rowWords - 1) {
+                        value |= words[index + 1] << 63;
+                    }
+                    if (y > 0) {
+                        value |= words[index - yStride];
+                    }
+                    if (y < height - 1) {
+                        value |= words[index + yStride];
+                    }
+                    if (z > 0) {
+                        value |= words[index - zStride];
+                    }
+                    if (z < length - 1) {
+                        value |= words[index + zStride];
+                    }
+                    out[index] = value;
+                }
+                out[row + rowWords - 1] &= lastWordMask;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Create a new set of every position in this set whose six direct
+     * neighbours are also in this set.
+     *
+     * <p>Positions outside the box are treated as not being in the set,
+     * so positions on the faces of the box are never in the result.</p>
+     *
+     * @return a new set
+     */
+    public VoxelBitSet getInterior() {
+        VoxelBitSet result = new VoxelBitSet(this);
+        long[] words = this.words;
+        long[] out = result.words;
+        int yStride = rowWords;
+        int zStride = rowWords * height;
+
+        for (int z = 1; z < length - 1; z++) {
+            for (int y = 1; y < height - 1; y++) {
+                int row = getRow(y, z);
+                for (int i = 0; i < rowWords; i++) {
+                    int index = row + i;
+                    long word = words[index];
+                    long left = word << 1;
+                    long right = word >>> 1;
+                    if (i > 0) {
+                        left |= words[index - 1] >>> 63;
+                    }
+                    if (i < rowWords - 1) {
+                        right |= words[index + 1] << 63;
+                    }
+                    out[index] = word & left & right
+                            & words[index - yStride] & words[index + yStride]
+                            & words[index - zStride] & words[index + zStride];
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Add every position of the mask that can be reached from a position
+     * in both this set and the mask, by moving between direct neighbours
+     * that are all in the mask.
+     *
+     * @param mask the mask, which must have the same box
+     */
+    public void fill(VoxelBitSet mask) {
+        checkSameBox(mask);
+        long[] reached = new long[words.length];
+        long[] maskWords = mask.words;
+        for (int i = 0; i < reached.length; i++) {
+            reached[i] = words[i] & maskWords[i];
+        }
+
+        // Alternate sweeps until nothing spreads any more
+        long[] seeds = new long[rowWords];
+        boolean changed;
+        do {
+            changed = false;
+            for (int z = 0; z < length; z++) {
+                for (int y = 0; y < height; y++) {
+                    changed |= spread(reached, maskWords, seeds, y, z, -1);
+                }
+            }
+            for (int z = length - 1; z >= 0; z--) {
+                for (int y = height - 1; y >= 0; y--) {
+                    changed |= spread(reached, maskWords, seeds, y, z, 1);
+                }
+            }
+        } while (changed);
+
+        for (int i = 0; i < reached.length; i++) {
+            words[i] |= reached[i];
+        }
+    }
+
+    /**
+     * Spread the reached positions of one row from the row itself and
+     * from the rows before or after it along the Y and Z axes.
+     *
+     * @return true if the row changed
+     */
+    private boolean spread(long[] reached, long[] mask, long[] seeds, int y, int z, int direction) {
+        int row = getRow(y, z);
+        int ny = y + direction;
+        int nz = z + direction;
+        int yRow = ny >= 0 && ny < height ? getRow(ny, z) : -1;
+        int zRow = nz >= 0 && nz < length ? getRow(y, nz) : -1;
+
+        boolean any = false;
+        for (int i = 0; i < rowWords; i++) {
+            long seed = reached[row + i];
+            if (yRow != -1) {
+                seed |= reached[yRow + i];
+            }
+            if (zRow != -1) {
+                seed |= reached[zRow + i];
+            }
+            seed &= mask[row + i];
+            seeds[i] = seed;
+            any |= seed != 0;
+        }
+        if (!any) {
+            return false;
+        }
+
+        // Fill towards higher X, carrying across words
+        long carry = 0;
+        for (int i = 0; i < rowWords; i++) {
+            long m = mask[row + i];
+            long seed = seeds[i] | (carry & m);
+            long filled = (m & ~(m + seed)) | seed;
+            seeds[i] = filled;
+            carry = filled >>> 63;
+        }
+
+        // Then towards lower X, using reversed words
+        carry = 0;
+        boolean changed = false;
+        for (int i = rowWords - 1; i >= 0; i--) {
+            long m = Long.reverse(mask[row + i]);
+            long seed = Long.reverse(seeds[i]) | (carry & m);
+            long filled = Long.reverse((m & ~(m + seed)) | seed);
+            carry = filled & 1;
+            if (filled != reached[row + i]) {
+                reached[row + i] = filled;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Iterate over the positions in this set a chunk column at a time, so
+     * that blocks can be set in chunk order.
+     *
+     * @return an iterator
+     */
+    @Override
+    public Iterator<BlockVector> iterator() {
+        return new Iterator<BlockVector>() {
+            private final int maxChunkX = (minX + width - 1) >> 4;
+            private final int maxChunkZ = (minZ + length - 1) >> 4;
+            private int chunkX = minX >> 4;
+            private int chunkZ = minZ >> 4;
+            private int fromX;
+            private int toX;
+            private int toZ;
+            private int z = -1;
+            private int y;
+            private long bits;
+            private BlockVector next;
+
+            {
+                startChunk();
+                next = advance();
+            }
+
+            private void startChunk() {
+                fromX = Math.max(minX, chunkX << 4) - minX;
+                toX = Math.min(minX + width - 1, (chunkX << 4) + 15) - minX;
+                z = Math.max(minZ, chunkZ << 4) - minZ;
+                toZ = Math.min(minZ + length - 1, (chunkZ << 4) + 15) - minZ;
+                y = -1;
+                bits = 0;
+            }
+
+            private BlockVector advance() {
+                while (bits == 0) {
+                    if (++y >= height) {
+                        y = 0;
+                        if (++z > toZ) {
+                            if (++chunkX > maxChunkX) {
+                                chunkX = minX >> 4;
+                                if (++chunkZ > maxChunkZ) {
+                                    return null;
+                                }
+                            }
+                            startChunk();
+                            continue;
+                        }
+                    }
+                    bits = getBits(getRow(y, z), fromX, toX);
+                }
+                int x = fromX + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                return new BlockVector(minX + x, minY + y, minZ + z);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public BlockVector next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                BlockVector position = next;
+                next = advance();
+                return position;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Get up to 64 bits of a row, shifted so that {@code from} is bit 0.
+     */
+    private long getBits(int row, int from, int to) {
+        int word = from >>> 6;
+        int shift = from & 63;
+        int count = to - from + 1;
+        long bits = words[row + word] >>> shift;
+        if (shift != 0 && shift + count > 64) {
+            bits |= words[row + word + 1] << (64 - shift);
+        }
+        return count == 64 ? bits : bits & ((1L << count) - 1);
+    }
+
+    private int getRow(int y, int z) {
+        return (z * height + y) * rowWords;
+    }
+
+    private void checkSameBox(VoxelBitSet other) {
+        checkNotNull(other);
+        checkArgument(other.minX == minX && other.minY == minY && other.minZ == minZ
+                && other.width == width && other.height == height && other.length == length,
+                "The sets must have the same box");
+    }
+
+}
@@ -19,8 +19,11 @@
 
 package com.sk89q.worldedit.util.concurrency;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -51,4 +54,22 @@ public static ExecutorService newBoundedCachedThreadPool(int minThreads, int max
         return threadPoolExecutor;
     }
 
+    /**
+     * Creates a thread pool with a fixed maximum number of daemon threads
+     * and an unbounded queue. Idle threads are stopped after a while.
+     *
+     * @param threads the maximum number of threads
+     * @param nameFormat the format of the thread names, with {@code %d} for the thread number
+     * @return the newly created thread pool
+     */
+    public static ExecutorService newDaemonThreadPool(int threads, String nameFormat) {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(
+                threads, threads,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
 }
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.util.eventbus;
 
 import com.google.common.base.Supplier;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
@@ -44,6 +45,10 @@
  * <p>This implementation utilizes naive synchronization on all getter and
  * setter methods. Dispatch does not occur when a lock has been acquired,
  * however.</p>
+ *
+ * <p>The handlers for each event class are collected and sorted once into
+ * an array that is cached until handlers are next subscribed or
+ * unsubscribed, so posting an event does not lock or allocate.</p>
  */
 public class EventBus {
 
@@ -68,6 +73,12 @@ public Set<EventHandler> get() {
     @RequiresNewerGuava
     private HierarchyCache flattenHierarchyCache = new HierarchyCache();
 
+    /**
+     * Sorted handlers by event class. Only modified while holding the lock
+     * on this object.
+     */
+    private final Map<Class<?>, EventHandler[]> dispatchCache = new MapMaker().weakKeys().makeMap();
+
     /**
      * Registers the given handler for the given class to receive events.
      *
@@ -78,6 +89,7 @@ public synchronized void subscribe(Class<?> clazz, EventHandler handler) {
         checkNotNull(clazz);
         checkNotNull(handler);
         handlersByType.put(clazz, handler);
+        dispatchCache.clear();
     }
 
     /**
@@ -88,6 +100,7 @@ public synchronized void subscribe(Class<?> clazz, EventHandler handler) {
     public synchronized void subscribeAll(Multimap<Class<?>, EventHandler> handlers) {
         checkNotNull(handlers);
         handlersByType.putAll(handlers);
+        dispatchCache.clear();
     }
 
     /**
@@ -100,6 +113,7 @@ public synchronized void unsubscribe(Class<?> clazz, EventHandler handler) {
         checkNotNull(clazz);
         checkNotNull(handler);
         handlersByType.remove(clazz, handler);
+        dispatchCache.clear();
     }
 
     /**
@@ -113,10 +127,11 @@ public synchronized void unsubscribeAll(Multimap<Class<?>, EventHandler> handler
             Set<EventHandler> currentHandlers = getHandlersForEventType(entry.getKey());
             Collection<EventHandler> eventMethodsInListener = entry.getValue();
 
-            if (currentHandlers != null &&!currentHandlers.containsAll(entry.getValue())) {
+            if (currentHandlers != null) {
                 currentHandlers.removeAll(eventMethodsInListener);
             }
         }
+        dispatchCache.clear();
     }
 
     /**
@@ -153,25 +168,43 @@ public void unregister(Object object) {
      * @param event  event to post.
      */
     public void post(Object event) {
-        List<EventHandler> dispatching = new ArrayList<EventHandler>();
+        EventHandler[] dispatching = dispatchCache.get(event.getClass());
+        if (dispatching == null) {
+            dispatching = getDispatchHandlers(event.getClass());
+        }
 
-        synchronized (this) {
-            Set<Class<?>> dispatchTypes = flattenHierarchy(event.getClass());
+        for (EventHandler handler : dispatching) {
+            dispatch(event, handler);
+        }
+    }
 
-            for (Class<?> eventType : dispatchTypes) {
-                Set<EventHandler> wrappers = getHandlersForEventType(eventType);
+    /**
+     * Collect and sort the handlers for the given event class and cache
+     * them for later posts.
+     *
+     * @param eventClass the event class
+     * @return the sorted handlers
+     */
+    private synchronized EventHandler[] getDispatchHandlers(Class<?> eventClass) {
+        EventHandler[] cached = dispatchCache.get(eventClass);
+        if (cached != null) {
+            return cached;
+        }
 
-                if (wrappers != null && !wrappers.isEmpty()) {
-                    dispatching.addAll(wrappers);
-                }
+        List<EventHandler> dispatching = new ArrayList<EventHandler>();
+        for (Class<?> eventType : flattenHierarchy(eventClass)) {
+            Set<EventHandler> wrappers = getHandlersForEventType(eventType);
+
+            if (wrappers != null && !wrappers.isEmpty()) {
+                dispatching.addAll(wrappers);
             }
         }
 
         Collections.sort(dispatching);
 
-        for (EventHandler handler : dispatching) {
-            dispatch(event, handler);
-        }
+        EventHandler[] handlers = dispatching.toArray(new EventHandler[dispatching.size()]);
+        dispatchCache.put(eventClass, handlers);
+        return handlers;
     }
 
     /**
@@ -60,16 +60,16 @@ public boolean markSupported() {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        int read = super.read(b, off, len);
-        position += read;
+        int read = parent.read(b, off, len);
+        if (read > 0) {
+            position += read;
+        }
         return read;
     }
 
     @Override
     public int read(byte[] b) throws IOException {
-        int read = parent.read(b);
-        position += read;
-        return read;
+        return read(b, 0, b.length);
     }
 
     @Override
@@ -84,6 +84,15 @@ public long skip(long n) throws IOException {
         return skipped;
     }
 
+    /**
+     * Get the number of bytes that have been read or skipped so far.
+     *
+     * @return the position
+     */
+    public long getPosition() {
+        return position;
+    }
+
     public void seek(long n) throws IOException {
         long diff = n - position;
 
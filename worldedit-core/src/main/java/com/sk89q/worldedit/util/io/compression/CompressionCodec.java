@@ -0,0 +1,72 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.io.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compresses and decompresses streams of data.
+ *
+ * <p>Codecs are identified by an ID that is written to the frame header
+ * of files written with {@link CompressionCodecs#compress(OutputStream, CompressionCodec)},
+ * so that they can be read back without knowing which codec was used.</p>
+ */
+public interface CompressionCodec {
+
+    /**
+     * Get the ID of the codec that identifies it in frame headers.
+     *
+     * @return the ID, between 0 and 255
+     */
+    int getId();
+
+    /**
+     * Get the name of the codec, including any options, in a form that
+     * can be passed to {@link CompressionCodecs#findByName(String)}.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Wrap the given stream so that data written to it is compressed.
+     *
+     * <p>Closing the returned stream closes the given stream.</p>
+     *
+     * @param outputStream the stream to write compressed data to
+     * @return a stream that accepts uncompressed data
+     * @throws IOException thrown on I/O error
+     */
+    OutputStream compress(OutputStream outputStream) throws IOException;
+
+    /**
+     * Wrap the given stream so that data read from it is decompressed.
+     *
+     * <p>Closing the returned stream closes the given stream.</p>
+     *
+     * @param inputStream the stream to read compressed data from
+     * @return a stream that returns uncompressed data
+     * @throws IOException thrown on I/O error
+     */
+    InputStream decompress(InputStream inputStream) throws IOException;
+
+}
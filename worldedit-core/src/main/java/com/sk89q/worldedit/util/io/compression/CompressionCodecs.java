@@ -0,0 +1,170 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.io.compression;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Finds compression codecs and reads and writes the frame header that
+ * identifies the codec of compressed files.
+ *
+ * <p>The frame header consists of the bytes {@code WEZ} followed by the
+ * ID of the codec. Gzip is written without a frame header because it is
+ * already identified by its own header.</p>
+ */
+public final class CompressionCodecs {
+
+    private static final byte[] MAGIC = { 'W', 'E', 'Z' };
+    private static final int GZIP_MAGIC_1 = 0x1F;
+    private static final int GZIP_MAGIC_2 = 0x8B;
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Find a codec by name. The name may be followed by a colon and a
+     * compression level for codecs that support levels, such as
+     * {@code gzip:9} or {@code deflate:1}.
+     *
+     * @param name the name
+     * @return the codec, otherwise null if the name is not recognized
+     */
+    @Nullable
+    public static CompressionCodec findByName(String name) {
+        checkNotNull(name);
+
+        String codecName = name.toLowerCase().trim();
+        int level = -1;
+        int index = codecName.indexOf(':');
+        if (index != -1) {
+            try {
+                level = Integer.parseInt(codecName.substring(index + 1).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (level < -1 || level > 9) {
+                return null;
+            }
+            codecName = codecName.substring(0, index).trim();
+        }
+
+        if (codecName.equals("gzip")) {
+            return new GzipCodec(level);
+        } else if (codecName.equals("deflate") || codecName.equals("zlib")) {
+            return new DeflateCodec(level);
+        } else if (index != -1) {
+            return null;
+        } else if (codecName.equals("lz")) {
+            return new LZCodec();
+        } else if (codecName.equals("none")) {
+            return new StoredCodec();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Find a codec by the ID written in its frame header.
+     *
+     * @param id the ID
+     * @return the codec, otherwise null if the ID is not recognized
+     */
+    @Nullable
+    public static CompressionCodec findById(int id) {
+        switch (id) {
+            case StoredCodec.ID:
+                return new StoredCodec();
+            case DeflateCodec.ID:
+                return new DeflateCodec();
+            case GzipCodec.ID:
+                return new GzipCodec();
+            case LZCodec.ID:
+                return new LZCodec();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Write the frame header of the given codec and wrap the stream so
+     * that data written to it is compressed.
+     *
+     * @param outputStream the stream to write to
+     * @param codec the codec
+     * @return a stream that accepts uncompressed data
+     * @throws IOException thrown on I/O error
+     */
+    public static OutputStream compress(OutputStream outputStream, CompressionCodec codec) throws IOException {
+        checkNotNull(outputStream);
+        checkNotNull(codec);
+
+        if (codec.getId() != GzipCodec.ID) {
+            outputStream.write(MAGIC);
+            outputStream.write(codec.getId());
+        }
+        return codec.compress(outputStream);
+    }
+
+    /**
+     * Read the frame header of the given stream and wrap it so that data
+     * read from it is decompressed with the codec named by the header.
+     * Gzip streams without a frame header are also accepted.
+     *
+     * @param inputStream the stream to read from
+     * @return a stream that returns uncompressed data
+     * @throws IOException thrown on I/O error or if the codec is not recognized
+     */
+    public static InputStream decompress(InputStream inputStream) throws IOException {
+        checkNotNull(inputStream);
+
+        PushbackInputStream in = new PushbackInputStream(inputStream, MAGIC.length + 1);
+        byte[] header = new byte[MAGIC.length + 1];
+        int length = 0;
+        while (length < header.length) {
+            int read = in.read(header, length, header.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+
+        if (length >= 2 && (header[0] & 0xFF) == GZIP_MAGIC_1 && (header[1] & 0xFF) == GZIP_MAGIC_2) {
+            in.unread(header, 0, length);
+            return new GzipCodec().decompress(in);
+        }
+
+        if (length == header.length && header[0] == MAGIC[0] && header[1] == MAGIC[1] && header[2] == MAGIC[2]) {
+            CompressionCodec codec = findById(header[3] & 0xFF);
+            if (codec == null) {
+                throw new IOException("Unknown compression codec with ID " + (header[3] & 0xFF));
+            }
+            return codec.decompress(in);
+        }
+
+        throw new IOException("Data is not compressed in a known format");
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.io.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Compresses data with zlib-wrapped deflate at a configurable level.
+ */
+public class DeflateCodec implements CompressionCodec {
+
+    public static final int ID = 1;
+    static final int BUFFER_SIZE = 8192;
+
+    private final int level;
+
+    /**
+     * Create a new instance with the default compression level.
+     */
+    public DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param level the compression level, between 0 and 9, or -1 for the default level
+     */
+    public DeflateCodec(int level) {
+        checkArgument(level >= -1 && level <= 9, "level must be between -1 and 9");
+        this.level = level;
+    }
+
+    /**
+     * Get the compression level.
+     *
+     * @return the level, or -1 for the default level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return level == Deflater.DEFAULT_COMPRESSION ? "deflate" : "deflate:" + level;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream outputStream) throws IOException {
+        return new DeflaterOutputStream(outputStream, new Deflater(level), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    def.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream decompress(InputStream inputStream) throws IOException {
+        return new InflaterInputStream(inputStream, new Inflater(), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+
+}
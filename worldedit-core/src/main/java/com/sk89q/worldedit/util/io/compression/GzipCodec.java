@@ -0,0 +1,93 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.io.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Compresses data with gzip at a configurable level.
+ *
+ * <p>Gzip data carries its own header, so it is written without a frame
+ * header and remains readable by other tools.</p>
+ */
+public class GzipCodec implements CompressionCodec {
+
+    public static final int ID = 2;
+
+    private final int level;
+
+    /**
+     * Create a new instance with the default compression level.
+     */
+    public GzipCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param level the compression level, between 0 and 9, or -1 for the default level
+     */
+    public GzipCodec(int level) {
+        checkArgument(level >= -1 && level <= 9, "level must be between -1 and 9");
+        this.level = level;
+    }
+
+    /**
+     * Get the compression level.
+     *
+     * @return the level, or -1 for the default level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return level == Deflater.DEFAULT_COMPRESSION ? "gzip" : "gzip:" + level;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream outputStream) throws IOException {
+        return new GZIPOutputStream(outputStream, DeflateCodec.BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    @Override
+    public InputStream decompress(InputStream inputStream) throws IOException {
+        return new GZIPInputStream(inputStream, DeflateCodec.BUFFER_SIZE);
+    }
+
+}
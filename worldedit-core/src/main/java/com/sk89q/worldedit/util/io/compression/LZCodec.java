@@ -0,0 +1,373 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.io.compression;
+
+import java.io.DataInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A fast LZ77 codec in the style of LZ4 that trades compression ratio for
+ * speed.
+ *
+ * <p>Data is split into blocks of up to 64 KiB. Each block is preceded by
+ * its uncompressed and compressed lengths, and is stored uncompressed if
+ * compression would not make it smaller. A block with an uncompressed
+ * length of zero ends the stream.</p>
+ *
+ * <p>Within a compressed block, each sequence starts with a token whose
+ * upper four bits hold the number of literals and whose lower four bits
+ * hold the match length minus four. Either length is continued in
+ * following bytes (each adding up to 255) if the four bits are all set.
+ * The literals follow, then the two-byte offset of the match. The last
+ * sequence of a block only has literals.</p>
+ */
+public class LZCodec implements CompressionCodec {
+
+    public static final int ID = 3;
+
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 14;
+    private static final int SKIP_TRIGGER = 6;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "lz";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream outputStream) throws IOException {
+        return new LZOutputStream(outputStream);
+    }
+
+    @Override
+    public InputStream decompress(InputStream inputStream) throws IOException {
+        return new LZInputStream(inputStream);
+    }
+
+    /**
+     * Get the maximum size of a compressed block.
+     *
+     * @param length the uncompressed length
+     * @return the maximum compressed length
+     */
+    private static int getMaxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compress a block.
+     *
+     * @param src the uncompressed data
+     * @param length the number of bytes of {@code src} to compress
+     * @param dst the array to write to, of at least {@link #getMaxCompressedLength(int)} bytes
+     * @param table the hash table, which is overwritten
+     * @return the compressed length
+     */
+    static int compress(byte[] src, int length, byte[] dst, int[] table) {
+        Arrays.fill(table, -1);
+        int anchor = 0;
+        int ip = 0;
+        int op = 0;
+        int limit = length - MIN_MATCH;
+
+        while (ip <= limit) {
+            int sequence = readInt(src, ip);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            int ref = table[hash];
+            table[hash] = ip;
+
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                // Search faster through data that does not compress
+                ip += 1 + ((ip - anchor) >>> SKIP_TRIGGER);
+                continue;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < length && src[ref + matchLength] == src[ip + matchLength]) {
+                matchLength++;
+            }
+
+            op = writeSequence(src, anchor, ip - anchor, dst, op, matchLength - MIN_MATCH);
+            dst[op++] = (byte) (ip - ref);
+            dst[op++] = (byte) ((ip - ref) >>> 8);
+            op = writeLength(dst, op, matchLength - MIN_MATCH);
+
+            ip += matchLength;
+            anchor = ip;
+        }
+
+        return writeSequence(src, anchor, length - anchor, dst, op, 0);
+    }
+
+    /**
+     * Decompress a block.
+     *
+     * @param src the compressed data
+     * @param length the number of bytes of {@code src} to decompress
+     * @param dst the array to write to
+     * @param dstLength the expected uncompressed length
+     * @throws IOException thrown if the data is corrupt
+     */
+    static void decompress(byte[] src, int length, byte[] dst, int dstLength) throws IOException {
+        int ip = 0;
+        int op = 0;
+
+        try {
+            while (true) {
+                int token = src[ip++] & 0xFF;
+
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+
+                if (ip >= length) {
+                    break;
+                }
+
+                int offset = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+
+                int ref = op - offset;
+                if (offset == 0 || ref < 0 || op + matchLength > dstLength) {
+                    throw new IOException("Corrupt compressed block");
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, ref, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    // The match overlaps the data being written
+                    for (int i = 0; i < matchLength; i++) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt compressed block", e);
+        }
+
+        if (ip != length || op != dstLength) {
+            throw new IOException("Corrupt compressed block");
+        }
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literals, byte[] dst, int op, int matchLength) {
+        dst[op++] = (byte) ((Math.min(literals, 15) << 4) | Math.min(matchLength, 15));
+        if (literals >= 15) {
+            op = writeLength(dst, op, literals);
+        }
+        System.arraycopy(src, literalStart, dst, op, literals);
+        return op + literals;
+    }
+
+    private static int writeLength(byte[] dst, int op, int length) {
+        if (length < 15) {
+            return op;
+        }
+        length -= 15;
+        while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+        }
+        dst[op++] = (byte) length;
+        return op;
+    }
+
+    private static int readInt(byte[] src, int index) {
+        return (src[index] & 0xFF) | ((src[index + 1] & 0xFF) << 8)
+                | ((src[index + 2] & 0xFF) << 16) | ((src[index + 3] & 0xFF) << 24);
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static class LZOutputStream extends FilterOutputStream {
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[getMaxCompressedLength(BLOCK_SIZE)];
+        private final int[] table = new int[1 << HASH_BITS];
+        private int position = 0;
+        private boolean closed = false;
+
+        private LZOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position == buffer.length) {
+                writeBlock();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (position == buffer.length) {
+                    writeBlock();
+                }
+                int count = Math.min(len, buffer.length - position);
+                System.arraycopy(b, off, buffer, position, count);
+                position += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeBlock();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeBlock();
+                writeInt(out, 0);
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            if (position == 0) {
+                return;
+            }
+
+            int length = compress(buffer, position, compressed, table);
+            writeInt(out, position);
+            if (length < position) {
+                writeInt(out, length);
+                out.write(compressed, 0, length);
+            } else {
+                writeInt(out, position);
+                out.write(buffer, 0, position);
+            }
+            position = 0;
+        }
+    }
+
+    private static class LZInputStream extends InputStream {
+        private final DataInputStream in;
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[getMaxCompressedLength(BLOCK_SIZE)];
+        private int position = 0;
+        private int limit = 0;
+        private boolean finished = false;
+
+        private LZInputStream(InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !readBlock()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit && !readBlock()) {
+                return -1;
+            }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean readBlock() throws IOException {
+            if (finished) {
+                return false;
+            }
+
+            int length = in.readInt();
+            if (length == 0) {
+                finished = true;
+                return false;
+            }
+            int compressedLength = in.readInt();
+            if (length < 0 || length > BLOCK_SIZE || compressedLength <= 0 || compressedLength > length) {
+                throw new IOException("Corrupt compressed block header");
+            }
+
+            if (compressedLength == length) {
+                in.readFully(buffer, 0, length);
+            } else {
+                in.readFully(compressed, 0, compressedLength);
+                decompress(compressed, compressedLength, buffer, length);
+            }
+            position = 0;
+            limit = length;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.random;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Picks one of a list of values with a probability proportional to its
+ * weight in constant time, using Vose's alias method.
+ *
+ * @param <T> the type of value
+ */
+public class AliasTable<T> {
+
+    private final List<T> values;
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * Create a new table.
+     *
+     * @param values the values, which must not be empty
+     * @param weights the weight of each value, which must not be negative and must not all be zero
+     */
+    public AliasTable(List<? extends T> values, double[] weights) {
+        checkNotNull(values);
+        checkNotNull(weights);
+        checkArgument(!values.isEmpty(), "values must not be empty");
+        checkArgument(values.size() == weights.length, "there must be a weight for every value");
+
+        int n = weights.length;
+        double sum = 0;
+        for (double weight : weights) {
+            checkArgument(weight >= 0, "weights must not be negative");
+            sum += weight;
+        }
+        checkArgument(sum > 0, "weights must not all be zero");
+
+        this.values = new ArrayList<T>(values);
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        // Columns that are below and above the average weight
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        // Fill each small column up with part of a large column
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // Whatever is left is full, apart from rounding errors
+        while (largeCount > 0) {
+            int i = large[--largeCount];
+            probability[i] = 1;
+            alias[i] = i;
+        }
+        while (smallCount > 0) {
+            int i = small[--smallCount];
+            probability[i] = 1;
+            alias[i] = i;
+        }
+    }
+
+    /**
+     * Get the number of values.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Pick a value.
+     *
+     * @param random a uniformly distributed value between 0 (inclusive) and 1 (exclusive)
+     * @return the picked value
+     */
+    public T get(double random) {
+        double column = random * probability.length;
+        int i = Math.min((int) column, probability.length - 1);
+        return column - i < probability[i] ? values.get(i) : values.get(alias[i]);
+    }
+
+    /**
+     * Pick a value.
+     *
+     * @param random the random number generator to use
+     * @return the picked value
+     */
+    public T get(SplitMixRandom random) {
+        return get(random.nextDouble());
+    }
+
+}
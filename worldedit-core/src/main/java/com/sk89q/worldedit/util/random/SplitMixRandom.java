@@ -0,0 +1,219 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.random;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fast, splittable pseudo-random number generator based on the
+ * SplitMix64 algorithm.
+ *
+ * <p>Instances are not thread-safe. Each thread should either use its own
+ * instance, created with {@link #split()} so that its sequence is
+ * independent of the others, or use {@link #current()}.</p>
+ *
+ * <p>{@link #hash(long, int, int, int)} derives a random value from a seed
+ * and a position instead, for results that do not depend on the order in
+ * which positions are visited or on the thread that visits them.</p>
+ */
+public class SplitMixRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+    private static final float FLOAT_UNIT = 1.0f / (1 << 24);
+    private static final AtomicLong defaultSeed = new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+    private static final ThreadLocal<SplitMixRandom> threadRandom = new ThreadLocal<SplitMixRandom>() {
+        @Override
+        protected SplitMixRandom initialValue() {
+            return new SplitMixRandom();
+        }
+    };
+
+    private long seed;
+    private final long gamma;
+
+    /**
+     * Create a new instance with a seed that is different for every
+     * instance created this way.
+     */
+    public SplitMixRandom() {
+        this(defaultSeed.getAndAdd(2 * GOLDEN_GAMMA), GOLDEN_GAMMA);
+    }
+
+    /**
+     * Create a new instance with the given seed.
+     *
+     * @param seed the seed
+     */
+    public SplitMixRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitMixRandom(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Get the instance for the current thread.
+     *
+     * @return the instance for the current thread
+     */
+    public static SplitMixRandom current() {
+        return threadRandom.get();
+    }
+
+    /**
+     * Create a new instance whose sequence is independent of the sequence
+     * of this instance. This instance is advanced.
+     *
+     * @return a new instance
+     */
+    public SplitMixRandom split() {
+        return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Get a pseudo-random {@code long}.
+     *
+     * @return a value
+     */
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * Get a pseudo-random {@code int}.
+     *
+     * @return a value
+     */
+    public int nextInt() {
+        return (int) (mix64(nextSeed()) >>> 32);
+    }
+
+    /**
+     * Get a pseudo-random, uniformly distributed {@code int} between 0
+     * (inclusive) and the given bound (exclusive).
+     *
+     * @param bound the bound, which must be positive
+     * @return a value
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+
+        int m = bound - 1;
+        int r = nextInt() >>> 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        // Reject values from the last, incomplete range of the bound
+        for (int u = r; u - (r = u % bound) + m < 0; u = nextInt() >>> 1) {
+        }
+        return r;
+    }
+
+    /**
+     * Get a pseudo-random, uniformly distributed {@code double} between 0
+     * (inclusive) and 1 (exclusive).
+     *
+     * @return a value
+     */
+    public double nextDouble() {
+        return toDouble(nextLong());
+    }
+
+    /**
+     * Get a pseudo-random, uniformly distributed {@code float} between 0
+     * (inclusive) and 1 (exclusive).
+     *
+     * @return a value
+     */
+    public float nextFloat() {
+        return toFloat(nextLong());
+    }
+
+    /**
+     * Get a pseudo-random {@code boolean}.
+     *
+     * @return a value
+     */
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    /**
+     * Derive a random value from a seed and a position.
+     *
+     * @param seed the seed
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return a random value
+     */
+    public static long hash(long seed, int x, int y, int z) {
+        long h = mix64(seed + GOLDEN_GAMMA * x);
+        h = mix64(h + GOLDEN_GAMMA * y);
+        return mix64(h + GOLDEN_GAMMA * z);
+    }
+
+    /**
+     * Convert a random value into a {@code double} between 0 (inclusive)
+     * and 1 (exclusive).
+     *
+     * @param value the random value
+     * @return a value
+     */
+    public static double toDouble(long value) {
+        return (value >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Convert a random value into a {@code float} between 0 (inclusive)
+     * and 1 (exclusive).
+     *
+     * @param value the random value
+     * @return a value
+     */
+    public static float toFloat(long value) {
+        return (value >>> 40) * FLOAT_UNIT;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        // Gammas with too few bit transitions give poorly mixed sequences
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+
+}
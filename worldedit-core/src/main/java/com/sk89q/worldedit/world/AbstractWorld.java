@@ -45,6 +45,38 @@ public abstract class AbstractWorld implements World {
     private final PriorityQueue<QueuedEffect> effectQueue = new PriorityQueue<QueuedEffect>();
     private int taskId = -1;
 
+    @Override
+    public int setBlocks(SectionBatch batch, boolean notifyAndLight) throws WorldEditException {
+        int changed = 0;
+        for (int i = 0; i < SectionBatch.VOLUME; i++) {
+            BaseBlock block = batch.getBlock(i);
+            if (block != null && setBlock(batch.getPosition(i), block, notifyAndLight)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public ColumnSnapshot getColumnSnapshot(int chunkX, int chunkZ, int minY, int maxY) {
+        // Reading every block is slow, so platforms should copy the chunk
+        // directly instead. Blocks outside the world are left as air
+        ColumnSnapshot snapshot = new ColumnSnapshot(chunkX, chunkZ, minY, maxY);
+        int baseX = chunkX << 4;
+        int baseZ = chunkZ << 4;
+        int chunkMinY = Math.max(0, minY);
+        int chunkMaxY = Math.min(getMaxY(), maxY);
+        for (int y = chunkMinY; y <= chunkMaxY; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    BaseBlock block = getLazyBlock(new Vector(baseX + x, y, baseZ + z));
+                    snapshot.setBlock(x, y, z, block.getType(), block.getData());
+                }
+            }
+        }
+        return snapshot;
+    }
+
     @Override
     public final boolean setBlockType(Vector position, int type) {
         try {
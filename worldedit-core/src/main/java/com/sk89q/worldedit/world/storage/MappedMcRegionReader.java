@@ -0,0 +1,90 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.world.DataException;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reader for a MCRegion file on disk, which maps the file into memory so
+ * that chunks can be read in any order without reading the sectors
+ * in between.
+ */
+public class MappedMcRegionReader extends McRegionReader {
+
+    private ByteBuffer buffer;
+
+    /**
+     * Construct the reader.
+     *
+     * @param file the region file
+     * @throws DataException
+     * @throws IOException
+     */
+    public MappedMcRegionReader(File file) throws DataException, IOException {
+        checkNotNull(file);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+
+        readHeader();
+    }
+
+    @Override
+    protected void read(long position, byte[] data, int length) throws IOException {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new IOException("The reader has been closed");
+        }
+        if (position < 0 || position + length > buffer.limit()) {
+            throw new EOFException();
+        }
+
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) position);
+        view.get(data, 0, length);
+    }
+
+    @Override
+    public boolean canRead(Vector2D position) {
+        return buffer != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+    }
+
+}
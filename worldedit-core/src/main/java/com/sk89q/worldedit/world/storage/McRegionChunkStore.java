@@ -28,12 +28,18 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public abstract class McRegionChunkStore extends ChunkStore {
 
-    protected String curFilename = null;
-    protected McRegionReader cachedReader = null;
+    /**
+     * The number of region files that are kept open.
+     */
+    private static final int MAX_OPEN_READERS = 8;
+
+    private final LinkedHashMap<String, McRegionReader> readers = new LinkedHashMap<String, McRegionReader>(16, 0.75f, true);
 
     /**
      * Get the filename of a region file.
@@ -48,29 +54,68 @@ public static String getFilename(Vector2D position) {
         return "r." + (x >> 5) + "." + (z >> 5) + ".mca";
     }
 
-    protected McRegionReader getReader(Vector2D pos, String worldname) throws DataException, IOException {
+    /**
+     * Get a reader for the region file that contains the given chunk.
+     *
+     * <p>Readers are kept open for the most recently used region files, so
+     * the header of a region file is only read once.</p>
+     *
+     * @param pos the chunk position
+     * @param worldname the world name
+     * @return a reader
+     * @throws DataException
+     * @throws IOException
+     */
+    protected synchronized McRegionReader getReader(Vector2D pos, String worldname) throws DataException, IOException {
         String filename = getFilename(pos);
-        if (curFilename != null) {
-            if (curFilename.equals(filename)) {
-                return cachedReader;
-            } else {
-                try {
-                    cachedReader.close();
-                } catch (IOException ignored) {
-                }
+        McRegionReader reader = readers.get(filename);
+
+        if (reader != null) {
+            if (reader.canRead(pos)) {
+                return reader;
             }
+
+            // The stream has already passed the chunk, so open the file again
+            readers.remove(filename);
+            closeQuietly(reader);
+        }
+
+        reader = createReader(filename, worldname);
+        readers.put(filename, reader);
+
+        if (readers.size() > MAX_OPEN_READERS) {
+            Iterator<McRegionReader> it = readers.values().iterator();
+            McRegionReader eldest = it.next();
+            it.remove();
+            closeQuietly(eldest);
         }
-        InputStream stream = getInputStream(filename, worldname);
-        cachedReader = new McRegionReader(stream);
-        //curFilename = filename;
-        return cachedReader;
+
+        return reader;
+    }
+
+    /**
+     * Create a reader for a region file.
+     *
+     * @param filename the name of the region file
+     * @param worldName the world name
+     * @return a reader
+     * @throws DataException
+     * @throws IOException
+     */
+    protected McRegionReader createReader(String filename, String worldName) throws DataException, IOException {
+        return new McRegionReader(getInputStream(filename, worldName));
     }
 
     @Override
     public CompoundTag getChunkTag(Vector2D position, World world) throws DataException, IOException {
-        McRegionReader reader = getReader(position, world.getName());
+        InputStream stream;
+
+        // The chunk data is read into memory here, so it can be decompressed
+        // and parsed after the lock is released
+        synchronized (this) {
+            stream = getReader(position, world.getName()).getChunkInputStream(position);
+        }
 
-        InputStream stream = reader.getChunkInputStream(position);
         NBTInputStream nbt = new NBTInputStream(stream);
         Tag tag;
 
@@ -116,9 +161,17 @@ public CompoundTag getChunkTag(Vector2D position, World world) throws DataExcept
     protected abstract InputStream getInputStream(String name, String worldName) throws IOException, DataException;
 
     @Override
-    public void close() throws IOException {
-        if (cachedReader != null) {
-            cachedReader.close();
+    public synchronized void close() throws IOException {
+        for (McRegionReader reader : readers.values()) {
+            closeQuietly(reader);
+        }
+        readers.clear();
+    }
+
+    private static void closeQuietly(McRegionReader reader) {
+        try {
+            reader.close();
+        } catch (IOException ignored) {
         }
     }
 
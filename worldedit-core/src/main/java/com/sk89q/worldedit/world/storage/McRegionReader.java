@@ -61,6 +61,7 @@ counts. The chunk offset for a chunk (x, z) begins at byte 4*(x+z*32) in the
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
@@ -97,21 +98,61 @@ public McRegionReader(InputStream stream) throws DataException, IOException {
         readHeader();
     }
 
+    /**
+     * Construct a reader that does not read from a stream. Subclasses must
+     * override {@link #read(long, byte[], int)} and {@link #close()}, and
+     * call {@link #readHeader()}.
+     */
+    protected McRegionReader() {
+    }
+
     /**
      * Read the header.
      * 
      * @throws DataException
      * @throws IOException
      */
-    private void readHeader() throws DataException, IOException {
+    protected void readHeader() throws DataException, IOException {
+        byte[] header = new byte[SECTOR_BYTES];
+        read(0, header, SECTOR_BYTES);
+
         offsets = new int[SECTOR_INTS];
 
         for (int i = 0; i < SECTOR_INTS; ++i) {
-            int offset = dataStream.readInt();
-            offsets[i] = offset;
+            offsets[i] = (header[i * 4] & 0xFF) << 24
+                    | (header[i * 4 + 1] & 0xFF) << 16
+                    | (header[i * 4 + 2] & 0xFF) << 8
+                    | (header[i * 4 + 3] & 0xFF);
         }
     }
 
+    /**
+     * Read bytes from the file.
+     *
+     * @param position the position in the file
+     * @param buffer the buffer to read into
+     * @param length the number of bytes to read
+     * @throws EOFException if the file ends before all bytes were read
+     * @throws IOException on I/O error, or if the stream has already passed the position
+     */
+    protected void read(long position, byte[] buffer, int length) throws IOException {
+        stream.seek(position);
+        dataStream.readFully(buffer, 0, length);
+    }
+
+    /**
+     * Returns whether the data of a chunk can still be read. Stream based
+     * readers can only seek forward, so a chunk stored before the current
+     * position of the stream cannot be read without opening the file again.
+     *
+     * @param position chunk position
+     * @return true if the chunk can be read
+     */
+    public synchronized boolean canRead(Vector2D position) {
+        int offset = getOffset(position.getBlockX() & 31, position.getBlockZ() & 31);
+        return offset == 0 || (long) (offset >> 8) * SECTOR_BYTES >= stream.getPosition();
+    }
+
     /**
      * Gets the uncompressed data input stream for a chunk.
      * 
@@ -137,34 +178,36 @@ public synchronized InputStream getChunkInputStream(Vector2D position) throws IO
 
         int sectorNumber = offset >> 8;
         int numSectors = offset & 0xFF;
+        long start = (long) sectorNumber * SECTOR_BYTES;
 
-        stream.seek(sectorNumber * SECTOR_BYTES);
-        int length = dataStream.readInt();
+        byte[] header = new byte[CHUNK_HEADER_SIZE];
+        read(start, header, CHUNK_HEADER_SIZE);
+        int length = (header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16 | (header[2] & 0xFF) << 8 | (header[3] & 0xFF);
 
-        if (length > SECTOR_BYTES * numSectors) {
+        if (length < 1 || length > SECTOR_BYTES * numSectors) {
             throw new DataException("MCRegion chunk at "
                     + x + "," + z + " has an invalid length of " + length);
         }
 
-        byte version = dataStream.readByte();
+        byte version = header[4];
+
+        if (version != VERSION_GZIP && version != VERSION_DEFLATE) {
+            throw new DataException("MCRegion chunk at "
+                    + x + "," + z + " has an unsupported version of " + version);
+        }
+
+        byte[] data = new byte[length - 1];
+        try {
+            read(start + CHUNK_HEADER_SIZE, data, length - 1);
+        } catch (EOFException e) {
+            throw new DataException("MCRegion file does not contain "
+                    + x + "," + z + " in full");
+        }
 
         if (version == VERSION_GZIP) {
-            byte[] data = new byte[length - 1];
-            if (dataStream.read(data) < length - 1) {
-                throw new DataException("MCRegion file does not contain "
-                        + x + "," + z + " in full");
-            }
             return new GZIPInputStream(new ByteArrayInputStream(data));
-        } else if (version == VERSION_DEFLATE) {
-            byte[] data = new byte[length - 1];
-            if (dataStream.read(data) < length - 1) {
-                throw new DataException("MCRegion file does not contain "
-                        + x + "," + z + " in full");
-            }
-            return new InflaterInputStream(new ByteArrayInputStream(data));
         } else {
-            throw new DataException("MCRegion chunk at "
-                    + x + "," + z + " has an unsupported version of " + version);
+            return new InflaterInputStream(new ByteArrayInputStream(data));
         }
     }
 
@@ -83,7 +83,7 @@ public TrueZipLegacyChunkStore(File zipFile) throws IOException, ZipException {
      */
     @Override
     @SuppressWarnings("unchecked")
-    protected InputStream getInputStream(String f1, String f2, String name) throws IOException, DataException {
+    protected synchronized InputStream getInputStream(String f1, String f2, String name) throws IOException, DataException {
         String file = f1 + "/" + f2 + "/" + name;
 
         // Detect subfolder for the world's files
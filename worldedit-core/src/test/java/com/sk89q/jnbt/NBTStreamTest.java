@@ -0,0 +1,183 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.jnbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NBTStreamTest {
+
+    private static final byte[] BLOCKS = createBlocks(1000);
+
+    @Test
+    public void testWriterMatchesOutputStream() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        NBTOutputStream nbtOut = new NBTOutputStream(expected);
+        nbtOut.writeNamedTag("Schematic", createTree());
+        nbtOut.close();
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        NBTStreamWriter writer = new NBTStreamWriter(actual);
+        writer.beginCompound("Schematic");
+        writer.writeTag("Width", new ShortTag((short) 10));
+        writer.writeTag("Materials", new StringTag("Alpha"));
+        writer.beginByteArray("Blocks", BLOCKS.length);
+        writer.writeBytes(BLOCKS, 0, 1);
+        writer.writeBytes(BLOCKS, 1, 600);
+        writer.writeBytes(BLOCKS, 601, BLOCKS.length - 601);
+        writer.endByteArray();
+        writer.beginList("TileEntities", NBTConstants.TYPE_COMPOUND, 2);
+        writer.beginCompound(null);
+        writer.writeTag("id", new StringTag("Chest"));
+        writer.writeTag("x", new IntTag(1));
+        writer.beginList("Items", NBTConstants.TYPE_COMPOUND, 0);
+        writer.endList();
+        writer.endCompound();
+        writer.writeTag(null, createCompound("Sign", 2));
+        writer.endList();
+        writer.beginList("Entities", NBTConstants.TYPE_COMPOUND, 0);
+        writer.endList();
+        writer.beginList("Pos", NBTConstants.TYPE_DOUBLE, 2);
+        writer.writeTag(null, new DoubleTag(0.5));
+        writer.writeTag(null, new DoubleTag(-3));
+        writer.endList();
+        writer.endCompound();
+        writer.close();
+
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        NBTInputStream nbtIn = new NBTInputStream(new ByteArrayInputStream(actual.toByteArray()));
+        NamedTag root = nbtIn.readNamedTag();
+        nbtIn.close();
+        assertEquals("Schematic", root.getName());
+        CompoundTag schematic = (CompoundTag) root.getTag();
+        assertArrayEquals(BLOCKS, ((ByteArrayTag) schematic.getValue().get("Blocks")).getValue());
+        assertEquals(2, ((ListTag) schematic.getValue().get("TileEntities")).getValue().size());
+    }
+
+    @Test
+    public void testReaderReadsOutputStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NBTOutputStream nbtOut = new NBTOutputStream(out);
+        nbtOut.writeNamedTag("Schematic", createTree());
+        nbtOut.close();
+
+        NBTStreamReader reader = new NBTStreamReader(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(reader.next());
+        assertEquals(NBTConstants.TYPE_COMPOUND, reader.getType());
+        assertEquals("Schematic", reader.getName());
+        reader.enter();
+
+        assertTrue(reader.next());
+        assertEquals("Width", reader.getName());
+        assertEquals(10, reader.readShort());
+
+        // Left unread, so it is skipped
+        assertTrue(reader.next());
+        assertEquals("Materials", reader.getName());
+
+        assertTrue(reader.next());
+        assertEquals("Blocks", reader.getName());
+        assertEquals(BLOCKS.length, reader.getArrayLength());
+        byte[] blocks = new byte[BLOCKS.length];
+        int offset = 0;
+        int read;
+        while ((read = reader.readBytes(blocks, offset, Math.min(333, blocks.length - offset))) > 0) {
+            offset += read;
+        }
+        assertEquals(BLOCKS.length, offset);
+        assertArrayEquals(BLOCKS, blocks);
+
+        assertTrue(reader.next());
+        assertEquals("TileEntities", reader.getName());
+        reader.enter();
+        assertEquals(NBTConstants.TYPE_COMPOUND, reader.getElementType());
+        List<String> ids = new ArrayList<String>();
+        while (reader.next()) {
+            CompoundTag tileEntity = (CompoundTag) reader.readTag();
+            ids.add(tileEntity.getString("id"));
+        }
+        assertEquals(Arrays.asList("Chest", "Sign"), ids);
+        assertEquals(1, reader.getDepth());
+
+        assertTrue(reader.next());
+        assertEquals("Entities", reader.getName());
+        reader.enter();
+        assertFalse(reader.next());
+
+        // Skipped without being entered
+        assertTrue(reader.next());
+        assertEquals("Pos", reader.getName());
+
+        assertFalse(reader.next());
+        assertEquals(0, reader.getDepth());
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    private static CompoundTag createTree() {
+        Map<String, Tag> chest = new LinkedHashMap<String, Tag>();
+        chest.put("id", new StringTag("Chest"));
+        chest.put("x", new IntTag(1));
+        chest.put("Items", new ListTag(CompoundTag.class, new ArrayList<Tag>()));
+
+        List<Tag> pos = new ArrayList<Tag>();
+        pos.add(new DoubleTag(0.5));
+        pos.add(new DoubleTag(-3));
+
+        Map<String, Tag> schematic = new LinkedHashMap<String, Tag>();
+        schematic.put("Width", new ShortTag((short) 10));
+        schematic.put("Materials", new StringTag("Alpha"));
+        schematic.put("Blocks", new ByteArrayTag(BLOCKS));
+        schematic.put("TileEntities", new ListTag(CompoundTag.class, Arrays.<Tag>asList(new CompoundTag(chest), createCompound("Sign", 2))));
+        schematic.put("Entities", new ListTag(CompoundTag.class, new ArrayList<Tag>()));
+        schematic.put("Pos", new ListTag(DoubleTag.class, pos));
+        return new CompoundTag(schematic);
+    }
+
+    private static CompoundTag createCompound(String id, int x) {
+        Map<String, Tag> values = new LinkedHashMap<String, Tag>();
+        values.put("id", new StringTag(id));
+        values.put("x", new IntTag(x));
+        return new CompoundTag(values);
+    }
+
+    private static byte[] createBlocks(int length) {
+        byte[] blocks = new byte[length];
+        for (int i = 0; i < length; i++) {
+            blocks[i] = (byte) (i * 31);
+        }
+        return blocks;
+    }
+
+}
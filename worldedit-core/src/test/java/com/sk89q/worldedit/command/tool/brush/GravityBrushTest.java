@@ -0,0 +1,168 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.command.tool.brush;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extension.platform.TestPlatform;
+import com.sk89q.worldedit.world.MemoryWorld;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class GravityBrushTest {
+
+    // None of these make the edit session flush its buffered changes
+    private static final int[] BLOCKS = { BlockID.STONE, BlockID.GLASS, BlockID.CLOTH, BlockID.BRICK };
+
+    private TestPlatform platform;
+
+    @Before
+    public void setUp() throws Exception {
+        platform = TestPlatform.install();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        platform.uninstall();
+    }
+
+    @Test
+    public void testSmallBrush() throws Exception {
+        assertSameAsLegacy(new Vector(5, 40, -3), 3, false, false);
+        assertSameAsLegacy(new Vector(-17, 70, 30), 2.5, false, false);
+    }
+
+    @Test
+    public void testLargeBrushReadsSnapshots() throws Exception {
+        assertSameAsLegacy(new Vector(8, 50, 8), 12, false, false);
+        assertSameAsLegacy(new Vector(-1, 50, 15), 9.5, false, false);
+    }
+
+    @Test
+    public void testFullHeight() throws Exception {
+        assertSameAsLegacy(new Vector(3, 30, 3), 10, true, false);
+        assertSameAsLegacy(new Vector(3, 30, 3), 2, true, false);
+    }
+
+    @Test
+    public void testBufferedChanges() throws Exception {
+        assertSameAsLegacy(new Vector(8, 50, 8), 12, false, true);
+        assertSameAsLegacy(new Vector(5, 40, -3), 3, false, true);
+    }
+
+    /**
+     * Build the brush on one world and the brush as it was before columns
+     * were compacted in place on another world with the same blocks, and
+     * compare the blocks of the worlds afterwards.
+     *
+     * @param buffered whether to change blocks in the edit session before
+     *     the brush is built, without flushing them to the world
+     */
+    private void assertSameAsLegacy(Vector position, double size, boolean fullHeight, boolean buffered) throws Exception {
+        MemoryWorld world = new MemoryWorld();
+        MemoryWorld expected = new MemoryWorld();
+        fill(world, position, size);
+        fill(expected, position, size);
+
+        EditSession editSession = createEditSession(world, buffered);
+        EditSession legacySession = createEditSession(expected, buffered);
+        new GravityBrush(fullHeight).build(editSession, position, null, size);
+        buildLegacy(legacySession, position, size, fullHeight);
+        editSession.flushQueue();
+        legacySession.flushQueue();
+
+        assertTrue(!world.getBlocks().isEmpty());
+        assertThat(world.getBlocks(), equalTo(expected.getBlocks()));
+    }
+
+    private static EditSession createEditSession(MemoryWorld world, boolean buffered) throws Exception {
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+        editSession.setChunkBatching(true);
+        if (buffered) {
+            // Changes that only the edit session has seen
+            Random random = new Random(21);
+            for (int i = 0; i < 400; i++) {
+                Vector position = new Vector(random.nextInt(40) - 16, random.nextInt(80) + 20, random.nextInt(40) - 16);
+                editSession.setBlock(position, new BaseBlock(random.nextBoolean() ? BlockID.AIR : BlockID.DIRT));
+            }
+        } else {
+            editSession.flushQueue();
+        }
+        return editSession;
+    }
+
+    private static void fill(MemoryWorld world, Vector position, double size) {
+        Random random = new Random(9);
+        int radius = (int) Math.ceil(size) + 1;
+        for (int x = position.getBlockX() - radius; x <= position.getBlockX() + radius; x++) {
+            for (int z = position.getBlockZ() - radius; z <= position.getBlockZ() + radius; z++) {
+                for (int y = position.getBlockY() - radius - 2; y <= position.getBlockY() + radius + 2; y++) {
+                    if (random.nextInt(3) == 0) {
+                        world.setBlock(new Vector(x, y, z), new BaseBlock(BLOCKS[random.nextInt(BLOCKS.length)]), false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The gravity brush before it read columns as packed blocks.
+     */
+    private static void buildLegacy(EditSession editSession, Vector position, double size, boolean fullHeight) throws Exception {
+        final BaseBlock air = new BaseBlock(BlockID.AIR, 0);
+        final double startY = fullHeight ? editSession.getWorld().getMaxY() : position.getBlockY() + size;
+        for (double x = position.getBlockX() + size; x > position.getBlockX() - size; --x) {
+            for (double z = position.getBlockZ() + size; z > position.getBlockZ() - size; --z) {
+                double y = startY;
+                final List<BaseBlock> blockTypes = new ArrayList<BaseBlock>();
+                for (; y > position.getBlockY() - size; --y) {
+                    final Vector pt = new Vector(x, y, z);
+                    final BaseBlock block = editSession.getBlock(pt);
+                    if (!block.isAir()) {
+                        blockTypes.add(block);
+                        editSession.setBlock(pt, air);
+                    }
+                }
+                Vector pt = new Vector(x, y, z);
+                Collections.reverse(blockTypes);
+                for (int i = 0; i < blockTypes.size();) {
+                    if (editSession.getBlock(pt).getType() == BlockID.AIR) {
+                        editSession.setBlock(pt, blockTypes.get(i++));
+                    }
+                    pt = pt.add(0, 1, 0);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extension.platform;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OperationSchedulerTest {
+
+    private SchedulingPlatform platform;
+    private OperationScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        platform = TestPlatform.install(new SchedulingPlatform());
+        platform.getConfiguration().operationTimeBudget = 50;
+        scheduler = new OperationScheduler(WorldEdit.getInstance().getPlatformManager());
+    }
+
+    @After
+    public void tearDown() {
+        platform.uninstall();
+    }
+
+    @Test
+    public void testSuccessOnlyAfterCompletion() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        scheduler.submit(new StepOperation(3, null), null, -1, callback);
+
+        platform.tick();
+        platform.tick();
+        assertTrue(callback.outcomes.isEmpty());
+
+        platform.tick();
+        assertEquals(1, callback.outcomes.size());
+        assertNull(callback.outcomes.get(0));
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testFailureIsReported() throws Exception {
+        WorldEditException error = new WorldEditException("Broken") {};
+        RecordingCallback callback = new RecordingCallback();
+        StepOperation operation = new StepOperation(3, error);
+        scheduler.submit(operation, null, -1, callback);
+
+        platform.tick();
+        assertEquals(1, callback.outcomes.size());
+        assertTrue(callback.outcomes.get(0) == error);
+        assertTrue(operation.cancelled);
+    }
+
+    @Test
+    public void testCancelIsReported() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        StepOperation operation = new StepOperation(3, null);
+        scheduler.submit(operation, null, -1, callback);
+
+        scheduler.cancelAll();
+        assertEquals(1, callback.outcomes.size());
+        assertTrue(callback.outcomes.get(0) instanceof CancellationException);
+        assertTrue(operation.cancelled);
+    }
+
+    @Test
+    public void testTaskCancelledWhenIdle() throws Exception {
+        scheduler.submit(new StepOperation(2, null), null, -1, null);
+        assertEquals(1, platform.tasks.size());
+
+        platform.tick();
+        platform.tick();
+        assertEquals(0, platform.tasks.size());
+
+        final List<String> ran = new ArrayList<String>();
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                ran.add("task");
+            }
+        });
+        assertEquals(1, platform.tasks.size());
+        assertTrue(ran.isEmpty());
+
+        platform.tick();
+        assertEquals(1, ran.size());
+        assertEquals(0, platform.tasks.size());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testExecuteWithoutScheduling() throws Exception {
+        platform.uninstall();
+        platform = TestPlatform.install(new SchedulingPlatform(false));
+
+        assertFalse(scheduler.canExecute());
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * An operation that completes after a number of steps, one per call,
+     * or fails with the given exception.
+     */
+    private static class StepOperation implements Operation {
+        private int steps;
+        private final WorldEditException error;
+        private boolean cancelled;
+
+        private StepOperation(int steps, WorldEditException error) {
+            this.steps = steps;
+            this.error = error;
+        }
+
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            if (error != null) {
+                throw error;
+            }
+            return --steps > 0 ? this : null;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static class RecordingCallback implements FutureCallback<Void> {
+        private final List<Throwable> outcomes = new ArrayList<Throwable>();
+
+        @Override
+        public void onSuccess(Void result) {
+            outcomes.add(null);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            outcomes.add(t);
+        }
+    }
+
+    /**
+     * A platform whose repeating tasks run when {@link #tick()} is called.
+     */
+    private static class SchedulingPlatform extends TestPlatform {
+        private final Map<Integer, Runnable> tasks = new HashMap<Integer, Runnable>();
+        private final boolean enabled;
+        private int nextId;
+
+        private SchedulingPlatform() {
+            this(true);
+        }
+
+        private SchedulingPlatform(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        private void tick() {
+            for (Runnable task : new ArrayList<Runnable>(tasks.values())) {
+                task.run();
+            }
+        }
+
+        @Override
+        public int schedule(long delay, long period, Runnable task) {
+            if (!enabled) {
+                return -1;
+            }
+            tasks.put(nextId, task);
+            return nextId++;
+        }
+
+        @Override
+        public void cancelTask(int taskId) {
+            tasks.remove(taskId);
+        }
+
+        @Override
+        public Map<Capability, Preference> getCapabilities() {
+            Map<Capability, Preference> capabilities = new EnumMap<Capability, Preference>(super.getCapabilities());
+            capabilities.put(Capability.SCHEDULING, Preference.PREFERRED);
+            return capabilities;
+        }
+    }
+
+}
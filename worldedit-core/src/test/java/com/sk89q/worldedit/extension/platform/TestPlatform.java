@@ -0,0 +1,145 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extension.platform;
+
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.entity.Player;
+import com.sk89q.worldedit.event.platform.PlatformReadyEvent;
+import com.sk89q.worldedit.util.command.Dispatcher;
+import com.sk89q.worldedit.world.World;
+
+import javax.annotation.Nullable;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A platform for tests that provides a configuration.
+ *
+ * <p>Use {@link #install()} to register a new instance with WorldEdit
+ * before a test and {@link #uninstall()} to remove it afterwards.</p>
+ */
+public class TestPlatform extends AbstractPlatform {
+
+    private final LocalConfiguration configuration = new LocalConfiguration() {
+        @Override
+        public void load() {
+        }
+    };
+
+    /**
+     * Create a new instance.
+     */
+    public TestPlatform() {
+        // Keep history in memory
+        configuration.historySpillThreshold = -1;
+    }
+
+    /**
+     * Register a new test platform with WorldEdit.
+     *
+     * @return the platform
+     */
+    public static TestPlatform install() {
+        return install(new TestPlatform());
+    }
+
+    /**
+     * Register the given test platform with WorldEdit.
+     *
+     * @param platform the platform
+     * @param <T> the type of platform
+     * @return the platform
+     */
+    public static <T extends TestPlatform> T install(T platform) {
+        WorldEdit.getInstance().getPlatformManager().register(platform);
+        WorldEdit.getInstance().getEventBus().post(new PlatformReadyEvent());
+        return platform;
+    }
+
+    /**
+     * Remove this platform from WorldEdit.
+     */
+    public void uninstall() {
+        WorldEdit.getInstance().getPlatformManager().unregister(this);
+    }
+
+    @Override
+    public int resolveItem(String name) {
+        return 0;
+    }
+
+    @Override
+    public boolean isValidMobType(String type) {
+        return false;
+    }
+
+    @Override
+    public void reload() {
+    }
+
+    @Nullable
+    @Override
+    public Player matchPlayer(Player player) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public World matchWorld(World world) {
+        return null;
+    }
+
+    @Override
+    public void registerCommands(Dispatcher dispatcher) {
+    }
+
+    @Override
+    public void registerGameHooks() {
+    }
+
+    @Override
+    public LocalConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public String getVersion() {
+        return "test";
+    }
+
+    @Override
+    public String getPlatformName() {
+        return "Test";
+    }
+
+    @Override
+    public String getPlatformVersion() {
+        return "test";
+    }
+
+    @Override
+    public Map<Capability, Preference> getCapabilities() {
+        Map<Capability, Preference> capabilities = new EnumMap<Capability, Preference>(Capability.class);
+        capabilities.put(Capability.CONFIGURATION, Preference.PREFERRED);
+        return capabilities;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockData;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.world.registry.LegacyBlockRegistry;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class PalettedClipboardTest {
+
+    @Test
+    public void testSetAndGet() throws Exception {
+        CuboidRegion region = new CuboidRegion(new Vector(-20, 3, 5), new Vector(17, 40, 38));
+        PalettedClipboard clipboard = new PalettedClipboard(region);
+
+        for (int x = -20; x <= 17; x++) {
+            for (int y = 3; y <= 40; y++) {
+                for (int z = 5; z <= 38; z++) {
+                    clipboard.setBlock(new Vector(x, y, z), new BaseBlock(expectedId(x, y, z), expectedData(x, y, z)));
+                }
+            }
+        }
+
+        for (int x = -20; x <= 17; x++) {
+            for (int y = 3; y <= 40; y++) {
+                for (int z = 5; z <= 38; z++) {
+                    BaseBlock block = clipboard.getBlock(new Vector(x, y, z));
+                    assertThat(block, equalTo(new BaseBlock(expectedId(x, y, z), expectedData(x, y, z))));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnsetIsAir() throws Exception {
+        PalettedClipboard clipboard = new PalettedClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(40, 40, 40)));
+        clipboard.setBlock(new Vector(1, 1, 1), new BaseBlock(BlockID.STONE));
+        assertThat(clipboard.getBlock(new Vector(2, 1, 1)).getType(), equalTo(BlockID.AIR));
+        assertThat(clipboard.getBlock(new Vector(35, 35, 35)).getType(), equalTo(BlockID.AIR));
+        assertThat(clipboard.getBlock(new Vector(100, 1, 1)).getType(), equalTo(BlockID.AIR));
+    }
+
+    @Test
+    public void testLazyBlocksAreShared() throws Exception {
+        PalettedClipboard clipboard = new PalettedClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 15, 15)));
+        clipboard.setBlock(new Vector(1, 1, 1), new BaseBlock(BlockID.CLOTH, 3));
+        clipboard.setBlock(new Vector(9, 2, 4), new BaseBlock(BlockID.CLOTH, 3));
+        assertThat(clipboard.getLazyBlock(new Vector(1, 1, 1)), sameInstance(clipboard.getLazyBlock(new Vector(9, 2, 4))));
+        assertThat(clipboard.getPaletteSize(), equalTo(2));
+    }
+
+    @Test
+    public void testTransformedLazyBlock() throws Exception {
+        PalettedClipboard clipboard = new PalettedClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 15, 15)));
+        clipboard.setBlock(new Vector(1, 1, 1), new BaseBlock(BlockID.TORCH, 1));
+        BlockTransformExtent extent = new BlockTransformExtent(clipboard, new AffineTransform().rotateY(-90), new LegacyBlockRegistry());
+
+        BaseBlock expected = new BaseBlock(BlockID.TORCH, BlockData.rotate90(BlockID.TORCH, 1));
+        assertThat(extent.getLazyBlock(new Vector(1, 1, 1)), equalTo(expected));
+        assertThat(clipboard.getLazyBlock(new Vector(1, 1, 1)).getData(), equalTo(1));
+    }
+
+    @Test
+    public void testNbtData() throws Exception {
+        PalettedClipboard clipboard = new PalettedClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 15, 15)));
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("id", new StringTag("Chest"));
+        CompoundTag tag = new CompoundTag(values);
+
+        clipboard.setBlock(new Vector(4, 5, 6), new BaseBlock(BlockID.CHEST, 2, tag));
+        assertThat(clipboard.getBlock(new Vector(4, 5, 6)).getNbtData(), sameInstance(tag));
+        assertNull(clipboard.getBlock(new Vector(4, 5, 7)).getNbtData());
+
+        clipboard.setBlock(new Vector(4, 5, 6), new BaseBlock(BlockID.STONE));
+        assertNull(clipboard.getBlock(new Vector(4, 5, 6)).getNbtData());
+    }
+
+    @Test
+    public void testNonCuboidRegion() throws Exception {
+        CylinderRegion region = new CylinderRegion(new Vector(0, 0, 0), new Vector2D(5, 5), 0, 10);
+        PalettedClipboard clipboard = new PalettedClipboard(region);
+        assertTrue(clipboard.setBlock(new Vector(0, 5, 0), new BaseBlock(BlockID.STONE)));
+        assertFalse(clipboard.setBlock(new Vector(5, 5, 5), new BaseBlock(BlockID.STONE)));
+        assertThat(clipboard.getBlock(new Vector(0, 5, 0)).getType(), equalTo(BlockID.STONE));
+    }
+
+    private static int expectedId(int x, int y, int z) {
+        return Math.abs(x * 31 + y * 17 + z * 7) % (BaseBlock.MAX_ID + 1);
+    }
+
+    private static int expectedData(int x, int y, int z) {
+        return Math.abs(x + y + z) % (BaseBlock.MAX_DATA + 1);
+    }
+
+}
@@ -0,0 +1,363 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard.io;
+
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.DoubleTag;
+import com.sk89q.jnbt.FloatTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.ShortTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.PalettedClipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+import com.sk89q.worldedit.world.storage.NBTConversions;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Compares {@link SchematicReader} and {@link SchematicWriter} with reading
+ * the whole file as a tree of tags.
+ */
+public class SchematicReaderTest {
+
+    private static final int WIDTH = 5;
+    private static final int HEIGHT = 3;
+    private static final int LENGTH = 4;
+
+    @Test
+    public void testSizeFirst() throws Exception {
+        byte[] file = createFixture(true, true);
+        assertClipboardEquals(readTree(file), readStream(file));
+    }
+
+    @Test
+    public void testSizeLast() throws Exception {
+        byte[] file = createFixture(false, true);
+        assertClipboardEquals(readTree(file), readStream(file));
+    }
+
+    @Test
+    public void testWithoutOrigin() throws Exception {
+        byte[] file = createFixture(true, false);
+        Clipboard clipboard = readStream(file);
+        assertEquals(new Vector(0, 0, 0), clipboard.getOrigin());
+        assertClipboardEquals(readTree(file), clipboard);
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Clipboard expected = readTree(createFixture(true, true));
+        byte[] file = writeStream(expected);
+        assertClipboardEquals(expected, readTree(file));
+        assertClipboardEquals(expected, readStream(file));
+    }
+
+    @Test
+    public void testOddVolume() throws Exception {
+        CuboidRegion region = new CuboidRegion(new Vector(-1, 10, 7), new Vector(1, 12, 9));
+        PalettedClipboard expected = new PalettedClipboard(region);
+        expected.setOrigin(new Vector(0, 10, 8));
+        for (BlockVector position : region) {
+            Vector relative = position.subtract(region.getMinimumPoint());
+            int x = relative.getBlockX();
+            int y = relative.getBlockY();
+            int z = relative.getBlockZ();
+            expected.setBlock(position, new BaseBlock(getId(x, y, z), getData(x, y, z)));
+        }
+
+        byte[] file = writeStream(expected);
+        CompoundTag schematic = (CompoundTag) new NBTInputStream(new ByteArrayInputStream(file)).readNamedTag().getTag();
+        assertEquals((27 >> 1) + 1, schematic.getByteArray("AddBlocks").length);
+        assertClipboardEquals(expected, readTree(file));
+        assertClipboardEquals(expected, readStream(file));
+    }
+
+    private static int getId(int x, int y, int z) {
+        return (x * 401 + y * 1031 + z * 97) % 4096;
+    }
+
+    private static int getData(int x, int y, int z) {
+        return (x + y * 3 + z * 5) % 16;
+    }
+
+    /**
+     * Create a schematic with blocks above ID 255, tile entities and
+     * entities, written as a tree of tags.
+     *
+     * @param sizeFirst true to put the size and origin before the blocks
+     * @param withOrigin true to include the origin and offset
+     * @return the file
+     */
+    private static byte[] createFixture(boolean sizeFirst, boolean withOrigin) throws IOException {
+        int volume = WIDTH * HEIGHT * LENGTH;
+        byte[] blocks = new byte[volume];
+        byte[] addBlocks = new byte[(volume >> 1) + 1];
+        byte[] data = new byte[volume];
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int z = 0; z < LENGTH; z++) {
+                    int index = y * WIDTH * LENGTH + z * WIDTH + x;
+                    int id = getId(x, y, z);
+                    blocks[index] = (byte) id;
+                    if ((index & 1) == 0) {
+                        addBlocks[index >> 1] |= (byte) ((id >> 8) & 0x0F);
+                    } else {
+                        addBlocks[index >> 1] |= (byte) (((id >> 8) & 0x0F) << 4);
+                    }
+                    data[index] = (byte) getData(x, y, z);
+                }
+            }
+        }
+
+        Map<String, Tag> chest = new HashMap<String, Tag>();
+        chest.put("id", new StringTag("Chest"));
+        chest.put("x", new IntTag(1));
+        chest.put("y", new IntTag(2));
+        chest.put("z", new IntTag(3));
+        Map<String, Tag> item = new HashMap<String, Tag>();
+        item.put("id", new ShortTag((short) 264));
+        chest.put("Items", new ListTag(CompoundTag.class, Arrays.<Tag>asList(new CompoundTag(item))));
+
+        Map<String, Tag> sign = new HashMap<String, Tag>();
+        sign.put("id", new StringTag("Sign"));
+        sign.put("x", new IntTag(4));
+        sign.put("y", new IntTag(0));
+        sign.put("z", new IntTag(0));
+        sign.put("Text1", new StringTag("Hello"));
+
+        Map<String, Tag> outside = new HashMap<String, Tag>(sign);
+        outside.put("x", new IntTag(9));
+
+        Map<String, Tag> pig = new HashMap<String, Tag>();
+        pig.put("id", new StringTag("Pig"));
+        pig.put("Pos", new ListTag(DoubleTag.class, Arrays.<Tag>asList(new DoubleTag(1.5), new DoubleTag(2), new DoubleTag(3.5))));
+        pig.put("Rotation", new ListTag(FloatTag.class, Arrays.<Tag>asList(new FloatTag(90), new FloatTag(10))));
+        pig.put("Saddle", new ShortTag((short) 1));
+
+        Map<String, Tag> unnamed = new HashMap<String, Tag>(pig);
+        unnamed.put("id", new StringTag(""));
+
+        Map<String, Tag> size = new LinkedHashMap<String, Tag>();
+        size.put("Width", new ShortTag((short) WIDTH));
+        size.put("Height", new ShortTag((short) HEIGHT));
+        size.put("Length", new ShortTag((short) LENGTH));
+        if (withOrigin) {
+            size.put("WEOriginX", new IntTag(-10));
+            size.put("WEOriginY", new IntTag(64));
+            size.put("WEOriginZ", new IntTag(20));
+            size.put("WEOffsetX", new IntTag(-2));
+            size.put("WEOffsetY", new IntTag(0));
+            size.put("WEOffsetZ", new IntTag(1));
+        }
+
+        Map<String, Tag> content = new LinkedHashMap<String, Tag>();
+        content.put("Materials", new StringTag("Alpha"));
+        content.put("Blocks", new ByteArrayTag(blocks));
+        content.put("AddBlocks", new ByteArrayTag(addBlocks));
+        content.put("Data", new ByteArrayTag(data));
+        content.put("TileEntities", new ListTag(CompoundTag.class, Arrays.<Tag>asList(
+                new CompoundTag(chest), new CompoundTag(sign), new CompoundTag(outside))));
+        content.put("Entities", new ListTag(CompoundTag.class, Arrays.<Tag>asList(new CompoundTag(pig), new CompoundTag(unnamed))));
+
+        Map<String, Tag> schematic = new LinkedHashMap<String, Tag>();
+        if (sizeFirst) {
+            schematic.putAll(size);
+            schematic.putAll(content);
+        } else {
+            schematic.putAll(content);
+            schematic.putAll(size);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NBTOutputStream nbtOut = new NBTOutputStream(out);
+        nbtOut.writeNamedTag("Schematic", new CompoundTag(schematic));
+        nbtOut.close();
+        return out.toByteArray();
+    }
+
+    private static Clipboard readStream(byte[] file) throws IOException {
+        return new SchematicReader(new NBTInputStream(new ByteArrayInputStream(file))).read(LegacyWorldData.getInstance());
+    }
+
+    private static byte[] writeStream(Clipboard clipboard) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SchematicWriter writer = new SchematicWriter(new NBTOutputStream(out));
+        writer.write(clipboard, LegacyWorldData.getInstance());
+        writer.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Read a schematic the way it was read before it was read as a stream,
+     * by reading the whole file into a tree of tags first.
+     *
+     * @param file the file
+     * @return the clipboard
+     */
+    private static Clipboard readTree(byte[] file) throws IOException, WorldEditException {
+        Map<String, Tag> schematic = ((CompoundTag) new NBTInputStream(new ByteArrayInputStream(file)).readNamedTag().getTag()).getValue();
+
+        short width = ((ShortTag) schematic.get("Width")).getValue();
+        short height = ((ShortTag) schematic.get("Height")).getValue();
+        short length = ((ShortTag) schematic.get("Length")).getValue();
+
+        Vector origin;
+        Region region;
+        if (schematic.containsKey("WEOriginX")) {
+            Vector min = new Vector(((IntTag) schematic.get("WEOriginX")).getValue(),
+                    ((IntTag) schematic.get("WEOriginY")).getValue(), ((IntTag) schematic.get("WEOriginZ")).getValue());
+            Vector offset = new Vector(((IntTag) schematic.get("WEOffsetX")).getValue(),
+                    ((IntTag) schematic.get("WEOffsetY")).getValue(), ((IntTag) schematic.get("WEOffsetZ")).getValue());
+            origin = min.subtract(offset);
+            region = new CuboidRegion(min, min.add(width, height, length).subtract(Vector.ONE));
+        } else {
+            origin = new Vector(0, 0, 0);
+            region = new CuboidRegion(origin, origin.add(width, height, length).subtract(Vector.ONE));
+        }
+
+        byte[] blockId = ((ByteArrayTag) schematic.get("Blocks")).getValue();
+        byte[] blockData = ((ByteArrayTag) schematic.get("Data")).getValue();
+        byte[] addId = schematic.containsKey("AddBlocks") ? ((ByteArrayTag) schematic.get("AddBlocks")).getValue() : new byte[0];
+        short[] blocks = new short[blockId.length];
+        for (int index = 0; index < blockId.length; index++) {
+            if ((index >> 1) >= addId.length) {
+                blocks[index] = (short) (blockId[index] & 0xFF);
+            } else if ((index & 1) == 0) {
+                blocks[index] = (short) (((addId[index >> 1] & 0x0F) << 8) + (blockId[index] & 0xFF));
+            } else {
+                blocks[index] = (short) (((addId[index >> 1] & 0xF0) << 4) + (blockId[index] & 0xFF));
+            }
+        }
+
+        Map<BlockVector, CompoundTag> tileEntities = new HashMap<BlockVector, CompoundTag>();
+        for (Tag tag : ((ListTag) schematic.get("TileEntities")).getValue()) {
+            CompoundTag tileEntity = (CompoundTag) tag;
+            tileEntities.put(new BlockVector(tileEntity.getInt("x"), tileEntity.getInt("y"), tileEntity.getInt("z")), tileEntity);
+        }
+
+        PalettedClipboard clipboard = new PalettedClipboard(region);
+        clipboard.setOrigin(origin);
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                for (int z = 0; z < length; ++z) {
+                    int index = y * width * length + z * width + x;
+                    BlockVector pt = new BlockVector(x, y, z);
+                    BaseBlock block = new BaseBlock(blocks[index], blockData[index]);
+                    if (tileEntities.containsKey(pt)) {
+                        block.setNbtData(tileEntities.get(pt));
+                    }
+                    clipboard.setBlock(region.getMinimumPoint().add(pt), block);
+                }
+            }
+        }
+
+        for (Tag tag : ((ListTag) schematic.get("Entities")).getValue()) {
+            CompoundTag compound = (CompoundTag) tag;
+            String id = compound.getString("id");
+            if (!id.isEmpty()) {
+                clipboard.createEntity(NBTConversions.toLocation(clipboard, compound.getListTag("Pos"), compound.getListTag("Rotation")),
+                        new BaseEntity(id, compound));
+            }
+        }
+
+        return clipboard;
+    }
+
+    private static void assertClipboardEquals(Clipboard expected, Clipboard actual) {
+        assertEquals(expected.getMinimumPoint(), actual.getMinimumPoint());
+        assertEquals(expected.getMaximumPoint(), actual.getMaximumPoint());
+        assertEquals(expected.getOrigin(), actual.getOrigin());
+
+        for (BlockVector position : expected.getRegion()) {
+            BaseBlock expectedBlock = expected.getBlock(position);
+            BaseBlock actualBlock = actual.getBlock(position);
+            assertEquals(position.toString(), expectedBlock.getType(), actualBlock.getType());
+            assertEquals(position.toString(), expectedBlock.getData(), actualBlock.getData());
+            if (expectedBlock.getNbtData() == null) {
+                assertNull(position.toString(), actualBlock.getNbtData());
+            } else {
+                assertTagEquals(expectedBlock.getNbtData(), actualBlock.getNbtData());
+            }
+        }
+
+        List<? extends Entity> expectedEntities = expected.getEntities();
+        List<? extends Entity> actualEntities = actual.getEntities();
+        assertEquals(expectedEntities.size(), actualEntities.size());
+        for (int i = 0; i < expectedEntities.size(); i++) {
+            Entity expectedEntity = expectedEntities.get(i);
+            Entity actualEntity = actualEntities.get(i);
+            assertEquals(expectedEntity.getState().getTypeId(), actualEntity.getState().getTypeId());
+            assertEquals(expectedEntity.getLocation().toVector(), actualEntity.getLocation().toVector());
+            assertEquals(expectedEntity.getLocation().getYaw(), actualEntity.getLocation().getYaw(), 0);
+            assertEquals(expectedEntity.getLocation().getPitch(), actualEntity.getLocation().getPitch(), 0);
+            assertTagEquals(expectedEntity.getState().getNbtData(), actualEntity.getState().getNbtData());
+        }
+    }
+
+    private static void assertTagEquals(Tag expected, Tag actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        if (expected instanceof CompoundTag) {
+            Map<String, Tag> expectedValues = ((CompoundTag) expected).getValue();
+            Map<String, Tag> actualValues = ((CompoundTag) actual).getValue();
+            assertEquals(expectedValues.keySet(), actualValues.keySet());
+            for (String key : expectedValues.keySet()) {
+                assertTagEquals(expectedValues.get(key), actualValues.get(key));
+            }
+        } else if (expected instanceof ListTag) {
+            List<Tag> expectedValues = ((ListTag) expected).getValue();
+            List<Tag> actualValues = ((ListTag) actual).getValue();
+            assertEquals(expectedValues.size(), actualValues.size());
+            for (int i = 0; i < expectedValues.size(); i++) {
+                assertTagEquals(expectedValues.get(i), actualValues.get(i));
+            }
+        } else if (expected instanceof ByteArrayTag) {
+            assertArrayEquals(((ByteArrayTag) expected).getValue(), ((ByteArrayTag) actual).getValue());
+        } else {
+            assertEquals(expected.getValue(), actual.getValue());
+        }
+    }
+
+}
@@ -19,11 +19,15 @@
 
 package com.sk89q.worldedit.extent.transform;
 
+import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockData;
+import com.sk89q.worldedit.blocks.BlockID;
 import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.extent.clipboard.PalettedClipboard;
 import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.world.registry.BlockRegistry;
 import com.sk89q.worldedit.world.registry.LegacyBlockRegistry;
 import org.junit.Before;
@@ -33,6 +37,7 @@
 import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 public class BlockTransformExtentTest {
@@ -74,4 +79,58 @@ public void testTransform() throws Exception {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCacheMatchesTransform() throws Exception {
+        BlockRegistry blockRegistry = new LegacyBlockRegistry();
+        Transform[] transforms = {
+                ROTATE_90, ROTATE_NEG_90, new AffineTransform().rotateY(180),
+                new AffineTransform().scale(-1, 1, 1), new AffineTransform().scale(1, -1, 1),
+                new AffineTransform().rotateX(90), new AffineTransform().rotateY(45) };
+
+        for (Transform transform : transforms) {
+            BlockTransformCache cache = new BlockTransformCache(transform, blockRegistry);
+            for (int pass = 0; pass < 2; pass++) {
+                for (BlockType type : BlockType.values()) {
+                    for (int data = 0; data <= BaseBlock.MAX_DATA; data++) {
+                        BaseBlock reference = BlockTransformExtent.transform(new BaseBlock(type.getID(), data), transform, blockRegistry);
+                        assertThat(type + "#" + type.getID() + ":" + data + " did not match transform()'s result",
+                                cache.getData(type.getID(), data), equalTo(reference.getData()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testExtent() throws Exception {
+        BlockRegistry blockRegistry = new LegacyBlockRegistry();
+        PalettedClipboard clipboard = new PalettedClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 0, 15)));
+        for (int data = 0; data <= BaseBlock.MAX_DATA; data++) {
+            clipboard.setBlock(new Vector(data, 0, 0), new BaseBlock(BlockID.TORCH, data));
+            clipboard.setBlock(new Vector(data, 0, 1), new BaseBlock(BlockID.OAK_WOOD_STAIRS, data));
+        }
+        clipboard.setBlock(new Vector(0, 0, 2), new BaseBlock(BlockID.STONE));
+
+        BlockTransformExtent extent = new BlockTransformExtent(clipboard, ROTATE_90, blockRegistry);
+        for (int x = 0; x <= BaseBlock.MAX_DATA; x++) {
+            for (int z = 0; z < 3; z++) {
+                Vector position = new Vector(x, 0, z);
+                BaseBlock reference = BlockTransformExtent.transform(clipboard.getBlock(position), ROTATE_90, blockRegistry);
+                assertThat(extent.getBlock(position), equalTo(reference));
+                assertThat(extent.getLazyBlock(position), equalTo(reference));
+            }
+        }
+
+        // Blocks that are not changed are not copied
+        BaseBlock stone = clipboard.getLazyBlock(new Vector(0, 0, 2));
+        assertThat(extent.getLazyBlock(new Vector(0, 0, 2)), sameInstance(stone));
+
+        // Blocks that are set are transformed in reverse
+        BaseBlock torch = new BaseBlock(BlockID.TORCH, 1);
+        extent.setBlock(new Vector(0, 0, 2), torch);
+        assertThat(clipboard.getBlock(new Vector(0, 0, 2)),
+                equalTo(BlockTransformExtent.transform(new BaseBlock(torch), ROTATE_NEG_90, blockRegistry)));
+        assertThat(torch.getData(), equalTo(1));
+    }
+}
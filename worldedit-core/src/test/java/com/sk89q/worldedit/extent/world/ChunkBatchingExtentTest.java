@@ -0,0 +1,92 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.world;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extension.platform.TestPlatform;
+import com.sk89q.worldedit.world.MemoryWorld;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkBatchingExtentTest {
+
+    private TestPlatform platform;
+    private MemoryWorld world;
+
+    @Before
+    public void setUp() throws Exception {
+        platform = TestPlatform.install();
+        world = new MemoryWorld();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        platform.uninstall();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testEditSessionReadsBufferedBlocks() throws Exception {
+        Vector position = new Vector(3, 64, -7);
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+        editSession.setChunkBatching(true);
+
+        editSession.setBlock(position, new BaseBlock(BlockID.CLOTH, 5));
+        assertThat(world.getWrites(), equalTo(0));
+        assertThat(editSession.getBlock(position).getType(), equalTo(BlockID.CLOTH));
+        assertThat(editSession.getLazyBlock(position).getData(), equalTo(5));
+        assertThat(editSession.getBlockType(position), equalTo(BlockID.CLOTH));
+        assertThat(editSession.getBlockData(position), equalTo(5));
+        assertThat(editSession.getColumnSnapshot(0, -1, 64, 64).getBlockType(3, 64, 9), equalTo(BlockID.CLOTH));
+
+        editSession.flushQueue();
+        assertThat(world.getBlock(position).getType(), equalTo(BlockID.CLOTH));
+        assertThat(world.getBlock(position).getData(), equalTo(5));
+    }
+
+    @Test
+    public void testSetBlockReturnsWhetherChanged() throws Exception {
+        Vector position = new Vector(17, 10, 4);
+        world.setBlock(position, new BaseBlock(BlockID.STONE), false);
+        ChunkBatchingExtent extent = new ChunkBatchingExtent(new FastModeExtent(world), true);
+
+        assertFalse(extent.setBlock(position, new BaseBlock(BlockID.STONE)));
+        assertTrue(extent.setBlock(position, new BaseBlock(BlockID.DIRT)));
+        assertFalse(extent.setBlock(position, new BaseBlock(BlockID.DIRT)));
+        assertTrue(extent.setBlock(position, new BaseBlock(BlockID.DIRT, 1)));
+        assertTrue(extent.hasBufferedChanges());
+
+        extent.flush();
+        assertFalse(extent.hasBufferedChanges());
+        assertThat(world.getBlock(position).getType(), equalTo(BlockID.DIRT));
+        assertThat(world.getBlock(position).getData(), equalTo(1));
+    }
+
+}
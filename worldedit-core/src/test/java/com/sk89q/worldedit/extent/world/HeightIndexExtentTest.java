@@ -0,0 +1,224 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.world;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.world.ColumnSnapshot;
+import com.sk89q.worldedit.world.MemoryWorld;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class HeightIndexExtentTest {
+
+    private static final int[] BLOCKS = { BlockID.AIR, BlockID.STONE, BlockID.DIRT, BlockID.GLASS, BlockID.TORCH };
+
+    private CountingWorld world;
+
+    @Before
+    public void setUp() {
+        world = new CountingWorld();
+    }
+
+    @Test
+    public void testMatchesScan() throws Exception {
+        fill(new Random(3), -20, 40, 0, 120);
+        HeightIndexExtent extent = createExtent(false);
+
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            assertQueryMatches(extent, random);
+        }
+    }
+
+    @Test
+    public void testRemovedTopScansOnlyBelowIt() throws Exception {
+        setBlock(5, 50, 5, BlockID.STONE);
+        setBlock(5, 100, 5, BlockID.STONE);
+        HeightIndexExtent extent = createExtent(false);
+
+        assertThat(extent.getHighestTerrainBlock(5, 5, 0, 200, false), equalTo(100));
+        assertThat(world.snapshots.size(), equalTo(1));
+
+        // The height becomes unknown, but nothing is above 99
+        extent.setBlock(new Vector(5, 100, 5), new BaseBlock(BlockID.AIR));
+        world.reads = 0;
+        assertThat(extent.getHighestTerrainBlock(5, 5, 0, 200, false), equalTo(50));
+        assertThat(world.reads, equalTo(99 - 50 + 1));
+
+        // The scanned height is kept
+        world.reads = 0;
+        assertThat(extent.getHighestTerrainBlock(5, 5, 0, 200, false), equalTo(50));
+        assertThat(world.reads, equalTo(0));
+
+        // Removing a block below the top changes nothing
+        extent.setBlock(new Vector(5, 20, 5), new BaseBlock(BlockID.AIR));
+        assertThat(extent.getHighestTerrainBlock(5, 5, 0, 200, false), equalTo(50));
+        assertThat(world.reads, equalTo(0));
+
+        // A column that becomes empty stays empty without scanning again
+        extent.setBlock(new Vector(5, 50, 5), new BaseBlock(BlockID.AIR));
+        assertThat(extent.getHighestTerrainBlock(5, 5, 0, 200, false), equalTo(0));
+        world.reads = 0;
+        assertThat(extent.getHighestTerrainBlock(5, 5, 0, 200, false), equalTo(0));
+        assertThat(world.reads, equalTo(0));
+        assertThat(world.snapshots.size(), equalTo(1));
+    }
+
+    @Test
+    public void testSetBlockUpdatesHeights() throws Exception {
+        fill(new Random(8), 0, 31, 0, 60);
+        HeightIndexExtent extent = createExtent(false);
+
+        Random random = new Random(13);
+        for (int i = 0; i < 3000; i++) {
+            if (random.nextBoolean()) {
+                int type = BLOCKS[random.nextInt(BLOCKS.length)];
+                Vector position = new Vector(random.nextInt(32), random.nextInt(61), random.nextInt(32));
+                extent.setBlock(position, new BaseBlock(type));
+            } else {
+                assertQueryMatches(extent, random);
+            }
+        }
+    }
+
+    @Test
+    public void testPartialRangeIsMerged() throws Exception {
+        setBlock(3, 10, 3, BlockID.STONE);
+        setBlock(4, 35, 3, BlockID.GLASS);
+        setBlock(5, 90, 3, BlockID.DIRT);
+        HeightIndexExtent extent = createExtent(false);
+
+        assertThat(extent.getHighestTerrainBlock(4, 3, 30, 40, false), equalTo(35));
+        assertThat(world.snapshots.get(0), equalTo("0,0:30-40"));
+
+        // Below the snapshot
+        assertThat(extent.getHighestTerrainBlock(3, 3, 0, 40, false), equalTo(10));
+        assertThat(extent.getHighestTerrainBlock(3, 3, 0, 40, true), equalTo(10));
+        // Inside the snapshot, but the query ends below its top
+        assertThat(extent.getHighestTerrainBlock(4, 3, 0, 34, false), equalTo(0));
+        assertThat(world.snapshots.size(), equalTo(1));
+
+        // Above the snapshot, which is taken again down to its old bottom
+        assertThat(extent.getHighestTerrainBlock(5, 3, 50, 120, true), equalTo(90));
+        assertThat(world.snapshots.get(1), equalTo("0,0:30-120"));
+        assertThat(extent.getHighestTerrainBlock(4, 3, 0, 120, false), equalTo(35));
+        assertThat(extent.getHighestTerrainBlock(4, 3, 0, 120, true), equalTo(0));
+        assertThat(extent.getHighestTerrainBlock(3, 3, 0, 120, false), equalTo(10));
+        assertThat(world.snapshots.size(), equalTo(2));
+    }
+
+    @Test
+    public void testBufferedChangesAreSeen() throws Exception {
+        setBlock(1, 20, 1, BlockID.STONE);
+        HeightIndexExtent extent = createExtent(true);
+
+        extent.setBlock(new Vector(1, 30, 1), new BaseBlock(BlockID.STONE));
+        assertThat(extent.getHighestTerrainBlock(1, 1, 0, 100, false), equalTo(30));
+        assertThat(world.snapshots.size(), equalTo(0));
+    }
+
+    private HeightIndexExtent createExtent(boolean batching) {
+        return new HeightIndexExtent(new ChunkBatchingExtent(new FastModeExtent(world), batching), world, 4);
+    }
+
+    private void assertQueryMatches(HeightIndexExtent extent, Random random) {
+        int x = random.nextInt(64) - 20;
+        int z = random.nextInt(32);
+        int minY = random.nextInt(130) - 5;
+        int maxY = minY + random.nextInt(80);
+        boolean naturalOnly = random.nextBoolean();
+        assertThat(x + "," + z + " " + minY + "-" + maxY + " " + naturalOnly,
+                extent.getHighestTerrainBlock(x, z, minY, maxY, naturalOnly),
+                equalTo(scan(x, z, minY, maxY, naturalOnly)));
+    }
+
+    /**
+     * Scan the column of the world, the way that height maps were built
+     * without the index.
+     */
+    private int scan(int x, int z, int minY, int maxY, boolean naturalOnly) {
+        for (int y = maxY; y >= minY; --y) {
+            BaseBlock block = world.getBlock(new Vector(x, y, z));
+            int id = block.getType();
+            int data = block.getData();
+            if (naturalOnly ? BlockType.isNaturalTerrainBlock(id, data) : !BlockType.canPassThrough(id, data)) {
+                return y;
+            }
+        }
+        return minY;
+    }
+
+    private void fill(Random random, int minX, int maxX, int minY, int maxY) {
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = 0; z < 32; z++) {
+                int top = minY + random.nextInt(maxY - minY + 1);
+                for (int y = minY; y <= top; y++) {
+                    if (random.nextInt(3) == 0) {
+                        setBlock(x, y, z, BLOCKS[random.nextInt(BLOCKS.length)]);
+                    }
+                }
+            }
+        }
+    }
+
+    private void setBlock(int x, int y, int z, int type) {
+        world.setBlock(new Vector(x, y, z), new BaseBlock(type), false);
+    }
+
+    /**
+     * Records the snapshots that are taken and counts the blocks that are
+     * read one at a time.
+     */
+    private static class CountingWorld extends MemoryWorld {
+        private final List<String> snapshots = new ArrayList<String>();
+        private boolean snapshotting;
+        private int reads;
+
+        @Override
+        public ColumnSnapshot getColumnSnapshot(int chunkX, int chunkZ, int minY, int maxY) {
+            snapshots.add(chunkX + "," + chunkZ + ":" + minY + "-" + maxY);
+            snapshotting = true;
+            try {
+                return super.getColumnSnapshot(chunkX, chunkZ, minY, maxY);
+            } finally {
+                snapshotting = false;
+            }
+        }
+
+        @Override
+        public BaseBlock getLazyBlock(Vector position) {
+            if (!snapshotting) {
+                reads++;
+            }
+            return super.getLazyBlock(position);
+        }
+    }
+
+}
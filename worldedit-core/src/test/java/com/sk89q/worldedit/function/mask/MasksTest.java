@@ -0,0 +1,118 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.clipboard.PalettedClipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class MasksTest {
+
+    private static final int[] TYPES = { BlockID.AIR, BlockID.STONE, BlockID.GRASS, BlockID.DIRT, BlockID.TORCH, BlockID.CLOTH };
+
+    private final Random random = new Random(42);
+    private final Region region = new CuboidRegion(new Vector(0, 0, 0), new Vector(7, 7, 7));
+    private PalettedClipboard first;
+    private PalettedClipboard second;
+
+    @Before
+    public void setUp() throws Exception {
+        first = createClipboard();
+        second = createClipboard();
+    }
+
+    private PalettedClipboard createClipboard() throws WorldEditException {
+        PalettedClipboard clipboard = new PalettedClipboard(region);
+        for (BlockVector position : region) {
+            clipboard.setBlock(position, new BaseBlock(TYPES[random.nextInt(TYPES.length)], random.nextInt(3)));
+        }
+        return clipboard;
+    }
+
+    private Mask createMask(int depth) {
+        PalettedClipboard clipboard = random.nextBoolean() ? first : second;
+        switch (depth > 0 ? random.nextInt(9) : random.nextInt(5)) {
+            case 0:
+                List<BaseBlock> blocks = new ArrayList<BaseBlock>();
+                for (int i = random.nextInt(3); i >= 0; i--) {
+                    blocks.add(new BaseBlock(TYPES[random.nextInt(TYPES.length)], random.nextInt(4) - 1));
+                }
+                return random.nextBoolean() ? new BlockMask(clipboard, blocks) : new FuzzyBlockMask(clipboard, blocks);
+            case 1:
+                return new ExistingBlockMask(clipboard);
+            case 2:
+                return new SolidBlockMask(clipboard);
+            case 3:
+                return new BoundedHeightMask(random.nextInt(4), 4 + random.nextInt(4));
+            case 4:
+                return random.nextBoolean() ? Masks.alwaysTrue() : Masks.negate(Masks.alwaysTrue());
+            case 5:
+                return Masks.negate(createMask(depth - 1));
+            case 6:
+                return new OffsetMask(createMask(depth - 1), new Vector(0, random.nextInt(3) - 1, 0));
+            default:
+                List<Mask> masks = new ArrayList<Mask>();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    masks.add(createMask(depth - 1));
+                }
+                return random.nextBoolean() ? new MaskIntersection(masks) : new MaskUnion(masks);
+        }
+    }
+
+    @Test
+    public void testCompile() {
+        for (int i = 0; i < 300; i++) {
+            Mask mask = createMask(4);
+            Mask compiled = Masks.compile(mask);
+            for (BlockVector position : region) {
+                assertThat(mask + " at " + position, compiled.test(position), equalTo(mask.test(position)));
+            }
+        }
+    }
+
+    @Test
+    public void testCombinesBlockMasks() {
+        Mask mask = Masks.compile(new MaskIntersection(
+                new ExistingBlockMask(first),
+                Masks.negate(new BlockMask(first, new BaseBlock(BlockID.STONE, -1))),
+                new MaskUnion(new BlockMask(first, new BaseBlock(BlockID.DIRT)), new BlockMask(first, new BaseBlock(BlockID.GRASS)))));
+        assertTrue(mask instanceof CompiledBlockMask);
+
+        mask = Masks.compile(new MaskUnion(new ExistingBlockMask(first), new BlockMask(first, new BaseBlock(BlockID.AIR, -1))));
+        assertThat(mask, sameInstance(Masks.alwaysTrue()));
+    }
+
+}
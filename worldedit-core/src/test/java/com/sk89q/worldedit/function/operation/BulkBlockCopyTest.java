@@ -0,0 +1,243 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extension.platform.TestPlatform;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.PalettedClipboard;
+import com.sk89q.worldedit.function.CombinedRegionFunction;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.RegionMaskingFilter;
+import com.sk89q.worldedit.function.block.BlockReplace;
+import com.sk89q.worldedit.function.block.ExtentBlockCopy;
+import com.sk89q.worldedit.function.mask.BlockMask;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.function.pattern.BlockPattern;
+import com.sk89q.worldedit.function.visitor.RegionVisitor;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.math.transform.Identity;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.MemoryWorld;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares {@link ForwardExtentCopy}, which uses {@link BulkBlockCopy} for
+ * these copies, with copying every block through an
+ * {@link ExtentBlockCopy} and a {@link RegionVisitor}.
+ */
+public class BulkBlockCopyTest {
+
+    private static final Region CUBOID = new CuboidRegion(new Vector(-13, 20, -9), new Vector(6, 41, 18));
+    private static final Region ELLIPSOID = new EllipsoidRegion(new Vector(-3, 30, 4), new Vector(9, 7, 11));
+
+    private TestPlatform platform;
+    private MemoryWorld expectedWorld;
+    private MemoryWorld actualWorld;
+    private EditSession expected;
+    private EditSession actual;
+
+    @Before
+    public void setUp() throws Exception {
+        platform = TestPlatform.install();
+        expectedWorld = createWorld();
+        actualWorld = createWorld();
+        expected = WorldEdit.getInstance().getEditSessionFactory().getEditSession(expectedWorld, -1);
+        actual = WorldEdit.getInstance().getEditSessionFactory().getEditSession(actualWorld, -1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        platform.uninstall();
+    }
+
+    @Test
+    public void testTranslate() throws Exception {
+        assertSameCopy(CUBOID, new Vector(40, 2, -5), new Identity(), false, false, 1);
+        assertSameCopy(ELLIPSOID, new Vector(40, 2, -5), new Identity(), false, false, 1);
+    }
+
+    @Test
+    public void testRotationRounding() throws Exception {
+        Transform transform = new AffineTransform().rotateY(90).scale(-1, 1, 1).translate(3, 0, -2);
+        assertSameCopy(CUBOID, new Vector(60.5, 1, -40.3), transform, false, false, 1);
+        assertSameCopy(ELLIPSOID, new Vector(-60.5, 0, 40.7), new AffineTransform().rotateY(270), false, false, 1);
+    }
+
+    @Test
+    public void testExistingBlockMask() throws Exception {
+        assertSameCopy(CUBOID, new Vector(45, 0, 0), new AffineTransform().rotateY(180), true, false, 1);
+    }
+
+    @Test
+    public void testOtherMask() throws Exception {
+        Mask expectedMask = new BlockMask(expected, new BaseBlock(BlockID.STONE), new BaseBlock(BlockID.CHEST));
+        Mask actualMask = new BlockMask(actual, new BaseBlock(BlockID.STONE), new BaseBlock(BlockID.CHEST));
+        assertSameCopy(ELLIPSOID, new Vector(45, 0, 0), new AffineTransform().rotateY(90), expectedMask, actualMask, false, 1);
+    }
+
+    @Test
+    public void testSourceFunctionAndRepetitions() throws Exception {
+        assertSameCopy(CUBOID, new Vector(-13, 20, 19), new Identity(), true, true, 1);
+        assertSameCopy(ELLIPSOID, new Vector(-3, 30, 60), new AffineTransform().translate(0, 0, 23), false, true, 3);
+    }
+
+    @Test
+    public void testFromClipboard() throws Exception {
+        PalettedClipboard expectedClipboard = new PalettedClipboard(CUBOID);
+        PalettedClipboard actualClipboard = new PalettedClipboard(CUBOID);
+        Vector min = CUBOID.getMinimumPoint();
+        assertEquals(copyBlocks(expected, CUBOID, min, expectedClipboard, min, new Identity(), Masks.alwaysTrue(), null, 1),
+                copyForward(actual, CUBOID, min, actualClipboard, min, new Identity(), Masks.alwaysTrue(), null, 1));
+
+        Transform transform = new AffineTransform().rotateY(90).scale(1, 1, -1);
+        Vector to = new Vector(10.5, 3, -70.3);
+        int expectedAffected = copyBlocks(expectedClipboard, CUBOID, min, expected, to, transform,
+                new ExistingBlockMask(expectedClipboard), null, 1);
+        int actualAffected = copyForward(actualClipboard, CUBOID, min, actual, to, transform,
+                new ExistingBlockMask(actualClipboard), null, 1);
+        assertEquals(expectedAffected, actualAffected);
+        assertSameWorlds();
+    }
+
+    @Test
+    public void testCopiesBufferedBlocks() throws Exception {
+        expected.setChunkBatching(true);
+        actual.setChunkBatching(true);
+        for (EditSession session : new EditSession[] { expected, actual }) {
+            session.setBlock(new Vector(0, 25, 0), new BaseBlock(BlockID.GOLD_BLOCK));
+            session.setBlock(new Vector(1, 25, 0), createChest(42));
+        }
+        assertSameCopy(CUBOID, new Vector(40, 0, 0), new Identity(), false, false, 1);
+        assertEquals(BlockID.GOLD_BLOCK, actualWorld.getBlock(new Vector(53, 5, 9)).getType());
+        assertEquals(42, actualWorld.getBlock(new Vector(54, 5, 9)).getNbtData().getInt("n"));
+    }
+
+    private void assertSameCopy(Region region, Vector to, Transform transform,
+                                boolean existingOnly, boolean clearSource, int repetitions) throws WorldEditException {
+        assertSameCopy(region, to, transform,
+                existingOnly ? new ExistingBlockMask(expected) : Masks.alwaysTrue(),
+                existingOnly ? new ExistingBlockMask(actual) : Masks.alwaysTrue(),
+                clearSource, repetitions);
+    }
+
+    private void assertSameCopy(Region region, Vector to, Transform transform, Mask expectedMask, Mask actualMask,
+                                boolean clearSource, int repetitions) throws WorldEditException {
+        Vector from = region.getMinimumPoint();
+        assertNotNull(BulkBlockCopy.create(actual, region, from, actual, to, transform, actualMask));
+
+        RegionFunction expectedFunction = clearSource ? new BlockReplace(expected, new BlockPattern(new BaseBlock(BlockID.AIR))) : null;
+        RegionFunction actualFunction = clearSource ? new BlockReplace(actual, new BlockPattern(new BaseBlock(BlockID.AIR))) : null;
+        int expectedAffected = copyBlocks(expected, region, from, expected, to, transform, expectedMask, expectedFunction, repetitions);
+        int actualAffected = copyForward(actual, region, from, actual, to, transform, actualMask, actualFunction, repetitions);
+
+        assertEquals(expectedAffected, actualAffected);
+        assertSameWorlds();
+    }
+
+    private void assertSameWorlds() {
+        expected.flushQueue();
+        actual.flushQueue();
+
+        Map<BlockVector, BaseBlock> expectedBlocks = expectedWorld.getBlocks();
+        Map<BlockVector, BaseBlock> actualBlocks = actualWorld.getBlocks();
+        assertEquals(expectedBlocks, actualBlocks);
+        for (Map.Entry<BlockVector, BaseBlock> entry : expectedBlocks.entrySet()) {
+            assertEquals(entry.getKey().toString(), String.valueOf(entry.getValue().getNbtData()),
+                    String.valueOf(actualBlocks.get(entry.getKey()).getNbtData()));
+        }
+    }
+
+    private static int copyForward(Extent source, Region region, Vector from, Extent destination, Vector to, Transform transform,
+                                   Mask mask, RegionFunction sourceFunction, int repetitions) throws WorldEditException {
+        ForwardExtentCopy copy = new ForwardExtentCopy(source, region, from, destination, to);
+        copy.setTransform(transform);
+        copy.setSourceMask(mask);
+        copy.setSourceFunction(sourceFunction);
+        copy.setRepetitions(repetitions);
+        Operations.completeLegacy(copy);
+        return copy.getAffected();
+    }
+
+    /**
+     * Copy the way {@link ForwardExtentCopy} copied blocks before it could
+     * copy them in bulk.
+     */
+    private static int copyBlocks(Extent source, Region region, Vector from, Extent destination, Vector to, Transform transform,
+                                  Mask mask, RegionFunction sourceFunction, int repetitions) throws WorldEditException {
+        int affected = 0;
+        Transform currentTransform = transform;
+        for (int i = 0; i < repetitions; i++) {
+            RegionFunction function = new RegionMaskingFilter(mask, new ExtentBlockCopy(source, from, destination, to, currentTransform));
+            if (sourceFunction != null) {
+                function = new CombinedRegionFunction(function, sourceFunction);
+            }
+            RegionVisitor visitor = new RegionVisitor(region, function);
+            Operations.completeLegacy(visitor);
+            affected += visitor.getAffected();
+            currentTransform = currentTransform.combine(transform);
+        }
+        return affected;
+    }
+
+    private static MemoryWorld createWorld() {
+        MemoryWorld world = new MemoryWorld();
+        Random random = new Random(7);
+        for (int i = 0; i < 8000; i++) {
+            Vector position = new Vector(random.nextInt(30) - 20, random.nextInt(30) + 15, random.nextInt(40) - 15);
+            int type = random.nextInt(5);
+            BaseBlock block = type == 0 ? createChest(random.nextInt()) : new BaseBlock(type, random.nextInt(4));
+            world.setBlock(position, block, false);
+        }
+        return world;
+    }
+
+    private static BaseBlock createChest(int n) {
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("id", new StringTag("Chest"));
+        values.put("n", new IntTag(n));
+        return new BaseBlock(BlockID.CHEST, 2, new CompoundTag(values));
+    }
+
+}
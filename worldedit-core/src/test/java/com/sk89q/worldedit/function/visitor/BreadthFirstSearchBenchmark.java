@@ -0,0 +1,208 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.visitor;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Measures how long {@link BreadthFirstSearch} takes to flood fill a cube,
+ * compared with the search it replaced, which kept its queue and visited
+ * set as {@link BlockVector}s.
+ *
+ * <p>This is not a unit test. Run it with {@link #main(String[])}, with
+ * the edge length of the cube as an optional argument. The search starts
+ * in the middle of the cube and spreads along the axes, as a
+ * {@link RecursiveVisitor} does, and the function does nothing but count
+ * the visited blocks, so that the time is mostly spent on the queue and
+ * the visited set.</p>
+ */
+public final class BreadthFirstSearchBenchmark {
+
+    private static final int SIZE = 64;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private BreadthFirstSearchBenchmark() {
+    }
+
+    public static void main(String[] args) throws WorldEditException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : SIZE;
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runCurrent(size);
+            runLegacy(size);
+        }
+
+        long currentBest = Long.MAX_VALUE;
+        long legacyBest = Long.MAX_VALUE;
+        long currentTotal = 0;
+        long legacyTotal = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long elapsed = runCurrent(size);
+            currentBest = Math.min(currentBest, elapsed);
+            currentTotal += elapsed;
+
+            elapsed = runLegacy(size);
+            legacyBest = Math.min(legacyBest, elapsed);
+            legacyTotal += elapsed;
+        }
+
+        System.out.println(size + "^3 cube, " + ((long) size * size * size) + " blocks");
+        System.out.println("BreadthFirstSearch: " + millis(currentBest) + " ms best, " + millis(currentTotal / ROUNDS) + " ms mean");
+        System.out.println("Legacy search:      " + millis(legacyBest) + " ms best, " + millis(legacyTotal / ROUNDS) + " ms mean");
+    }
+
+    private static long runCurrent(final int size) throws WorldEditException {
+        Counter counter = new Counter();
+        BreadthFirstSearch search = new BreadthFirstSearch(counter) {
+            @Override
+            protected boolean isVisitable(Vector from, Vector to) {
+                return inCube(to, size);
+            }
+        };
+        return run(search, counter, size);
+    }
+
+    private static long runLegacy(final int size) throws WorldEditException {
+        Counter counter = new Counter();
+        LegacySearch search = new LegacySearch(counter) {
+            @Override
+            protected boolean isVisitable(Vector from, Vector to) {
+                return inCube(to, size);
+            }
+        };
+        search.visit(new Vector(size / 2, size / 2, size / 2));
+        long start = System.nanoTime();
+        Operations.completeLegacy(search);
+        long elapsed = System.nanoTime() - start;
+        check(counter, size);
+        return elapsed;
+    }
+
+    private static long run(BreadthFirstSearch search, Counter counter, int size) throws WorldEditException {
+        search.visit(new Vector(size / 2, size / 2, size / 2));
+        long start = System.nanoTime();
+        Operations.completeLegacy(search);
+        long elapsed = System.nanoTime() - start;
+        check(counter, size);
+        return elapsed;
+    }
+
+    private static boolean inCube(Vector position, int size) {
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        return x >= 0 && x < size && y >= 0 && y < size && z >= 0 && z < size;
+    }
+
+    private static void check(Counter counter, int size) {
+        if (counter.count != (long) size * size * size) {
+            throw new IllegalStateException("Visited " + counter.count + " blocks");
+        }
+    }
+
+    private static double millis(long elapsed) {
+        return Math.round(elapsed / 100000.0) / 10.0;
+    }
+
+    private static class Counter implements RegionFunction {
+        private long count;
+
+        @Override
+        public boolean apply(Vector position) throws WorldEditException {
+            count++;
+            return true;
+        }
+    }
+
+    /**
+     * The search as it was before positions were packed into longs.
+     */
+    private abstract static class LegacySearch implements Operation {
+        private final RegionFunction function;
+        private final Queue<BlockVector> queue = new ArrayDeque<BlockVector>();
+        private final Set<BlockVector> visited = new HashSet<BlockVector>();
+        private final List<Vector> directions = new ArrayList<Vector>();
+
+        private LegacySearch(RegionFunction function) {
+            this.function = function;
+            directions.add(new Vector(0, -1, 0));
+            directions.add(new Vector(0, 1, 0));
+            directions.add(new Vector(-1, 0, 0));
+            directions.add(new Vector(1, 0, 0));
+            directions.add(new Vector(0, 0, -1));
+            directions.add(new Vector(0, 0, 1));
+        }
+
+        public void visit(Vector position) {
+            BlockVector blockVector = position.toBlockVector();
+            if (!visited.contains(blockVector)) {
+                queue.add(blockVector);
+                visited.add(blockVector);
+            }
+        }
+
+        private void visit(Vector from, Vector to) {
+            BlockVector blockVector = to.toBlockVector();
+            if (!visited.contains(blockVector)) {
+                visited.add(blockVector);
+                if (isVisitable(from, to)) {
+                    queue.add(blockVector);
+                }
+            }
+        }
+
+        protected abstract boolean isVisitable(Vector from, Vector to);
+
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            Vector position;
+            while ((position = queue.poll()) != null) {
+                function.apply(position);
+                for (Vector dir : directions) {
+                    visit(position, position.add(dir));
+                }
+                run.addBlocks(1);
+                if (!run.shouldContinue() && !queue.isEmpty()) {
+                    return this;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+}
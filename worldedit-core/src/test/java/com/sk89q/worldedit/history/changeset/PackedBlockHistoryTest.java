@@ -0,0 +1,165 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class PackedBlockHistoryTest {
+
+    @Test
+    public void testIterationOrder() throws Exception {
+        assertIterationOrder(new PackedBlockHistory());
+    }
+
+    @Test
+    public void testSpilledIterationOrder() throws Exception {
+        File directory = File.createTempFile("history", "");
+        assertTrue(directory.delete());
+        DiskSpillingHistory history = new DiskSpillingHistory(directory, 700);
+        try {
+            assertIterationOrder(history);
+            assertTrue(history.getDiskSize() > 0);
+            assertTrue(history.getMemoryChangeCount() < history.size());
+        } finally {
+            history.close();
+            assertTrue(directory.delete());
+        }
+    }
+
+    @Test
+    public void testCloseDeletesFile() throws Exception {
+        File directory = File.createTempFile("history", "");
+        assertTrue(directory.delete());
+        DiskSpillingHistory history = new DiskSpillingHistory(directory, 100);
+        for (int i = 0; i < 1000; i++) {
+            history.add(new BlockChange(new BlockVector(i, 64, -i), new BaseBlock(0), new BaseBlock(1)));
+        }
+        assertThat(directory.list().length, equalTo(1));
+
+        history.close();
+        assertThat(directory.list().length, equalTo(0));
+        assertThat(history.getDiskSize(), equalTo(0L));
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public void testPurgeStaleFiles() throws Exception {
+        File directory = File.createTempFile("history", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+        File stale = new File(directory, "history123.dat");
+        File other = new File(directory, "notes.txt");
+        assertTrue(stale.createNewFile());
+        assertTrue(other.createNewFile());
+
+        DiskSpillingHistory.purgeStaleFiles(directory);
+        assertFalse(stale.exists());
+        assertTrue(other.exists());
+
+        // Files created after the first purge belong to this run
+        assertTrue(stale.createNewFile());
+        DiskSpillingHistory.purgeStaleFiles(directory);
+        assertTrue(stale.exists());
+
+        assertTrue(stale.delete());
+        assertTrue(other.delete());
+        assertTrue(directory.delete());
+    }
+
+    private static void assertIterationOrder(PackedBlockHistory history) {
+        Random random = new Random(42);
+        List<BlockChange> expected = new ArrayList<BlockChange>();
+
+        for (int i = 0; i < 5000; i++) {
+            BlockVector position;
+            if (random.nextInt(10) == 0) {
+                // Far away, requiring a jump
+                position = new BlockVector(random.nextInt(60000000) - 30000000, random.nextInt(256), random.nextInt(60000000) - 30000000);
+            } else if (expected.isEmpty()) {
+                position = new BlockVector(0, 64, 0);
+            } else {
+                BlockVector last = expected.get(expected.size() - 1).getPosition();
+                position = new BlockVector(last.getBlockX() + random.nextInt(21) - 10, Math.max(0, last.getBlockY() + random.nextInt(5) - 2), last.getBlockZ() + random.nextInt(21) - 10);
+            }
+            BlockChange change = new BlockChange(position,
+                    new BaseBlock(random.nextInt(BaseBlock.MAX_ID + 1), random.nextInt(BaseBlock.MAX_DATA + 1)),
+                    new BaseBlock(random.nextInt(BaseBlock.MAX_ID + 1), random.nextInt(BaseBlock.MAX_DATA + 1)));
+            expected.add(change);
+            history.add(change);
+        }
+
+        assertThat(history.size(), equalTo(expected.size()));
+        assertSameChanges(history.forwardIterator(), expected);
+        Collections.reverse(expected);
+        assertSameChanges(history.backwardIterator(), expected);
+    }
+
+    @Test
+    public void testNbtData() throws Exception {
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("id", new StringTag("Sign"));
+        BaseBlock sign = new BaseBlock(63, 4, new CompoundTag(values));
+
+        PackedBlockHistory history = new PackedBlockHistory();
+        history.add(new BlockChange(new BlockVector(1, 2, 3), new BaseBlock(0), new BaseBlock(1)));
+        history.add(new BlockChange(new BlockVector(1, 3, 3), sign, new BaseBlock(0)));
+
+        Iterator<Change> it = history.backwardIterator();
+        BlockChange change = (BlockChange) it.next();
+        assertThat(change.getPrevious(), sameInstance(sign));
+        assertThat(change.getPosition(), equalTo(new BlockVector(1, 3, 3)));
+        change = (BlockChange) it.next();
+        assertThat(change.getPrevious().getNbtData(), equalTo(null));
+        assertFalse(it.hasNext());
+    }
+
+    private static void assertSameChanges(Iterator<Change> it, List<BlockChange> expected) {
+        for (BlockChange change : expected) {
+            BlockChange actual = (BlockChange) it.next();
+            assertThat(actual.getPosition(), equalTo(change.getPosition()));
+            assertThat(actual.getPrevious(), equalTo(change.getPrevious()));
+            assertThat(actual.getCurrent(), equalTo(change.getCurrent()));
+        }
+        assertFalse(it.hasNext());
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.RValue;
+import com.sk89q.worldedit.internal.expression.runtime.Variable;
+
+/**
+ * Measures how long it takes to evaluate optimized expressions that are
+ * compiled to bytecode, compared with interpreting the same optimized
+ * tree, which is how they were evaluated before they were compiled.
+ *
+ * <p>This is not a unit test. Run it with {@link #main(String[])}. Each
+ * expression is evaluated over a grid of inputs, the way a shape
+ * expression is evaluated for every block of a selection.</p>
+ */
+public final class ExpressionBenchmark {
+
+    private static final String[] EXPRESSIONS = {
+            // //generate torus
+            "(0.75 - sqrt(x^2 + y^2))^2 + z^2 < 0.25^2",
+            // //generate sphere with a noisy surface
+            "r = sqrt(x * x + y * y + z * z); r < 0.8 + sin(x * 10) * cos(z * 10) * 0.1",
+            // a ternary and assignments
+            "a = abs(x) > abs(z) ? x : z; b = max(a, y) - min(a, y); b * b < 0.5",
+            // a loop, which stays interpreted inside compiled code
+            "s = 0; for (i = 0; i < 4; ++i) { s += x * i; } s < y + z",
+    };
+    private static final int GRID = 64;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private ExpressionBenchmark() {
+    }
+
+    public static void main(String[] args) throws ExpressionException {
+        for (String expressionString : EXPRESSIONS) {
+            Expression compiled = Expression.compile(expressionString, "x", "y", "z");
+            compiled.optimize();
+            Expression interpreted = Expression.compile(expressionString, "x", "y", "z");
+            interpreted.optimize();
+
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                runCompiled(compiled);
+                runInterpreted(interpreted);
+            }
+
+            long compiledBest = Long.MAX_VALUE;
+            long interpretedBest = Long.MAX_VALUE;
+            for (int i = 0; i < ROUNDS; i++) {
+                compiledBest = Math.min(compiledBest, runCompiled(compiled));
+                interpretedBest = Math.min(interpretedBest, runInterpreted(interpreted));
+            }
+
+            String form = compiled.getCompiled() == null ? "not compiled"
+                    : compiled.getCompiled().hasInterpretedNodes() ? "partly compiled" : "compiled";
+            System.out.println(expressionString + " (" + form + ")");
+            System.out.println("  compiled:    " + nanosPerEvaluation(compiledBest) + " ns");
+            System.out.println("  interpreted: " + nanosPerEvaluation(interpretedBest) + " ns");
+        }
+    }
+
+    private static long runCompiled(Expression expression) throws EvaluationException {
+        double sum = 0;
+        long start = System.nanoTime();
+        for (int x = 0; x < GRID; x++) {
+            for (int y = 0; y < GRID; y++) {
+                for (int z = 0; z < GRID; z++) {
+                    sum += expression.evaluate(scale(x), scale(y), scale(z));
+                }
+            }
+        }
+        return check(System.nanoTime() - start, sum);
+    }
+
+    /**
+     * Evaluate the optimized tree the way {@link Expression#evaluate(double...)}
+     * did before expressions were compiled, but without pushing the
+     * expression as the current instance, which none of the benchmarked
+     * expressions need. This favours the interpreter slightly.
+     */
+    private static long runInterpreted(Expression expression) throws EvaluationException {
+        Variable vx = (Variable) expression.getVariable("x", false);
+        Variable vy = (Variable) expression.getVariable("y", false);
+        Variable vz = (Variable) expression.getVariable("z", false);
+        RValue root = expression.getRoot();
+        double sum = 0;
+        long start = System.nanoTime();
+        for (int x = 0; x < GRID; x++) {
+            for (int y = 0; y < GRID; y++) {
+                for (int z = 0; z < GRID; z++) {
+                    vx.value = scale(x);
+                    vy.value = scale(y);
+                    vz.value = scale(z);
+                    sum += root.getValue();
+                }
+            }
+        }
+        return check(System.nanoTime() - start, sum);
+    }
+
+    private static double scale(int coordinate) {
+        return coordinate * 2.0 / (GRID - 1) - 1;
+    }
+
+    private static long check(long elapsed, double sum) {
+        // Use the result so that the loop cannot be removed
+        if (Double.isNaN(sum)) {
+            throw new IllegalStateException();
+        }
+        return elapsed;
+    }
+
+    private static double nanosPerEvaluation(long elapsed) {
+        return Math.round(elapsed * 10.0 / ((long) GRID * GRID * GRID)) / 10.0;
+    }
+
+}
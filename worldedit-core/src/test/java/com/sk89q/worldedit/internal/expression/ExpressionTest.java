@@ -23,11 +23,16 @@
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
 import com.sk89q.worldedit.internal.expression.runtime.ExpressionEnvironment;
+import com.sk89q.worldedit.internal.expression.runtime.RValue;
 import org.junit.Test;
 
 import static java.lang.Math.atan2;
 import static java.lang.Math.sin;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class ExpressionTest {
@@ -162,6 +167,152 @@ public void testQuery() throws Exception {
         assertEquals(1, simpleEval("!queryRel(3,4,5,100,200)"), 0);
     }
 
+    @Test
+    public void testStateless() throws ExpressionException {
+        assertStateless("x * x + y * y + z * z < 1");
+        assertStateless("a = x * 2; b = a + y; a * b < z");
+        assertStateless("x = x + 1; y = abs(y); x < y");
+        assertStateless("if (x > 0) { a = 1; } else { a = 2; } a * y");
+        assertStateless("a = 0; for (i = 0; i < 3; ++i) { a += i; } a + x");
+        assertStateless("a = 0; for (i = 1, 3) { a += i; } a + x");
+        assertStateless("a = x; while (a > 10) { a -= 10; } a");
+        assertStateless("random() < 0.5 && randint(3) == 1");
+        assertStateless("x > 0 ? (a = 1) : (a = 2); a");
+
+        // variables that are read before they are assigned keep their value
+        assertNotStateless("a += x; a");
+        assertNotStateless("a = a + 1");
+        assertNotStateless("if (x > 0) { a = 1; } a");
+        assertNotStateless("while (x < 0) { a = 1; x += 1; } a");
+        assertNotStateless("for (i = 0; i < x; ++i) { a = i; } a");
+        assertNotStateless("x > 0 && (a = 1); a");
+        assertNotStateless("x > 0 ? (a = 1) : 2; a");
+
+        // dynamic functions other than random() and randint()
+        assertNotStateless("megabuf(x) > y");
+        assertNotStateless("gmegabuf(0) < x");
+        assertNotStateless("query(x, y, z, 1, 0)");
+    }
+
+    @Test
+    public void testReferenced() throws ExpressionException {
+        Expression expression = Expression.compile("a = type; x < a", "x", "y", "z", "type", "data");
+        expression.optimize();
+        assertTrue(expression.isReferenced("type"));
+        assertTrue(expression.isReferenced("x"));
+        assertFalse(expression.isReferenced("data"));
+        assertFalse(expression.isReferenced("y"));
+        assertFalse(expression.isReferenced("unknown"));
+    }
+
+    private static void assertStateless(String expressionString) throws ExpressionException {
+        assertTrue(expressionString, analyze(expressionString).isStateless());
+    }
+
+    private static void assertNotStateless(String expressionString) throws ExpressionException {
+        assertFalse(expressionString, analyze(expressionString).isStateless());
+    }
+
+    private static Expression analyze(String expressionString) throws ExpressionException {
+        Expression expression = Expression.compile(expressionString, "x", "y", "z", "type", "data");
+        expression.optimize();
+        return expression;
+    }
+
+    @Test
+    public void testCompiledMatchesInterpreted() throws ExpressionException {
+        // operators
+        assertFullyCompiled("x * y - z / 2 + x % 3 + x ^ 2 - -y");
+        assertFullyCompiled("(x < y) + (x <= y) * 2 + (x > z) * 4 + (x >= z) * 8 + (y == z) * 16 + (y != x) * 32");
+        assertFullyCompiled("!x + ~y + (x << 2) + (y >> 1)");
+        assertFullyCompiled("(x && y) + (x || z) * 2 + (z && x) * 4 + (0 || y) * 8");
+
+        // functions
+        assertFullyCompiled("sin(x) + cos(y) + tan(z) + atan2(x, y) + sqrt(abs(x)) + cbrt(z) + exp(y / 10)");
+        assertFullyCompiled("ln(abs(y) + 1) + log10(abs(x) + 1) + floor(z) + ceil(x / 3) + rint(y / 2) + round(z / 3)");
+        assertFullyCompiled("min(x, y) + max(y, z) + min(x, y, z) * 10 + max(x, y, z) * 100");
+
+        // variables
+        assertFullyCompiled("a = x; b = a * 2; a += b; a *= 3; a -= y; a /= 2; a %= 7; a ^= 2; a + b");
+        assertFullyCompiled("a = x; b = ++a; c = a++; d = --a; f = a--; a * 1000 + b * 100 + c * 10 + d + f");
+        assertFullyCompiled("x = x + 1; y = y * 2; z");
+
+        // ternaries
+        assertFullyCompiled("x > y ? x : y");
+        assertFullyCompiled("x < 0 ? 2 : (x == 0 ? 0 : 1)");
+        assertFullyCompiled("a = x > 0 ? (b = 2) : (b = 3); a * b");
+
+        // loops, break and continue, which are interpreted
+        assertPartlyCompiled("a = 0; for (i = 0; i < x; ++i) { a += i; } a * y");
+        assertPartlyCompiled("a = 0; while (a < 10) { a += 1; if (a == z) break; } a + x");
+        assertPartlyCompiled("a = 0; for (i = 1, 10) { if (i % 2 == 0) continue; a += i; } a + x");
+        assertPartlyCompiled("a = 0; do { a += abs(y) + 1; } while (a < 20); a + x");
+        assertPartlyCompiled("a = x; if (a > 0) return a * 2; a - 1");
+        assertPartlyCompiled("rotate(x, y, z); x + y * 10");
+
+        // nothing can be compiled
+        assertNotCompiled("for (i = 1, 3) { x += i; }");
+
+        // too many variables
+        StringBuilder variables = new StringBuilder();
+        for (int i = 0; i <= 100; i++) {
+            variables.append("v").append(i).append(" = x + ").append(i).append("; ");
+        }
+        variables.append("v0 + v100");
+        assertNotCompiled(variables.toString());
+
+        // too large
+        assertNotCompiled(largeExpression(12));
+    }
+
+    /**
+     * Build a balanced sum of 2^depth terms.
+     */
+    private static String largeExpression(int depth) {
+        return depth == 0 ? "(x * y + z)" : "(" + largeExpression(depth - 1) + " + " + largeExpression(depth - 1) + ")";
+    }
+
+    private void assertFullyCompiled(String expressionString) throws ExpressionException {
+        Expression expression = assertCompiledMatches(expressionString);
+        assertNotNull(expressionString, expression.getCompiled());
+        assertFalse(expressionString, expression.getCompiled().hasInterpretedNodes());
+    }
+
+    private void assertPartlyCompiled(String expressionString) throws ExpressionException {
+        Expression expression = assertCompiledMatches(expressionString);
+        assertNotNull(expressionString, expression.getCompiled());
+        assertTrue(expressionString, expression.getCompiled().hasInterpretedNodes());
+    }
+
+    private void assertNotCompiled(String expressionString) throws ExpressionException {
+        Expression expression = assertCompiledMatches(expressionString);
+        assertNull(expression.getCompiled());
+    }
+
+    /**
+     * Evaluate an expression both interpreted and optimized, for several
+     * values of x, y and z, and check that the results and variables match.
+     */
+    private Expression assertCompiledMatches(String expressionString) throws ExpressionException {
+        double[][] inputs = { { 0, 0, 0 }, { 1, 2, 3 }, { -4, 7, 2 }, { 5, -3, -6 }, { 2.5, 0.5, 8 } };
+        Expression interpreted = Expression.compile(expressionString, "x", "y", "z");
+        Expression compiled = compile(expressionString, "x", "y", "z");
+
+        for (double[] input : inputs) {
+            String message = expressionString + " with " + input[0] + ", " + input[1] + ", " + input[2];
+            assertEquals(message, interpreted.evaluate(input), compiled.evaluate(input), 0);
+            for (String name : new String[] { "x", "y", "z", "a", "b" }) {
+                RValue expected = interpreted.getVariable(name, false);
+                RValue actual = compiled.getVariable(name, false);
+                if (expected != null && actual != null) {
+                    assertEquals(message + " (" + name + ")", expected.getValue(), actual.getValue(), 0);
+                }
+            }
+        }
+
+        return compiled;
+    }
+
     private double simpleEval(String expressionString) throws ExpressionException {
         final Expression expression = compile(expressionString);
 
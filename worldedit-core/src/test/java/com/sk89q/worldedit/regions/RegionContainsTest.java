@@ -0,0 +1,222 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions;
+
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.polyhedron.Triangle;
+import com.sk89q.worldedit.world.World;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the cached {@code contains()} of {@link Polygonal2DRegion} and
+ * {@link ConvexPolyhedralRegion} against the uncached tests.
+ */
+public class RegionContainsTest {
+
+    @Test
+    public void testPolygonConcave() {
+        // L shape
+        assertPolygonMatches(polygon(0, 0, 20, 0, 20, 6, 7, 6, 7, 25, 0, 25));
+        // Star
+        assertPolygonMatches(polygon(0, -20, 5, -5, 20, -5, 8, 4, 13, 19, 0, 9, -13, 19, -8, 4, -20, -5, -5, -5));
+        // Comb with teeth one block wide and one block apart
+        assertPolygonMatches(polygon(0, 0, 1, 10, 2, 0, 3, 10, 4, 0, 5, 10, 6, 0, 6, -3, 0, -3));
+    }
+
+    @Test
+    public void testPolygonDegenerate() {
+        // Collinear points
+        assertPolygonMatches(polygon(0, 0, 5, 5, 10, 10));
+        assertPolygonMatches(polygon(0, 0, 0, 5, 0, 10));
+        // Duplicate points
+        assertPolygonMatches(polygon(0, 0, 0, 0, 8, 3, 8, 3, 2, 9));
+        // Two points and a single point
+        assertPolygonMatches(polygon(-3, 4, 7, -2));
+        assertPolygonMatches(polygon(5, 5));
+        // Self-intersecting
+        assertPolygonMatches(polygon(0, 0, 10, 10, 10, 0, 0, 10));
+    }
+
+    @Test
+    public void testPolygonRandom() {
+        Random random = new Random(4);
+        for (int i = 0; i < 50; i++) {
+            int count = 3 + random.nextInt(8);
+            int[] coordinates = new int[count * 2];
+            for (int j = 0; j < coordinates.length; j++) {
+                coordinates[j] = random.nextInt(41) - 20;
+            }
+            assertPolygonMatches(polygon(coordinates));
+        }
+    }
+
+    @Test
+    public void testPolygonCacheReset() throws Exception {
+        Polygonal2DRegion region = polygon(0, 0, 10, 0, 10, 10);
+        assertPolygonMatches(region);
+        region.addPoint(new BlockVector2D(-5, 12));
+        assertPolygonMatches(region);
+        region.shift(new Vector(3, 2, -4));
+        assertPolygonMatches(region);
+        region.expand(new Vector(0, 4, 0), new Vector(0, -2, 0));
+        assertPolygonMatches(region);
+    }
+
+    @Test
+    public void testPolyhedronShapes() {
+        // Octahedron
+        assertPolyhedronMatches(polyhedron(10, 0, 0, -10, 0, 0, 0, 10, 0, 0, -10, 0, 0, 0, 10, 0, 0, -10));
+        // Thin wedge with a steep face
+        assertPolyhedronMatches(polyhedron(0, 0, 0, 30, 1, 0, 0, 40, 2, 0, 0, 25, 15, 3, 12));
+    }
+
+    @Test
+    public void testPolyhedronDegenerate() {
+        // Three vertices make a flat region
+        assertPolyhedronMatches(polyhedron(0, 0, 0, 12, 5, 3, -4, 9, 10));
+        // Flat and horizontal or vertical
+        assertPolyhedronMatches(polyhedron(0, 4, 0, 12, 4, 3, -4, 4, 10));
+        assertPolyhedronMatches(polyhedron(2, 0, 0, 2, 12, 3, 2, -4, 10));
+        // Collinear vertices
+        assertPolyhedronMatches(polyhedron(0, 0, 0, 4, 4, 4, 8, 8, 8));
+        // Coplanar vertices beyond the first three
+        assertPolyhedronMatches(polyhedron(0, 0, 0, 10, 0, 0, 0, 0, 10, 10, 0, 10, 5, 0, 5));
+        assertPolyhedronMatches(polyhedron(0, 0, 0, 10, 0, 0, 0, 0, 10, 10, 0, 10, 5, 7, 5));
+    }
+
+    @Test
+    public void testPolyhedronRandom() {
+        Random random = new Random(7);
+        for (int i = 0; i < 30; i++) {
+            int count = 4 + random.nextInt(10);
+            int[] coordinates = new int[count * 3];
+            for (int j = 0; j < coordinates.length; j++) {
+                coordinates[j] = random.nextInt(31) - 15;
+            }
+            assertPolyhedronMatches(polyhedron(coordinates));
+        }
+    }
+
+    @Test
+    public void testPolyhedronCacheReset() throws Exception {
+        ConvexPolyhedralRegion region = polyhedron(0, 0, 0, 10, 0, 0, 0, 10, 0, 0, 0, 10);
+        assertPolyhedronMatches(region);
+        region.addVertex(new Vector(10, 10, 10));
+        assertPolyhedronMatches(region);
+        region.shift(new Vector(-3, 5, 2));
+        assertPolyhedronMatches(region);
+    }
+
+    @Test
+    public void testPolyhedronTooLargeToCache() {
+        ConvexPolyhedralRegion region = polyhedron(0, 0, 0, 3000, 0, 0, 0, 200, 0, 0, 0, 3000);
+        Random random = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            Vector position = new Vector(random.nextInt(3002) - 1, random.nextInt(202) - 1, random.nextInt(3002) - 1);
+            assertEquals(position.toString(), containsUncached(region, position), region.contains(position));
+        }
+    }
+
+    private static Polygonal2DRegion polygon(int... coordinates) {
+        List<BlockVector2D> points = new ArrayList<BlockVector2D>();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            points.add(new BlockVector2D(coordinates[i], coordinates[i + 1]));
+        }
+        return new Polygonal2DRegion((World) null, points, 3, 6);
+    }
+
+    private static ConvexPolyhedralRegion polyhedron(int... coordinates) {
+        ConvexPolyhedralRegion region = new ConvexPolyhedralRegion((World) null);
+        for (int i = 0; i < coordinates.length; i += 3) {
+            region.addVertex(new Vector(coordinates[i], coordinates[i + 1], coordinates[i + 2]));
+        }
+        return region;
+    }
+
+    private static void assertPolygonMatches(Polygonal2DRegion region) {
+        List<BlockVector2D> points = region.getPoints();
+        int minY = region.getMinimumPoint().getBlockY();
+        int maxY = region.getMaximumPoint().getBlockY();
+        int count = 0;
+        for (Vector position : getPaddedBox(region)) {
+            boolean expected = points.size() >= 3 && Polygonal2DRegion.contains(points, minY, maxY, position);
+            assertEquals(points + " " + position, expected, region.contains(position));
+            if (expected) count++;
+        }
+        assertTrue(points.size() < 3 || count > 0);
+    }
+
+    private static void assertPolyhedronMatches(ConvexPolyhedralRegion region) {
+        assertTrue(region.isDefined());
+        int count = 0;
+        for (Vector position : getPaddedBox(region)) {
+            boolean expected = containsUncached(region, position);
+            assertEquals(region.getVertices() + " " + position, expected, region.contains(position));
+            if (expected) count++;
+        }
+        assertTrue(count > 0);
+    }
+
+    /**
+     * Test the position against every triangle of the region, the way that
+     * {@link ConvexPolyhedralRegion#contains(Vector)} did without a cache.
+     */
+    private static boolean containsUncached(ConvexPolyhedralRegion region, Vector position) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        Vector block = position.toBlockPoint();
+        if (!block.containedWithin(min, max)) {
+            return false;
+        }
+        for (Triangle triangle : region.getTriangles()) {
+            if (triangle.above(block)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get every position of the bounding box of the region, and one more
+     * block on each side.
+     */
+    private static List<Vector> getPaddedBox(Region region) {
+        Vector min = region.getMinimumPoint().subtract(1, 1, 1);
+        Vector max = region.getMaximumPoint().add(1, 1, 1);
+        List<Vector> positions = new ArrayList<Vector>();
+        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
+            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
+                for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
+                    positions.add(new Vector(x, y, z));
+                }
+            }
+        }
+        return positions;
+    }
+
+}
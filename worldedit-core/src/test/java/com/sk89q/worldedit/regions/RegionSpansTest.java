@@ -0,0 +1,167 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions;
+
+import com.google.common.collect.Lists;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.regions.iterator.RegionSpanIterator;
+import com.sk89q.worldedit.world.World;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link Regions#spans(Region)} covers exactly the blocks for
+ * which {@link Region#contains(Vector)} is true.
+ */
+public class RegionSpansTest {
+
+    @Test
+    public void testCuboid() {
+        assertSpansMatch(new CuboidRegion(new Vector(-3, 2, 5), new Vector(4, 6, -2)));
+        assertSpansMatch(new CuboidRegion(new Vector(1, 1, 1), new Vector(1, 1, 1)));
+    }
+
+    @Test
+    public void testCylinder() {
+        assertSpansMatch(new CylinderRegion(new Vector(0, 0, 0), new Vector2D(7.5, 3.2), 0, 3));
+        assertSpansMatch(new CylinderRegion(new Vector(-4, 10, 9), new Vector2D(0.5, 0.5), 10, 10));
+        assertSpansMatch(new CylinderRegion(new Vector(2, 5, 2), new Vector2D(12, 12), 4, 6));
+    }
+
+    @Test
+    public void testEllipsoid() {
+        assertSpansMatch(new EllipsoidRegion(null, new Vector(0, 0, 0), new Vector(8, 5, 11)));
+        assertSpansMatch(new EllipsoidRegion(null, new Vector(3, -7, 2), new Vector(1.5, 0.5, 2.5)));
+    }
+
+    @Test
+    public void testPolygon() {
+        // L shape, star and a comb with rows of several runs
+        assertSpansMatch(polygon(0, 0, 20, 0, 20, 6, 7, 6, 7, 25, 0, 25));
+        assertSpansMatch(polygon(0, -20, 5, -5, 20, -5, 8, 4, 13, 19, 0, 9, -13, 19, -8, 4, -20, -5, -5, -5));
+        assertSpansMatch(polygon(0, 0, 10, 1, 0, 2, 10, 3, 0, 4, 10, 5, 0, 6, -3, 6, -3, 0));
+        // Degenerate polygons
+        assertSpansMatch(polygon(0, 0, 5, 5, 10, 10));
+        assertSpansMatch(polygon(0, 0, 0, 0, 8, 3, 8, 3, 2, 9));
+        assertSpansMatch(polygon(-3, 4, 7, -2));
+        assertSpansMatch(polygon(0, 0, 10, 10, 10, 0, 0, 10));
+    }
+
+    @Test
+    public void testPolyhedron() {
+        assertSpansMatch(polyhedron(10, 0, 0, -10, 0, 0, 0, 10, 0, 0, -10, 0, 0, 0, 10, 0, 0, -10));
+        assertSpansMatch(polyhedron(0, 0, 0, 30, 1, 0, 0, 40, 2, 0, 0, 25, 15, 3, 12));
+        // Degenerate polyhedra
+        assertSpansMatch(polyhedron(0, 0, 0, 12, 5, 3, -4, 9, 10));
+        assertSpansMatch(polyhedron(2, 0, 0, 2, 12, 3, 2, -4, 10));
+        assertSpansMatch(polyhedron(0, 0, 0, 4, 4, 4, 8, 8, 8));
+        assertSpansMatch(polyhedron(0, 0, 0, 10, 0, 0, 0, 0, 10, 10, 0, 10, 5, 0, 5));
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(12);
+        for (int i = 0; i < 20; i++) {
+            int[] coordinates = new int[(3 + random.nextInt(8)) * 2];
+            for (int j = 0; j < coordinates.length; j++) {
+                coordinates[j] = random.nextInt(31) - 15;
+            }
+            assertSpansMatch(polygon(coordinates));
+
+            coordinates = new int[(4 + random.nextInt(8)) * 3];
+            for (int j = 0; j < coordinates.length; j++) {
+                coordinates[j] = random.nextInt(21) - 10;
+            }
+            assertSpansMatch(polyhedron(coordinates));
+        }
+    }
+
+    private static Polygonal2DRegion polygon(int... coordinates) {
+        List<BlockVector2D> points = new ArrayList<BlockVector2D>();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            points.add(new BlockVector2D(coordinates[i], coordinates[i + 1]));
+        }
+        return new Polygonal2DRegion((World) null, points, -2, 1);
+    }
+
+    private static ConvexPolyhedralRegion polyhedron(int... coordinates) {
+        ConvexPolyhedralRegion region = new ConvexPolyhedralRegion((World) null);
+        for (int i = 0; i < coordinates.length; i += 3) {
+            region.addVertex(new Vector(coordinates[i], coordinates[i + 1], coordinates[i + 2]));
+        }
+        return region;
+    }
+
+    /**
+     * Check that the spans of the region are ordered, do not touch or
+     * overlap, and cover exactly the blocks of the bounding box that the
+     * region contains. The spans must also be the same as those found by
+     * testing every block.
+     *
+     * <p>Regions with fractional radii may contain a few blocks outside the
+     * bounding box, which neither the spans nor the region's iterator
+     * visit, so only the bounding box is compared.</p>
+     */
+    private static void assertSpansMatch(Region region) {
+        List<RegionSpan> spans = Lists.newArrayList(Regions.spans(region));
+        RegionSpan last = null;
+        long covered = 0;
+        for (RegionSpan span : spans) {
+            assertTrue(span.toString(), span.getMinimumX() <= span.getMaximumX());
+            if (last != null) {
+                assertTrue(last + " then " + span, span.getZ() > last.getZ()
+                        || (span.getZ() == last.getZ() && span.getY() > last.getY())
+                        || (span.getZ() == last.getZ() && span.getY() == last.getY()
+                                && span.getMinimumX() > last.getMaximumX() + 1));
+            }
+            for (int x = span.getMinimumX(); x <= span.getMaximumX(); x++) {
+                Vector position = new Vector(x, span.getY(), span.getZ());
+                assertTrue(region + " " + position, region.contains(position));
+            }
+            covered += span.getLength();
+            last = span;
+        }
+
+        long contained = 0;
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
+            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
+                for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
+                    if (region.contains(new Vector(x, y, z))) {
+                        contained++;
+                    }
+                }
+            }
+        }
+        assertEquals(region.toString(), contained, covered);
+
+        assertEquals(Lists.newArrayList(new RegionSpanIterator(region)), spans);
+    }
+
+}
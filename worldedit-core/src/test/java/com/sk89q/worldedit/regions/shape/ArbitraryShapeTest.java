@@ -0,0 +1,157 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.shape;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.function.mask.AbstractMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Mask2D;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.collection.VoxelBitSet;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArbitraryShapeTest {
+
+    private static ExecutorService executor;
+
+    @BeforeClass
+    public static void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        Region[] regions = {
+                new CuboidRegion(new Vector(-20, 10, -37), new Vector(25, 40, 30)),
+                new EllipsoidRegion(null, new Vector(3, 60, -5), new Vector(30, 12, 40)) };
+
+        for (Region region : regions) {
+            for (boolean hollow : new boolean[] { false, true }) {
+                Set<BlockVector> expected = getExpected(region, hollow);
+                assertTrue(!expected.isEmpty());
+
+                TestShape shape = new TestShape(region);
+                assertThat(toSet(shape.rasterize(hollow, shape.createWorkerMask(), null, 1)), equalTo(expected));
+                assertThat(toSet(shape.rasterize(hollow, shape.createWorkerMask(), executor, 4)), equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testInterruptFails() {
+        TestShape shape = new TestShape(new CuboidRegion(new Vector(0, 0, 0), new Vector(40, 10, 40)));
+        Thread.currentThread().interrupt();
+        try {
+            shape.rasterize(false, shape.createWorkerMask(), executor, 4);
+            fail("Expected the interrupt to fail the rasterization");
+        } catch (IllegalStateException ignored) {
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Test every position of the region one at a time, the way that shapes
+     * without worker masks are generated.
+     */
+    private static Set<BlockVector> getExpected(Region region, boolean hollow) {
+        Set<BlockVector> expected = new HashSet<BlockVector>();
+        for (BlockVector position : region) {
+            int x = position.getBlockX();
+            int y = position.getBlockY();
+            int z = position.getBlockZ();
+            if (!isInside(x, y, z)) {
+                continue;
+            }
+            if (hollow && isInside(x + 1, y, z) && isInside(x - 1, y, z) && isInside(x, y + 1, z)
+                    && isInside(x, y - 1, z) && isInside(x, y, z + 1) && isInside(x, y, z - 1)) {
+                continue;
+            }
+            expected.add(position);
+        }
+        return expected;
+    }
+
+    private static Set<BlockVector> toSet(VoxelBitSet positions) {
+        Set<BlockVector> set = new HashSet<BlockVector>();
+        for (BlockVector position : positions) {
+            set.add(position);
+        }
+        return set;
+    }
+
+    /**
+     * An irregular shape with holes, so that hollow shapes have inner walls.
+     */
+    private static boolean isInside(int x, int y, int z) {
+        int hash = (x * 73856093) ^ (y * 19349663) ^ (z * 83492791);
+        return (x * x + z * z) % 7 != 0 && (hash & 15) != 0;
+    }
+
+    private static class TestShape extends ArbitraryShape {
+        private TestShape(Region extent) {
+            super(extent);
+        }
+
+        @Override
+        protected BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial) {
+            return isInside(x, y, z) ? defaultMaterial : null;
+        }
+
+        @Override
+        protected Mask createWorkerMask() {
+            return new AbstractMask() {
+                @Override
+                public boolean test(Vector vector) {
+                    return isInside(vector.getBlockX(), vector.getBlockY(), vector.getBlockZ());
+                }
+
+                @Nullable
+                @Override
+                public Mask2D toMask2D() {
+                    return null;
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.event.platform.ConfigurationLoadEvent;
+import com.sk89q.worldedit.extension.platform.TestPlatform;
+import com.sk89q.worldedit.world.MemoryWorld;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that the history files of edit sessions are deleted when the
+ * sessions are discarded.
+ */
+public class SessionHistoryTest {
+
+    private File directory;
+    private SpillingPlatform platform;
+    private MemoryWorld world;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("worldedit", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+        platform = TestPlatform.install(new SpillingPlatform(directory));
+        world = new MemoryWorld();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        platform.uninstall();
+        delete(directory);
+    }
+
+    @Test
+    public void testTrimmedAndClearedHistoryIsDeleted() throws Exception {
+        LocalSession session = new LocalSession(platform.getConfiguration());
+        for (int i = 0; i < LocalSession.MAX_HISTORY_SIZE; i++) {
+            session.remember(createEditSession(i));
+        }
+        assertThat(getHistoryFileCount(), equalTo(LocalSession.MAX_HISTORY_SIZE));
+
+        session.remember(createEditSession(100));
+        assertThat(getHistoryFileCount(), equalTo(LocalSession.MAX_HISTORY_SIZE));
+
+        session.clearHistory();
+        assertThat(getHistoryFileCount(), equalTo(0));
+    }
+
+    @Test
+    public void testRemovedSessionHistoryIsDeleted() throws Exception {
+        SessionManager sessionManager = WorldEdit.getInstance().getSessionManager();
+        SessionOwner first = createOwner();
+        SessionOwner second = createOwner();
+        sessionManager.get(first).remember(createEditSession(0));
+        sessionManager.get(second).remember(createEditSession(1));
+        sessionManager.get(second).remember(createEditSession(2));
+        assertThat(getHistoryFileCount(), equalTo(3));
+
+        sessionManager.remove(first);
+        assertThat(getHistoryFileCount(), equalTo(2));
+
+        sessionManager.clear();
+        assertThat(getHistoryFileCount(), equalTo(0));
+    }
+
+    @Test
+    public void testStaleFilesDeletedOnLoad() throws Exception {
+        // The folder of the installed platform has already been purged
+        File workingDirectory = new File(directory, "other");
+        File history = new File(workingDirectory, "history");
+        assertTrue(history.mkdirs());
+        assertTrue(new File(history, "history1.dat").createNewFile());
+        assertTrue(new File(history, "history2.dat").createNewFile());
+
+        LocalConfiguration configuration = new SpillingPlatform(workingDirectory).getConfiguration();
+        WorldEdit.getInstance().getEventBus().post(new ConfigurationLoadEvent(configuration));
+        assertThat(history.list().length, equalTo(0));
+    }
+
+    private EditSession createEditSession(int z) throws Exception {
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+        for (int x = 0; x < 500; x++) {
+            editSession.setBlock(new Vector(x, 64, z), new BaseBlock(BlockID.STONE));
+        }
+        editSession.flushQueue();
+        return editSession;
+    }
+
+    private int getHistoryFileCount() {
+        String[] names = new File(directory, "history").list();
+        return names != null ? names.length : 0;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        assertTrue(file.delete());
+    }
+
+    private static SessionOwner createOwner() {
+        SessionKey key = mock(SessionKey.class);
+        when(key.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(key.isActive()).thenReturn(true);
+        SessionOwner owner = mock(SessionOwner.class);
+        when(owner.getSessionKey()).thenReturn(key);
+        return owner;
+    }
+
+    /**
+     * A platform that writes history to disk after a few changes.
+     */
+    private static class SpillingPlatform extends TestPlatform {
+        private final LocalConfiguration configuration;
+
+        private SpillingPlatform(final File directory) {
+            configuration = new LocalConfiguration() {
+                @Override
+                public void load() {
+                }
+
+                @Override
+                public File getWorkingDirectory() {
+                    return directory;
+                }
+            };
+            configuration.historySpillThreshold = 100;
+        }
+
+        @Override
+        public LocalConfiguration getConfiguration() {
+            return configuration;
+        }
+    }
+
+}
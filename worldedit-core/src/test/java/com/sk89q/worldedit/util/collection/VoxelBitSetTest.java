@@ -0,0 +1,251 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import com.sk89q.worldedit.BlockVector;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class VoxelBitSetTest {
+
+    // Widths on both sides of the 64-bit word boundaries
+    private static final int[] WIDTHS = { 1, 63, 64, 65, 127, 128, 130 };
+    private static final int MIN_X = -70;
+    private static final int MIN_Y = 3;
+    private static final int MIN_Z = -2;
+    private static final int HEIGHT = 4;
+    private static final int LENGTH = 5;
+
+    private static final int[][] NEIGHBORS = {
+            { 1, 0, 0 }, { -1, 0, 0 }, { 0, 1, 0 }, { 0, -1, 0 }, { 0, 0, 1 }, { 0, 0, -1 } };
+
+    @Test
+    public void testAddMatchesReference() {
+        Random random = new Random(1);
+        for (int width : WIDTHS) {
+            VoxelBitSet set = create(width);
+            boolean[][][] expected = new boolean[width][HEIGHT][LENGTH];
+
+            for (int i = 0; i < 200; i++) {
+                int from = MIN_X - 2 + random.nextInt(width + 4);
+                int to = from + random.nextInt(80);
+                int y = MIN_Y - 1 + random.nextInt(HEIGHT + 2);
+                int z = MIN_Z - 1 + random.nextInt(LENGTH + 2);
+                set.add(from, to, y, z);
+                for (int x = from; x <= to; x++) {
+                    set(expected, x, y, z);
+                }
+            }
+
+            assertMatches(set, expected);
+        }
+    }
+
+    @Test
+    public void testGetNeighborsMatchesReference() {
+        Random random = new Random(2);
+        for (int width : WIDTHS) {
+            for (int round = 0; round < 10; round++) {
+                boolean[][][] voxels = randomVoxels(random, width, 0.1);
+                boolean[][][] expected = new boolean[width][HEIGHT][LENGTH];
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < HEIGHT; y++) {
+                        for (int z = 0; z < LENGTH; z++) {
+                            for (int[] offset : NEIGHBORS) {
+                                if (get(voxels, MIN_X + x + offset[0], MIN_Y + y + offset[1], MIN_Z + z + offset[2])) {
+                                    expected[x][y][z] = true;
+                                }
+                            }
+                        }
+                    }
+                }
+
+                assertMatches(toSet(voxels).getNeighbors(), expected);
+            }
+        }
+    }
+
+    @Test
+    public void testGetInteriorMatchesReference() {
+        Random random = new Random(3);
+        for (int width : WIDTHS) {
+            for (int round = 0; round < 10; round++) {
+                boolean[][][] voxels = randomVoxels(random, width, 0.9);
+                boolean[][][] expected = new boolean[width][HEIGHT][LENGTH];
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < HEIGHT; y++) {
+                        for (int z = 0; z < LENGTH; z++) {
+                            boolean inside = voxels[x][y][z];
+                            for (int[] offset : NEIGHBORS) {
+                                inside &= get(voxels, MIN_X + x + offset[0], MIN_Y + y + offset[1], MIN_Z + z + offset[2]);
+                            }
+                            expected[x][y][z] = inside;
+                        }
+                    }
+                }
+
+                assertMatches(toSet(voxels).getInterior(), expected);
+            }
+        }
+    }
+
+    @Test
+    public void testFillMatchesReference() {
+        Random random = new Random(4);
+        for (int width : WIDTHS) {
+            for (int round = 0; round < 20; round++) {
+                boolean[][][] mask = randomVoxels(random, width, 0.6);
+                boolean[][][] seeds = randomVoxels(random, width, 0.01);
+
+                // Flood fill one position at a time
+                boolean[][][] expected = new boolean[width][HEIGHT][LENGTH];
+                Deque<int[]> queue = new ArrayDeque<int[]>();
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < HEIGHT; y++) {
+                        for (int z = 0; z < LENGTH; z++) {
+                            if (seeds[x][y][z] && mask[x][y][z]) {
+                                expected[x][y][z] = true;
+                                queue.add(new int[] { x, y, z });
+                            }
+                        }
+                    }
+                }
+                while (!queue.isEmpty()) {
+                    int[] position = queue.remove();
+                    for (int[] offset : NEIGHBORS) {
+                        int x = MIN_X + position[0] + offset[0];
+                        int y = MIN_Y + position[1] + offset[1];
+                        int z = MIN_Z + position[2] + offset[2];
+                        if (get(mask, x, y, z) && !get(expected, x, y, z)) {
+                            set(expected, x, y, z);
+                            queue.add(new int[] { x - MIN_X, y - MIN_Y, z - MIN_Z });
+                        }
+                    }
+                }
+                // Seeds outside the mask stay in the set
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < HEIGHT; y++) {
+                        for (int z = 0; z < LENGTH; z++) {
+                            expected[x][y][z] |= seeds[x][y][z];
+                        }
+                    }
+                }
+
+                VoxelBitSet set = toSet(seeds);
+                set.fill(toSet(mask));
+                assertMatches(set, expected);
+            }
+        }
+    }
+
+    @Test
+    public void testFillAcrossWordBoundary() {
+        // A single row that has to be filled across every word
+        VoxelBitSet mask = create(130);
+        mask.add(MIN_X, MIN_X + 129, MIN_Y, MIN_Z);
+        VoxelBitSet set = create(130);
+        set.add(MIN_X + 129, MIN_Y, MIN_Z);
+        set.fill(mask);
+        assertThat(set.size(), equalTo(130));
+
+        set = create(130);
+        set.add(MIN_X, MIN_Y, MIN_Z);
+        set.fill(mask);
+        assertThat(set.size(), equalTo(130));
+    }
+
+    private static VoxelBitSet create(int width) {
+        return new VoxelBitSet(MIN_X, MIN_Y, MIN_Z, MIN_X + width - 1, MIN_Y + HEIGHT - 1, MIN_Z + LENGTH - 1);
+    }
+
+    private static boolean[][][] randomVoxels(Random random, int width, double density) {
+        boolean[][][] voxels = new boolean[width][HEIGHT][LENGTH];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int z = 0; z < LENGTH; z++) {
+                    voxels[x][y][z] = random.nextDouble() < density;
+                }
+            }
+        }
+        return voxels;
+    }
+
+    private static VoxelBitSet toSet(boolean[][][] voxels) {
+        VoxelBitSet set = create(voxels.length);
+        for (int x = 0; x < voxels.length; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int z = 0; z < LENGTH; z++) {
+                    if (voxels[x][y][z]) {
+                        set.add(MIN_X + x, MIN_Y + y, MIN_Z + z);
+                    }
+                }
+            }
+        }
+        return set;
+    }
+
+    private static boolean get(boolean[][][] voxels, int x, int y, int z) {
+        x -= MIN_X;
+        y -= MIN_Y;
+        z -= MIN_Z;
+        return x >= 0 && x < voxels.length && y >= 0 && y < HEIGHT && z >= 0 && z < LENGTH && voxels[x][y][z];
+    }
+
+    private static void set(boolean[][][] voxels, int x, int y, int z) {
+        x -= MIN_X;
+        y -= MIN_Y;
+        z -= MIN_Z;
+        if (x >= 0 && x < voxels.length && y >= 0 && y < HEIGHT && z >= 0 && z < LENGTH) {
+            voxels[x][y][z] = true;
+        }
+    }
+
+    private static void assertMatches(VoxelBitSet set, boolean[][][] expected) {
+        Set<BlockVector> positions = new HashSet<BlockVector>();
+        for (int x = MIN_X - 1; x <= MIN_X + expected.length; x++) {
+            for (int y = MIN_Y - 1; y <= MIN_Y + HEIGHT; y++) {
+                for (int z = MIN_Z - 1; z <= MIN_Z + LENGTH; z++) {
+                    boolean contained = get(expected, x, y, z);
+                    assertThat("(" + x + ", " + y + ", " + z + ")", set.contains(x, y, z), equalTo(contained));
+                    if (contained) {
+                        positions.add(new BlockVector(x, y, z));
+                    }
+                }
+            }
+        }
+
+        Set<BlockVector> iterated = new HashSet<BlockVector>();
+        for (BlockVector position : set) {
+            iterated.add(position);
+        }
+        assertThat(iterated, equalTo(positions));
+        assertThat(set.size(), equalTo(positions.size()));
+        assertThat(set.isEmpty(), equalTo(positions.isEmpty()));
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.eventbus;
+
+/**
+ * Measures how long {@link EventBus#post(Object)} takes to dispatch an
+ * event to a number of listeners.
+ *
+ * <p>This is not a unit test. Run it with {@link #main(String[])} and
+ * compare the reported times before and after a change to the bus. The
+ * default setup has 20 listeners that each have two handlers for the
+ * posted event, one for the event class itself and one for its
+ * superclass.</p>
+ */
+public final class EventBusBenchmark {
+
+    private static final int LISTENERS = 20;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int POSTS_PER_ROUND = 1000000;
+
+    private EventBusBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int listeners = args.length > 0 ? Integer.parseInt(args[0]) : LISTENERS;
+
+        EventBus bus = new EventBus();
+        Listener[] registered = new Listener[listeners];
+        for (int i = 0; i < listeners; i++) {
+            registered[i] = new Listener();
+            bus.register(registered[i]);
+        }
+
+        BenchmarkEvent event = new BenchmarkEvent();
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(bus, event);
+        }
+
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long elapsed = run(bus, event);
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+
+        long calls = 0;
+        for (Listener listener : registered) {
+            calls += listener.calls;
+        }
+
+        System.out.println(listeners + " listeners, " + (listeners * 2) + " handlers");
+        System.out.println("post(): " + nanosPerPost(best) + " ns best, " + nanosPerPost(total / ROUNDS) + " ns mean");
+        System.out.println("(" + calls + " handler calls)");
+    }
+
+    private static long run(EventBus bus, Object event) {
+        long start = System.nanoTime();
+        for (int i = 0; i < POSTS_PER_ROUND; i++) {
+            bus.post(event);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static double nanosPerPost(long elapsed) {
+        return Math.round(elapsed * 10.0 / POSTS_PER_ROUND) / 10.0;
+    }
+
+    private static class BaseEvent {
+    }
+
+    private static class BenchmarkEvent extends BaseEvent {
+    }
+
+    public static class Listener {
+        private long calls;
+
+        @Subscribe
+        public void onEvent(BenchmarkEvent event) {
+            calls++;
+        }
+
+        @Subscribe(priority = EventHandler.Priority.EARLY)
+        public void onBaseEvent(BaseEvent event) {
+            calls++;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.io.compression;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompressionCodecsTest {
+
+    private static final String[] NAMES = { "none", "lz", "deflate", "deflate:1", "gzip", "gzip:9" };
+
+    private static byte[] createData(int length, int alphabet) {
+        Random random = new Random(42);
+        byte[] data = new byte[length];
+        int i = 0;
+        while (i < length) {
+            if (i > 0 && random.nextBoolean()) {
+                // Repeat an earlier run, possibly overlapping the current position
+                int offset = 1 + random.nextInt(Math.min(i, 70000));
+                int count = Math.min(length - i, random.nextInt(300));
+                for (int j = 0; j < count; j++, i++) {
+                    data[i] = data[i - offset];
+                }
+            } else {
+                data[i++] = (byte) random.nextInt(alphabet);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] roundTrip(CompressionCodec codec, byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        OutputStream out = CompressionCodecs.compress(compressed, codec);
+        out.write(data, 0, data.length / 3);
+        for (int i = data.length / 3; i < data.length / 2; i++) {
+            out.write(data[i]);
+        }
+        out.write(data, data.length / 2, data.length - data.length / 2);
+        out.close();
+
+        InputStream in = CompressionCodecs.decompress(new ByteArrayInputStream(compressed.toByteArray()));
+        byte[] result = ByteStreams.toByteArray(in);
+        in.close();
+        return result;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[][] inputs = { new byte[0], new byte[1], createData(7, 256), createData(300000, 4), createData(200000, 256) };
+        for (String name : NAMES) {
+            CompressionCodec codec = CompressionCodecs.findByName(name);
+            assertEquals(name, codec.getName());
+            for (byte[] data : inputs) {
+                assertArrayEquals(name, data, roundTrip(codec, data));
+            }
+        }
+    }
+
+    @Test
+    public void testLZRepetitive() throws IOException {
+        byte[] data = new byte[500000];
+        Arrays.fill(data, 100000, 400000, (byte) 7);
+        assertArrayEquals(data, roundTrip(new LZCodec(), data));
+    }
+
+    @Test
+    public void testUnframedGzip() throws IOException {
+        byte[] data = createData(10000, 16);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(compressed);
+        out.write(data);
+        out.close();
+
+        InputStream in = CompressionCodecs.decompress(new ByteArrayInputStream(compressed.toByteArray()));
+        assertArrayEquals(data, ByteStreams.toByteArray(in));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownFormat() throws IOException {
+        CompressionCodecs.decompress(new ByteArrayInputStream(new byte[] { 10, 0, 9, 'S' }));
+    }
+
+    @Test
+    public void testUnknownNames() {
+        assertNull(CompressionCodecs.findByName("bzip2"));
+        assertNull(CompressionCodecs.findByName("gzip:10"));
+        assertNull(CompressionCodecs.findByName("lz:3"));
+    }
+
+}
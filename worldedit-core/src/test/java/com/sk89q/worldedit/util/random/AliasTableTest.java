@@ -0,0 +1,73 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.random;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AliasTableTest {
+
+    @Test
+    public void testDistribution() {
+        double[] weights = { 30, 0, 20, 300, 0.5, 1 };
+        AliasTable<Integer> table = new AliasTable<Integer>(Arrays.asList(0, 1, 2, 3, 4, 5), weights);
+        double sum = 0;
+        for (double weight : weights) {
+            sum += weight;
+        }
+
+        SplitMixRandom random = new SplitMixRandom(42);
+        int samples = 1000000;
+        int[] counts = new int[weights.length];
+        for (int i = 0; i < samples; i++) {
+            counts[table.get(random)]++;
+        }
+
+        assertEquals(0, counts[1]);
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals("value " + i, weights[i] / sum, counts[i] / (double) samples, 0.002);
+        }
+    }
+
+    @Test
+    public void testBounds() {
+        AliasTable<String> table = new AliasTable<String>(Arrays.asList("a", "b", "c"), new double[] { 1, 1, 1 });
+        assertEquals("a", table.get(0));
+        assertEquals("c", table.get(Math.nextAfter(1.0, 0)));
+    }
+
+    @Test
+    public void testSplit() {
+        SplitMixRandom first = new SplitMixRandom(7);
+        SplitMixRandom second = new SplitMixRandom(7);
+        SplitMixRandom split = first.split();
+        assertEquals(split.nextLong(), second.split().nextLong());
+        assertEquals(first.nextLong(), second.nextLong());
+        for (int i = 0; i < 10000; i++) {
+            int value = first.nextInt(7);
+            assertTrue(value >= 0 && value < 7);
+        }
+    }
+
+}
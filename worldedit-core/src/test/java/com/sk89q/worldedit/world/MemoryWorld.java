@@ -0,0 +1,99 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A world for tests that keeps its blocks in memory.
+ *
+ * <p>Blocks outside 0 to {@link #getMaxY()} cannot be set. Biomes,
+ * entities and lighting are not supported.</p>
+ */
+public class MemoryWorld extends NullWorld {
+
+    private final Map<BlockVector, BaseBlock> blocks = new HashMap<BlockVector, BaseBlock>();
+    private int writes;
+
+    /**
+     * Get the blocks that are not air.
+     *
+     * @return a copy of the blocks that are not air
+     */
+    public Map<BlockVector, BaseBlock> getBlocks() {
+        Map<BlockVector, BaseBlock> copy = new HashMap<BlockVector, BaseBlock>();
+        for (Map.Entry<BlockVector, BaseBlock> entry : blocks.entrySet()) {
+            if (!entry.getValue().isAir() || entry.getValue().getData() != 0) {
+                copy.put(entry.getKey(), new BaseBlock(entry.getValue()));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Get the number of times that a block was set.
+     *
+     * @return the number of writes
+     */
+    public int getWrites() {
+        return writes;
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) {
+        if (position.getBlockY() < 0 || position.getBlockY() > getMaxY()) {
+            return false;
+        }
+
+        writes++;
+        BaseBlock previous = blocks.put(toKey(position), new BaseBlock(block));
+        if (previous == null) {
+            previous = new BaseBlock(BlockID.AIR);
+        }
+        return previous.getType() != block.getType() || previous.getData() != block.getData() || block.hasNbtData();
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        BaseBlock block = blocks.get(toKey(position));
+        return block != null ? new BaseBlock(block) : new BaseBlock(BlockID.AIR);
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        return getBlock(position);
+    }
+
+    private static BlockVector toKey(Vector position) {
+        return new BlockVector(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+    }
+
+}
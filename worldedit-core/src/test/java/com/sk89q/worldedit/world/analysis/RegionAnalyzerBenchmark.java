@@ -0,0 +1,189 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.analysis;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
+import com.sk89q.worldedit.world.ColumnSnapshot;
+import com.sk89q.worldedit.world.NullWorld;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Measures how the time that {@link RegionAnalyzer} takes to count a
+ * region is split between taking snapshots, which is done on the calling
+ * thread, and counting them, which is done by the workers.
+ *
+ * <p>This is not a unit test. Run it with {@link #main(String[])}. Each
+ * round counts a 256 x 128 x 256 cuboid of a world that is held in an
+ * array, once with the snapshots of {@link com.sk89q.worldedit.world.AbstractWorld},
+ * which read every block through {@code getLazyBlock()}, and once with
+ * snapshots that are copied straight from the array, as platforms that
+ * override {@code getColumnSnapshot()} do. Counting runs in parallel with
+ * taking the next snapshots, but every snapshot is taken by the calling
+ * thread, so counting with any number of threads can take no less time
+ * than the snapshots alone, nor less than the total divided by the
+ * number of threads. This gives the best possible speedup.</p>
+ */
+public final class RegionAnalyzerBenchmark {
+
+    private static final int WIDTH = 256;
+    private static final int HEIGHT = 128;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    private RegionAnalyzerBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = EvenMoreExecutors.newDaemonThreadPool(Math.max(2, threads), "Benchmark %d");
+        Region region = new CuboidRegion(new Vector(0, 0, 0), new Vector(WIDTH - 1, HEIGHT - 1, WIDTH - 1));
+        ArrayWorld world = new ArrayWorld(false);
+        ArrayWorld directWorld = new ArrayWorld(true);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            snapshot(world);
+            snapshot(directWorld);
+            analyze(world, region, executor);
+            analyze(directWorld, region, executor);
+        }
+
+        System.out.println(region.getArea() + " blocks, " + threads + " processor(s)");
+        report("getLazyBlock() snapshots", world, region, executor);
+        report("Direct snapshots", directWorld, region, executor);
+        executor.shutdown();
+    }
+
+    private static void report(String name, ArrayWorld world, Region region, ExecutorService executor) {
+        long snapshotBest = Long.MAX_VALUE;
+        long totalBest = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            snapshotBest = Math.min(snapshotBest, snapshot(world));
+            totalBest = Math.min(totalBest, analyze(world, region, executor));
+        }
+
+        System.out.println(name + ": " + millis(totalBest) + " ms, of which snapshots "
+                + millis(snapshotBest) + " ms (" + Math.round(100.0 * snapshotBest / totalBest) + "%)");
+        for (int threads : new int[] { 2, 4, 8 }) {
+            double speedup = (double) totalBest / Math.max(snapshotBest, totalBest / threads);
+            System.out.println("    at most " + Math.round(speedup * 100) / 100.0 + "x with " + threads + " threads");
+        }
+    }
+
+    /**
+     * Take a snapshot of every chunk of the region, as the analyzer does.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    private static long snapshot(ArrayWorld world) {
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int chunkX = 0; chunkX < WIDTH >> 4; chunkX++) {
+            for (int chunkZ = 0; chunkZ < WIDTH >> 4; chunkZ++) {
+                checksum += world.getColumnSnapshot(chunkX, chunkZ, 0, HEIGHT - 1).getPackedBlock(0, 0, 0);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum < 0) {
+            throw new IllegalStateException();
+        }
+        return elapsed;
+    }
+
+    private static long analyze(ArrayWorld world, Region region, ExecutorService executor) {
+        long start = System.nanoTime();
+        BlockHistogram histogram = new RegionAnalyzer(world, executor).analyze(region);
+        long elapsed = System.nanoTime() - start;
+        if (histogram.getTotal() != region.getArea()) {
+            throw new IllegalStateException("Counted " + histogram.getTotal() + " blocks");
+        }
+        return elapsed;
+    }
+
+    private static double millis(long elapsed) {
+        return Math.round(elapsed / 100000.0) / 10.0;
+    }
+
+    /**
+     * A world of layered terrain that is held in an array.
+     */
+    private static class ArrayWorld extends NullWorld {
+        private final char[] blocks = new char[WIDTH * HEIGHT * WIDTH];
+        private final boolean direct;
+
+        private ArrayWorld(boolean direct) {
+            this.direct = direct;
+            Random random = new Random(1);
+            int[] ores = { BlockID.COAL_ORE, BlockID.IRON_ORE, BlockID.GOLD_ORE, BlockID.DIAMOND_ORE };
+            for (int x = 0; x < WIDTH; x++) {
+                for (int z = 0; z < WIDTH; z++) {
+                    int top = 60 + random.nextInt(8);
+                    for (int y = 0; y <= top; y++) {
+                        int type = y == 0 ? BlockID.BEDROCK : y == top ? BlockID.GRASS : y > top - 4 ? BlockID.DIRT : BlockID.STONE;
+                        if (type == BlockID.STONE && random.nextInt(50) == 0) {
+                            type = ores[random.nextInt(ores.length)];
+                        }
+                        blocks[getIndex(x, y, z)] = (char) (type << 4);
+                    }
+                }
+            }
+        }
+
+        private static int getIndex(int x, int y, int z) {
+            return (y * WIDTH + z) * WIDTH + x;
+        }
+
+        @Override
+        public BaseBlock getLazyBlock(Vector position) {
+            int x = position.getBlockX();
+            int y = position.getBlockY();
+            int z = position.getBlockZ();
+            if (x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT || z < 0 || z >= WIDTH) {
+                return new BaseBlock(BlockID.AIR);
+            }
+            char packed = blocks[getIndex(x, y, z)];
+            return new BaseBlock(packed >> 4, packed & 0xF);
+        }
+
+        @Override
+        public ColumnSnapshot getColumnSnapshot(int chunkX, int chunkZ, int minY, int maxY) {
+            if (!direct) {
+                return super.getColumnSnapshot(chunkX, chunkZ, minY, maxY);
+            }
+            ColumnSnapshot snapshot = new ColumnSnapshot(chunkX, chunkZ, minY, maxY);
+            for (int y = Math.max(0, minY); y <= Math.min(HEIGHT - 1, maxY); y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        char packed = blocks[getIndex(chunkX << 4 | x, y, chunkZ << 4 | z)];
+                        snapshot.setBlock(x, y, z, packed >> 4, packed & 0xF);
+                    }
+                }
+            }
+            return snapshot;
+        }
+    }
+
+}
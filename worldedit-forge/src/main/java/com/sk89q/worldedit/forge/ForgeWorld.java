@@ -35,6 +35,8 @@
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.util.TreeGenerator.TreeType;
 import com.sk89q.worldedit.world.AbstractWorld;
+import com.sk89q.worldedit.world.ColumnSnapshot;
+import com.sk89q.worldedit.world.SectionBatch;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.registry.WorldData;
 import net.minecraft.block.Block;
@@ -124,8 +126,33 @@ public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight
         int y = position.getBlockY();
         int z = position.getBlockZ();
 
+        return setBlock(world, world.getChunkFromChunkCoords(x >> 4, z >> 4), position, block, notifyAndLight);
+    }
+
+    @Override
+    public int setBlocks(SectionBatch batch, boolean notifyAndLight) throws WorldEditException {
+        checkNotNull(batch);
+
+        World world = getWorldChecked();
+        Chunk chunk = world.getChunkFromChunkCoords(batch.getSectionX(), batch.getSectionZ());
+        int changed = 0;
+
+        for (int i = 0; i < SectionBatch.VOLUME; i++) {
+            BaseBlock block = batch.getBlock(i);
+            if (block != null && setBlock(world, chunk, batch.getPosition(i), block, notifyAndLight)) {
+                changed++;
+            }
+        }
+
+        return changed;
+    }
+
+    private boolean setBlock(World world, Chunk chunk, Vector position, BaseBlock block, boolean notifyAndLight) {
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+
         // First set the block
-        Chunk chunk = world.getChunkFromChunkCoords(x >> 4, z >> 4);
         int previousId = 0;
 
         if (notifyAndLight) {
@@ -140,7 +167,7 @@ public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight
             if (tag != null) {
                 NBTTagCompound nativeTag = NBTConverter.toNative(tag);
                 nativeTag.setString("id", block.getNbtId());
-                TileEntityUtils.setTileEntity(getWorld(), position, nativeTag);
+                TileEntityUtils.setTileEntity(world, position, nativeTag);
             }
         }
 
@@ -347,6 +374,22 @@ public BaseBlock getLazyBlock(Vector position) {
         return new LazyBlock(id, data, this, position);
     }
 
+    @Override
+    public ColumnSnapshot getColumnSnapshot(int chunkX, int chunkZ, int minY, int maxY) {
+        Chunk chunk = getWorld().getChunkFromChunkCoords(chunkX, chunkZ);
+        ColumnSnapshot snapshot = new ColumnSnapshot(chunkX, chunkZ, minY, maxY);
+        int chunkMinY = Math.max(0, minY);
+        int chunkMaxY = Math.min(getMaxY(), maxY);
+        for (int y = chunkMinY; y <= chunkMaxY; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    snapshot.setBlock(x, y, z, Block.getIdFromBlock(chunk.getBlock(x, y, z)), chunk.getBlockMetadata(x, y, z));
+                }
+            }
+        }
+        return snapshot;
+    }
+
     @Override
     public int hashCode() {
         return getWorld().hashCode();
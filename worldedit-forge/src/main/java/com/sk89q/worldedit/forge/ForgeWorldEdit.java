@@ -93,6 +93,7 @@ public void preInit(FMLPreInitializationEvent event) {
     @EventHandler
     public void init(FMLInitializationEvent event) {
         MinecraftForge.EVENT_BUS.register(this);
+        FMLCommonHandler.instance().bus().register(new SessionPrefetcher(this));
         proxy.registerHandlers();
     }
 
@@ -0,0 +1,58 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.forge;
+
+import com.sk89q.worldedit.WorldEdit;
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.PlayerEvent.PlayerLoggedInEvent;
+import net.minecraft.entity.player.EntityPlayerMP;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Starts loading the sessions of players in the background when they log
+ * in, so that they are ready before the player first uses WorldEdit.
+ */
+public class SessionPrefetcher {
+
+    private final ForgeWorldEdit mod;
+
+    /**
+     * Create a new instance.
+     *
+     * @param mod the mod
+     */
+    SessionPrefetcher(ForgeWorldEdit mod) {
+        checkNotNull(mod);
+        this.mod = mod;
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerLoggedInEvent event) {
+        if (mod.getPlatform() == null) {
+            return;
+        }
+
+        if (event.player instanceof EntityPlayerMP) {
+            WorldEdit.getInstance().getSessionManager().prefetch(mod.wrap((EntityPlayerMP) event.player));
+        }
+    }
+
+}